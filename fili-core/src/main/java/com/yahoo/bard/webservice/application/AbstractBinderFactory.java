@@ -18,13 +18,16 @@ import com.yahoo.bard.webservice.application.healthchecks.LookupHealthCheck;
 import com.yahoo.bard.webservice.application.healthchecks.VersionHealthCheck;
 import com.yahoo.bard.webservice.async.broadcastchannels.BroadcastChannel;
 import com.yahoo.bard.webservice.async.broadcastchannels.SimpleBroadcastChannel;
+import com.yahoo.bard.webservice.async.broadcastchannels.TicketNotificationRegistry;
 import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField;
 import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobRowBuilder;
 import com.yahoo.bard.webservice.async.jobs.jobrows.JobRowBuilder;
 import com.yahoo.bard.webservice.async.jobs.payloads.DefaultJobPayloadBuilder;
 import com.yahoo.bard.webservice.async.jobs.payloads.JobPayloadBuilder;
 import com.yahoo.bard.webservice.async.jobs.stores.ApiJobStore;
+import com.yahoo.bard.webservice.async.jobs.stores.IndexedJobStore;
 import com.yahoo.bard.webservice.async.jobs.stores.NoOpApiJobStore;
+import com.yahoo.bard.webservice.async.preresponses.stores.FilePreResponseStore;
 import com.yahoo.bard.webservice.async.preresponses.stores.NoOpPreResponseStore;
 import com.yahoo.bard.webservice.async.preresponses.stores.PreResponseStore;
 import com.yahoo.bard.webservice.async.workflows.AsynchronousWorkflowsBuilder;
@@ -35,6 +38,7 @@ import com.yahoo.bard.webservice.config.FeatureFlag;
 import com.yahoo.bard.webservice.config.FeatureFlagRegistry;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.ColumnarPreResponseCodec;
 import com.yahoo.bard.webservice.data.DruidQueryBuilder;
 import com.yahoo.bard.webservice.data.DruidResponseParser;
 import com.yahoo.bard.webservice.data.HttpResponseMaker;
@@ -144,6 +148,7 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.RatioGauge;
 import com.codahale.metrics.health.HealthCheck;
 import com.codahale.metrics.health.HealthCheckRegistry;
+import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.glassfish.hk2.api.TypeLiteral;
@@ -162,6 +167,7 @@ import rx.subjects.PublishSubject;
 
 import java.io.IOException;
 import java.lang.management.ManagementFactory;
+import java.nio.file.Paths;
 import java.time.Clock;
 import java.time.ZoneId;
 import java.util.Arrays;
@@ -229,6 +235,9 @@ public abstract class AbstractBinderFactory implements BinderFactory {
     public static final String DEPRECATED_PERMISSIVE_AVAILABILITY_FLAG = SYSTEM_CONFIG.getPackageVariableName(
             "permissive_column_availability_enabled");
 
+    public static final String INDEXED_JOB_STORE_ENABLED = SYSTEM_CONFIG.getPackageVariableName(
+            "indexed_job_store_enabled");
+
     public static final int DRUID_UNCOVERED_INTERVAL_LIMIT = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("druid_uncovered_interval_limit"),
             0
@@ -243,6 +252,8 @@ public abstract class AbstractBinderFactory implements BinderFactory {
 
     private final TaskScheduler loaderScheduler = new TaskScheduler(LOADER_SCHEDULER_THREAD_POOL_SIZE);
 
+    private TicketNotificationRegistry ticketNotificationRegistry;
+
     /**
      * Constructor.
      */
@@ -357,15 +368,7 @@ public abstract class AbstractBinderFactory implements BinderFactory {
                         getMapper()
                 )).to(CacheService.class);
 
-                bind(buildJobRowBuilder()).to(JobRowBuilder.class);
-
-                bind(buildPreResponseStore(loader.getDictionaries())).to(PreResponseStore.class);
-
-                bind(buildBroadcastChannel()).to(new TypeLiteral<BroadcastChannel<String>>() { });
-
-                bind(buildApiJobStore()).to(ApiJobStore.class);
-
-                bind(buildJobPayloadBuilder()).to(JobPayloadBuilder.class);
+                bindAsynchronousServices(this);
 
                 bind(getAsynchronousProcessBuilder()).to(AsynchronousWorkflowsBuilder.class);
 
@@ -399,6 +402,9 @@ public abstract class AbstractBinderFactory implements BinderFactory {
                     );
                     setupDruidDimensionsLoader(healthCheckRegistry, dimensionLoader);
                 }
+                if (SYSTEM_CONFIG.getLongProperty(SearchIndexRebuildTask.REBUILD_TIMER_DURATION, 0) > 0) {
+                    scheduleLoader(buildSearchIndexRebuildTask(loader.getDimensionDictionary()));
+                }
                 if (SYSTEM_CONFIG.getBooleanProperty(DEPRECATED_PERMISSIVE_AVAILABILITY_FLAG, false)) {
                     LOG.warn(
                             "Permissive column availability feature flag is no longer supported, please use " +
@@ -468,6 +474,28 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         binder.bind(loader.getDictionaries()).to(ResourceDictionaries.class);
     }
 
+    /**
+     * Binds the stores and channels of asynchronous jobs to the specified binder.
+     *
+     * @param binder  The binder to bind the asynchronous job services to
+     */
+    protected void bindAsynchronousServices(AbstractBinder binder) {
+        binder.bind(buildJobRowBuilder()).to(JobRowBuilder.class);
+
+        binder.bind(buildPreResponseStore(loader.getDictionaries())).to(PreResponseStore.class);
+
+        BroadcastChannel<String> broadcastChannel = buildBroadcastChannel();
+        binder.bind(broadcastChannel).to(new TypeLiteral<BroadcastChannel<String>>() { });
+
+        // Built once, and closed on shutdown, dropping the requests still waiting
+        ticketNotificationRegistry = buildTicketNotificationRegistry(broadcastChannel);
+        binder.bind(ticketNotificationRegistry).to(TicketNotificationRegistry.class);
+
+        binder.bind(buildApiJobStore()).to(ApiJobStore.class);
+
+        binder.bind(buildJobPayloadBuilder()).to(JobPayloadBuilder.class);
+    }
+
     /**
      * Binds all the exception handlers to the specified binder.
      *
@@ -620,10 +648,26 @@ public abstract class AbstractBinderFactory implements BinderFactory {
      * @param resourceDictionaries  Hold the resource dictionaries
      *
      * @return An instance of the interface that allows Bard to talk to an arbitrary key-value store system for storing
-     * PreResponses, by default this returns a {@code NoOpPreResponseStore}, which does nothing
+     * PreResponses, by default this returns a {@code FilePreResponseStore} if a directory is configured for it, and a
+     * {@code NoOpPreResponseStore}, which does nothing, otherwise
      */
     protected PreResponseStore buildPreResponseStore(ResourceDictionaries resourceDictionaries) {
-        return new NoOpPreResponseStore();
+        String directory = SYSTEM_CONFIG.getStringProperty(FilePreResponseStore.PRERESPONSE_STORE_DIRECTORY, null);
+        if (directory == null) {
+            return new NoOpPreResponseStore();
+        }
+        ObjectMapper responseContextMapper = getMapper().copy()
+                .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL);
+        return new FilePreResponseStore(
+                Paths.get(directory),
+                new ColumnarPreResponseCodec(
+                        resourceDictionaries.getDimensionDictionary(),
+                        getMapper(),
+                        responseContextMapper,
+                        new StandardGranularityParser()
+                )
+        );
     }
 
     /**
@@ -631,9 +675,13 @@ public abstract class AbstractBinderFactory implements BinderFactory {
      * requests.
      *
      * @return An instance of the interface that allows Bard to talk to an arbitrary key-value store system for storing
-     * job metadata, by default this returns a {@code NoOpApiJobStore}, which does nothing
+     * job metadata, by default this returns an {@code IndexedJobStore} if it's enabled, and a {@code NoOpApiJobStore},
+     * which does nothing, otherwise
      */
     protected ApiJobStore buildApiJobStore() {
+        if (SYSTEM_CONFIG.getBooleanProperty(INDEXED_JOB_STORE_ENABLED, false)) {
+            return new IndexedJobStore();
+        }
         return new NoOpApiJobStore();
     }
 
@@ -648,6 +696,18 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         return new SimpleBroadcastChannel<>(PublishSubject.create());
     }
 
+    /**
+     * Builds the registry waking the requests waiting on the tickets of asynchronous jobs, as the tickets are
+     * broadcast.
+     *
+     * @param broadcastChannel  The channel the tickets of the jobs whose results are ready are broadcast on
+     *
+     * @return A TicketNotificationRegistry, which is the only subscriber to the channel waking the waiting requests
+     */
+    protected TicketNotificationRegistry buildTicketNotificationRegistry(BroadcastChannel<String> broadcastChannel) {
+        return new TicketNotificationRegistry(broadcastChannel);
+    }
+
     /**
      * Initialize the PreResponse deserializer to deserialize the custom serialized PreResponse.
      *
@@ -973,6 +1033,17 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         return new DimensionValueLoadTask(Collections.singletonList(druidDimensionRowProvider));
     }
 
+    /**
+     * Build a SearchIndexRebuildTask.
+     *
+     * @param dimensionDictionary  The dimensions whose search indexes are rebuilt
+     *
+     * @return A SearchIndexRebuildTask
+     */
+    protected SearchIndexRebuildTask buildSearchIndexRebuildTask(DimensionDictionary dimensionDictionary) {
+        return new SearchIndexRebuildTask(dimensionDictionary);
+    }
+
     /**
      * Schedule a datasource metadata loader and register its health check.
      *
@@ -1475,6 +1546,13 @@ public abstract class AbstractBinderFactory implements BinderFactory {
         );
     }
 
+    @Override
+    public void shutdown() {
+        if (ticketNotificationRegistry != null) {
+            ticketNotificationRegistry.close();
+        }
+    }
+
     /**
      * Shutdown the scheduler for loader tasks.
      */
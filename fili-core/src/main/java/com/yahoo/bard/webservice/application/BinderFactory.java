@@ -23,4 +23,11 @@ public interface BinderFactory {
      * @param resourceConfig  Resource config to use for accessing the configuration
      */
     void afterRegistration(ResourceConfig resourceConfig);
+
+    /**
+     * Release what the bound services hold open, once the jersey application shuts down.
+     */
+    default void shutdown() {
+        // Nothing is held open by default
+    }
 }
@@ -4,12 +4,15 @@ package com.yahoo.bard.webservice.application;
 
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 
 import org.joda.time.DateTime;
 
 import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -68,4 +71,23 @@ public class DimensionValueLoadTask extends LoadTask<Boolean> {
     public DateTime getLastRunTimestamp() {
         return lastRunTimestamp.get();
     }
+
+    /**
+     * Get the time each dimension was last loaded successfully, by the loaders that keep track of it.
+     * <p>
+     * A dimension loaded by several loaders gets the latest of their times.
+     *
+     * @return the time of the last successful load of each dimension, or null for dimensions not loaded yet
+     */
+    public Map<Dimension, DateTime> getDimensionFreshness() {
+        Map<Dimension, DateTime> freshness = new LinkedHashMap<>();
+        dimensionRowProviders.forEach(dimensionRowProvider -> dimensionRowProvider.getDimensionFreshness().forEach(
+                (dimension, loaded) -> freshness.merge(
+                        dimension,
+                        loaded,
+                        (first, second) -> first == null || (second != null && second.isAfter(first)) ? second : first
+                )
+        ));
+        return freshness;
+    }
 }
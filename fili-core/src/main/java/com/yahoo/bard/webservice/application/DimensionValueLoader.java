@@ -12,6 +12,8 @@ import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -110,4 +112,13 @@ public interface DimensionValueLoader {
     default void updateDimensionWithValue(Dimension dimension, DimensionRow dimensionRow) {
         dimension.addDimensionRow(dimensionRow);
     }
+
+    /**
+     * Get the time each dimension was last loaded successfully, for loaders that keep track of it.
+     *
+     * @return the time of the last successful load of each dimension, or null for dimensions not loaded yet
+     */
+    default Map<Dimension, DateTime> getDimensionFreshness() {
+        return Collections.emptyMap();
+    }
 }
@@ -12,8 +12,11 @@ import com.yahoo.bard.webservice.druid.client.DruidWebService;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.Ordering;
 import com.yahoo.bard.webservice.druid.model.datasource.DataSource;
 import com.yahoo.bard.webservice.druid.model.datasource.TableDataSource;
+import com.yahoo.bard.webservice.druid.model.filter.BoundFilter;
+import com.yahoo.bard.webservice.druid.model.orderby.DefaultSearchSortDirection;
 import com.yahoo.bard.webservice.druid.model.query.DruidSearchQuery;
 import com.yahoo.bard.webservice.druid.model.query.RegexSearchQuerySpec;
 import com.yahoo.bard.webservice.druid.model.query.SearchQuerySpec;
@@ -21,19 +24,38 @@ import com.yahoo.bard.webservice.table.PhysicalTableDictionary;
 import com.yahoo.bard.webservice.table.resolver.DataSourceConstraint;
 import com.yahoo.bard.webservice.web.handlers.RequestContext;
 
+import com.fasterxml.jackson.databind.JsonNode;
+
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
 import org.joda.time.Period;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * The DruidDimensionRowProvider sends requests to the druid search query interface to get a list of dimension
  * values to add to the dimension cache.
+ * <p>
+ * By default each load sends a single search query per dimension and data source over the whole lookback period, and
+ * gets at most the row limit of values. In incremental mode each load pages through the values instead, the row limit
+ * at a time, and only searches the time since the last successful load of the dimension from the data source, less an
+ * overlap for data that arrived late. Each page is added to the dimension as a batch. Up to a configured number of
+ * dimensions are loaded at once, and a load waits, up to a configured timeout, for all of its dimensions to finish. The
+ * time each dimension was last loaded successfully is reported by {@link #getDimensionFreshness()}.
  */
 public class DruidDimensionValueLoader implements DimensionValueLoader {
     private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
@@ -46,8 +68,24 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
     public static final String DRUID_DIM_LOADER_LOOKBACK_PERIOD =
             SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_lookback_period");
 
+    public static final String DRUID_DIM_LOADER_INCREMENTAL =
+            SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_incremental");
+    public static final String DRUID_DIM_LOADER_INCREMENTAL_OVERLAP =
+            SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_incremental_overlap");
+    public static final String DRUID_DIM_LOADER_MAX_CONCURRENT_DIMENSIONS =
+            SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_max_concurrent_dimensions");
+    public static final String DRUID_DIM_LOADER_LOAD_TIMEOUT =
+            SYSTEM_CONFIG.getPackageVariableName("druid_dim_loader_load_timeout");
+
+    private static final Logger LOG = LoggerFactory.getLogger(DruidDimensionValueLoader.class);
+
     private static final Integer ROW_LIMIT = SYSTEM_CONFIG.getIntProperty(DRUID_DIM_LOADER_ROW_LIMIT, 1000);
 
+    private static final Period INCREMENTAL_OVERLAP = new Period(SYSTEM_CONFIG.getStringProperty(
+            DRUID_DIM_LOADER_INCREMENTAL_OVERLAP,
+            "PT1H"
+    ));
+
     private static final Period LOOKBACK = new Period(SYSTEM_CONFIG.getStringProperty(
             DRUID_DIM_LOADER_LOOKBACK_PERIOD,
             "P10Y"
@@ -60,6 +98,14 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
     private final LinkedHashSet<Dimension> dimensions;
     private final LinkedHashSet<DataSource> dataSources;
 
+    private final boolean incremental;
+    private final int maxConcurrentDimensions;
+    private final long loadTimeoutMillis;
+    private final Semaphore dimensionPermits;
+    // The end of the time searched by the last successful incremental load of each dimension from each data source
+    private final Map<Dimension, Map<DataSource, DateTime>> loadedUntil = new ConcurrentHashMap<>();
+    private final Map<Dimension, DateTime> dimensionFreshness = new ConcurrentHashMap<>();
+
     private HttpErrorCallback errorCallback;
     private FailureCallback failureCallback;
 
@@ -100,6 +146,75 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
             List<String> dimensionsToLoad,
             DruidWebService druidWebService
     ) {
+        this(
+                physicalTableDictionary,
+                dimensionDictionary,
+                dimensionsToLoad,
+                druidWebService,
+                SYSTEM_CONFIG.getBooleanProperty(DRUID_DIM_LOADER_INCREMENTAL, false),
+                SYSTEM_CONFIG.getIntProperty(DRUID_DIM_LOADER_MAX_CONCURRENT_DIMENSIONS, 4)
+        );
+    }
+
+    /**
+     * DruidDimensionRowProvider fetches data from Druid and adds it to the dimension cache.
+     * The dimensions to be loaded and the loading mode can be passed in as parameters.
+     *
+     * @param physicalTableDictionary  The physical tables
+     * @param dimensionDictionary  The dimension dictionary to load dimensions from.
+     * @param dimensionsToLoad  The dimensions to use.
+     * @param druidWebService  The druid webservice to query.
+     * @param incremental  Whether to page through the values of only the time since the last load
+     * @param maxConcurrentDimensions  The number of dimensions loaded at once in incremental mode
+     */
+    public DruidDimensionValueLoader(
+            PhysicalTableDictionary physicalTableDictionary,
+            DimensionDictionary dimensionDictionary,
+            List<String> dimensionsToLoad,
+            DruidWebService druidWebService,
+            boolean incremental,
+            int maxConcurrentDimensions
+    ) {
+        this(
+                physicalTableDictionary,
+                dimensionDictionary,
+                dimensionsToLoad,
+                druidWebService,
+                incremental,
+                maxConcurrentDimensions,
+                SYSTEM_CONFIG.getLongProperty(DRUID_DIM_LOADER_LOAD_TIMEOUT, TimeUnit.MINUTES.toMillis(10))
+        );
+    }
+
+    /**
+     * DruidDimensionRowProvider fetches data from Druid and adds it to the dimension cache.
+     * The dimensions to be loaded, the loading mode and how long a load may take can be passed in as parameters.
+     *
+     * @param physicalTableDictionary  The physical tables
+     * @param dimensionDictionary  The dimension dictionary to load dimensions from.
+     * @param dimensionsToLoad  The dimensions to use.
+     * @param druidWebService  The druid webservice to query.
+     * @param incremental  Whether to page through the values of only the time since the last load
+     * @param maxConcurrentDimensions  The number of dimensions loaded at once in incremental mode
+     * @param loadTimeoutMillis  How long an incremental load waits for its dimensions to finish loading
+     */
+    public DruidDimensionValueLoader(
+            PhysicalTableDictionary physicalTableDictionary,
+            DimensionDictionary dimensionDictionary,
+            List<String> dimensionsToLoad,
+            DruidWebService druidWebService,
+            boolean incremental,
+            int maxConcurrentDimensions,
+            long loadTimeoutMillis
+    ) {
+        if (maxConcurrentDimensions < 1) {
+            throw new IllegalArgumentException("At least one dimension must be loaded at a time");
+        }
+        this.incremental = incremental;
+        this.maxConcurrentDimensions = maxConcurrentDimensions;
+        this.loadTimeoutMillis = loadTimeoutMillis;
+        this.dimensionPermits = new Semaphore(maxConcurrentDimensions);
+
         this.dimensions = dimensionsToLoad.stream()
                 .map(dimensionDictionary::findByApiName)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
@@ -132,6 +247,85 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
         return dataSources;
     }
 
+    /**
+     * Get the time each dimension was last loaded successfully, in incremental mode.
+     *
+     * @return the time of the last successful load of each dimension, or null for dimensions not loaded yet
+     */
+    @Override
+    public Map<Dimension, DateTime> getDimensionFreshness() {
+        if (!incremental) {
+            return Collections.emptyMap();
+        }
+        Map<Dimension, DateTime> freshness = new LinkedHashMap<>();
+        dimensions.forEach(dimension -> freshness.put(dimension, dimensionFreshness.get(dimension)));
+        return freshness;
+    }
+
+    /**
+     * Load all dimensions, incrementally and a bounded number at a time in incremental mode.
+     * <p>
+     * In incremental mode this waits until every dimension has finished loading, so that loads don't overlap. If
+     * they haven't finished by the load timeout, the load gives up waiting and reports the timeout to the failure
+     * callback. The dimensions still loading keep their permits until they finish.
+     */
+    @Override
+    public void load() {
+        if (!incremental) {
+            DimensionValueLoader.super.load();
+            return;
+        }
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(loadTimeoutMillis);
+        try {
+            for (Dimension dimension : getDimensions()) {
+                if (!acquirePermits(1, deadline)) {
+                    return;
+                }
+                LOG.trace("Incrementally querying values for dimension: {}", dimension);
+                new IncrementalLoad(
+                        dimension,
+                        getDataSources().stream()
+                                .filter(dataSource -> dimensionExistsInDataSource(dimension, dataSource))
+                                .iterator()
+                ).start();
+            }
+            // Wait for the dimensions still loading
+            if (acquirePermits(maxConcurrentDimensions, deadline)) {
+                dimensionPermits.release(maxConcurrentDimensions);
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while loading dimension values");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait until the given number of dimensions can be loaded, or the load times out.
+     * <p>
+     * A timeout is logged and passed to the failure callback.
+     *
+     * @param permits  The number of dimension permits to acquire
+     * @param deadline  The {@link System#nanoTime()} at which the load times out
+     *
+     * @return true if the permits were acquired, false if the load timed out
+     *
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private boolean acquirePermits(int permits, long deadline) throws InterruptedException {
+        if (dimensionPermits.tryAcquire(permits, deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+            return true;
+        }
+        String message = String.format(
+                "Timed out after %d ms waiting for dimension values to load",
+                loadTimeoutMillis
+        );
+        LOG.error(message);
+        if (failureCallback != null) {
+            failureCallback.invoke(new TimeoutException(message));
+        }
+        return false;
+    }
+
     @Override
     public void query(Dimension dimension, DataSource dataSource) {
         // Success callback will update the dimension cache
@@ -182,4 +376,152 @@ public class DruidDimensionValueLoader implements DimensionValueLoader {
             updateDimension(dimension);
         };
     }
+
+    /**
+     * Add the values of a page of search results that aren't in a dimension yet to it, as a batch.
+     *
+     * @param dimension  Dimension for which we are getting values
+     * @param values  The values found
+     */
+    private void addNewValues(Dimension dimension, List<String> values) {
+        Map<String, DimensionRow> existingRows = dimension.findDimensionRowsByKeyValues(values);
+        Set<DimensionRow> newRows = values.stream()
+                .filter(value -> existingRows == null || !existingRows.containsKey(value))
+                .map(dimension::createEmptyDimensionRow)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        if (!newRows.isEmpty()) {
+            dimension.addAllDimensionRows(newRows);
+        }
+    }
+
+    /**
+     * Incremental load of a dimension from the data sources it's in, one data source and one page at a time.
+     * <p>
+     * Pages are found by searching for the values sorted lexicographically, and after the first page, bounded below
+     * by the last value of the page before. The load releases its permit to load a dimension once it's done.
+     */
+    private class IncrementalLoad {
+        private final Dimension dimension;
+        private final Iterator<DataSource> remainingDataSources;
+        private final DateTime loadStart = DateTime.now();
+
+        private DataSource dataSource;
+        private Interval interval;
+        private String lastValue;
+
+        /**
+         * Constructor.
+         *
+         * @param dimension  The dimension to load
+         * @param dataSources  The data sources the dimension is in
+         */
+        IncrementalLoad(Dimension dimension, Iterator<DataSource> dataSources) {
+            this.dimension = dimension;
+            this.remainingDataSources = dataSources;
+        }
+
+        /**
+         * Start loading from the first data source.
+         */
+        synchronized void start() {
+            try {
+                nextDataSource();
+            } catch (RuntimeException e) {
+                finish(false);
+                throw e;
+            }
+        }
+
+        /**
+         * Query the first page of the next data source, or finish the load if there's none left.
+         */
+        private void nextDataSource() {
+            if (!remainingDataSources.hasNext()) {
+                finish(true);
+                return;
+            }
+            dataSource = remainingDataSources.next();
+            DateTime lastLoaded = loadedUntil.getOrDefault(dimension, Collections.emptyMap()).get(dataSource);
+            DateTime start = lastLoaded == null ? loadStart.minus(LOOKBACK) : lastLoaded.minus(INCREMENTAL_OVERLAP);
+            interval = new Interval(start, loadStart);
+            lastValue = null;
+            queryPage();
+        }
+
+        /**
+         * Query the page of values following the last value loaded from the current data source.
+         */
+        private void queryPage() {
+            DruidSearchQuery druidSearchQuery = new DruidSearchQuery(
+                    dataSource,
+                    AllGranularity.INSTANCE,
+                    lastValue == null ?
+                            null :
+                            new BoundFilter(dimension, lastValue, null, true, null, Ordering.LEXICOGRAPHIC),
+                    Collections.singletonList(interval),
+                    Collections.singletonList(dimension),
+                    SEARCH_QUERY_SPEC,
+                    DefaultSearchSortDirection.LEXICOGRAPHIC,
+                    ROW_LIMIT
+            );
+
+            druidWebService.postDruidQuery(
+                    new RequestContext(null, false),
+                    this::onPage,
+                    (statusCode, reasonPhrase, responseBody) -> {
+                        finish(false);
+                        if (errorCallback != null) {
+                            errorCallback.invoke(statusCode, reasonPhrase, responseBody);
+                        }
+                    },
+                    error -> {
+                        finish(false);
+                        if (failureCallback != null) {
+                            failureCallback.invoke(error);
+                        }
+                    },
+                    druidSearchQuery
+            );
+        }
+
+        /**
+         * Add the values of a page to the dimension, and query the next page, data source or finish.
+         *
+         * @param rootNode  The search results
+         */
+        private synchronized void onPage(JsonNode rootNode) {
+            try {
+                List<String> values = new ArrayList<>();
+                rootNode.forEach(intervalNode -> intervalNode.get("result").forEach(
+                        dim -> values.add(dim.get("value").asText())
+                ));
+                addNewValues(dimension, values);
+
+                if (values.size() < ROW_LIMIT) {
+                    loadedUntil.computeIfAbsent(dimension, ignored -> new ConcurrentHashMap<>())
+                            .put(dataSource, interval.getEnd());
+                    nextDataSource();
+                } else {
+                    lastValue = values.get(values.size() - 1);
+                    queryPage();
+                }
+            } catch (RuntimeException e) {
+                LOG.error("Failed to load values of dimension {} from {}", dimension.getApiName(), dataSource, e);
+                finish(false);
+            }
+        }
+
+        /**
+         * Record the outcome of the load and let another dimension load.
+         *
+         * @param success  Whether every data source was loaded
+         */
+        private void finish(boolean success) {
+            if (success) {
+                updateDimension(dimension);
+                dimensionFreshness.put(dimension, loadStart);
+            }
+            dimensionPermits.release();
+        }
+    }
 }
@@ -14,6 +14,8 @@ import com.codahale.metrics.jersey2.InstrumentedResourceMethodApplicationListene
 import com.codahale.metrics.logback.InstrumentedAppender;
 
 import org.glassfish.hk2.utilities.Binder;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
 import org.slf4j.LoggerFactory;
 
 import ch.qos.logback.classic.Logger;
@@ -49,12 +51,27 @@ public class ResourceConfig extends org.glassfish.jersey.server.ResourceConfig {
 
         register(binder);
         registerFilters();
+        registerShutdownListener(binderFactory);
 
         // Call post-registration hook to allow for additional registration
         binderFactory.afterRegistration(this);
 
     }
 
+    /**
+     * Register a listener shutting down the services the binder factory bound, as the application shuts down.
+     *
+     * @param binderFactory  The binder factory which bound the services
+     */
+    private void registerShutdownListener(BinderFactory binderFactory) {
+        register(new AbstractContainerLifecycleListener() {
+            @Override
+            public void onShutdown(Container container) {
+                binderFactory.shutdown();
+            }
+        });
+    }
+
     /**
      * Register the built-in filters.
      */
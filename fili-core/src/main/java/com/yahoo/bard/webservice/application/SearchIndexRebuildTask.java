@@ -0,0 +1,71 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.application;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
+import com.yahoo.bard.webservice.data.dimension.SearchProvider;
+
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * SearchIndexRebuildTask periodically rebuilds the search indexes of all dimensions whose search providers support
+ * bulk rebuilds, from the rows currently in them.
+ * <p>
+ * Incremental updates leave an index spread over many segments full of deleted documents, which slows searches down.
+ * A rebuild writes the rows into a fresh, fully merged index offline and swaps it in without interrupting searches.
+ */
+public class SearchIndexRebuildTask extends LoadTask<Boolean> {
+    private static final Logger LOG = LoggerFactory.getLogger(SearchIndexRebuildTask.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String REBUILD_TIMER_DURATION =
+            SYSTEM_CONFIG.getPackageVariableName("search_index_rebuild_timer_duration");
+    public static final String REBUILD_TIMER_DELAY =
+            SYSTEM_CONFIG.getPackageVariableName("search_index_rebuild_timer_delay");
+
+    private final DimensionDictionary dimensionDictionary;
+    private final AtomicReference<DateTime> lastRunTimestamp;
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionDictionary  The dimensions whose indexes are rebuilt
+     */
+    public SearchIndexRebuildTask(DimensionDictionary dimensionDictionary) {
+        super(
+                SearchIndexRebuildTask.class.getSimpleName(),
+                SYSTEM_CONFIG.getLongProperty(REBUILD_TIMER_DELAY, 0),
+                SYSTEM_CONFIG.getLongProperty(REBUILD_TIMER_DURATION, 0)
+        );
+        this.dimensionDictionary = dimensionDictionary;
+        this.lastRunTimestamp = new AtomicReference<>();
+    }
+
+    @Override
+    public void run() {
+        for (Dimension dimension : dimensionDictionary.findAll()) {
+            SearchProvider searchProvider = dimension.getSearchProvider();
+            if (searchProvider == null || !searchProvider.supportsIndexRebuild()) {
+                continue;
+            }
+            try {
+                searchProvider.rebuildIndex();
+            } catch (RuntimeException e) {
+                // Carry on with the other dimensions, the failed one is still served from its old index
+                LOG.error("Failed to rebuild search index for dimension {}", dimension.getApiName(), e);
+            }
+        }
+        lastRunTimestamp.set(DateTime.now());
+    }
+
+    public DateTime getLastRunTimestamp() {
+        return lastRunTimestamp.get();
+    }
+}
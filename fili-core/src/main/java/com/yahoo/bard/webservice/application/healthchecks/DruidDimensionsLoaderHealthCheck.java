@@ -3,15 +3,21 @@
 package com.yahoo.bard.webservice.application.healthchecks;
 
 import com.yahoo.bard.webservice.application.DimensionValueLoadTask;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
 
 import com.codahale.metrics.health.HealthCheck;
 
 import org.joda.time.DateTime;
 
+import java.util.Collections;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 import javax.inject.Singleton;
 
 /**
- * Check to verify if the loader runs as scheduled.
+ * Check to verify if the loader runs as scheduled, and that none of the dimensions it keeps track of the freshness of
+ * have gone without a successful load for longer than the last run duration.
  */
 @Singleton
 public class DruidDimensionsLoaderHealthCheck extends HealthCheck {
@@ -39,12 +45,29 @@ public class DruidDimensionsLoaderHealthCheck extends HealthCheck {
                     loader.getLastRunTimestamp()
             );
         }
-        if (loader.getLastRunTimestamp().isAfter(DateTime.now().minus(lastRunDuration))) {
-            return Result.healthy("Druid dimensions loader is healthy, last run: %s.", loader.getLastRunTimestamp());
+        if (!loader.getLastRunTimestamp().isAfter(DateTime.now().minus(lastRunDuration))) {
+            return Result.unhealthy(
+                    "Druid dimensions loader is not running, last run: %s.",
+                    loader.getLastRunTimestamp()
+            );
+        }
+
+        Map<Dimension, DateTime> freshness = loader.getDimensionFreshness();
+        if (freshness == null) {
+            freshness = Collections.emptyMap();
+        }
+        DateTime staleBefore = DateTime.now().minus(lastRunDuration);
+        String staleDimensions = freshness.entrySet().stream()
+                .filter(entry -> entry.getValue() == null || entry.getValue().isBefore(staleBefore))
+                .map(entry -> entry.getKey().getApiName() + ": " + entry.getValue())
+                .collect(Collectors.joining(", "));
+        if (!staleDimensions.isEmpty()) {
+            return Result.unhealthy(
+                    "Druid dimensions loader has not loaded dimensions recently, last run: %s, stale: %s.",
+                    loader.getLastRunTimestamp(),
+                    staleDimensions
+            );
         }
-        return Result.unhealthy(
-                "Druid dimensions loader is not running, last run: %s.",
-                loader.getLastRunTimestamp()
-        );
+        return Result.healthy("Druid dimensions loader is healthy, last run: %s.", loader.getLastRunTimestamp());
     }
 }
@@ -0,0 +1,221 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.broadcastchannels;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import rx.Observable;
+import rx.Scheduler;
+import rx.Subscription;
+import rx.schedulers.Schedulers;
+import rx.subjects.AsyncSubject;
+import rx.subscriptions.Subscriptions;
+
+import java.io.Closeable;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Wakes the requests waiting on the tickets of asynchronous jobs as the tickets are published on a BroadcastChannel.
+ * <p>
+ * The registry is the only subscriber to the channel, and keeps the waiting requests by ticket, so a published ticket
+ * is handed only to the requests waiting on it, rather than every waiting request checking every published ticket.
+ * Requests stop waiting once their ticket is published, once they time out, or once they are cancelled, and are
+ * dropped from the registry then.
+ */
+public class TicketNotificationRegistry implements Closeable {
+
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final Timer PUBLISH_TIMER = REGISTRY.timer("async.timer.ticket_notifications.publish");
+    public static final Histogram FAN_OUT = REGISTRY.histogram("async.histogram.ticket_notifications.fan_out");
+
+    /**
+     * A timeout waiting for as long as it takes for the ticket to be published.
+     */
+    public static final long NO_TIMEOUT = Long.MAX_VALUE;
+
+    private final Map<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+    private final Scheduler scheduler;
+    private final Subscription subscription;
+    private volatile boolean isClosed = false;
+
+    /**
+     * Constructor, timing out the waiting requests on the computation scheduler.
+     *
+     * @param broadcastChannel  The channel the tickets of the jobs whose results are ready are published on
+     */
+    public TicketNotificationRegistry(BroadcastChannel<String> broadcastChannel) {
+        this(broadcastChannel, Schedulers.computation());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param broadcastChannel  The channel the tickets of the jobs whose results are ready are published on
+     * @param scheduler  The scheduler timing out the waiting requests
+     */
+    public TicketNotificationRegistry(BroadcastChannel<String> broadcastChannel, Scheduler scheduler) {
+        this.scheduler = scheduler;
+        this.subscription = broadcastChannel.getNotifications().subscribe(
+                this::publish,
+                ignored -> cancelAll(),
+                this::cancelAll
+        );
+    }
+
+    /**
+     * Start waiting on a ticket.
+     * <p>
+     * The request waits from when this is called, rather than from when the notification is subscribed to, so a
+     * ticket published in between isn't missed. Requests which stop caring about the ticket before it's published or
+     * the timeout expires, should cancel the returned waiter to drop it from the registry.
+     *
+     * @param ticket  The ticket to wait on
+     * @param timeoutMillis  How long to wait for the ticket to be published, or {@link #NO_TIMEOUT}
+     *
+     * @return the waiter, whose notification emits the ticket once it's published, or nothing on a timeout
+     */
+    public Waiter await(String ticket, long timeoutMillis) {
+        Waiter waiter = new Waiter(ticket);
+        waiters.compute(ticket, (key, ticketWaiters) -> {
+            Set<Waiter> updated = ticketWaiters == null ? ConcurrentHashMap.newKeySet() : ticketWaiters;
+            updated.add(waiter);
+            return updated;
+        });
+        if (isClosed) {
+            // Closed before or while registering, so the wait would never end
+            waiter.cancel();
+        } else if (timeoutMillis != NO_TIMEOUT) {
+            waiter.startTimeout(timeoutMillis);
+        }
+        return waiter;
+    }
+
+    /**
+     * Get the number of requests waiting on a ticket.
+     *
+     * @param ticket  The ticket
+     *
+     * @return the number of requests waiting on the ticket
+     */
+    public int getWaiting(String ticket) {
+        Set<Waiter> ticketWaiters = waiters.get(ticket);
+        return ticketWaiters == null ? 0 : ticketWaiters.size();
+    }
+
+    /**
+     * Wake the requests waiting on a ticket.
+     *
+     * @param ticket  The published ticket
+     */
+    private void publish(String ticket) {
+        try (Timer.Context ignored = PUBLISH_TIMER.time()) {
+            Set<Waiter> ticketWaiters = waiters.remove(ticket);
+            FAN_OUT.update(ticketWaiters == null ? 0 : ticketWaiters.size());
+            if (ticketWaiters != null) {
+                ticketWaiters.forEach(waiter -> waiter.finish(true));
+            }
+        }
+    }
+
+    /**
+     * Stop listening to the channel, and stop the waiting requests without a notification.
+     */
+    @Override
+    public void close() {
+        subscription.unsubscribe();
+        cancelAll();
+    }
+
+    /**
+     * Stop the waiting requests without a notification, and any requests starting to wait from now on.
+     */
+    private void cancelAll() {
+        isClosed = true;
+        waiters.values().forEach(ticketWaiters -> ticketWaiters.forEach(Waiter::cancel));
+    }
+
+    /**
+     * A request waiting on a ticket.
+     */
+    public class Waiter {
+        private final String ticket;
+        private final AsyncSubject<String> notification = AsyncSubject.create();
+        private final AtomicBoolean isFinished = new AtomicBoolean(false);
+        private volatile Subscription timeout = Subscriptions.unsubscribed();
+
+        /**
+         * Constructor.
+         *
+         * @param ticket  The ticket waited on
+         */
+        private Waiter(String ticket) {
+            this.ticket = ticket;
+        }
+
+        /**
+         * Get the notification of the ticket, which may be subscribed to at any time, and replays how the wait ended.
+         *
+         * @return an Observable emitting the ticket once it's published, or completing empty if the wait timed out or
+         * was cancelled
+         */
+        public Observable<String> getNotification() {
+            return notification;
+        }
+
+        /**
+         * Cancel the wait once the timeout expires.
+         *
+         * @param timeoutMillis  How long to wait for the ticket to be published
+         */
+        private void startTimeout(long timeoutMillis) {
+            Scheduler.Worker worker = scheduler.createWorker();
+            timeout = worker;
+            worker.schedule(this::cancel, timeoutMillis, TimeUnit.MILLISECONDS);
+            if (isFinished.get()) {
+                // Ended before the timeout was started, so finishing didn't stop it
+                worker.unsubscribe();
+            }
+        }
+
+        /**
+         * Stop waiting without a notification, and drop the waiter from the registry. Has no effect once the wait
+         * has ended.
+         */
+        public void cancel() {
+            if (finish(false)) {
+                waiters.computeIfPresent(ticket, (key, ticketWaiters) -> {
+                    ticketWaiters.remove(this);
+                    return ticketWaiters.isEmpty() ? null : ticketWaiters;
+                });
+            }
+        }
+
+        /**
+         * End the wait, unless it has already ended.
+         *
+         * @param isPublished  Whether the wait ended because the ticket was published
+         *
+         * @return true if this ended the wait
+         */
+        private boolean finish(boolean isPublished) {
+            if (!isFinished.compareAndSet(false, true)) {
+                return false;
+            }
+            timeout.unsubscribe();
+            if (isPublished) {
+                notification.onNext(ticket);
+            }
+            notification.onCompleted();
+            return true;
+        }
+    }
+}
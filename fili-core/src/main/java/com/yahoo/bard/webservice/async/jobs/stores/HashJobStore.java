@@ -2,16 +2,7 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.async.jobs.stores;
 
-import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_JOBFIELD_UNDEFINED;
-import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_OPERATOR_INVALID;
-
-import com.yahoo.bard.webservice.async.jobs.jobrows.JobField;
 import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow;
-import com.yahoo.bard.webservice.web.DefaultFilterOperation;
-import com.yahoo.bard.webservice.web.FilterOperation;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import rx.Observable;
 
@@ -27,8 +18,6 @@ import java.util.Set;
  */
 public class HashJobStore implements ApiJobStore {
 
-    private static final Logger LOG = LoggerFactory.getLogger(HashJobStore.class);
-
     private final Map<String, JobRow> store;
 
     /**
@@ -81,55 +70,6 @@ public class HashJobStore implements ApiJobStore {
      * @throws IllegalArgumentException if a JobField in any of the filters is not a part the JobRow
      */
     private boolean satisfiesFilters(Set<JobRowFilter> jobRowFilters, JobRow jobRow) throws IllegalArgumentException {
-        return jobRowFilters.stream().allMatch(filter -> satisfiesFilter(jobRow, filter));
-    }
-
-    /**
-     * This method checks if the given JobRow satisfies the given JobRowFilter and returns true if it does.
-     * If a JobField in the filter is not a part the JobRow, this method throws an IllegalArgumentException.
-     *
-     * @param jobRow  The JobRow which needs to be inspected
-     * @param jobRowFilter  A JobRowFilter specifying the filter condition
-     *
-     * @return true if the JobRow satisfies the filter, false otherwise
-     *
-     * @throws IllegalArgumentException if a JobField in the filter is not a part the JobRow
-     */
-    private boolean satisfiesFilter(JobRow jobRow, JobRowFilter jobRowFilter) throws IllegalArgumentException {
-        JobField filterJobField = jobRowFilter.getJobField();
-        FilterOperation filterOperation = jobRowFilter.getOperation();
-        Set<String> filterValues = jobRowFilter.getValues();
-
-        if (!jobRow.containsKey(filterJobField)) {
-            Set<JobField> actualJobFields = jobRow.keySet();
-            LOG.debug(FILTER_JOBFIELD_UNDEFINED.logFormat(filterJobField, actualJobFields));
-            throw new IllegalArgumentException(
-                    FILTER_JOBFIELD_UNDEFINED.format(filterJobField, actualJobFields)
-            );
-        }
-
-        String actualValue = jobRow.get(filterJobField);
-        if (!(filterOperation instanceof DefaultFilterOperation)) {
-            LOG.debug("Only default filter operations permitted in this class; " +
-                    FILTER_OPERATOR_INVALID.logFormat(filterOperation));
-            throw new IllegalArgumentException("Only default filter operations permitted in this class; " +
-                    FILTER_OPERATOR_INVALID.format(filterOperation));
-        }
-
-        DefaultFilterOperation defaultFilterOperation = (DefaultFilterOperation) filterOperation;
-        switch (defaultFilterOperation) {
-            case notin:
-                return !filterValues.contains(actualValue);
-            case startswith:
-                return filterValues.stream().anyMatch(actualValue::startsWith);
-            case contains :
-                return filterValues.stream().anyMatch(actualValue::contains);
-            case in: // the fall-through is intentional because in is a synonym for eq
-            case eq:
-                return filterValues.contains(actualValue);
-            default:
-                LOG.debug(FILTER_OPERATOR_INVALID.logFormat(defaultFilterOperation));
-                throw new IllegalArgumentException(FILTER_OPERATOR_INVALID.format(defaultFilterOperation));
-        }
+        return jobRowFilters.stream().allMatch(filter -> filter.isSatisfiedBy(jobRow));
     }
 }
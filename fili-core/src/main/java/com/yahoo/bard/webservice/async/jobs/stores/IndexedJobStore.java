@@ -0,0 +1,357 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.jobs.stores;
+
+import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_OPERATOR_INVALID;
+
+import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import org.joda.time.DateTime;
+
+import rx.Observable;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * An ApiJobStore held in memory, which indexes the values of some of the job fields and the date the jobs were created,
+ * and drops jobs once they are too old or once the store holds too many.
+ * <p>
+ * Filters on an indexed field are answered from its index, looking at each distinct value of the field rather than at
+ * each row, and only the matching rows are sorted into the order they were created. Filters on other fields are
+ * checked against the rows which satisfy the filters on indexed fields. Rows without an indexed field don't satisfy a
+ * filter on it.
+ * <p>
+ * Jobs created longer ago than a time to live aren't returned, and are dropped on the next save, as are the oldest
+ * jobs once the store holds more than a given number of jobs. Jobs without a date created are taken to be created
+ * when they are saved. As the store is in memory, jobs don't outlive the Bard instance.
+ */
+public class IndexedJobStore implements ApiJobStore {
+
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String JOB_STORE_INDEXED_FIELDS = SYSTEM_CONFIG.getPackageVariableName(
+            "job_store_indexed_fields"
+    );
+    public static final String JOB_STORE_TTL_MS = SYSTEM_CONFIG.getPackageVariableName("job_store_ttl_ms");
+    public static final String JOB_STORE_MAX_ROWS = SYSTEM_CONFIG.getPackageVariableName("job_store_max_rows");
+
+    private final Map<JobField, NavigableMap<String, Set<String>>> indexes = new HashMap<>();
+    private final NavigableMap<Long, Set<String>> createdIndex = new TreeMap<>();
+    private final Map<String, JobRow> rows = new HashMap<>();
+    private final Map<String, Long> createdMillis = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final long ttlMillis;
+    private final int maxRows;
+    private final Clock clock;
+
+    /**
+     * Constructor, taking the indexed fields, the time to live and the most jobs to hold from the system config.
+     */
+    public IndexedJobStore() {
+        this(
+                getConfiguredIndexedFields(),
+                SYSTEM_CONFIG.getLongProperty(JOB_STORE_TTL_MS, 604800000L),
+                SYSTEM_CONFIG.getIntProperty(JOB_STORE_MAX_ROWS, 100000),
+                Clock.systemUTC()
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param indexedFields  The job fields to index the values of
+     * @param ttlMillis  How long after they are created jobs are kept
+     * @param maxRows  The most jobs to hold, the oldest are dropped beyond it
+     * @param clock  The clock telling the time jobs are saved and expire
+     */
+    public IndexedJobStore(Collection<? extends JobField> indexedFields, long ttlMillis, int maxRows, Clock clock) {
+        indexedFields.forEach(field -> indexes.put(field, new TreeMap<>()));
+        this.ttlMillis = ttlMillis;
+        this.maxRows = maxRows;
+        this.clock = clock;
+    }
+
+    @Override
+    public Observable<JobRow> get(String id) {
+        lock.readLock().lock();
+        try {
+            JobRow jobRow = rows.get(id);
+            return jobRow == null || isExpired(id) ? Observable.empty() : Observable.just(jobRow);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Observable<JobRow> save(JobRow metadata) {
+        lock.writeLock().lock();
+        try {
+            remove(metadata.getId());
+            add(metadata);
+            evict();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return Observable.just(metadata);
+    }
+
+    @Override
+    public Observable<JobRow> getAllRows() {
+        lock.readLock().lock();
+        try {
+            return Observable.from(inCreatedOrder(null));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Observable<JobRow> getFilteredRows(Set<JobRowFilter> jobRowFilters) throws IllegalArgumentException {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = null;
+            List<JobRowFilter> unindexedFilters = new ArrayList<>();
+            for (JobRowFilter filter : jobRowFilters) {
+                NavigableMap<String, Set<String>> index = indexes.get(filter.getJobField());
+                if (index == null) {
+                    unindexedFilters.add(filter);
+                    continue;
+                }
+                Set<String> matches = match(index, filter);
+                if (ids == null) {
+                    ids = matches;
+                } else {
+                    ids.retainAll(matches);
+                }
+            }
+
+            List<JobRow> filteredRows = new ArrayList<>();
+            for (JobRow jobRow : inCreatedOrder(ids)) {
+                if (unindexedFilters.stream().allMatch(filter -> filter.isSatisfiedBy(jobRow))) {
+                    filteredRows.add(jobRow);
+                }
+            }
+            return Observable.from(filteredRows);
+        } catch (IllegalArgumentException e) {
+            return Observable.error(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the ids of the rows whose value of an indexed field satisfies a filter.
+     *
+     * @param index  The index of the field, from value to the ids of the rows with that value
+     * @param filter  The filter on the field
+     *
+     * @return the ids of the rows satisfying the filter
+     *
+     * @throws IllegalArgumentException if the operation of the filter isn't supported
+     */
+    private Set<String> match(NavigableMap<String, Set<String>> index, JobRowFilter filter)
+            throws IllegalArgumentException {
+        Set<String> values = filter.getValues();
+        Set<String> ids = new HashSet<>();
+        switch (filter.getDefaultOperation()) {
+            case in: // the fall-through is intentional because in is a synonym for eq
+            case eq:
+                values.stream().map(index::get).filter(matches -> matches != null).forEach(ids::addAll);
+                return ids;
+            case startswith:
+                for (String prefix : values) {
+                    for (Map.Entry<String, Set<String>> entry : index.tailMap(prefix, true).entrySet()) {
+                        if (!entry.getKey().startsWith(prefix)) {
+                            break;
+                        }
+                        ids.addAll(entry.getValue());
+                    }
+                }
+                return ids;
+            case contains:
+                index.forEach((value, matches) -> {
+                    if (values.stream().anyMatch(value::contains)) {
+                        ids.addAll(matches);
+                    }
+                });
+                return ids;
+            case notin:
+                index.forEach((value, matches) -> {
+                    if (!values.contains(value)) {
+                        ids.addAll(matches);
+                    }
+                });
+                return ids;
+            default:
+                throw new IllegalArgumentException(FILTER_OPERATOR_INVALID.format(filter.getOperation()));
+        }
+    }
+
+    /**
+     * Get the rows which haven't expired, in the order they were created.
+     * <p>
+     * All the rows are read off the date created index, while a subset of them is sorted by date created, so that
+     * getting a few rows doesn't walk the whole index.
+     *
+     * @param ids  The ids of the rows to get, or null to get all of them
+     *
+     * @return the rows
+     */
+    private List<JobRow> inCreatedOrder(Set<String> ids) {
+        long oldest = clock.millis() - ttlMillis;
+        if (ids != null) {
+            return ids.stream()
+                    .filter(id -> createdMillis.get(id) >= oldest)
+                    .sorted(Comparator.comparing(createdMillis::get))
+                    .map(rows::get)
+                    .collect(Collectors.toList());
+        }
+        List<JobRow> createdRows = new ArrayList<>(rows.size());
+        for (Set<String> bucket : createdIndex.tailMap(oldest, true).values()) {
+            bucket.stream().map(rows::get).forEach(createdRows::add);
+        }
+        return createdRows;
+    }
+
+    /**
+     * Add a row to the store and its indexes.
+     *
+     * @param jobRow  The row to add
+     */
+    private void add(JobRow jobRow) {
+        String id = jobRow.getId();
+        long created = getCreatedMillis(jobRow);
+        rows.put(id, jobRow);
+        createdMillis.put(id, created);
+        createdIndex.computeIfAbsent(created, ignored -> new LinkedHashSet<>()).add(id);
+        indexes.forEach((field, index) -> {
+            String value = jobRow.get(field);
+            if (value != null) {
+                index.computeIfAbsent(value, ignored -> new HashSet<>()).add(id);
+            }
+        });
+    }
+
+    /**
+     * Remove a row from the store and its indexes, if it's there.
+     *
+     * @param id  The id of the row to remove
+     */
+    private void remove(String id) {
+        JobRow jobRow = rows.remove(id);
+        if (jobRow == null) {
+            return;
+        }
+        removeFromIndex(createdIndex, createdMillis.remove(id), id);
+        indexes.forEach((field, index) -> removeFromIndex(index, jobRow.get(field), id));
+    }
+
+    /**
+     * Drop the rows created longer ago than the time to live, then the oldest rows while there are too many.
+     */
+    private void evict() {
+        long oldest = clock.millis() - ttlMillis;
+        Iterator<Map.Entry<Long, Set<String>>> buckets = createdIndex.entrySet().iterator();
+        List<String> evicted = new ArrayList<>();
+        int remaining = rows.size();
+        while (buckets.hasNext()) {
+            Map.Entry<Long, Set<String>> bucket = buckets.next();
+            boolean expired = bucket.getKey() < oldest;
+            for (String id : bucket.getValue()) {
+                if (!expired && remaining <= maxRows) {
+                    break;
+                }
+                evicted.add(id);
+                remaining--;
+            }
+            if (!expired && remaining <= maxRows) {
+                break;
+            }
+        }
+        evicted.forEach(this::remove);
+    }
+
+    /**
+     * Check whether a row was created longer ago than the time to live.
+     *
+     * @param id  The id of the row
+     *
+     * @return true if the row has expired
+     */
+    private boolean isExpired(String id) {
+        return clock.millis() - createdMillis.get(id) > ttlMillis;
+    }
+
+    /**
+     * Get when a row was created, or now if it doesn't tell.
+     *
+     * @param jobRow  The row
+     *
+     * @return when the row was created, in milliseconds since the epoch
+     */
+    private long getCreatedMillis(JobRow jobRow) {
+        String dateCreated = jobRow.get(DefaultJobField.DATE_CREATED);
+        if (dateCreated != null) {
+            try {
+                return DateTime.parse(dateCreated).getMillis();
+            } catch (IllegalArgumentException ignored) {
+                // Taken to be created now
+            }
+        }
+        return clock.millis();
+    }
+
+    /**
+     * Remove the id of a row from the ids of the rows with a value in an index, and the value once no rows have it.
+     *
+     * @param index  The index
+     * @param value  The value of the row, may be null
+     * @param id  The id of the row
+     * @param <K>  The type of the values in the index
+     */
+    private static <K> void removeFromIndex(Map<K, Set<String>> index, K value, String id) {
+        if (value == null) {
+            return;
+        }
+        Set<String> ids = index.get(value);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    /**
+     * Get the job fields configured to be indexed.
+     *
+     * @return the job fields to index
+     */
+    private static List<JobField> getConfiguredIndexedFields() {
+        List<String> names = SYSTEM_CONFIG.getListProperty(
+                JOB_STORE_INDEXED_FIELDS,
+                Arrays.asList(DefaultJobField.USER_ID.getName(), DefaultJobField.STATUS.getName())
+        );
+        return Arrays.stream(DefaultJobField.values())
+                .filter(field -> names.contains(field.getName()))
+                .collect(Collectors.toList());
+    }
+}
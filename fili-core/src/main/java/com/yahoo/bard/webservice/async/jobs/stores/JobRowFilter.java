@@ -9,6 +9,7 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_OPERATOR_I
 
 import com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField;
 import com.yahoo.bard.webservice.async.jobs.jobrows.JobField;
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow;
 import com.yahoo.bard.webservice.util.FilterTokenizer;
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadFilterException;
 import com.yahoo.bard.webservice.web.DefaultFilterOperation;
@@ -97,6 +98,60 @@ public class JobRowFilter {
         return values;
     }
 
+    /**
+     * Checks if the given JobRow satisfies this filter and returns true if it does.
+     * If the JobField of this filter is not a part of the JobRow, this method throws an IllegalArgumentException.
+     *
+     * @param jobRow  The JobRow which needs to be inspected
+     *
+     * @return true if the JobRow satisfies the filter, false otherwise
+     *
+     * @throws IllegalArgumentException if the JobField of this filter is not a part the JobRow
+     */
+    public boolean isSatisfiedBy(JobRow jobRow) throws IllegalArgumentException {
+        if (!jobRow.containsKey(jobField)) {
+            Set<JobField> actualJobFields = jobRow.keySet();
+            LOG.debug(FILTER_JOBFIELD_UNDEFINED.logFormat(jobField, actualJobFields));
+            throw new IllegalArgumentException(
+                    FILTER_JOBFIELD_UNDEFINED.format(jobField, actualJobFields)
+            );
+        }
+
+        String actualValue = jobRow.get(jobField);
+        switch (getDefaultOperation()) {
+            case notin:
+                return !values.contains(actualValue);
+            case startswith:
+                return values.stream().anyMatch(actualValue::startsWith);
+            case contains :
+                return values.stream().anyMatch(actualValue::contains);
+            case in: // the fall-through is intentional because in is a synonym for eq
+            case eq:
+                return values.contains(actualValue);
+            default:
+                LOG.debug(FILTER_OPERATOR_INVALID.logFormat(operation));
+                throw new IllegalArgumentException(FILTER_OPERATOR_INVALID.format(operation));
+        }
+    }
+
+    /**
+     * Get the operation of this filter as one of the default filter operations, the only ones job rows can be
+     * filtered with.
+     *
+     * @return the operation of this filter
+     *
+     * @throws IllegalArgumentException if the operation isn't a default filter operation
+     */
+    public DefaultFilterOperation getDefaultOperation() throws IllegalArgumentException {
+        if (!(operation instanceof DefaultFilterOperation)) {
+            LOG.debug("Only default filter operations permitted in this class; " +
+                    FILTER_OPERATOR_INVALID.logFormat(operation));
+            throw new IllegalArgumentException("Only default filter operations permitted in this class; " +
+                    FILTER_OPERATOR_INVALID.format(operation));
+        }
+        return (DefaultFilterOperation) operation;
+    }
+
     /**
      * Construct an JobRowFilter object using the same FilterOperation and values as the object on
      * which this method is called and using the supplied JobField.
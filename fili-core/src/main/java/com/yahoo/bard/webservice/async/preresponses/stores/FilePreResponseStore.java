@@ -0,0 +1,296 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.preresponses.stores;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.ColumnarPreResponseCodec;
+import com.yahoo.bard.webservice.web.ErrorMessageFormat;
+import com.yahoo.bard.webservice.web.PreResponse;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import rx.Observable;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A PreResponseStore keeping each PreResponse in a file on local disk, in the compressed columnar format of
+ * {@link ColumnarPreResponseCodec}.
+ * <p>
+ * PreResponses expire a time to live after they were saved, and once the files take more than a given number of bytes
+ * the least recently saved are evicted. The files are picked up again by a store built on the same directory, so the
+ * PreResponses outlive restarts. Files are streamed through a buffer as they are decoded.
+ * <p>
+ * The directory is local to the Bard instance, so a PreResponse saved by one instance can only be read by that same
+ * instance.
+ */
+public class FilePreResponseStore implements PreResponseStore {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FilePreResponseStore.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String PRERESPONSE_STORE_DIRECTORY = SYSTEM_CONFIG.getPackageVariableName(
+            "preresponse_store_directory"
+    );
+    public static final String PRERESPONSE_STORE_TTL_MS = SYSTEM_CONFIG.getPackageVariableName(
+            "preresponse_store_ttl_ms"
+    );
+    public static final String PRERESPONSE_STORE_MAX_BYTES = SYSTEM_CONFIG.getPackageVariableName(
+            "preresponse_store_max_bytes"
+    );
+
+    private static final String SUFFIX = ".preresponse";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final ColumnarPreResponseCodec codec;
+    private final long ttlMillis;
+    private final long maxBytes;
+
+    private final Map<String, StoredPreResponse> stored = new ConcurrentHashMap<>();
+    private long storedBytes = 0;
+
+    /**
+     * Constructor, taking the time to live and the size bound from the system config.
+     *
+     * @param directory  The directory to keep the PreResponses in, created if missing
+     * @param codec  Serializes the PreResponses to files and back
+     */
+    public FilePreResponseStore(Path directory, ColumnarPreResponseCodec codec) {
+        this(
+                directory,
+                codec,
+                SYSTEM_CONFIG.getLongProperty(PRERESPONSE_STORE_TTL_MS, 86400000L),
+                SYSTEM_CONFIG.getLongProperty(PRERESPONSE_STORE_MAX_BYTES, 1073741824L)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param directory  The directory to keep the PreResponses in, created if missing
+     * @param codec  Serializes the PreResponses to files and back
+     * @param ttlMillis  How long a PreResponse is kept after it's saved
+     * @param maxBytes  The most bytes the files of the PreResponses may take before the least recently saved are
+     * evicted
+     */
+    public FilePreResponseStore(Path directory, ColumnarPreResponseCodec codec, long ttlMillis, long maxBytes) {
+        this.directory = directory;
+        this.codec = codec;
+        this.ttlMillis = ttlMillis;
+        this.maxBytes = maxBytes;
+
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(TEMPORARY_SUFFIX)) {
+                        // Left behind by a save which didn't finish
+                        Files.deleteIfExists(file);
+                    } else if (name.endsWith(SUFFIX)) {
+                        String ticket = decodeTicket(name.substring(0, name.length() - SUFFIX.length()));
+                        StoredPreResponse preResponse = new StoredPreResponse(
+                                file,
+                                Files.size(file),
+                                Files.getLastModifiedTime(file).toMillis()
+                        );
+                        stored.put(ticket, preResponse);
+                        storedBytes += preResponse.bytes;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            String msg = ErrorMessageFormat.RESOURCE_RETRIEVAL_FAILURE.format(directory, e.getMessage());
+            LOG.error(msg, e);
+            throw new IllegalStateException(msg, e);
+        }
+        evict();
+    }
+
+    @Override
+    public Observable<PreResponse> get(String ticket) {
+        StoredPreResponse preResponse = stored.get(ticket);
+        if (preResponse == null) {
+            return Observable.empty();
+        }
+        if (preResponse.isExpired()) {
+            remove(ticket, preResponse);
+            return Observable.empty();
+        }
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(preResponse.file))) {
+            return Observable.just(codec.deserialize(in));
+        } catch (NoSuchFileException e) {
+            // Evicted since it was looked up
+            return Observable.empty();
+        } catch (IOException | RuntimeException e) {
+            LOG.error(ErrorMessageFormat.RESOURCE_RETRIEVAL_FAILURE.format(ticket, e.getMessage()), e);
+            return Observable.error(e);
+        }
+    }
+
+    @Override
+    public Observable<String> save(String ticket, PreResponse preResponse) {
+        Path temporary = null;
+        try {
+            Path file = directory.resolve(encodeTicket(ticket) + SUFFIX);
+            // Written aside and moved into place, so that a file is never read half written
+            temporary = Files.createTempFile(directory, null, TEMPORARY_SUFFIX);
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                codec.serialize(preResponse, out);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            put(ticket, new StoredPreResponse(file, Files.size(file), System.currentTimeMillis()));
+            return Observable.just(ticket);
+        } catch (IOException | RuntimeException e) {
+            LOG.error(ErrorMessageFormat.RESOURCE_STORAGE_FAILURE.format(ticket, e.getMessage()), e);
+            deleteQuietly(temporary);
+            return Observable.error(e);
+        }
+    }
+
+    /**
+     * Keep track of a saved PreResponse, evicting PreResponses if the store has grown too large.
+     *
+     * @param ticket  The ticket of the PreResponse
+     * @param preResponse  The saved PreResponse
+     */
+    private synchronized void put(String ticket, StoredPreResponse preResponse) {
+        StoredPreResponse previous = stored.put(ticket, preResponse);
+        storedBytes += preResponse.bytes - (previous == null ? 0 : previous.bytes);
+        evict();
+    }
+
+    /**
+     * Remove a PreResponse and its file, unless it has been saved again since.
+     *
+     * @param ticket  The ticket of the PreResponse
+     * @param preResponse  The PreResponse to remove
+     */
+    private synchronized void remove(String ticket, StoredPreResponse preResponse) {
+        if (stored.remove(ticket, preResponse)) {
+            storedBytes -= preResponse.bytes;
+            deleteQuietly(preResponse.file);
+        }
+    }
+
+    /**
+     * Remove the expired PreResponses, then the least recently saved until the files are within the size bound.
+     */
+    private synchronized void evict() {
+        List<Map.Entry<String, StoredPreResponse>> live = new ArrayList<>();
+        for (Map.Entry<String, StoredPreResponse> entry : new ArrayList<>(stored.entrySet())) {
+            if (entry.getValue().isExpired()) {
+                remove(entry.getKey(), entry.getValue());
+            } else {
+                live.add(entry);
+            }
+        }
+        if (storedBytes <= maxBytes) {
+            return;
+        }
+        live.sort(Comparator.comparingLong(entry -> entry.getValue().savedMillis));
+        for (Map.Entry<String, StoredPreResponse> entry : live) {
+            if (storedBytes <= maxBytes) {
+                return;
+            }
+            remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Delete a file, logging rather than failing if it can't be.
+     *
+     * @param file  The file to delete, may be null
+     */
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warn(ErrorMessageFormat.RESOURCE_DELETION_FAILURE.format(file, e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Encode a ticket into a name safe to use for a file.
+     *
+     * @param ticket  The ticket to encode
+     *
+     * @return the encoded ticket
+     */
+    private static String encodeTicket(String ticket) {
+        try {
+            return URLEncoder.encode(ticket, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decode a ticket encoded by {@link #encodeTicket}.
+     *
+     * @param name  The encoded ticket
+     *
+     * @return the ticket
+     */
+    private static String decodeTicket(String name) {
+        try {
+            return URLDecoder.decode(name, StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The file of a saved PreResponse, with its size and when it was saved.
+     */
+    private class StoredPreResponse {
+        private final Path file;
+        private final long bytes;
+        private final long savedMillis;
+
+        /**
+         * Constructor.
+         *
+         * @param file  The file the PreResponse is saved in
+         * @param bytes  The size of the file
+         * @param savedMillis  When the PreResponse was saved, in milliseconds since the epoch
+         */
+        StoredPreResponse(Path file, long bytes, long savedMillis) {
+            this.file = file;
+            this.bytes = bytes;
+            this.savedMillis = savedMillis;
+        }
+
+        /**
+         * Check whether the PreResponse has outlived the time to live of the store.
+         *
+         * @return true if the PreResponse has expired
+         */
+        boolean isExpired() {
+            return System.currentTimeMillis() - savedMillis > ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,580 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data;
+
+import static com.yahoo.bard.webservice.data.ResultSetSerializationProxy.DEFAULT_CLASS_TYPE;
+
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
+import com.yahoo.bard.webservice.data.metric.MetricColumnWithValueType;
+import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.data.time.GranularityParser;
+import com.yahoo.bard.webservice.table.Column;
+import com.yahoo.bard.webservice.util.DateTimeUtils;
+import com.yahoo.bard.webservice.util.GranularityParseException;
+import com.yahoo.bard.webservice.web.ErrorMessageFormat;
+import com.yahoo.bard.webservice.web.PreResponse;
+import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializes PreResponses into a compact, compressed binary format, column by column, and deserializes them back.
+ * <p>
+ * Unlike the json of {@link PreResponseSerializationProxy}, the names of the columns are written once rather than in
+ * every row, the distinct values of each dimension column and time zones of the timestamps are written once and
+ * referenced by index from the rows, timestamps are written as the difference from the previous row, and the whole is
+ * gzipped. Deserializing looks up each distinct dimension value once, rather than once per row.
+ * <p>
+ * The format is a header of a magic number and a version, the response context as json, the time zone and granularity
+ * of the schema, its dimension columns and its metric columns with the type of their values, the number of rows, and
+ * then the timestamp column, each dimension column and each metric column in turn.
+ */
+public class ColumnarPreResponseCodec {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ColumnarPreResponseCodec.class);
+
+    private static final int MAGIC = 0x46505243;
+    private static final byte VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Tags of the types of metric values
+    private static final byte ABSENT = 0;
+    private static final byte NULL = 1;
+    private static final byte BIG_DECIMAL = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte LONG = 4;
+    private static final byte STRING = 5;
+    private static final byte BOOLEAN = 6;
+    private static final byte JSON = 7;
+
+    private final DimensionDictionary dimensionDictionary;
+    private final GranularityParser granularityParser;
+    private final ObjectMapper nonResponseContextMapper;
+    private final ObjectMapper responseContextMapper;
+
+    /**
+     * Constructor.
+     *
+     * @param dimensionDictionary  DimensionDictionary which contains all the details about dimensions
+     * @param nonResponseContextMapper  Handles the metric values which aren't of a type with a binary encoding
+     * @param responseContextMapper  Handles the response context of the PreResponse, preserving the types of its values
+     * @param granularityParser  Time grain provider
+     */
+    public ColumnarPreResponseCodec(
+            DimensionDictionary dimensionDictionary,
+            ObjectMapper nonResponseContextMapper,
+            ObjectMapper responseContextMapper,
+            GranularityParser granularityParser
+    ) {
+        this.dimensionDictionary = dimensionDictionary;
+        this.nonResponseContextMapper = nonResponseContextMapper;
+        this.responseContextMapper = responseContextMapper;
+        this.granularityParser = granularityParser;
+    }
+
+    /**
+     * Serialize a PreResponse to a stream. The stream is left open.
+     *
+     * @param preResponse  The PreResponse to serialize
+     * @param outputStream  The stream to write it to
+     *
+     * @throws IOException if the stream can't be written to
+     */
+    public void serialize(PreResponse preResponse, OutputStream outputStream) throws IOException {
+        GZIPOutputStream compressed = new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(compressed, BUFFER_SIZE));
+
+        ResultSet resultSet = preResponse.getResultSet();
+        ResultSetSchema schema = resultSet.getSchema();
+        List<DimensionColumn> dimensionColumns = new ArrayList<>(schema.getColumns(DimensionColumn.class));
+        List<MetricColumn> metricColumns = new ArrayList<>(schema.getColumns(MetricColumn.class));
+
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeString(out, serializeResponseContext(preResponse.getResponseContext()));
+        writeString(out, DateTimeUtils.getTimeZone(schema.getGranularity()).getID());
+        writeString(out, schema.getGranularity().getName());
+        writeVarLong(out, dimensionColumns.size());
+        for (DimensionColumn column : dimensionColumns) {
+            writeString(out, column.getName());
+        }
+        writeVarLong(out, metricColumns.size());
+        for (MetricColumn column : metricColumns) {
+            writeString(out, column.getName());
+            writeString(out, getValueType(resultSet, column));
+        }
+        writeVarLong(out, resultSet.size());
+
+        long previous = 0;
+        for (Result result : resultSet) {
+            long millis = result.getTimeStamp().getMillis();
+            writeVarLong(out, zigZag(millis - previous));
+            previous = millis;
+        }
+        writeDictionaryEncoded(out, resultSet, result -> result.getTimeStamp().getZone().getID());
+
+        for (DimensionColumn column : dimensionColumns) {
+            writeDictionaryEncoded(out, resultSet, result -> {
+                DimensionRow row = result.getDimensionRow(column);
+                return row == null ? null : row.get(column.getDimension().getKey());
+            });
+        }
+
+        for (MetricColumn column : metricColumns) {
+            for (Result result : resultSet) {
+                writeMetricValue(out, result.getMetricValues(), column);
+            }
+        }
+
+        out.flush();
+        compressed.finish();
+    }
+
+    /**
+     * Deserialize a PreResponse from a stream. The stream is left open.
+     *
+     * @param inputStream  The stream to read the PreResponse from
+     *
+     * @return the PreResponse
+     *
+     * @throws IOException if the stream can't be read from
+     * @throws DeserializationException if the stream doesn't hold a PreResponse this codec can make sense of
+     */
+    public PreResponse deserialize(InputStream inputStream) throws IOException {
+        DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(inputStream, BUFFER_SIZE), BUFFER_SIZE)
+        );
+
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            String msg = ErrorMessageFormat.UNKNOWN_SERIALIZATION_FORMAT.format("PreResponse");
+            LOG.error(msg);
+            throw new DeserializationException(msg);
+        }
+        ResponseContext responseContext = deserializeResponseContext(readString(in));
+        DateTimeZone timeZone = generateTimezone(readString(in));
+        Granularity granularity = generateGranularity(readString(in), timeZone);
+
+        List<DimensionColumn> dimensionColumns = new ArrayList<>();
+        for (long i = readVarLong(in); i > 0; i--) {
+            dimensionColumns.add(new DimensionColumn(resolveDimensionName(readString(in))));
+        }
+        List<MetricColumnWithValueType> metricColumns = new ArrayList<>();
+        for (long i = readVarLong(in); i > 0; i--) {
+            metricColumns.add(new MetricColumnWithValueType(readString(in), readString(in)));
+        }
+        int rows = (int) readVarLong(in);
+
+        long[] millis = new long[rows];
+        long previous = 0;
+        for (int row = 0; row < rows; row++) {
+            millis[row] = previous + unZigZag(readVarLong(in));
+            previous = millis[row];
+        }
+        List<DateTimeZone> zones = readDictionary(in, DateTimeZone::forID);
+        List<DateTime> timeStamps = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            timeStamps.add(new DateTime(millis[row], zones.get((int) readVarLong(in))));
+        }
+
+        List<Map<DimensionColumn, DimensionRow>> dimensionRows = new ArrayList<>(rows);
+        List<Map<MetricColumn, Object>> metricValues = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            dimensionRows.add(new LinkedHashMap<>());
+            metricValues.add(new LinkedHashMap<>());
+        }
+        for (DimensionColumn column : dimensionColumns) {
+            Dimension dimension = column.getDimension();
+            List<DimensionRow> values = readDictionary(in, dimension::findDimensionRowByKeyValue);
+            for (int row = 0; row < rows; row++) {
+                dimensionRows.get(row).put(column, values.get((int) readVarLong(in)));
+            }
+        }
+        for (MetricColumnWithValueType column : metricColumns) {
+            for (int row = 0; row < rows; row++) {
+                readMetricValue(in, column, metricValues.get(row));
+            }
+        }
+
+        List<Result> results = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            results.add(new Result(dimensionRows.get(row), metricValues.get(row), timeStamps.get(row)));
+        }
+        LinkedHashSet<Column> columns = new LinkedHashSet<>(dimensionColumns);
+        columns.addAll(metricColumns);
+        return new PreResponse(new ResultSet(new ResultSetSchema(granularity, columns), results), responseContext);
+    }
+
+    /**
+     * Get the type of the values of a metric column, as the class of its first value that isn't null.
+     *
+     * @param resultSet  The results holding the values of the column
+     * @param column  The metric column
+     *
+     * @return the name of the class of the values of the column
+     */
+    private String getValueType(ResultSet resultSet, MetricColumn column) {
+        return resultSet.stream()
+                .map(result -> result.getMetricValues().get(column))
+                .filter(Objects::nonNull)
+                .findFirst()
+                .map(value -> value.getClass().getName())
+                .orElse(DEFAULT_CLASS_TYPE);
+    }
+
+    /**
+     * Write the value of a metric column in a row, tagged with its type.
+     *
+     * @param out  The output to write to
+     * @param metricValues  The metric values of the row
+     * @param column  The metric column
+     *
+     * @throws IOException if the output can't be written to
+     */
+    private void writeMetricValue(DataOutput out, Map<MetricColumn, Object> metricValues, MetricColumn column)
+            throws IOException {
+        Object value = metricValues.get(column);
+        if (value == null) {
+            out.writeByte(metricValues.containsKey(column) ? NULL : ABSENT);
+        } else if (value.getClass() == BigDecimal.class) {
+            BigDecimal decimal = (BigDecimal) value;
+            out.writeByte(BIG_DECIMAL);
+            writeVarLong(out, zigZag(decimal.scale()));
+            byte[] unscaled = decimal.unscaledValue().toByteArray();
+            writeVarLong(out, unscaled.length);
+            out.write(unscaled);
+        } else if (value.getClass() == Double.class) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value.getClass() == Long.class) {
+            out.writeByte(LONG);
+            writeVarLong(out, zigZag((Long) value));
+        } else if (value.getClass() == String.class) {
+            out.writeByte(STRING);
+            writeString(out, (String) value);
+        } else if (value.getClass() == Boolean.class) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else {
+            out.writeByte(JSON);
+            try {
+                writeString(out, nonResponseContextMapper.writeValueAsString(value));
+            } catch (JsonProcessingException e) {
+                String msg = ErrorMessageFormat.UNABLE_TO_SERIALIZE.format(value.getClass().getSimpleName());
+                LOG.error(msg, e);
+                throw new DeserializationException(msg, e);
+            }
+        }
+    }
+
+    /**
+     * Read the value of a metric column in a row into the metric values of the row.
+     *
+     * @param in  The input to read from
+     * @param column  The metric column
+     * @param metricValues  The metric values of the row
+     *
+     * @throws IOException if the input can't be read from
+     */
+    private void readMetricValue(DataInput in, MetricColumnWithValueType column, Map<MetricColumn, Object> metricValues)
+            throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case ABSENT:
+                return;
+            case NULL:
+                metricValues.put(column, null);
+                return;
+            case BIG_DECIMAL:
+                int scale = (int) unZigZag(readVarLong(in));
+                byte[] unscaled = new byte[(int) readVarLong(in)];
+                in.readFully(unscaled);
+                metricValues.put(column, new BigDecimal(new BigInteger(unscaled), scale));
+                return;
+            case DOUBLE:
+                metricValues.put(column, in.readDouble());
+                return;
+            case LONG:
+                metricValues.put(column, unZigZag(readVarLong(in)));
+                return;
+            case STRING:
+                metricValues.put(column, readString(in));
+                return;
+            case BOOLEAN:
+                metricValues.put(column, in.readBoolean());
+                return;
+            case JSON:
+                Class<?> classType = column.getClassType() == null ? Object.class : column.getClassType();
+                try {
+                    metricValues.put(column, nonResponseContextMapper.readValue(readString(in), classType));
+                } catch (JsonProcessingException e) {
+                    String msg = ErrorMessageFormat.METRIC_VALUE_PARSING_ERROR.format("parse");
+                    LOG.error(msg, e);
+                    throw new DeserializationException(msg, e);
+                }
+                return;
+            default:
+                String msg = ErrorMessageFormat.UNKNOWN_SERIALIZATION_FORMAT.format("metric value");
+                LOG.error(msg);
+                throw new DeserializationException(msg);
+        }
+    }
+
+    /**
+     * Serialize the response context, preserving the types of its values.
+     *
+     * @param responseContext  The response context to serialize
+     *
+     * @return the serialized response context
+     */
+    private String serializeResponseContext(ResponseContext responseContext) {
+        try {
+            return responseContextMapper.writeValueAsString(responseContext);
+        } catch (JsonProcessingException e) {
+            String msg = ErrorMessageFormat.UNABLE_TO_SERIALIZE.format("ResponseContext");
+            LOG.error(msg, e);
+            throw new DeserializationException(msg, e);
+        }
+    }
+
+    /**
+     * Deserialize the serialized response context.
+     *
+     * @param serializedResponseContext  The serialized response context
+     *
+     * @return the response context
+     *
+     * @throws IOException when there's a problem reading the response context
+     */
+    private ResponseContext deserializeResponseContext(String serializedResponseContext) throws IOException {
+        return responseContextMapper.readValue(serializedResponseContext, ResponseContext.class);
+    }
+
+    /**
+     * Method to get dimension from DimensionDictionary for a given name.
+     *
+     * @param dimensionName  To find Dimension from dimension dictionary
+     *
+     * @return The dimension with the given name
+     */
+    private Dimension resolveDimensionName(String dimensionName) {
+        Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+        if (dimension == null) {
+            String msg = ErrorMessageFormat.UNABLE_TO_FIND_DIMENSION_FROM_DICTIONARY.format(dimensionName);
+            LOG.error(msg);
+            throw new DeserializationException(msg);
+        }
+        return dimension;
+    }
+
+    /**
+     * Generate a Granularity instance based on given query granularity.
+     *
+     * @param granularity  A string representation of the granularity
+     * @param dateTimeZone  The time zone to use for this granularity
+     *
+     * @return A granularity instance with time zone information
+     */
+    private Granularity generateGranularity(String granularity, DateTimeZone dateTimeZone) {
+        try {
+            return granularityParser.parseGranularity(granularity, dateTimeZone);
+        } catch (GranularityParseException e) {
+            String msg = ErrorMessageFormat.GRANULARITY_PARSING_ERROR.format(granularity);
+            LOG.error(msg, e);
+            throw new DeserializationException(msg, e);
+        }
+    }
+
+    /**
+     * Get a time zone instance for the specified time zone id.
+     *
+     * @param timeZoneId  The ID of the datetime zone
+     *
+     * @return the DateTimeZone object for the ID
+     */
+    private DateTimeZone generateTimezone(String timeZoneId) {
+        try {
+            return DateTimeZone.forID(timeZoneId);
+        } catch (IllegalArgumentException e) {
+            String msg = ErrorMessageFormat.UNKNOWN_TIMEZONE_ID.format(timeZoneId);
+            LOG.error(msg, e);
+            throw new DeserializationException(msg, e);
+        }
+    }
+
+    /**
+     * Write a string value of each row, as a dictionary of the distinct values followed by the index of the value of
+     * each row in the dictionary.
+     *
+     * @param out  The output to write to
+     * @param resultSet  The rows
+     * @param value  Gets the value of a row, which may be null
+     *
+     * @throws IOException if the output can't be written to
+     */
+    private static void writeDictionaryEncoded(DataOutput out, ResultSet resultSet, Function<Result, String> value)
+            throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int[] indexes = new int[resultSet.size()];
+        for (int row = 0; row < indexes.length; row++) {
+            indexes[row] = dictionary.computeIfAbsent(value.apply(resultSet.get(row)), ignored -> dictionary.size());
+        }
+        writeVarLong(out, dictionary.size());
+        for (String entry : dictionary.keySet()) {
+            writeString(out, entry);
+        }
+        for (int index : indexes) {
+            writeVarLong(out, index);
+        }
+    }
+
+    /**
+     * Read the dictionary of a dictionary encoded column, resolving each of its entries once.
+     *
+     * @param in  The input to read from
+     * @param resolve  Resolves an entry of the dictionary
+     * @param <T>  The type of the resolved entries
+     *
+     * @return the resolved entries of the dictionary, in order
+     *
+     * @throws IOException if the input can't be read from
+     */
+    private static <T> List<T> readDictionary(DataInput in, Function<String, T> resolve) throws IOException {
+        int size = (int) readVarLong(in);
+        List<T> dictionary = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String entry = readString(in);
+            dictionary.add(entry == null ? null : resolve.apply(entry));
+        }
+        return dictionary;
+    }
+
+    /**
+     * Write a string, which may be null, as its length followed by its UTF-8 bytes.
+     *
+     * @param out  The output to write to
+     * @param value  The string to write
+     *
+     * @throws IOException if the output can't be written to
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by {@link #writeString}.
+     *
+     * @param in  The input to read from
+     *
+     * @return the string, which may be null
+     *
+     * @throws IOException if the input can't be read from
+     */
+    private static String readString(DataInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[(int) (length - 1)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a non negative number in as few bytes as it takes, seven bits at a time.
+     *
+     * @param out  The output to write to
+     * @param value  The number to write
+     *
+     * @throws IOException if the output can't be written to
+     */
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Read a number written by {@link #writeVarLong}.
+     *
+     * @param in  The input to read from
+     *
+     * @return the number
+     *
+     * @throws IOException if the input can't be read from
+     */
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        String msg = ErrorMessageFormat.UNKNOWN_SERIALIZATION_FORMAT.format("number");
+        LOG.error(msg);
+        throw new DeserializationException(msg);
+    }
+
+    /**
+     * Map a signed number to a non negative one, so that numbers close to 0 stay small.
+     *
+     * @param value  The signed number
+     *
+     * @return the non negative number
+     */
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    /**
+     * Map a number mapped by {@link #zigZag} back.
+     *
+     * @param value  The non negative number
+     *
+     * @return the signed number
+     */
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -20,10 +20,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.inject.Singleton;
 
@@ -117,12 +121,20 @@ public class DruidResponseParser {
             DateTimeZone dateTimeZone
     ) {
         List<Result> results = new ArrayList<>();
+        Map<DimensionColumn, Map<String, DimensionRow>> rowsByValue = findDimensionRows(
+                dimensionColumns,
+                stream(jsonResult).map(record -> record.get("event"))
+        );
 
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
 
             JsonNode event = record.get("event");
-            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(dimensionColumns, event);
+            LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
+                    dimensionColumns,
+                    event,
+                    rowsByValue
+            );
             LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, event);
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
@@ -148,6 +160,10 @@ public class DruidResponseParser {
             DateTimeZone dateTimeZone
     ) {
         List<Result> results = new ArrayList<>();
+        Map<DimensionColumn, Map<String, DimensionRow>> rowsByValue = findDimensionRows(
+                dimensionColumns,
+                stream(jsonResult).flatMap(record -> stream(record.get("result")))
+        );
 
         /* loop over all records */
         for (JsonNode record : jsonResult) {
@@ -158,7 +174,8 @@ public class DruidResponseParser {
             for (final JsonNode entry : result) {
                 LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = extractDimensionRows(
                         dimensionColumns,
-                        entry
+                        entry,
+                        rowsByValue
                 );
                 LinkedHashMap<MetricColumn, Object> metricValues = extractMetricValues(metricColumns, entry);
 
@@ -215,6 +232,9 @@ public class DruidResponseParser {
             DateTimeZone dateTimeZone
     ) {
         List<Result> results = new ArrayList<>();
+        Map<DimensionColumn, Map<String, DimensionRow>> rowsByValue = dimensionColumns == null ?
+                Collections.emptyMap() :
+                findDimensionRows(dimensionColumns, stream(jsonResult).map(record -> record.get("result")));
 
         for (JsonNode record : jsonResult) {
             DateTime timeStamp = new DateTime(record.get("timestamp").asText(), dateTimeZone);
@@ -227,7 +247,7 @@ public class DruidResponseParser {
 
             dimensionRows = dimensionColumns == null ?
                     new LinkedHashMap<>() :
-                    extractDimensionRows(dimensionColumns, result);
+                    extractDimensionRows(dimensionColumns, result, rowsByValue);
 
 
             results.add(new Result(dimensionRows, metricValues, timeStamp));
@@ -235,29 +255,77 @@ public class DruidResponseParser {
         return results;
     }
 
+    /**
+     * Look up the rows of all the dimension values in a response, reading the rows of each dimension in one batch.
+     *
+     * @param dimensionColumns  the set of dimension columns
+     * @param entries  the json objects holding the dimension values
+     *
+     * @return the rows found for each dimension column, by dimension value
+     */
+    private Map<DimensionColumn, Map<String, DimensionRow>> findDimensionRows(
+            Set<DimensionColumn> dimensionColumns,
+            Stream<JsonNode> entries
+    ) {
+        Map<DimensionColumn, Set<String>> dimensionValues = new LinkedHashMap<>();
+        dimensionColumns.forEach(dc -> dimensionValues.put(dc, new LinkedHashSet<>()));
+        entries.forEach(entry -> dimensionColumns.forEach(
+                dc -> dimensionValues.get(dc).add(getDimensionValue(entry, dc))
+        ));
+
+        Map<DimensionColumn, Map<String, DimensionRow>> rowsByValue = new LinkedHashMap<>();
+        dimensionValues.forEach((dc, values) -> {
+            Map<String, DimensionRow> rows = dc.getDimension().findDimensionRowsByKeyValues(values);
+            rowsByValue.put(dc, rows == null ? Collections.emptyMap() : rows);
+        });
+        return rowsByValue;
+    }
+
+    /**
+     * Get the value of a dimension in a json object.
+     *
+     * @param entry  the json object
+     * @param dimensionColumn  the column of the dimension
+     *
+     * @return the dimension value, or an empty string if the object doesn't have one
+     */
+    private String getDimensionValue(JsonNode entry, DimensionColumn dimensionColumn) {
+        JsonNode fieldNode = entry.get(dimensionColumn.getName());
+        return fieldNode == null ? "" : fieldNode.asText("");
+    }
+
+    /**
+     * Stream the elements of a json array.
+     *
+     * @param array  the json array
+     *
+     * @return the elements of the array
+     */
+    private static Stream<JsonNode> stream(JsonNode array) {
+        return StreamSupport.stream(array.spliterator(), false);
+    }
+
     /**
      * Extract the dimension rows for a json object given the set of all available dimension columns and the json
      * object.
      *
      * @param dimensionColumns  the set of dimension columns
      * @param entry  the json object
+     * @param rowsByValue  the rows of the dimension values in the response, by dimension column
      *
      * @return map of dimension columns to dimension rows
      */
     private LinkedHashMap<DimensionColumn, DimensionRow> extractDimensionRows(
             Set<DimensionColumn> dimensionColumns,
-            JsonNode entry
+            JsonNode entry,
+            Map<DimensionColumn, Map<String, DimensionRow>> rowsByValue
     ) {
         LinkedHashMap<DimensionColumn, DimensionRow> dimensionRows = new LinkedHashMap<>();
 
         for (DimensionColumn dc : dimensionColumns) {
-            JsonNode fieldNode = entry.get(dc.getName());
-            String fieldValue = "";
-            if (fieldNode != null) {
-                fieldValue = fieldNode.asText("");
-            }
+            String fieldValue = getDimensionValue(entry, dc);
 
-            DimensionRow drow = dc.getDimension().findDimensionRowByKeyValue(fieldValue);
+            DimensionRow drow = rowsByValue.get(dc).get(fieldValue);
             if (drow == null) {
                 drow = dc.getDimension().createEmptyDimensionRow(fieldValue);
             }
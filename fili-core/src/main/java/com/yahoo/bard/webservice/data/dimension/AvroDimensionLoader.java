@@ -0,0 +1,233 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Streams the rows of an AVRO file into a dimension, reading the file's blocks in parallel.
+ * <p>
+ * The file is split into as many byte ranges as there are reader threads. Each thread reads the blocks that start in
+ * its range, converts the records into dimension rows and hands them over in chunks. The calling thread writes the
+ * chunks to the dimension, and so to its key value store and search provider, one at a time. The chunks waiting to be
+ * written are bounded, so readers wait for the writer when it falls behind, and no more than a few chunks of rows are
+ * ever held in memory.
+ * <p>
+ * Rows are written in the order they're read within a range, but ranges are read concurrently, so if a key appears
+ * more than once in the file which of its rows is written last isn't defined.
+ */
+public class AvroDimensionLoader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(AvroDimensionLoader.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 10000;
+
+    /**
+     * Marker a reader thread puts on the queue once it's done.
+     */
+    private static final List<DimensionRow> END_OF_RANGE = Collections.emptyList();
+
+    private final AvroDimensionRowParser avroDimensionRowParser;
+    private final int parallelism;
+    private final int chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param avroDimensionRowParser  Parser defining how records are converted into dimension rows
+     * @param parallelism  Number of threads reading the file
+     * @param chunkSize  Number of rows written to the dimension at a time
+     */
+    public AvroDimensionLoader(AvroDimensionRowParser avroDimensionRowParser, int parallelism, int chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        this.avroDimensionRowParser = avroDimensionRowParser;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Constructor, reading with a thread per processor and writing chunks of the default size.
+     *
+     * @param avroDimensionRowParser  Parser defining how records are converted into dimension rows
+     */
+    public AvroDimensionLoader(AvroDimensionRowParser avroDimensionRowParser) {
+        this(avroDimensionRowParser, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Load the rows of an AVRO file into a dimension.
+     *
+     * @param dimension  The dimension to load the rows into
+     * @param avroFilePath  The path of the AVRO data file (.avro)
+     *
+     * @return the number of rows read from the file
+     *
+     * @throws IllegalArgumentException thrown if the file can't be read or its schema doesn't contain all the
+     * dimension fields
+     */
+    public long loadAvroFileDimensionRows(Dimension dimension, String avroFilePath) throws IllegalArgumentException {
+        File avroFile = new File(avroFilePath);
+        Function<GenericRecord, DimensionRow> rowConverter;
+        try (DataFileReader<GenericRecord> dataFileReader = openReader(avroFile)) {
+            rowConverter = avroDimensionRowParser.buildRowConverter(dimension, dataFileReader.getSchema());
+        } catch (IOException e) {
+            throw unreadableFile(avroFilePath, e);
+        }
+
+        long start = System.nanoTime();
+        long length = avroFile.length();
+        long rangeSize = Math.max(1, (length + parallelism - 1) / parallelism);
+        BlockingQueue<List<DimensionRow>> chunks = new ArrayBlockingQueue<>(parallelism);
+        ExecutorService readers = Executors.newFixedThreadPool(parallelism);
+        List<Future<?>> results = new ArrayList<>(parallelism);
+        try {
+            for (int i = 0; i < parallelism; i++) {
+                long rangeStart = Math.min(length, i * rangeSize);
+                long rangeEnd = Math.min(length, rangeStart + rangeSize);
+                results.add(readers.submit(() -> readRange(avroFile, rangeStart, rangeEnd, rowConverter, chunks)));
+            }
+
+            long rowCount = 0;
+            int finishedReaders = 0;
+            while (finishedReaders < parallelism) {
+                List<DimensionRow> chunk = chunks.take();
+                if (chunk == END_OF_RANGE) {
+                    finishedReaders++;
+                    continue;
+                }
+                dimension.addAllDimensionRows(new LinkedHashSet<>(chunk));
+                rowCount += chunk.size();
+                LOG.debug("Loaded {} rows of dimension {} from {}", rowCount, dimension.getApiName(), avroFilePath);
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            LOG.info(
+                    "Loaded {} rows of dimension {} from {} in {} ms ({} rows/s)",
+                    rowCount,
+                    dimension.getApiName(),
+                    avroFilePath,
+                    elapsedMillis,
+                    rowCount * 1000 / elapsedMillis
+            );
+            return rowCount;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw unreadableFile(avroFilePath, e.getCause());
+            }
+            String msg = String.format("Unable to load the file, at the location %s", avroFilePath);
+            LOG.error(msg, e.getCause());
+            throw new IllegalStateException(msg, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + avroFilePath, e);
+        } finally {
+            // Stops readers waiting on a full queue if the load failed
+            readers.shutdownNow();
+        }
+    }
+
+    /**
+     * Read the blocks of a file starting in a byte range, and queue their rows in chunks.
+     *
+     * @param avroFile  The AVRO data file
+     * @param rangeStart  The position the range starts at
+     * @param rangeEnd  The position the range ends at, exclusive
+     * @param rowConverter  Function converting records into dimension rows
+     * @param chunks  Queue the chunks of rows are put on, followed by {@link #END_OF_RANGE}
+     *
+     * @return nothing, so that the reader can throw checked exceptions
+     *
+     * @throws IOException if the file can't be read
+     * @throws InterruptedException if interrupted while waiting for room on the queue
+     */
+    private Void readRange(
+            File avroFile,
+            long rangeStart,
+            long rangeEnd,
+            Function<GenericRecord, DimensionRow> rowConverter,
+            BlockingQueue<List<DimensionRow>> chunks
+    ) throws IOException, InterruptedException {
+        boolean interrupted = false;
+        try (DataFileReader<GenericRecord> dataFileReader = openReader(avroFile)) {
+            // A block belongs to the range its preceding sync marker starts in, and the first range starts at the first
+            // block already. tell() can't place the range against the header, since it counts the bytes read ahead.
+            if (rangeStart > 0) {
+                dataFileReader.sync(rangeStart);
+            }
+            List<DimensionRow> chunk = new ArrayList<>(chunkSize);
+            GenericRecord record = null;
+            while (dataFileReader.hasNext() && !dataFileReader.pastSync(rangeEnd)) {
+                record = dataFileReader.next(record);
+                chunk.add(rowConverter.apply(record));
+                if (chunk.size() == chunkSize) {
+                    chunks.put(chunk);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                chunks.put(chunk);
+            }
+        } catch (InterruptedException e) {
+            // Only a writer that gave up interrupts the readers, so there's no one left to tell this one is done
+            interrupted = true;
+            throw e;
+        } finally {
+            if (!interrupted) {
+                // Lets the writer count finished readers even if this one failed; the failure surfaces from its future
+                chunks.put(END_OF_RANGE);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Open a reader over an AVRO data file.
+     *
+     * @param avroFile  The AVRO data file
+     *
+     * @return the reader
+     *
+     * @throws IOException if the file can't be opened
+     */
+    private DataFileReader<GenericRecord> openReader(File avroFile) throws IOException {
+        return new DataFileReader<>(avroFile, new GenericDatumReader<>());
+    }
+
+    /**
+     * Log and build the exception reporting a file that can't be read.
+     *
+     * @param avroFilePath  The path of the AVRO data file
+     * @param cause  The reason the file can't be read
+     *
+     * @return the exception to throw
+     */
+    private IllegalArgumentException unreadableFile(String avroFilePath, Throwable cause) {
+        String msg = String.format("Unable to process the file, at the location %s", avroFilePath);
+        LOG.error(msg, cause);
+        return new IllegalArgumentException(msg, cause);
+    }
+}
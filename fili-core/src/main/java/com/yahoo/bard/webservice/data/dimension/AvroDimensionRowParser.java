@@ -14,11 +14,14 @@ import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
@@ -86,24 +89,42 @@ public class AvroDimensionRowParser {
 
 
     /**
-     * Transform an avro generic record into a set map of fields and values.
+     * Build a function that transforms the avro generic records of a schema into dimension rows.
+     * <p>
+     * The position of each dimension field in the schema is resolved once, so that converting a record only reads
+     * the record's values by position, before the dimension parses them into a row. The function is safe to share
+     * between threads.
+     *
+     * @param dimension  The dimension for the rows being loaded
+     * @param avroSchema  The schema of the records
      *
-     * @param genericRecord  The avro record being read
-     * @param dimension  The dimension for the row being loaded
+     * @return A function converting a record into a dimension row
      *
-     * @return  A map of fields and values for a dimension row
+     * @throws IllegalArgumentException thrown if the schema doesn't contain all the dimension fields
      */
-    private Map<String, String> recordToMap(GenericRecord genericRecord, Dimension dimension) {
-        return dimension.getDimensionFields()
-                .stream()
-                .collect(
-                        Collectors.toMap(
-                                DimensionField::getName,
-                                dimensionField -> resolveRecordValue(
-                                        genericRecord,
-                                        dimensionFieldNameMapper.convert(dimension, dimensionField)
-                                )
-                        ));
+    public Function<GenericRecord, DimensionRow> buildRowConverter(Dimension dimension, Schema avroSchema)
+            throws IllegalArgumentException {
+        // Validate Schema
+        if (!doesSchemaContainAllDimensionFields(dimension, avroSchema)) {
+            String msg = "The AVRO schema file does not contain all the configured dimension fields";
+            LOG.error(msg);
+            throw new IllegalArgumentException(msg);
+        }
+
+        DimensionField[] fields = dimension.getDimensionFields().toArray(new DimensionField[0]);
+        String[] names = Arrays.stream(fields).map(DimensionField::getName).toArray(String[]::new);
+        int[] positions = Arrays.stream(fields)
+                .map(dimensionField -> dimensionFieldNameMapper.convert(dimension, dimensionField))
+                .mapToInt(fieldName -> avroSchema.getField(fieldName).pos())
+                .toArray();
+
+        return genericRecord -> {
+            Map<String, String> fieldValues = new LinkedHashMap<>(fields.length * 2);
+            for (int i = 0; i < fields.length; i++) {
+                fieldValues.put(names[i], resolveRecordValue(genericRecord, positions[i]));
+            }
+            return dimension.parseDimensionRow(fieldValues);
+        };
     }
 
     /**
@@ -120,18 +141,10 @@ public class AvroDimensionRowParser {
             DataFileReader<GenericRecord> dataFileReader,
             Dimension dimension
     ) throws IllegalArgumentException {
-        // Validate Schema
-        if (!doesSchemaContainAllDimensionFields(dimension, dataFileReader.getSchema())) {
-            String msg = "The AVRO schema file does not contain all the configured dimension fields";
-            LOG.error(msg);
-            throw new IllegalArgumentException(msg);
-        }
+        Function<GenericRecord, DimensionRow> rowConverter = buildRowConverter(dimension, dataFileReader.getSchema());
 
         // Generates a set of dimension Rows after retrieving the appropriate fields
-        return StreamSupport.stream(dataFileReader.spliterator(), false)
-                .map(record -> recordToMap(record, dimension))
-                .map(dimension::parseDimensionRow);
-
+        return StreamSupport.stream(dataFileReader.spliterator(), false).map(rowConverter);
     }
 
     /**
@@ -192,7 +205,8 @@ public class AvroDimensionRowParser {
      * @return Memoized function that converts the dimension field name based on the user mapping
      */
     private DimensionFieldNameMapper memoize(DimensionFieldNameMapper dimensionFieldNameMapper) {
-        Map<Pair<Dimension, DimensionField>, String> cache = new HashMap<>();
+        // Concurrent, so that a parser can be shared between threads
+        Map<Pair<Dimension, DimensionField>, String> cache = new ConcurrentHashMap<>();
         return (dimension, dimensionField) -> cache.computeIfAbsent(
                 new Pair<>(dimension, dimensionField),
                 key -> dimensionFieldNameMapper.convert(key.getKey(), key.getValue())
@@ -211,4 +225,17 @@ public class AvroDimensionRowParser {
         Object result = genericRecord.get(dimensionFieldName);
         return Objects.isNull(result) ? "" : result.toString();
     }
+
+    /**
+     * Retrieve the field at the given position in the generic record, replacing a null value with an empty string.
+     *
+     * @param genericRecord  One of the record in the given avro file
+     * @param position  Position of the field in the record's schema
+     *
+     * @return string representing the record value
+     */
+    private String resolveRecordValue(GenericRecord genericRecord, int position) {
+        Object result = genericRecord.get(position);
+        return Objects.isNull(result) ? "" : result.toString();
+    }
 }
@@ -9,6 +9,8 @@ import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
 import org.joda.time.DateTime;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -102,6 +104,39 @@ public interface Dimension {
      */
     void addAllDimensionRows(Set<DimensionRow> dimensionRows);
 
+    /**
+     * Add all dimension rows to the dimension's set of rows, optionally leaving the search index changes to be
+     * committed later by {@link #commitIndex()}.
+     * <p>
+     * By default the changes are always committed, as by {@link #addAllDimensionRows(Set)}.
+     *
+     * @param dimensionRows  Set of DimensionRows to add
+     * @param commitIndex  Whether to commit the search index changes, along with any left uncommitted before
+     */
+    default void addAllDimensionRows(Set<DimensionRow> dimensionRows, boolean commitIndex) {
+        addAllDimensionRows(dimensionRows);
+    }
+
+    /**
+     * Commit the search index changes left uncommitted by {@link #addAllDimensionRows(Set, boolean)}.
+     * <p>
+     * By default there's nothing to commit.
+     */
+    default void commitIndex() {
+        // Changes are committed as they're made by default
+    }
+
+    /**
+     * Load a complete set of dimension rows in bulk, replacing the rows the dimension can be searched for.
+     * <p>
+     * By default the rows are added as by {@link #addAllDimensionRows(Set)}.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    default void reloadAllDimensionRows(Set<DimensionRow> dimensionRows) {
+        addAllDimensionRows(dimensionRows);
+    }
+
     /**
      * Get a dimension row given an id.
      *
@@ -111,6 +146,27 @@ public interface Dimension {
      */
     DimensionRow findDimensionRowByKeyValue(String value);
 
+    /**
+     * Get the dimension rows for several ids.
+     * <p>
+     * The default implementation looks each id up in turn. Dimensions backed by a store that can read many keys at
+     * once should override it to look them all up in a single operation.
+     *
+     * @param values  key values
+     *
+     * @return the rows found, by key value, in the order of the values. Values with no matching row are left out.
+     */
+    default Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, DimensionRow> rows = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            DimensionRow row = findDimensionRowByKeyValue(value);
+            if (row != null) {
+                rows.putIfAbsent(value, row);
+            }
+        }
+        return rows;
+    }
+
     /**
      * Get primary key field for this dimension.
      *
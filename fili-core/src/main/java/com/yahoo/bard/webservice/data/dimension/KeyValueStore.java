@@ -5,6 +5,8 @@ package com.yahoo.bard.webservice.data.dimension;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.validation.constraints.NotNull;
@@ -49,6 +51,27 @@ public interface KeyValueStore extends Closeable {
      */
     String get(@NotNull String key);
 
+    /**
+     * Get the values for several keys from the store.
+     * <p>
+     * The default implementation gets each key in turn. Stores backed by a remote or persistent engine should
+     * override it to fetch all the keys in a single operation.
+     *
+     * @param keys  Keys to get the values for
+     *
+     * @return the values of the keys that are set, by key, in the order of the keys
+     */
+    default Map<String, String> getAll(@NotNull Collection<String> keys) {
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+        for (String key : keys) {
+            String value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
     /**
      * Get the value for a key from store or provide a default.
      *
@@ -0,0 +1,938 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongConsumer;
+import java.util.function.LongPredicate;
+import java.util.zip.CRC32;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A KeyValueStore kept in a memory mapped, append only log file, so that its contents survive restarts and stay off
+ * the Java heap.
+ * <p>
+ * Every put or remove appends a record to the log, and an open addressing hash table in direct memory maps the hash
+ * of each key to the offset of its latest record. Keys and values are only ever read from the mapped log, which the
+ * operating system pages in and out as needed, so the store can be much larger than the heap.
+ * <p>
+ * Each record carries a checksum, and the header of the log records how much of it was written by completed calls.
+ * When the store is opened the log is replayed up to that point, stopping at the first damaged record, so every
+ * completed put survives a crash of the process, and {@link #putAll(Map)} is applied entirely or not at all.
+ * <p>
+ * Once most of the log holds overwritten or removed values, the live records are copied to a new log, which replaces
+ * the old one by an atomic rename. Reads carry on from the old log while the copy is made.
+ * <p>
+ * The index takes 12 to 24 bytes of direct memory per key, which counts towards the JVM's
+ * {@code -XX:MaxDirectMemorySize} limit.
+ */
+public class MemoryMappedStore implements KeyValueStore {
+    private static final Logger LOG = LoggerFactory.getLogger(MemoryMappedStore.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 1 << 28;
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1L << 26;
+
+    private static final long MAGIC = 0x46494C494B56L;
+    private static final int END_POSITION = 8;
+    private static final int FILE_HEADER_SIZE = 16;
+
+    private static final byte PADDING = 0;
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final int RECORD_HEADER_SIZE = 13;
+
+    private final Path logPath;
+    private final int segmentSize;
+    private final long compactionThreshold;
+
+    // Held by writers for the whole of an update, including any compaction it triggers
+    private final ReentrantLock writeLock;
+    // Held for writing only while the log or index are changed, so that reads are blocked as little as possible
+    private final ReadWriteLock lock;
+
+    private volatile boolean open;
+    private FileChannel channel;
+    private List<MappedByteBuffer> segments;
+    private OffHeapIndex index;
+    private long end;
+    // The end of the log as recorded in its header
+    private long committedEnd;
+    private long liveBytes;
+
+    /**
+     * Constructor.
+     * <p>
+     * Opens the store, creating the log file if it doesn't exist.
+     *
+     * @param logPath  The log file holding the contents of the store
+     * @param segmentSize  Size of the regions the log is mapped in, which is also the largest record it can hold
+     * @param compactionThreshold  Size the log must grow to before it is compacted
+     */
+    public MemoryMappedStore(Path logPath, int segmentSize, long compactionThreshold) {
+        this.logPath = logPath;
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.writeLock = new ReentrantLock();
+        this.lock = new ReentrantReadWriteLock();
+        open();
+    }
+
+    /**
+     * Constructor using the default segment size and compaction threshold.
+     *
+     * @param logPath  The log file holding the contents of the store
+     */
+    public MemoryMappedStore(String logPath) {
+        this(Paths.get(logPath), DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    @Override
+    public void open() {
+        writeLock.lock();
+        lock.writeLock().lock();
+        try {
+            if (open) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            Files.createDirectories(logPath.toAbsolutePath().getParent());
+            // Left behind by a compaction that didn't finish, the log itself is intact
+            Files.deleteIfExists(getCompactionPath());
+
+            openLog();
+            open = true;
+            LOG.info(
+                    "Opened key value store {} holding {} keys in {} bytes in {} ms",
+                    logPath,
+                    index.size(),
+                    end,
+                    System.currentTimeMillis() - start
+            );
+        } catch (IOException e) {
+            LOG.error("Unable to open key value store {}", logPath, e);
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Map the log file and rebuild the index by replaying it.
+     *
+     * @throws IOException if the log can't be read
+     */
+    private void openLog() throws IOException {
+        channel = FileChannel.open(
+                logPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE
+        );
+        boolean isNew = channel.size() == 0;
+        segments = new ArrayList<>();
+        index = new OffHeapIndex();
+        liveBytes = 0;
+
+        ByteBuffer header = getSegment(0);
+        if (isNew) {
+            header.putLong(0, MAGIC);
+            header.putLong(END_POSITION, FILE_HEADER_SIZE);
+        } else if (header.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IllegalStateException(String.format("%s is not a key value store log", logPath));
+        }
+
+        committedEnd = header.getLong(END_POSITION);
+        long offset = FILE_HEADER_SIZE;
+        while (offset < committedEnd) {
+            if (getRemaining(offset) < RECORD_HEADER_SIZE || slice(offset).get() == PADDING) {
+                offset = getNextSegmentStart(offset);
+                continue;
+            }
+            int size = checkRecord(offset, committedEnd);
+            if (size < 0) {
+                LOG.warn("Discarding damaged records in {} from offset {} to {}", logPath, offset, committedEnd);
+                break;
+            }
+            indexRecord(offset, size);
+            offset += size;
+        }
+        end = offset;
+        // The replayed records are already on disk, only the header may need rewriting
+        committedEnd = end;
+        commit();
+    }
+
+    @Override
+    public void close() {
+        writeLock.lock();
+        lock.writeLock().lock();
+        try {
+            if (!open) {
+                return;
+            }
+            open = false;
+            segments.forEach(MappedByteBuffer::force);
+            channel.close();
+            segments = null;
+            index = null;
+        } catch (IOException e) {
+            LOG.error("Unable to close key value store {}", logPath, e);
+            throw new RuntimeException(e);
+        } finally {
+            lock.writeLock().unlock();
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return open;
+    }
+
+    @Override
+    public String get(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot get null key");
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            long offset = index.find(hash(keyBytes), candidate -> hasKey(candidate, keyBytes));
+            return offset < 0 ? null : readValue(offset);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the values for several keys from the store, under a single acquisition of the read lock.
+     *
+     * @param keys  Keys to get the values for
+     *
+     * @return the values of the keys that are set, by key, in the order of the keys
+     */
+    @Override
+    public Map<String, String> getAll(@NotNull Collection<String> keys) {
+        if (keys == null) {
+            throw new IllegalArgumentException("Cannot get null keys");
+        }
+        Map<String, String> values = new LinkedHashMap<>(keys.size());
+
+        lock.readLock().lock();
+        try {
+            checkOpen();
+            for (String key : keys) {
+                if (key == null) {
+                    throw new IllegalArgumentException("Cannot get null key");
+                }
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                long offset = index.find(hash(keyBytes), candidate -> hasKey(candidate, keyBytes));
+                String value = offset < 0 ? null : readValue(offset);
+                if (value != null) {
+                    values.put(key, value);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return values;
+    }
+
+    @Override
+    public String remove(@NotNull String key) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot remove null key");
+        }
+        return put(key, null);
+    }
+
+    @Override
+    public String put(@NotNull String key, String value) {
+        if (key == null) {
+            throw new IllegalArgumentException("Cannot set null key");
+        }
+        writeLock.lock();
+        try {
+            String oldValue;
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                oldValue = write(key, value);
+                commit();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfWasteful();
+            return oldValue;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Set multiple key/value pairs.
+     * <p>
+     * The pairs are appended to the log as a single batch, which is only kept when the store is opened again if all
+     * of it was written.
+     *
+     * @param entries  Map of key/value pairs to put
+     *
+     * @return The previous values for the keys
+     */
+    @Override
+    public Map<String, String> putAll(@NotNull Map<String, String> entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("Cannot set null entries");
+        }
+        Map<String, String> oldValues = new HashMap<>(entries.size());
+        writeLock.lock();
+        try {
+            lock.writeLock().lock();
+            try {
+                checkOpen();
+                for (Map.Entry<String, String> entry : entries.entrySet()) {
+                    if (entry.getKey() == null) {
+                        throw new IllegalArgumentException("Cannot set null key");
+                    }
+                    oldValues.put(entry.getKey(), write(entry.getKey(), entry.getValue()));
+                }
+                commit();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            compactIfWasteful();
+            return oldValues;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the contents of the store with those of another store's log.
+     *
+     * @param newStorePath  The location of the log of the new store, which must be closed.
+     */
+    @Override
+    public void replaceStore(String newStorePath) {
+        writeLock.lock();
+        try {
+            close();
+            Files.move(Paths.get(newStorePath), logPath, StandardCopyOption.REPLACE_EXISTING);
+            open();
+        } catch (IOException e) {
+            LOG.error("Unable to replace key value store {} with {}", logPath, newStorePath, e);
+            throw new RuntimeException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Rewrite the log keeping only the latest value of each key.
+     * <p>
+     * The compacted log is written next to the current one and renamed over it once complete, so the store is intact
+     * whenever the process stops. Reads are served from the current log until the switch.
+     */
+    public void compact() {
+        writeLock.lock();
+        try {
+            checkOpen();
+            long start = System.currentTimeMillis();
+            long oldEnd = end;
+            Path compactionPath = getCompactionPath();
+            Files.deleteIfExists(compactionPath);
+
+            // Writers are locked out, so the log and index don't change while they are copied
+            MemoryMappedStore compacted = new MemoryMappedStore(compactionPath, segmentSize, Long.MAX_VALUE);
+            try {
+                index.forEach(offset -> {
+                    if (slice(offset).get() == PUT) {
+                        compacted.copyRecord(this, offset);
+                    }
+                });
+                compacted.commit();
+                Files.move(compactionPath, logPath, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException | RuntimeException e) {
+                compacted.close();
+                Files.deleteIfExists(compactionPath);
+                throw e;
+            }
+
+            // The compacted store's mappings stay valid after the rename, so it's adopted rather than reopened
+            FileChannel oldChannel;
+            lock.writeLock().lock();
+            try {
+                oldChannel = channel;
+                channel = compacted.channel;
+                segments = compacted.segments;
+                index = compacted.index;
+                end = compacted.end;
+                committedEnd = compacted.committedEnd;
+                liveBytes = compacted.liveBytes;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            oldChannel.close();
+
+            LOG.info(
+                    "Compacted key value store {} from {} to {} bytes in {} ms",
+                    logPath,
+                    oldEnd,
+                    end,
+                    System.currentTimeMillis() - start
+            );
+        } catch (IOException e) {
+            LOG.error("Unable to compact key value store {}", logPath, e);
+            throw new RuntimeException(e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Compact the log if it's big enough and mostly holds overwritten values. Must be called holding the write lock.
+     */
+    private void compactIfWasteful() {
+        if (end < compactionThreshold || end - FILE_HEADER_SIZE <= 2 * liveBytes) {
+            return;
+        }
+        try {
+            compact();
+        } catch (RuntimeException e) {
+            // The store is still usable, the log is just larger than it needs to be
+            LOG.warn("Skipping compaction of key value store {}", logPath, e);
+        }
+    }
+
+    /**
+     * Append a put or remove of a key to the log and point the index at it. Must be called holding both locks.
+     *
+     * @param key  Key to set
+     * @param value  Value to set for the key, or null to remove the key
+     *
+     * @return The previous value for the key, or null if the key was not set
+     */
+    private String write(String key, String value) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int hash = hash(keyBytes);
+        long previous = index.find(hash, candidate -> hasKey(candidate, keyBytes));
+        String oldValue = previous < 0 ? null : readValue(previous);
+        if (value == null && oldValue == null) {
+            return null;
+        }
+
+        byte[] valueBytes = value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        long offset = append(value == null ? REMOVE : PUT, keyBytes, valueBytes);
+        indexRecord(offset, getRecordSize(offset));
+        return oldValue;
+    }
+
+    /**
+     * Copy a live record from another store's log. Used while compacting.
+     *
+     * @param source  The store being compacted
+     * @param offset  Offset of the record in the source's log
+     */
+    private void copyRecord(MemoryMappedStore source, long offset) {
+        ByteBuffer record = source.slice(offset);
+        record.get();
+        byte[] keyBytes = new byte[record.getInt()];
+        byte[] valueBytes = new byte[record.getInt()];
+        record.getInt();
+        record.get(keyBytes).get(valueBytes);
+
+        long copyOffset = append(PUT, keyBytes, valueBytes);
+        indexRecord(copyOffset, getRecordSize(copyOffset));
+    }
+
+    /**
+     * Write a record at the end of the log, starting a new segment if it doesn't fit in the current one.
+     *
+     * @param type  The kind of record
+     * @param keyBytes  The encoded key
+     * @param valueBytes  The encoded value
+     *
+     * @return the offset of the record
+     */
+    private long append(byte type, byte[] keyBytes, byte[] valueBytes) {
+        int size = RECORD_HEADER_SIZE + keyBytes.length + valueBytes.length;
+        if (size > segmentSize - FILE_HEADER_SIZE) {
+            throw new IllegalArgumentException(String.format(
+                    "Cannot store a %d byte record in key value store %s with %d byte segments",
+                    size,
+                    logPath,
+                    segmentSize
+            ));
+        }
+        if (getRemaining(end) < size) {
+            if (getRemaining(end) >= RECORD_HEADER_SIZE) {
+                // Mark the rest of the segment as unused, it may hold remains of a damaged record
+                slice(end).put(PADDING);
+            }
+            end = getNextSegmentStart(end);
+        }
+
+        long offset = end;
+        ByteBuffer record = slice(offset);
+        record.put(type)
+                .putInt(keyBytes.length)
+                .putInt(valueBytes.length)
+                .putInt(checksum(type, keyBytes, valueBytes))
+                .put(keyBytes)
+                .put(valueBytes);
+        end += size;
+        return offset;
+    }
+
+    /**
+     * Point the index at a record and account for the space it and the record it supersedes take up.
+     *
+     * @param offset  Offset of the record
+     * @param size  Size of the record
+     */
+    private void indexRecord(long offset, int size) {
+        ByteBuffer record = slice(offset);
+        byte type = record.get();
+        byte[] keyBytes = new byte[record.getInt()];
+        record.getInt();
+        record.getInt();
+        record.get(keyBytes);
+
+        long previous = index.put(hash(keyBytes), offset, candidate -> hasKey(candidate, keyBytes));
+        if (previous >= 0 && slice(previous).get() == PUT) {
+            liveBytes -= getRecordSize(previous);
+        }
+        if (type == PUT) {
+            liveBytes += size;
+        }
+    }
+
+    /**
+     * Record the end of the log in its header, making the records written so far part of the store if it's reopened.
+     * <p>
+     * The records written since the last commit are forced to disk before the header is written and forced, so that
+     * after a crash the header never points past records that were lost.
+     */
+    private void commit() {
+        for (long segment = committedEnd / segmentSize; segment * segmentSize < end; segment++) {
+            getSegment((int) segment).force();
+        }
+        MappedByteBuffer header = getSegment(0);
+        header.putLong(END_POSITION, end);
+        header.force();
+        committedEnd = end;
+    }
+
+    /**
+     * Check that there is an intact record at an offset.
+     *
+     * @param offset  Offset of the record
+     * @param limit  Offset the record must end by
+     *
+     * @return the size of the record, or -1 if it's damaged
+     */
+    private int checkRecord(long offset, long limit) {
+        ByteBuffer record = slice(offset);
+        byte type = record.get();
+        int keyLength = record.getInt();
+        int valueLength = record.getInt();
+        int checksum = record.getInt();
+        if ((type != PUT && type != REMOVE) || keyLength < 0 || valueLength < 0
+                || (long) keyLength + valueLength > record.remaining()
+                || offset + RECORD_HEADER_SIZE + keyLength + valueLength > limit) {
+            return -1;
+        }
+        byte[] keyBytes = new byte[keyLength];
+        byte[] valueBytes = new byte[valueLength];
+        record.get(keyBytes).get(valueBytes);
+        return checksum == checksum(type, keyBytes, valueBytes) ? RECORD_HEADER_SIZE + keyLength + valueLength : -1;
+    }
+
+    /**
+     * Read the value of a record.
+     *
+     * @param offset  Offset of the record
+     *
+     * @return the value, or null if the record removes its key
+     */
+    private String readValue(long offset) {
+        ByteBuffer record = slice(offset);
+        byte type = record.get();
+        int keyLength = record.getInt();
+        byte[] valueBytes = new byte[record.getInt()];
+        if (type == REMOVE) {
+            return null;
+        }
+        record.position(record.position() + Integer.BYTES + keyLength);
+        record.get(valueBytes);
+        return new String(valueBytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Check whether a record is for a key.
+     *
+     * @param offset  Offset of the record
+     * @param keyBytes  The encoded key
+     *
+     * @return true if the record has that key
+     */
+    private boolean hasKey(long offset, byte[] keyBytes) {
+        ByteBuffer record = slice(offset);
+        record.get();
+        if (record.getInt() != keyBytes.length) {
+            return false;
+        }
+        record.position(record.position() + 2 * Integer.BYTES);
+        for (byte keyByte : keyBytes) {
+            if (record.get() != keyByte) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the size of a record.
+     *
+     * @param offset  Offset of the record
+     *
+     * @return the size of the record in bytes
+     */
+    private int getRecordSize(long offset) {
+        ByteBuffer record = slice(offset);
+        record.get();
+        return RECORD_HEADER_SIZE + record.getInt() + record.getInt();
+    }
+
+    /**
+     * Get a view of the log positioned at an offset, mapping the segment holding it if needed.
+     *
+     * @param offset  Offset in the log
+     *
+     * @return a buffer positioned at the offset, whose limit is the end of the offset's segment
+     */
+    private ByteBuffer slice(long offset) {
+        ByteBuffer buffer = getSegment((int) (offset / segmentSize)).duplicate();
+        buffer.position((int) (offset % segmentSize));
+        return buffer;
+    }
+
+    /**
+     * Get a segment of the log, mapping it and any segments before it that haven't been.
+     * <p>
+     * Readers only look at offsets before the end of the log, whose segments have already been mapped by writers.
+     *
+     * @param segment  Number of the segment
+     *
+     * @return the mapped segment
+     */
+    private MappedByteBuffer getSegment(int segment) {
+        try {
+            while (segments.size() <= segment) {
+                segments.add(channel.map(
+                        FileChannel.MapMode.READ_WRITE,
+                        (long) segments.size() * segmentSize,
+                        segmentSize
+                ));
+            }
+            return segments.get(segment);
+        } catch (IOException e) {
+            LOG.error("Unable to map segment {} of key value store {}", segment, logPath, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the space left in the segment holding an offset.
+     *
+     * @param offset  Offset in the log
+     *
+     * @return the number of bytes from the offset to the end of its segment
+     */
+    private int getRemaining(long offset) {
+        return segmentSize - (int) (offset % segmentSize);
+    }
+
+    /**
+     * Get the start of the segment after the one holding an offset.
+     *
+     * @param offset  Offset in the log
+     *
+     * @return the offset of the start of the next segment
+     */
+    private long getNextSegmentStart(long offset) {
+        return (offset / segmentSize + 1) * segmentSize;
+    }
+
+    /**
+     * Get the file a compacted log is written to before it replaces the current one.
+     *
+     * @return the path of the compacted log
+     */
+    private Path getCompactionPath() {
+        return logPath.resolveSibling(logPath.getFileName() + ".compacting");
+    }
+
+    /**
+     * Fail if the store has been closed.
+     */
+    private void checkOpen() {
+        if (!open) {
+            throw new IllegalStateException(String.format("Key value store %s is closed", logPath));
+        }
+    }
+
+    /**
+     * Hash an encoded key.
+     *
+     * @param keyBytes  The encoded key
+     *
+     * @return the hash of the key
+     */
+    private static int hash(byte[] keyBytes) {
+        int hash = Arrays.hashCode(keyBytes);
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Compute the checksum of a record.
+     *
+     * @param type  The kind of record
+     * @param keyBytes  The encoded key
+     * @param valueBytes  The encoded value
+     *
+     * @return the checksum
+     */
+    private static int checksum(byte type, byte[] keyBytes, byte[] valueBytes) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(keyBytes);
+        crc.update(valueBytes);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Open addressing hash table in direct memory, mapping key hashes to the offsets of records in the log.
+     * <p>
+     * Each slot holds the offset of a record plus one, so that an empty slot is zero, followed by the hash of the
+     * record's key, which saves reading the log on most collisions and when the table grows. The table is split over
+     * several buffers so it isn't limited to the 2GB a single buffer can hold.
+     */
+    private static class OffHeapIndex {
+        private static final int SLOT_SIZE = Long.BYTES + Integer.BYTES;
+        private static final int SLOTS_PER_BUFFER_SHIFT = 24;
+        private static final int INITIAL_CAPACITY = 1024;
+        private static final double LOAD_FACTOR = 0.75;
+
+        private ByteBuffer[] buffers;
+        private int capacity;
+        private int size;
+
+        /**
+         * Constructor.
+         */
+        OffHeapIndex() {
+            allocate(INITIAL_CAPACITY);
+        }
+
+        /**
+         * Get the number of keys in the table.
+         *
+         * @return the number of keys
+         */
+        int size() {
+            return size;
+        }
+
+        /**
+         * Find the record of a key.
+         *
+         * @param hash  Hash of the key
+         * @param isKey  Tells whether the record at an offset is for the key
+         *
+         * @return the offset of the record, or -1 if the key isn't in the table
+         */
+        long find(int hash, LongPredicate isKey) {
+            for (int slot = hash & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+                long offset = getOffset(slot);
+                if (offset < 0) {
+                    return -1;
+                }
+                if (getHash(slot) == hash && isKey.test(offset)) {
+                    return offset;
+                }
+            }
+        }
+
+        /**
+         * Point a key at a record.
+         *
+         * @param hash  Hash of the key
+         * @param offset  Offset of the key's latest record
+         * @param isKey  Tells whether the record at an offset is for the key
+         *
+         * @return the offset the key pointed at before, or -1 if it wasn't in the table
+         */
+        long put(int hash, long offset, LongPredicate isKey) {
+            if (size + 1 > capacity * LOAD_FACTOR) {
+                grow();
+            }
+            for (int slot = hash & (capacity - 1); ; slot = (slot + 1) & (capacity - 1)) {
+                long previous = getOffset(slot);
+                if (previous < 0) {
+                    setSlot(slot, offset, hash);
+                    size++;
+                    return -1;
+                }
+                if (getHash(slot) == hash && isKey.test(previous)) {
+                    setSlot(slot, offset, hash);
+                    return previous;
+                }
+            }
+        }
+
+        /**
+         * Visit the latest record of every key.
+         *
+         * @param action  Called with the offset of each record
+         */
+        void forEach(LongConsumer action) {
+            for (int slot = 0; slot < capacity; slot++) {
+                long offset = getOffset(slot);
+                if (offset >= 0) {
+                    action.accept(offset);
+                }
+            }
+        }
+
+        /**
+         * Double the capacity of the table.
+         */
+        private void grow() {
+            ByteBuffer[] oldBuffers = buffers;
+            int oldCapacity = capacity;
+            if (oldCapacity >= 1 << 30) {
+                throw new IllegalStateException("Key value store index is full");
+            }
+            allocate(oldCapacity * 2);
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                ByteBuffer buffer = oldBuffers[oldSlot >>> SLOTS_PER_BUFFER_SHIFT];
+                int position = (oldSlot & ((1 << SLOTS_PER_BUFFER_SHIFT) - 1)) * SLOT_SIZE;
+                long storedOffset = buffer.getLong(position);
+                if (storedOffset == 0) {
+                    continue;
+                }
+                int hash = buffer.getInt(position + Long.BYTES);
+                int slot = hash & (capacity - 1);
+                while (getOffset(slot) >= 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+                setSlot(slot, storedOffset - 1, hash);
+            }
+        }
+
+        /**
+         * Replace the table with an empty one.
+         *
+         * @param newCapacity  Number of slots in the new table, a power of two
+         */
+        private void allocate(int newCapacity) {
+            int slotsPerBuffer = Math.min(newCapacity, 1 << SLOTS_PER_BUFFER_SHIFT);
+            buffers = new ByteBuffer[newCapacity / slotsPerBuffer];
+            for (int i = 0; i < buffers.length; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(slotsPerBuffer * SLOT_SIZE);
+            }
+            capacity = newCapacity;
+        }
+
+        /**
+         * Get the offset stored in a slot.
+         *
+         * @param slot  The slot
+         *
+         * @return the offset, or -1 if the slot is empty
+         */
+        private long getOffset(int slot) {
+            return getBuffer(slot).getLong(getPosition(slot)) - 1;
+        }
+
+        /**
+         * Get the hash stored in a slot.
+         *
+         * @param slot  The slot
+         *
+         * @return the hash
+         */
+        private int getHash(int slot) {
+            return getBuffer(slot).getInt(getPosition(slot) + Long.BYTES);
+        }
+
+        /**
+         * Fill a slot.
+         *
+         * @param slot  The slot
+         * @param offset  The record offset to store
+         * @param hash  The key hash to store
+         */
+        private void setSlot(int slot, long offset, int hash) {
+            ByteBuffer buffer = getBuffer(slot);
+            int position = getPosition(slot);
+            buffer.putLong(position, offset + 1);
+            buffer.putInt(position + Long.BYTES, hash);
+        }
+
+        /**
+         * Get the buffer holding a slot.
+         *
+         * @param slot  The slot
+         *
+         * @return the buffer holding it
+         */
+        private ByteBuffer getBuffer(int slot) {
+            return buffers[slot >>> SLOTS_PER_BUFFER_SHIFT];
+        }
+
+        /**
+         * Get the position of a slot in its buffer.
+         *
+         * @param slot  The slot
+         *
+         * @return the position of the slot
+         */
+        private int getPosition(int slot) {
+            return (slot & ((1 << SLOTS_PER_BUFFER_SHIFT) - 1)) * SLOT_SIZE;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.util.Utils;
+
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Memory mapped store instance manager.
+ */
+public class MemoryMappedStoreManager {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    private static final @NotNull String MAPPED_STORE_PATH = SYSTEM_CONFIG.getPackageVariableName(
+            "mapped_store_path"
+    );
+    private static final String MAPPED_STORE_SEGMENT_MB = SYSTEM_CONFIG.getPackageVariableName(
+            "mapped_store_segment_mb"
+    );
+    private static final String MAPPED_STORE_COMPACTION_MB = SYSTEM_CONFIG.getPackageVariableName(
+            "mapped_store_compaction_threshold_mb"
+    );
+
+    // Hold singleton instances by name
+    private static final Map<String, MemoryMappedStore> MAPPED_STORES = new HashMap<>();
+
+    /**
+     * Factory for singleton instances by name.
+     * <p>
+     * Only a single instance can exist for each name. A new instance opens the store left by earlier ones with the
+     * same name, if there is one.
+     *
+     * @param storeName  Name for the singleton instance
+     *
+     * @return The singleton instance for the given name
+     */
+    public static synchronized MemoryMappedStore getInstance(String storeName) {
+        return MAPPED_STORES.computeIfAbsent(
+                storeName,
+                ignored -> new MemoryMappedStore(
+                        Paths.get(getStorePath(storeName), "store.log"),
+                        SYSTEM_CONFIG.getIntProperty(
+                                MAPPED_STORE_SEGMENT_MB,
+                                MemoryMappedStore.DEFAULT_SEGMENT_SIZE >> 20
+                        ) << 20,
+                        SYSTEM_CONFIG.getLongProperty(
+                                MAPPED_STORE_COMPACTION_MB,
+                                MemoryMappedStore.DEFAULT_COMPACTION_THRESHOLD >> 20
+                        ) << 20
+                )
+        );
+    }
+
+    /**
+     * Delete the named singleton instance, along with its files.
+     *
+     * @param storeName  Name of the singleton instance to delete
+     */
+    public static synchronized void removeInstance(String storeName) {
+        MemoryMappedStore store = MAPPED_STORES.remove(storeName);
+        if (store != null) {
+            store.close();
+        }
+        Utils.deleteFiles(getStorePath(storeName));
+    }
+
+    /**
+     * Get the directory holding the files of a store.
+     *
+     * @param storeName  Name of the store
+     *
+     * @return the path to the store's files
+     */
+    private static String getStorePath(String storeName) {
+        // Path eg: /home/y/var/bard_webservice/dimensionCache/dimension1/key_value_store/
+        return String.format(
+                "%s/dimensionCache/%s/key_value_store/",
+                SYSTEM_CONFIG.getStringProperty(MAPPED_STORE_PATH),
+                storeName
+        ).replaceAll("/+", "/");
+    }
+}
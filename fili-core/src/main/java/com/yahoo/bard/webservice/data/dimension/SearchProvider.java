@@ -9,6 +9,7 @@ import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import org.slf4j.LoggerFactory;
 
+import java.util.Collection;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
@@ -22,6 +23,11 @@ import javax.validation.constraints.NotNull;
  */
 public interface SearchProvider {
 
+    /**
+     * The index version of search providers which don't track changes to their rows.
+     */
+    long UNVERSIONED_INDEX = -1;
+
     /**
      * Setter for dimension.
      *
@@ -145,6 +151,40 @@ public interface SearchProvider {
      */
     void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows);
 
+    /**
+     * Method to add / update indexes, optionally leaving the changes to be committed later by {@link #commitIndex()}.
+     * <p>
+     * Deferring the commit lets a stream of batches pay the cost of committing once. By default the changes are
+     * always committed, as by {@link #refreshIndex(Map)}.
+     *
+     * @param changedRows  Collection of newRow / oldRow pairs keyed by rowId to update the index with
+     * @param commit  Whether to commit the changes, along with any left uncommitted by earlier calls
+     */
+    default void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows, boolean commit) {
+        refreshIndex(changedRows);
+    }
+
+    /**
+     * Commit the index changes left uncommitted by {@link #refreshIndex(Map, boolean)}.
+     * <p>
+     * By default there's nothing to commit.
+     */
+    default void commitIndex() {
+        // Changes are committed as they're made by default
+    }
+
+    /**
+     * Get the version of the index, which changes every time the rows searched through change.
+     * <p>
+     * Results of searches may be reused for as long as the version stays the same. By default the changes aren't
+     * tracked, and the version is {@link #UNVERSIONED_INDEX}.
+     *
+     * @return the version of the index, or {@link #UNVERSIONED_INDEX} if changes to the rows aren't tracked
+     */
+    default long getIndexVersion() {
+        return UNVERSIONED_INDEX;
+    }
+
     /**
      * Method to check if search provider is healthy.
      *
@@ -166,6 +206,43 @@ public interface SearchProvider {
         throw new UnsupportedOperationException(message);
     }
 
+    /**
+     * Whether this search provider can rebuild its whole index in bulk with {@link #rebuildIndex(Collection)}.
+     *
+     * @return true if bulk index rebuilds are supported
+     */
+    default boolean supportsIndexRebuild() {
+        return false;
+    }
+
+    /**
+     * Replaces the index with a new one built in bulk from the given rows, in hot-swap manner.
+     * <p>
+     * Rows that are in the current index but not in the collection drop out of the index. The rows are expected to
+     * already be in the key value store.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    default void rebuildIndex(Collection<DimensionRow> dimensionRows) {
+        String message = String.format(
+                "Current implementation of SearchProvider: %s does not support index rebuild operation.",
+                this.getClass().getSimpleName()
+        );
+        LoggerFactory.getLogger(SearchProvider.class).error(message);
+        throw new UnsupportedOperationException(message);
+    }
+
+    /**
+     * Replaces the index with a new one built in bulk from the rows currently in it, in hot-swap manner.
+     * <p>
+     * Rows changed while the rebuild runs are kept, since the provider starts tracking changes before it reads the rows
+     * to rebuild from. Reading the rows and passing them to {@link #rebuildIndex(Collection)} would lose the changes
+     * made in between.
+     */
+    default void rebuildIndex() {
+        rebuildIndex(findAllDimensionRows());
+    }
+
     /**
      * Clears the dimension cache, and resets the indices, effectively resetting the SearchProvider to a clean state.
      */
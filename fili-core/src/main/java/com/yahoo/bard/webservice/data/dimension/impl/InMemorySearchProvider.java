@@ -0,0 +1,692 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import com.yahoo.bard.webservice.data.cache.HashDataCache.Pair;
+import com.yahoo.bard.webservice.data.dimension.Dimension;
+import com.yahoo.bard.webservice.data.dimension.DimensionField;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.dimension.FilterDimensionRows;
+import com.yahoo.bard.webservice.data.dimension.KeyValueStore;
+import com.yahoo.bard.webservice.data.dimension.SearchProvider;
+import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils;
+import com.yahoo.bard.webservice.util.Pagination;
+import com.yahoo.bard.webservice.util.SinglePagePagination;
+import com.yahoo.bard.webservice.web.ApiFilter;
+import com.yahoo.bard.webservice.web.DefaultFilterOperation;
+import com.yahoo.bard.webservice.web.FilterOperation;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Search provider that answers filters from indexes of the dimension rows held in memory.
+ * <p>
+ * As with the {@link ScanSearchProvider}, the rows themselves are kept in the key value store, but rather than
+ * decoding and scanning every row for each filter, the provider keeps an index of each dimension field:
+ * <ul>
+ *     <li>{@code in}, {@code eq} and {@code notin} are hash lookups of the field values</li>
+ *     <li>{@code startswith} is a range scan over the field's distinct values, kept sorted</li>
+ *     <li>{@code contains} intersects a trigram index of the field's distinct values, and only checks the values
+ *     holding every trigram of the search string</li>
+ * </ul>
+ * The indexes are updated incrementally as rows change, and loaded from the key value store when the provider is
+ * attached to one. This suits dimensions of up to a few million rows, which are too slow to scan but fit in memory.
+ * <p>
+ * Like Lucene, and unlike the scan provider which treats filter values as regular expressions, matching is literal
+ * and case sensitive.
+ */
+public class InMemorySearchProvider implements SearchProvider, FilterDimensionRows {
+    private static final Logger LOG = LoggerFactory.getLogger(InMemorySearchProvider.class);
+
+    /**
+     * Length of the substrings indexed for contains filters.
+     */
+    private static final int GRAM_LENGTH = 3;
+
+    private final ObjectMapper objectMapper;
+    private final ReadWriteLock lock;
+    // Bumped, while still holding the write lock, every time the rows that can be searched for change
+    private final AtomicLong indexVersion = new AtomicLong();
+
+    private KeyValueStore keyValueStore;
+    private Dimension dimension;
+
+    // Guarded by lock
+    private RowIndex rowIndex;
+    private List<DimensionRow> rowsChangedDuringRebuild;
+
+    /**
+     * Constructor.
+     */
+    public InMemorySearchProvider() {
+        this.objectMapper = new ObjectMapper();
+        this.lock = new ReentrantReadWriteLock();
+        this.rowIndex = new RowIndex();
+    }
+
+    @Override
+    public void setDimension(Dimension dimension) {
+        this.dimension = dimension;
+    }
+
+    @Override
+    public void setKeyValueStore(KeyValueStore keyValueStore) {
+        this.keyValueStore = keyValueStore;
+
+        if (keyValueStore.get(DimensionStoreKeyUtils.getCardinalityKey()) == null) {
+            keyValueStore.put(DimensionStoreKeyUtils.getCardinalityKey(), "0");
+        }
+        if (keyValueStore.get(DimensionStoreKeyUtils.getAllValuesKey()) == null) {
+            keyValueStore.put(DimensionStoreKeyUtils.getAllValuesKey(), "[]");
+        }
+
+        if (dimension != null) {
+            loadIndex();
+        }
+    }
+
+    /**
+     * Build the indexes from the rows in the key value store.
+     */
+    private void loadIndex() {
+        RowIndex loadedIndex = new RowIndex();
+        List<String> rowIds = readValue(
+                new TypeReference<List<String>>() { },
+                keyValueStore.get(DimensionStoreKeyUtils.getAllValuesKey())
+        );
+        rowIds.stream()
+                .map(keyValueStore::get)
+                .filter(Objects::nonNull)
+                .map(rowJson -> readValue(new TypeReference<Map<String, String>>() { }, rowJson))
+                .map(dimension::parseDimensionRow)
+                .forEach(loadedIndex::add);
+
+        lock.writeLock().lock();
+        try {
+            rowIndex = loadedIndex;
+            indexVersion.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        LOG.debug("Loaded {} rows of dimension {} into memory", loadedIndex.size(), dimension.getApiName());
+    }
+
+    @Override
+    public int getDimensionCardinality() {
+        lock.readLock().lock();
+        try {
+            return rowIndex.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public TreeSet<DimensionRow> findAllOrderedDimensionRows() {
+        lock.readLock().lock();
+        try {
+            return new TreeSet<>(rowIndex.orderedRows);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Pagination<DimensionRow> findAllDimensionRowsPaged(PaginationParameters paginationParameters) {
+        lock.readLock().lock();
+        try {
+            return getPage(rowIndex.orderedRows, paginationParameters);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Pagination<DimensionRow> findFilteredDimensionRowsPaged(
+            Set<ApiFilter> filters,
+            PaginationParameters paginationParameters
+    ) {
+        List<DimensionRow> matchingRows;
+        lock.readLock().lock();
+        try {
+            Set<String> matchingKeys = null;
+            for (ApiFilter filter : filters) {
+                Set<String> filterKeys = findMatchingKeys(filter, filter.getOperation());
+                if (matchingKeys == null) {
+                    matchingKeys = filterKeys;
+                } else {
+                    matchingKeys.retainAll(filterKeys);
+                }
+            }
+            if (matchingKeys == null) {
+                return getPage(rowIndex.orderedRows, paginationParameters);
+            }
+            matchingRows = matchingKeys.stream()
+                    .map(rowIndex.rowsByKey::get)
+                    .sorted()
+                    .collect(Collectors.toList());
+        } finally {
+            lock.readLock().unlock();
+        }
+        return getPage(matchingRows, paginationParameters);
+    }
+
+    /**
+     * Cut a page out of sorted dimension rows.
+     *
+     * @param sortedRows  All of the rows, in order
+     * @param paginationParameters  The parameters defining the pagination (i.e. the number of rows per page, and the
+     * desired page)
+     *
+     * @return the requested page of rows
+     */
+    private static Pagination<DimensionRow> getPage(
+            Collection<DimensionRow> sortedRows,
+            PaginationParameters paginationParameters
+    ) {
+        int perPage = paginationParameters.getPerPage();
+        long skip = (long) (paginationParameters.getPage(sortedRows.size()) - 1) * perPage;
+        return new SinglePagePagination<>(
+                Collections.unmodifiableList(
+                        sortedRows.stream().skip(skip).limit(perPage).collect(Collectors.toList())
+                ),
+                paginationParameters,
+                sortedRows.size()
+        );
+    }
+
+    /**
+     * Find the keys of the rows matched by a filter. Must be called holding the read lock.
+     *
+     * @param filter  The filter to apply
+     * @param operation  The operation to apply with the filter's field and values
+     *
+     * @return a new, modifiable set of the keys of the matching rows
+     */
+    private Set<String> findMatchingKeys(ApiFilter filter, FilterOperation operation) {
+        if (!(operation instanceof DefaultFilterOperation)) {
+            LOG.error("Illegal Filter operation : {}, only default filter ops supported", operation);
+            throw new IllegalArgumentException(
+                    "Only supports default filter operations: in, notin, startswith, contains, eq"
+            );
+        }
+        FieldIndex fieldIndex = rowIndex.fieldIndexes.getOrDefault(filter.getDimensionField(), new FieldIndex());
+
+        switch ((DefaultFilterOperation) operation) {
+            case eq:
+                // fall through on purpose since eq and in have the same functionality
+            case in:
+                return fieldIndex.findIn(filter.getValues());
+            case notin:
+                Set<String> keys = new HashSet<>(rowIndex.rowsByKey.keySet());
+                keys.removeAll(fieldIndex.findIn(filter.getValues()));
+                return keys;
+            case startswith:
+                return fieldIndex.findStartsWith(filter.getValues());
+            case contains:
+                return fieldIndex.findContains(filter.getValues());
+            default:
+                LOG.error("Illegal Filter operation : {}", operation);
+                throw new IllegalArgumentException("Invalid Filter Operation.");
+        }
+    }
+
+    /**
+     * Keep the rows of a set that a filter matches.
+     *
+     * @param dimensionRows  The unfiltered set of dimension rows
+     * @param filter  The filter to apply
+     * @param operation  The operation to apply with the filter's field and values
+     *
+     * @return the matching rows
+     */
+    private TreeSet<DimensionRow> filterRows(
+            TreeSet<DimensionRow> dimensionRows,
+            ApiFilter filter,
+            DefaultFilterOperation operation
+    ) {
+        Set<String> matchingKeys;
+        lock.readLock().lock();
+        try {
+            matchingKeys = findMatchingKeys(filter, operation);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return dimensionRows.stream()
+                .filter(row -> matchingKeys.contains(row.getKeyValue()))
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Override
+    public TreeSet<DimensionRow> inFilterOperation(TreeSet<DimensionRow> dimensionRows, ApiFilter filter) {
+        return filterRows(dimensionRows, filter, DefaultFilterOperation.in);
+    }
+
+    @Override
+    public TreeSet<DimensionRow> notinFilterOperation(TreeSet<DimensionRow> dimensionRows, ApiFilter filter) {
+        return filterRows(dimensionRows, filter, DefaultFilterOperation.notin);
+    }
+
+    @Override
+    public TreeSet<DimensionRow> startswithFilterOperation(TreeSet<DimensionRow> dimensionRows, ApiFilter filter) {
+        return filterRows(dimensionRows, filter, DefaultFilterOperation.startswith);
+    }
+
+    @Override
+    public TreeSet<DimensionRow> containsFilterOperation(TreeSet<DimensionRow> dimensionRows, ApiFilter filter) {
+        return filterRows(dimensionRows, filter, DefaultFilterOperation.contains);
+    }
+
+    @Override
+    public void refreshIndex(String rowId, DimensionRow dimensionRow, DimensionRow dimensionRowOld) {
+        refreshIndex(Collections.singletonMap(rowId, new Pair<>(dimensionRow, dimensionRowOld)));
+    }
+
+    @Override
+    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        refreshIndex(changedRows, true);
+    }
+
+    /**
+     * Index changed rows. They can be searched for right away, but the ids and count of the indexed rows are only
+     * written to the key value store when committed.
+     *
+     * @param changedRows  Collection of newRow / oldRow pairs keyed by rowId to update the index with
+     * @param commit  Whether to commit the changes, along with any left uncommitted by earlier calls
+     */
+    @Override
+    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows, boolean commit) {
+        lock.writeLock().lock();
+        try {
+            for (Pair<DimensionRow, DimensionRow> rows : changedRows.values()) {
+                rowIndex.add(rows.getKey());
+                if (rowsChangedDuringRebuild != null) {
+                    rowsChangedDuringRebuild.add(rows.getKey());
+                }
+            }
+            if (commit) {
+                writeRowIds();
+            }
+            indexVersion.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void commitIndex() {
+        lock.writeLock().lock();
+        try {
+            writeRowIds();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean supportsIndexRebuild() {
+        return true;
+    }
+
+    /**
+     * Replace the indexes with ones built from the given rows.
+     * <p>
+     * The new indexes are built without blocking searches, then swapped in. Rows changed while they were being built
+     * are applied to them again before the swap.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    @Override
+    public void rebuildIndex(Collection<DimensionRow> dimensionRows) {
+        rebuildIndex(() -> dimensionRows);
+    }
+
+    @Override
+    public void rebuildIndex() {
+        rebuildIndex(() -> new ArrayList<>(rowIndex.orderedRows));
+    }
+
+    /**
+     * Replace the indexes with ones built from the rows supplied once changes to the rows are being tracked.
+     *
+     * @param rowSupplier  Supplies all the rows of the dimension, called while holding the write lock
+     */
+    private synchronized void rebuildIndex(Supplier<Collection<DimensionRow>> rowSupplier) {
+        Collection<DimensionRow> dimensionRows;
+        lock.writeLock().lock();
+        try {
+            rowsChangedDuringRebuild = new ArrayList<>();
+            dimensionRows = rowSupplier.get();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        RowIndex rebuiltIndex = new RowIndex();
+        try {
+            dimensionRows.forEach(rebuiltIndex::add);
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                rowsChangedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+
+        lock.writeLock().lock();
+        try {
+            rowsChangedDuringRebuild.forEach(rebuiltIndex::add);
+            rowsChangedDuringRebuild = null;
+            rowIndex = rebuiltIndex;
+            writeRowIds();
+            indexVersion.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void clearDimension() {
+        lock.writeLock().lock();
+        try {
+            //Remove all dimension data from the store.
+            rowIndex.rowsByKey.keySet().stream()
+                    .map(this::getRowId)
+                    .forEach(keyValueStore::remove);
+            //Since the indices are being dropped, the dimension field stored via the columnKey is becoming stale.
+            keyValueStore.remove(DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName()));
+            //We're resetting the keyValueStore, so we don't want any stale last updated date floating around.
+            keyValueStore.remove(DimensionStoreKeyUtils.getLastUpdatedKey());
+
+            rowIndex = new RowIndex();
+            writeRowIds();
+            indexVersion.incrementAndGet();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public long getIndexVersion() {
+        return indexVersion.get();
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return true;
+    }
+
+    /**
+     * Write the ids of the indexed rows and their count to the key value store, so that the indexes can be loaded
+     * from it again. Must be called holding the write lock.
+     */
+    private void writeRowIds() {
+        try {
+            List<String> rowIds = rowIndex.orderedRows.stream()
+                    .map(DimensionRow::getKeyValue)
+                    .map(this::getRowId)
+                    .collect(Collectors.toList());
+            keyValueStore.put(DimensionStoreKeyUtils.getAllValuesKey(), objectMapper.writeValueAsString(rowIds));
+            keyValueStore.put(DimensionStoreKeyUtils.getCardinalityKey(), Integer.toString(rowIds.size()));
+        } catch (IOException e) {
+            LOG.error("Exception while adding dimension entry in KeyValueStore : {}", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the key value store key of a row.
+     *
+     * @param keyValue  The value of the row's key field
+     *
+     * @return the key of the row in the key value store
+     */
+    private String getRowId(String keyValue) {
+        return DimensionStoreKeyUtils.getRowKey(dimension.getKey().getName(), keyValue);
+    }
+
+    /**
+     * Helper method for reading value from an objectMapper, rethrowing parse errors unchecked.
+     *
+     * @param typeReference  The type reference
+     * @param value  Value of the key
+     * @param <T>  Type of the TypeReference
+     *
+     * @return  T where T is the type of the TypeReference passed in
+     */
+    private <T> T readValue(TypeReference<T> typeReference, String value) {
+        try {
+            return objectMapper.readValue(value, typeReference);
+        } catch (IOException e) {
+            LOG.error("Exception while reading dimension rows {}", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * The rows of a dimension, with an index of each of their fields.
+     */
+    private static class RowIndex {
+        private final Map<String, DimensionRow> rowsByKey = new HashMap<>();
+        private final TreeSet<DimensionRow> orderedRows = new TreeSet<>();
+        private final Map<DimensionField, FieldIndex> fieldIndexes = new HashMap<>();
+
+        /**
+         * Add a row, replacing any row with the same key.
+         *
+         * @param row  The row to add
+         */
+        void add(DimensionRow row) {
+            String key = row.getKeyValue();
+            remove(key);
+            rowsByKey.put(key, row);
+            orderedRows.add(row);
+            for (Map.Entry<DimensionField, String> entry : row.entrySet()) {
+                fieldIndexes.computeIfAbsent(entry.getKey(), ignored -> new FieldIndex()).add(entry.getValue(), key);
+            }
+        }
+
+        /**
+         * Remove the row with the given key, if there is one.
+         *
+         * @param key  The value of the row's key field
+         */
+        void remove(String key) {
+            DimensionRow row = rowsByKey.remove(key);
+            if (row == null) {
+                return;
+            }
+            orderedRows.remove(row);
+            for (Map.Entry<DimensionField, String> entry : row.entrySet()) {
+                FieldIndex fieldIndex = fieldIndexes.get(entry.getKey());
+                if (fieldIndex != null) {
+                    fieldIndex.remove(entry.getValue(), key);
+                }
+            }
+        }
+
+        /**
+         * Get the number of rows.
+         *
+         * @return the number of rows
+         */
+        int size() {
+            return rowsByKey.size();
+        }
+    }
+
+    /**
+     * Index of the values of one field, mapping each distinct value to the keys of the rows that have it.
+     */
+    private static class FieldIndex {
+        private final NavigableMap<String, Set<String>> keysByValue = new TreeMap<>();
+        private final Map<String, Set<String>> valuesByGram = new HashMap<>();
+
+        /**
+         * Record that a row has a value.
+         *
+         * @param value  The field value
+         * @param key  The key of the row
+         */
+        void add(String value, String key) {
+            String indexedValue = value == null ? "" : value;
+            Set<String> keys = keysByValue.get(indexedValue);
+            if (keys == null) {
+                keys = new HashSet<>();
+                keysByValue.put(indexedValue, keys);
+                for (String gram : getGrams(indexedValue)) {
+                    valuesByGram.computeIfAbsent(gram, ignored -> new HashSet<>()).add(indexedValue);
+                }
+            }
+            keys.add(key);
+        }
+
+        /**
+         * Record that a row no longer has a value.
+         *
+         * @param value  The field value
+         * @param key  The key of the row
+         */
+        void remove(String value, String key) {
+            String indexedValue = value == null ? "" : value;
+            Set<String> keys = keysByValue.get(indexedValue);
+            if (keys == null || !keys.remove(key) || !keys.isEmpty()) {
+                return;
+            }
+            keysByValue.remove(indexedValue);
+            for (String gram : getGrams(indexedValue)) {
+                Set<String> values = valuesByGram.get(gram);
+                values.remove(indexedValue);
+                if (values.isEmpty()) {
+                    valuesByGram.remove(gram);
+                }
+            }
+        }
+
+        /**
+         * Find the rows whose value is one of the given values.
+         *
+         * @param values  The values to look up
+         *
+         * @return the keys of the matching rows
+         */
+        Set<String> findIn(Collection<String> values) {
+            Set<String> matchingKeys = new HashSet<>();
+            for (String value : values) {
+                matchingKeys.addAll(keysByValue.getOrDefault(value, Collections.emptySet()));
+            }
+            return matchingKeys;
+        }
+
+        /**
+         * Find the rows whose value starts with any of the given prefixes.
+         *
+         * @param prefixes  The prefixes to look for
+         *
+         * @return the keys of the matching rows
+         */
+        Set<String> findStartsWith(Collection<String> prefixes) {
+            Set<String> matchingKeys = new HashSet<>();
+            for (String prefix : prefixes) {
+                for (Map.Entry<String, Set<String>> entry : keysByValue.tailMap(prefix, true).entrySet()) {
+                    if (!entry.getKey().startsWith(prefix)) {
+                        break;
+                    }
+                    matchingKeys.addAll(entry.getValue());
+                }
+            }
+            return matchingKeys;
+        }
+
+        /**
+         * Find the rows whose value contains any of the given strings.
+         *
+         * @param substrings  The strings to look for
+         *
+         * @return the keys of the matching rows
+         */
+        Set<String> findContains(Collection<String> substrings) {
+            Set<String> matchingKeys = new HashSet<>();
+            for (String substring : substrings) {
+                for (String value : getCandidateValues(substring)) {
+                    if (value.contains(substring)) {
+                        matchingKeys.addAll(keysByValue.get(value));
+                    }
+                }
+            }
+            return matchingKeys;
+        }
+
+        /**
+         * Narrow down the values that may contain a string to those holding all of its trigrams.
+         *
+         * @param substring  The string to look for
+         *
+         * @return the values that may contain the string
+         */
+        private Collection<String> getCandidateValues(String substring) {
+            if (substring.length() < GRAM_LENGTH) {
+                return keysByValue.keySet();
+            }
+            List<Set<String>> gramValues = new ArrayList<>();
+            for (String gram : getGrams(substring)) {
+                Set<String> values = valuesByGram.get(gram);
+                if (values == null) {
+                    return Collections.emptySet();
+                }
+                gramValues.add(values);
+            }
+            gramValues.sort(Comparator.comparingInt(Set::size));
+
+            Set<String> candidates = new HashSet<>(gramValues.get(0));
+            for (Set<String> values : gramValues.subList(1, gramValues.size())) {
+                if (candidates.isEmpty()) {
+                    break;
+                }
+                candidates.retainAll(values);
+            }
+            return candidates;
+        }
+
+        /**
+         * Get the distinct substrings of a value that are indexed for contains filters.
+         *
+         * @param value  The value to split
+         *
+         * @return the value's trigrams
+         */
+        private static Set<String> getGrams(String value) {
+            Set<String> grams = new HashSet<>();
+            for (int i = 0; i + GRAM_LENGTH <= value.length(); i++) {
+                grams.add(value.substring(i, i + GRAM_LENGTH));
+            }
+            return grams;
+        }
+    }
+}
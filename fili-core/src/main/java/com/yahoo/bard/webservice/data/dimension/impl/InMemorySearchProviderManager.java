@@ -0,0 +1,34 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In memory search provider instances factory.
+ */
+public class InMemorySearchProviderManager {
+    private static Map<String, InMemorySearchProvider> inMemoryProviders = new HashMap<>();
+
+    /**
+     * Get instance pointing to a search provider. This method makes sure that there just one instance of search
+     * provider for a given dimension.
+     *
+     * @param providerName  name unique identifier for search provider instances
+     *
+     * @return The search provider instance
+     */
+    public static synchronized InMemorySearchProvider getInstance(String providerName) {
+        return inMemoryProviders.computeIfAbsent(providerName, ignored -> new InMemorySearchProvider());
+    }
+
+    /**
+     * Cleanup the existing instance.
+     *
+     * @param providerName  The name of the provider
+     */
+    public static synchronized void removeInstance(String providerName) {
+        inMemoryProviders.remove(providerName);
+    }
+}
@@ -22,11 +22,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -438,31 +441,42 @@ public class KeyValueStoreDimension implements Dimension {
 
     @Override
     public void addAllDimensionRows(Set<DimensionRow> dimensionRows) {
+        addAllDimensionRows(dimensionRows, true);
+    }
+
+    @Override
+    public void addAllDimensionRows(Set<DimensionRow> dimensionRows, boolean commitIndex) {
         Map<String, String> storeRows = new LinkedHashMap<>(dimensionRows.size());
         Map<String, Pair<DimensionRow, DimensionRow>> indexRows = new LinkedHashMap<>(dimensionRows.size());
 
+        // rowId  - key to associate a dimension row to its id
+        Map<DimensionRow, String> rowIdKeys = new LinkedHashMap<>(dimensionRows.size());
         for (DimensionRow dimensionRow : dimensionRows) {
-            try {
-                if (dimensionRow.isEmpty()) {
-                    LOG.warn("Ignoring attempt to add a dimension row with no data {}", dimensionRow);
-                    continue;
-                } else if (dimensionRow.get(getKey()) == null) {
-                    LOG.warn("Attempting to add a dimension row with a null key {}", dimensionRow);
-                    throw new IllegalArgumentException("Cannot add dimension with null key.");
-                }
+            if (dimensionRow.isEmpty()) {
+                LOG.warn("Ignoring attempt to add a dimension row with no data {}", dimensionRow);
+                continue;
+            } else if (dimensionRow.get(getKey()) == null) {
+                LOG.warn("Attempting to add a dimension row with a null key {}", dimensionRow);
+                throw new IllegalArgumentException("Cannot add dimension with null key.");
+            }
+            rowIdKeys.put(
+                    dimensionRow,
+                    DimensionStoreKeyUtils.getRowKey(getKey().getName(), dimensionRow.get(getKey()))
+            );
+        }
 
-                // rowId  - key to associate a dimension row to its id
-                String rowIdKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), dimensionRow.get(getKey()));
+        // read the stored versions of all the rows at once
+        Map<String, String> oldRows = keyValueStore.getAll(rowIdKeys.values());
 
+        for (Map.Entry<DimensionRow, String> entry : rowIdKeys.entrySet()) {
+            DimensionRow dimensionRow = entry.getKey();
+            String rowIdKey = entry.getValue();
+            try {
                 // check if the dimension row already exists in store
                 DimensionRow dimensionRowOld = null;
-                String row = keyValueStore.get(rowIdKey);
+                String row = oldRows.get(rowIdKey);
                 if (row != null) {
-                    LinkedHashMap<String, String> fieldNameValueMap = objectMapper.readValue(
-                            row,
-                            new TypeReference<LinkedHashMap<String, String>>() { }
-                    );
-                    dimensionRowOld = parseDimensionRow(fieldNameValueMap);
+                    dimensionRowOld = parseDimensionRowJson(row);
                     if (dimensionRow.equals(dimensionRowOld)) {
                         continue;
                     }
@@ -481,7 +495,54 @@ public class KeyValueStoreDimension implements Dimension {
         }
 
         keyValueStore.putAll(storeRows);
-        searchProvider.refreshIndex(indexRows);
+        searchProvider.refreshIndex(indexRows, commitIndex);
+    }
+
+    @Override
+    public void commitIndex() {
+        searchProvider.commitIndex();
+    }
+
+    /**
+     * Load a complete set of dimension rows in bulk.
+     * <p>
+     * If the search provider can rebuild its index in bulk, every row is written to the key value store without
+     * comparing it to the stored one, and the search provider builds a fresh index from the rows and swaps it in.
+     * Rows that aren't in the set then drop out of search results, though they stay in the key value store. Otherwise
+     * the rows are added as by {@link #addAllDimensionRows(Set)}.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    @Override
+    public void reloadAllDimensionRows(Set<DimensionRow> dimensionRows) {
+        if (!searchProvider.supportsIndexRebuild()) {
+            addAllDimensionRows(dimensionRows);
+            return;
+        }
+
+        Map<String, String> storeRows = new LinkedHashMap<>(dimensionRows.size());
+        List<DimensionRow> indexRows = new ArrayList<>(dimensionRows.size());
+        for (DimensionRow dimensionRow : dimensionRows) {
+            if (dimensionRow.isEmpty()) {
+                LOG.warn("Ignoring attempt to add a dimension row with no data {}", dimensionRow);
+                continue;
+            } else if (dimensionRow.get(getKey()) == null) {
+                LOG.warn("Attempting to add a dimension row with a null key {}", dimensionRow);
+                throw new IllegalArgumentException("Cannot add dimension with null key.");
+            }
+
+            String rowIdKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), dimensionRow.get(getKey()));
+            try {
+                storeRows.put(rowIdKey, objectMapper.writeValueAsString(dimensionRow));
+            } catch (IOException e) {
+                LOG.error("Exception while adding dimension row {}", e);
+                throw new RuntimeException(e);
+            }
+            indexRows.add(dimensionRow);
+        }
+
+        keyValueStore.putAll(storeRows);
+        searchProvider.rebuildIndex(indexRows);
     }
 
     @Override
@@ -510,21 +571,49 @@ public class KeyValueStoreDimension implements Dimension {
          * rowKey would be id_12345_row_key
          */
         String rowKey = DimensionStoreKeyUtils.getRowKey(getKey().getName(), value);
-        DimensionRow drByKey = null;
+        String dimRowJson = keyValueStore.get(rowKey);
+        return dimRowJson == null ? null : parseDimensionRowJson(dimRowJson);
+    }
+
+    /**
+     * Get the dimension rows for several ids, reading them from the key value store in a single operation.
+     *
+     * @param values  key values
+     *
+     * @return the rows found, by key value, in the order of the values. Values with no matching row are left out.
+     */
+    @Override
+    public Map<String, DimensionRow> findDimensionRowsByKeyValues(Collection<String> values) {
+        Map<String, String> valuesByRowKey = new LinkedHashMap<>(values.size());
+        for (String value : values) {
+            valuesByRowKey.putIfAbsent(DimensionStoreKeyUtils.getRowKey(getKey().getName(), value), value);
+        }
+
+        Map<String, DimensionRow> rows = new LinkedHashMap<>(valuesByRowKey.size());
+        keyValueStore.getAll(valuesByRowKey.keySet()).forEach(
+                (rowKey, dimRowJson) -> rows.put(valuesByRowKey.get(rowKey), parseDimensionRowJson(dimRowJson))
+        );
+        return rows;
+    }
+
+    /**
+     * Parse a dimension row serialized in the key value store.
+     *
+     * @param dimRowJson  The serialized row
+     *
+     * @return the dimension row
+     */
+    private DimensionRow parseDimensionRowJson(String dimRowJson) {
         try {
-            String dimRowJson = keyValueStore.get(rowKey);
-            if (dimRowJson != null) {
-                Map<String, String> dimensionRowMap = objectMapper.readValue(
-                        dimRowJson,
-                        new TypeReference<LinkedHashMap<String, String>>() { }
-                );
-                drByKey = parseDimensionRow(dimensionRowMap);
-            }
+            Map<String, String> dimensionRowMap = objectMapper.readValue(
+                    dimRowJson,
+                    new TypeReference<LinkedHashMap<String, String>>() { }
+            );
+            return parseDimensionRow(dimensionRowMap);
         } catch (IOException e) {
             LOG.error("Cannot map string to DimensionRow object. {}", e);
             throw new RuntimeException(e);
         }
-        return drByKey;
     }
 
 
@@ -0,0 +1,155 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import org.apache.lucene.search.ScoreDoc;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A position in the results of a Lucene query: the last hit before the start of a page.
+ * <p>
+ * A cursor is only meaningful against the index generation it was taken from, for the same query and page size, so it
+ * records all three and is ignored if any of them don't match. It is handed to clients as an opaque, url-safe string.
+ */
+public class LuceneSearchCursor {
+
+    private static final int ENCODED_SIZE = Long.BYTES + 4 * Integer.BYTES + Float.BYTES + Integer.BYTES;
+
+    private final long generation;
+    private final int queryHash;
+    private final int perPage;
+    private final int page;
+    private final ScoreDoc lastEntry;
+
+    /**
+     * Constructor.
+     *
+     * @param generation  The version of the index the cursor was taken from
+     * @param queryHash  Hash of the query the cursor belongs to
+     * @param perPage  The page size the cursor belongs to
+     * @param page  The page that starts after the last entry
+     * @param lastEntry  The last hit before the start of the page
+     */
+    public LuceneSearchCursor(long generation, int queryHash, int perPage, int page, ScoreDoc lastEntry) {
+        this.generation = generation;
+        this.queryHash = queryHash;
+        this.perPage = perPage;
+        this.page = page;
+        this.lastEntry = lastEntry;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public ScoreDoc getLastEntry() {
+        return lastEntry;
+    }
+
+    /**
+     * Check if this cursor can be used to find a page of a query on an index.
+     *
+     * @param generation  The version of the index being searched
+     * @param queryHash  Hash of the query being run
+     * @param perPage  The page size requested
+     * @param page  The page requested
+     *
+     * @return true if the cursor points at the start of the requested page
+     */
+    public boolean matches(long generation, int queryHash, int perPage, int page) {
+        return this.generation == generation &&
+                this.queryHash == queryHash &&
+                this.perPage == perPage &&
+                this.page == page;
+    }
+
+    /**
+     * Encode the cursor as an opaque url-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(ENCODED_SIZE)
+                .putLong(generation)
+                .putInt(queryHash)
+                .putInt(perPage)
+                .putInt(page)
+                .putInt(lastEntry.doc)
+                .putFloat(lastEntry.score)
+                .putInt(lastEntry.shardIndex);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+    }
+
+    /**
+     * Decode a cursor issued by {@link #encode()}.
+     *
+     * @param encoded  The encoded cursor
+     *
+     * @return the cursor, or empty if the string isn't a cursor
+     */
+    public static Optional<LuceneSearchCursor> decode(String encoded) {
+        byte[] bytes;
+        try {
+            bytes = Base64.getUrlDecoder().decode(encoded);
+        } catch (IllegalArgumentException ignored) {
+            return Optional.empty();
+        }
+        if (bytes.length != ENCODED_SIZE) {
+            return Optional.empty();
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        long generation = buffer.getLong();
+        int queryHash = buffer.getInt();
+        int perPage = buffer.getInt();
+        int page = buffer.getInt();
+        int doc = buffer.getInt();
+        float score = buffer.getFloat();
+        int shardIndex = buffer.getInt();
+        return Optional.of(
+                new LuceneSearchCursor(generation, queryHash, perPage, page, new ScoreDoc(doc, score, shardIndex))
+        );
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) { return true; }
+        if (o == null || getClass() != o.getClass()) { return false; }
+        LuceneSearchCursor that = (LuceneSearchCursor) o;
+        return generation == that.generation &&
+                queryHash == that.queryHash &&
+                perPage == that.perPage &&
+                page == that.page &&
+                isSameEntry(lastEntry, that.lastEntry);
+    }
+
+    @Override
+    public int hashCode() {
+        int entryHash = lastEntry == null ? 0 : Objects.hash(lastEntry.doc, lastEntry.score, lastEntry.shardIndex);
+        return Objects.hash(generation, queryHash, perPage, page, entryHash);
+    }
+
+    /**
+     * Check if two hits are the same, since ScoreDoc doesn't implement equals.
+     *
+     * @param entry  A hit, or null
+     * @param other  Another hit, or null
+     *
+     * @return true if both are null, or both have the same document, score and shard
+     */
+    private static boolean isSameEntry(ScoreDoc entry, ScoreDoc other) {
+        if (entry == null || other == null) {
+            return entry == other;
+        }
+        return entry.doc == other.doc &&
+                Float.compare(entry.score, other.score) == 0 &&
+                entry.shardIndex == other.shardIndex;
+    }
+}
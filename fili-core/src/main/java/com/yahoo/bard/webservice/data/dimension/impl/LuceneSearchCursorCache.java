@@ -0,0 +1,106 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * A bounded cache of recently seen page positions for Lucene queries.
+ * <p>
+ * For each (query, page size) pair the cache keeps the cursors of up to a fixed number of pages, so that a request for
+ * a page can start searching from the closest page before it that has already been located, rather than from the
+ * first page. The least recently used queries are evicted once the cache is full, and when a query holds too many
+ * cursors the ones for the lowest pages, which are the cheapest to find again, are dropped first.
+ */
+public class LuceneSearchCursorCache {
+
+    private final int maxCursorsPerQuery;
+    private final Map<String, NavigableMap<Integer, LuceneSearchCursor>> cursors;
+
+    /**
+     * Constructor.
+     *
+     * @param maxQueries  The number of distinct (query, page size) pairs to remember
+     * @param maxCursorsPerQuery  The number of page positions to remember for each of them
+     */
+    public LuceneSearchCursorCache(int maxQueries, int maxCursorsPerQuery) {
+        this.maxCursorsPerQuery = maxCursorsPerQuery;
+        this.cursors = new LinkedHashMap<String, NavigableMap<Integer, LuceneSearchCursor>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, NavigableMap<Integer, LuceneSearchCursor>> eldest) {
+                return size() > maxQueries;
+            }
+        };
+    }
+
+    /**
+     * Build the cache key for a query and page size.
+     *
+     * @param queryKey  String form of the query
+     * @param perPage  The page size
+     *
+     * @return the cache key
+     */
+    private static String key(String queryKey, int perPage) {
+        return perPage + "/" + queryKey;
+    }
+
+    /**
+     * Remember the position of a page.
+     *
+     * @param queryKey  String form of the query
+     * @param perPage  The page size
+     * @param cursor  The cursor pointing at the start of the page
+     */
+    public synchronized void put(String queryKey, int perPage, LuceneSearchCursor cursor) {
+        NavigableMap<Integer, LuceneSearchCursor> pages = cursors.computeIfAbsent(
+                key(queryKey, perPage),
+                ignored -> new TreeMap<>()
+        );
+        if (!pages.isEmpty() && pages.firstEntry().getValue().getGeneration() != cursor.getGeneration()) {
+            // The index has changed since these were taken
+            pages.clear();
+        }
+        pages.put(cursor.getPage(), cursor);
+        while (pages.size() > maxCursorsPerQuery) {
+            pages.pollFirstEntry();
+        }
+    }
+
+    /**
+     * Find the cursor for the closest page at or before the requested one.
+     *
+     * @param queryKey  String form of the query
+     * @param perPage  The page size
+     * @param page  The requested page
+     * @param generation  The version of the index being searched
+     *
+     * @return the closest cursor, or empty if no earlier page of this query has been seen on this index
+     */
+    public synchronized Optional<LuceneSearchCursor> floor(String queryKey, int perPage, int page, long generation) {
+        NavigableMap<Integer, LuceneSearchCursor> pages = cursors.get(key(queryKey, perPage));
+        if (pages == null) {
+            return Optional.empty();
+        }
+        Map.Entry<Integer, LuceneSearchCursor> entry = pages.floorEntry(page);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.getValue().getGeneration() != generation) {
+            cursors.remove(key(queryKey, perPage));
+            return Optional.empty();
+        }
+        return Optional.of(entry.getValue());
+    }
+
+    /**
+     * Forget all positions, for example because the index has been replaced.
+     */
+    public synchronized void clear() {
+        cursors.clear();
+    }
+}
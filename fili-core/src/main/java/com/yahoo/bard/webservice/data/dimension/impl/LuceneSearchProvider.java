@@ -32,6 +32,7 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
@@ -42,10 +43,12 @@ import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.PrefixQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 import org.slf4j.Logger;
@@ -59,14 +62,25 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -93,9 +107,42 @@ public class LuceneSearchProvider implements SearchProvider {
             1.2f
     );
 
+    public static final int LUCENE_CURSOR_CACHE_QUERIES = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_cursor_cache_queries"),
+            1000
+    );
+
+    public static final int LUCENE_CURSOR_CACHE_PAGES_PER_QUERY = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_cursor_cache_pages_per_query"),
+            64
+    );
+
+    public static final int LUCENE_REBUILD_THREADS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_rebuild_threads"),
+            Runtime.getRuntime().availableProcessors()
+    );
+
+    public static final double LUCENE_REBUILD_BUFFER_SIZE = SYSTEM_CONFIG.getDoubleProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_rebuild_ram_buffer_mb"),
+            512
+    );
+
+    // Store every dimension field in the index, so that search results can be built without the key value store
+    public static final boolean LUCENE_STORE_ALL_FIELDS = SYSTEM_CONFIG.getBooleanProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_store_all_fields"),
+            false
+    );
+
+    // Upper bound on the hits collected by one search while skipping ahead to a deep page
+    public static final int LUCENE_MAX_SKIP_HITS = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("lucene_max_skip_hits"),
+            100000
+    );
+
     protected Analyzer analyzer;
 
-    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Serializes writers. Readers never take it, they search whichever searcher is current when they start.
+    protected final ReentrantLock lock = new ReentrantLock();
     private final String luceneIndexPath;
 
     public static final String TOO_MANY_DOCUMENTS = "Unexpectedly large response from search provider.  Found %l hits.";
@@ -109,8 +156,22 @@ public class LuceneSearchProvider implements SearchProvider {
     private KeyValueStore keyValueStore;
     private Dimension dimension;
     private boolean luceneIndexIsHealthy;
-    protected IndexSearcher luceneIndexSearcher;
+    private volatile SearcherManager searcherManager;
+    private IndexWriter luceneIndexWriter;
+    // Bumped whenever the index is swapped out, since a new index may reuse the versions of the old one
+    private final AtomicLong indexEpoch = new AtomicLong();
+    // Serializes bulk rebuilds, which only take the write lock to swap the rebuilt index in
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+    // Rows written while a rebuild is running, which the rebuilt index may not have, or null if none is running
+    private volatile List<DimensionRow> rowsChangedDuringRebuild;
+    // Rows written to the index writer since its last commit, guarded by the write lock
+    private final List<DimensionRow> uncommittedRows = new ArrayList<>();
     private int searchTimeout;
+    private final boolean storeAllFields;
+    private final LuceneSearchCursorCache cursorCache = new LuceneSearchCursorCache(
+            LUCENE_CURSOR_CACHE_QUERIES,
+            LUCENE_CURSOR_CACHE_PAGES_PER_QUERY
+    );
 
     /**
      * Constructor.
@@ -118,13 +179,16 @@ public class LuceneSearchProvider implements SearchProvider {
      * @param luceneIndexPath  Path to the lucene index files
      * @param maxResults  Maximum number of allowed results in a page
      * @param searchTimeout  Maximum time in milliseconds that a lucene search can run
+     * @param storeAllFields  If true, store every dimension field in the index and build search results from it,
+     * rather than storing only the key and loading the rest of each row from the key value store
      */
-    public LuceneSearchProvider(String luceneIndexPath, int maxResults, int searchTimeout) {
+    public LuceneSearchProvider(String luceneIndexPath, int maxResults, int searchTimeout, boolean storeAllFields) {
         this.luceneIndexPath = luceneIndexPath;
         Utils.createParentDirectories(this.luceneIndexPath);
 
         this.maxResults = maxResults;
         this.searchTimeout = searchTimeout;
+        this.storeAllFields = storeAllFields;
 
         this.analyzer = STANDARD_LUCENE_ANALYZER;
         try {
@@ -138,58 +202,37 @@ public class LuceneSearchProvider implements SearchProvider {
     }
 
     /**
-     * Constructor.  The search timeout is initialized to the default (or configured) value.
+     * Constructor.  Whether all fields are stored in the index is initialized to the default (or configured) value.
      *
      * @param luceneIndexPath  Path to the lucene index files
      * @param maxResults  Maximum number of allowed results in a page
+     * @param searchTimeout  Maximum time in milliseconds that a lucene search can run
      */
-    public LuceneSearchProvider(String luceneIndexPath, int maxResults) {
-        this(luceneIndexPath, maxResults, LUCENE_SEARCH_TIMEOUT_MS);
-    }
-
-    /**
-     * Attempts to acquire the read lock. If waiting for the read lock times out or is interrupted an exception is
-     * thrown and the query is failed. Timeout is equivalent to the timeout on a search.
-     */
-    protected void readLock() {
-        try {
-            if (!lock.readLock().tryLock(searchTimeout, TimeUnit.MILLISECONDS)) {
-                String msg = String.format(
-                        ErrorMessageFormat.LUCENE_LOCK_TIMEOUT.getMessageFormat(),
-                        getDimension().getApiName()
-                );
-
-                LOG.error(msg);
-                throw new IllegalStateException(msg);
-            }
-        } catch (InterruptedException e) {
-            String msg = String.format(
-                    ErrorMessageFormat.LUCENE_LOCK_INTERRUPTED.getMessageFormat(),
-                    getDimension()
-            );
-            LOG.error(msg);
-            throw new IllegalStateException(msg, e);
-        }
+    public LuceneSearchProvider(String luceneIndexPath, int maxResults, int searchTimeout) {
+        this(luceneIndexPath, maxResults, searchTimeout, LUCENE_STORE_ALL_FIELDS);
     }
 
     /**
-     * Unlocks the held read lock for this thread.
+     * Constructor.  The search timeout is initialized to the default (or configured) value.
+     *
+     * @param luceneIndexPath  Path to the lucene index files
+     * @param maxResults  Maximum number of allowed results in a page
      */
-    protected void readUnlock() {
-        lock.readLock().unlock();
+    public LuceneSearchProvider(String luceneIndexPath, int maxResults) {
+        this(luceneIndexPath, maxResults, LUCENE_SEARCH_TIMEOUT_MS);
     }
 
     /**
      * Attempts to acquire the write lock. If waiting for the write lock times out or is interrupted an exception is
-     * thrown and the query is failed. Timeout is equivalent to the timeout on a search multiplied by a constant
+     * thrown and the write is failed. Timeout is equivalent to the timeout on a search multiplied by a constant
      * write timeout multiplier.
+     * <p>
+     * Only writers to the index contend for this lock, searches run against a point in time view of the index and
+     * never wait on it.
      */
     protected void writeLock() {
         try {
-            if (!lock.writeLock().tryLock(
-                    (int) (searchTimeout * WRITE_LOCK_TIMEOUT_MULTIPLIER),
-                    TimeUnit.MILLISECONDS)
-            ) {
+            if (!lock.tryLock((int) (searchTimeout * WRITE_LOCK_TIMEOUT_MULTIPLIER), TimeUnit.MILLISECONDS)) {
                 String msg = String.format(
                         ErrorMessageFormat.LUCENE_LOCK_TIMEOUT.getMessageFormat(),
                         getDimension().getApiName()
@@ -213,66 +256,190 @@ public class LuceneSearchProvider implements SearchProvider {
      * Unlocks the write lock for this thread.
      */
     protected void writeUnlock() {
-        lock.writeLock().unlock();
+        lock.unlock();
     }
 
     /**
-     * Initializes the `luceneIndexSearcher` if it has not been initialized already.
+     * Initializes the searcher manager if it has not been initialized already.
      * <p>
      * Note that the index searcher cannot be built at construction time, because it needs the dimension and
      * associated key-value store. However, because of a circular dependency between the `SearchProvider` and the
      * `Dimension` classes, we cannot provide the dimension and key-value store to the search provider at
      * construction time.
+     * <p>
+     * This method will attempt to acquire and release a write lock the first time through.
      */
     protected void initializeIndexSearcher() {
-        if (luceneIndexSearcher == null) {
-            reopenIndexSearcher(true);
+        if (searcherManager == null) {
+            writeLock();
+            try {
+                if (searcherManager == null) {
+                    openSearcherManager();
+                }
+            } finally {
+                writeUnlock();
+            }
         }
     }
 
     /**
-     * Re-open the Index Searcher, opening it for the first time if it's never been opened.
+     * Open a searcher manager reading the index directory, writing an empty index first if there isn't one.
      * <p>
-     * This method will attempt to acquire and release a write lock.
-     *
-     * @param firstTimeThrough  If true, will write an empty index and will then re-open the searcher
+     * The index writer is only opened once something is written, so that providers which only ever read an index
+     * don't hold Lucene's lock on its directory. The caller must hold the write lock.
      */
-    private void reopenIndexSearcher(boolean firstTimeThrough) {
-        writeLock();
+    private void openSearcherManager() {
         try {
-            // Close the current reader if open
-            if (luceneIndexSearcher != null) {
-                luceneIndexSearcher.getIndexReader().close();
-            }
-
-            // Open a new IndexSearcher on a new DirectoryReader
-            luceneIndexSearcher = new IndexSearcher(DirectoryReader.open(luceneDirectory));
-        } catch (IOException reopenException) {
-            // If there is no index file, this is expected. On the 1st time through, write an empty index and try again
-            if (firstTimeThrough) {
+            if (!DirectoryReader.indexExists(luceneDirectory)) {
                 IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer);
                 try (IndexWriter ignored = new IndexWriter(luceneDirectory, indexWriterConfig)) {
                     // Closed automatically by the try-resource block
-                } catch (IOException emptyIndexWriteException) {
-                    // We can't move past this, so puke
-                    luceneIndexIsHealthy = false;
-                    String message = String.format("Unable to write empty index to %s:", luceneIndexPath);
-                    LOG.error(message, emptyIndexWriteException);
-                    throw new RuntimeException(emptyIndexWriteException);
                 }
-                reopenIndexSearcher(false);
-            } else {
-                // We've been here before, so puke
-                luceneIndexIsHealthy = false;
-                String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
-                LOG.error(message, reopenException);
-                throw new RuntimeException(reopenException);
             }
+            searcherManager = new SearcherManager(luceneDirectory, null);
+        } catch (IOException e) {
+            luceneIndexIsHealthy = false;
+            String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
+            LOG.error(message, e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Get the long lived writer for the index, opening it if this is the first write.
+     * <p>
+     * Once the writer is open, searchers are refreshed from it directly rather than by re-reading the directory, so
+     * that changes are visible as soon as they have been flushed. The caller must hold the write lock.
+     *
+     * @return the index writer
+     *
+     * @throws IOException if the writer or the searchers on it can't be opened
+     */
+    private IndexWriter getIndexWriter() throws IOException {
+        if (luceneIndexWriter == null) {
+            initializeIndexSearcher();
+            IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer)
+                    .setRAMBufferSizeMB(BUFFER_SIZE)
+                    .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig);
+            SearcherManager directoryManager = searcherManager;
+            searcherManager = new SearcherManager(writer, true, false, null);
+            luceneIndexWriter = writer;
+            // Searches already running on the old manager keep their searchers until they release them
+            directoryManager.close();
+        }
+        return luceneIndexWriter;
+    }
+
+    /**
+     * Commit the changes made through the index writer and make them visible to new searches.
+     * <p>
+     * Searches that are already running carry on against the searcher they started with. The caller must hold the
+     * write lock.
+     *
+     * @throws IOException if the changes can't be committed or the searchers can't be refreshed
+     */
+    private void commitAndRefresh() throws IOException {
+        luceneIndexWriter.commit();
+        uncommittedRows.clear();
+        searcherManager.maybeRefreshBlocking();
+    }
+
+    /**
+     * Close the searcher manager and index writer, releasing Lucene's lock on the index directory.
+     * <p>
+     * The caller must hold the write lock. Searches that are already running finish on the searcher they hold.
+     */
+    private void closeIndex() {
+        try {
+            if (searcherManager != null) {
+                searcherManager.close();
+            }
+            if (luceneIndexWriter != null) {
+                luceneIndexWriter.close();
+            }
+        } catch (IOException e) {
+            LOG.error("Unable to close Lucene index at {}", luceneIndexPath, e);
+            throw new RuntimeException(e);
+        } finally {
+            luceneIndexWriter = null;
+            uncommittedRows.clear();
+            indexEpoch.incrementAndGet();
+            cursorCache.clear();
+        }
+    }
+
+    /**
+     * Close the index, releasing the files and directory lock held by this search provider.
+     * <p>
+     * The index is reopened if the provider is used again.
+     */
+    public void close() {
+        writeLock();
+        try {
+            closeIndex();
+            searcherManager = null;
         } finally {
             writeUnlock();
         }
     }
 
+    /**
+     * Get a searcher on the latest view of the index.
+     * <p>
+     * Searchers are reference counted and never block on writes to the index, every searcher acquired must be passed
+     * to {@link #releaseSearcher(IndexSearcher)} once the search is done. If the index is being replaced, this waits
+     * for the replacement to be in place.
+     *
+     * @return the searcher
+     */
+    protected IndexSearcher acquireSearcher() {
+        while (true) {
+            initializeIndexSearcher();
+            SearcherManager manager = searcherManager;
+            if (manager == null) {
+                // Closed since it was initialized, so open it again
+                continue;
+            }
+            try {
+                return manager.acquire();
+            } catch (AlreadyClosedException e) {
+                if (searcherManager == manager) {
+                    // The index is being swapped out under the write lock, so wait for the new one
+                    writeLock();
+                    writeUnlock();
+                    if (searcherManager == manager) {
+                        throw e;
+                    }
+                }
+            } catch (IOException e) {
+                String message = String.format("Unable to open index searcher for %s:", luceneIndexPath);
+                LOG.error(message, e);
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Release a searcher acquired from {@link #acquireSearcher()}.
+     *
+     * @param searcher  The searcher to release
+     */
+    protected void releaseSearcher(IndexSearcher searcher) {
+        SearcherManager manager = searcherManager;
+        try {
+            if (manager != null) {
+                // Releasing only drops the searcher's reference, so any manager can release it, even a closed one
+                manager.release(searcher);
+            } else {
+                // The index is closed, and the searcher outlived its manager
+                searcher.getIndexReader().decRef();
+            }
+        } catch (IOException e) {
+            LOG.warn("Unable to release Lucene index searcher for {}", luceneIndexPath, e);
+        }
+    }
+
     /**
      * Getter for the search provider's dimension.
      *
@@ -348,54 +515,116 @@ public class LuceneSearchProvider implements SearchProvider {
 
     @Override
     public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows) {
+        refreshIndex(changedRows, true);
+    }
+
+    /**
+     * Write changed rows to the index, and commit them unless the commit is left to a later call.
+     * <p>
+     * Uncommitted rows aren't visible to searches, and aren't counted in the cardinality, until they're committed.
+     *
+     * @param changedRows  Collection of newRow / oldRow pairs keyed by rowId to update the index with
+     * @param commit  Whether to commit the changes, along with any left uncommitted by earlier calls
+     */
+    @Override
+    public void refreshIndex(Map<String, Pair<DimensionRow, DimensionRow>> changedRows, boolean commit) {
         // Make a single Document instance to hold field data being updated to Lucene
         // Creating documents is costly and so Document will be reused for each record being processed due to
         // performance best practices.
-        Document doc = new Document();
         Map<DimensionField, Field> dimFieldToLuceneField = new HashMap<>(dimension.getDimensionFields().size());
+        Document doc = newDimensionRowDocument(dimFieldToLuceneField);
 
-        // Create the document fields for this dimension and add them to the document
-        for (DimensionField dimensionField : dimension.getDimensionFields()) {
-            Field luceneField = new StringField(
-                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
-                    "",
-                    dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
-            );
-
-            // Store the lucene field in the doc and in our lookup map
-            dimFieldToLuceneField.put(dimensionField, luceneField);
-            doc.add(luceneField);
-        }
-
-        // Write the rows to the document
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
+        // Write the rows to the document. Searches keep running against the previous view of the index meanwhile.
         writeLock();
         try {
-            try (IndexWriter luceneIndexWriter = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+            try {
+                IndexWriter writer = getIndexWriter();
                 // Update the document fields for each row and update the document
                 for (String rowId : changedRows.keySet()) {
                     // Get the new row from the pair
                     DimensionRow newDimensionRow = changedRows.get(rowId).getKey();
 
                     // Update the index
-                    updateDimensionRow(doc, dimFieldToLuceneField, luceneIndexWriter, newDimensionRow);
+                    updateDimensionRow(doc, dimFieldToLuceneField, writer, newDimensionRow);
+
+                    // Remember the row in case a rebuilt index built without it is about to be swapped in
+                    uncommittedRows.add(newDimensionRow);
+                    if (rowsChangedDuringRebuild != null) {
+                        rowsChangedDuringRebuild.add(newDimensionRow);
+                    }
                 }
 
+                if (!commit) {
+                    return;
+                }
+                // Commit all the changes to the index and make them visible to new searches
+                commitAndRefresh();
             } catch (IOException e) {
                 luceneIndexIsHealthy = false;
                 LOG.error("Failed to refresh index for dimension rows", e);
                 throw new RuntimeException(e);
-                // Commit all the changes to the index (on .close, called by try-resources) and refresh the cardinality
             }
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
             refreshCardinality();
         } finally {
             writeUnlock();
         }
     }
 
+    @Override
+    public void commitIndex() {
+        writeLock();
+        try {
+            try {
+                getIndexWriter();
+                commitAndRefresh();
+            } catch (IOException e) {
+                luceneIndexIsHealthy = false;
+                LOG.error("Failed to commit index for dimension rows", e);
+                throw new RuntimeException(e);
+            }
+            refreshCardinality();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * Make a document with a field for each dimension field, to be reused for every row written to the index.
+     *
+     * @param fieldMap  Map to fill with the document's field for each dimension field
+     *
+     * @return the document
+     */
+    private Document newDimensionRowDocument(Map<DimensionField, Field> fieldMap) {
+        Document doc = new Document();
+
+        // Create the document fields for this dimension and add them to the document
+        for (DimensionField dimensionField : dimension.getDimensionFields()) {
+            Field luceneField = new StringField(
+                    DimensionStoreKeyUtils.getColumnKey(dimensionField.getName()),
+                    "",
+                    storeAllFields || dimensionField.equals(dimension.getKey()) ? Field.Store.YES : Field.Store.NO
+            );
+
+            // Store the lucene field in the doc and in our lookup map
+            fieldMap.put(dimensionField, luceneField);
+            doc.add(luceneField);
+        }
+        return doc;
+    }
+
+    /**
+     * Set the fields of a document to the values of a dimension row.
+     *
+     * @param fieldMap  Mapping of DimensionFields to the Document's fields
+     * @param row  Row to take the values from
+     */
+    private void setDocumentFields(Map<DimensionField, Field> fieldMap, DimensionRow row) {
+        for (DimensionField field : dimension.getDimensionFields()) {
+            fieldMap.get(field).setStringValue(row.getOrDefault(field, ""));
+        }
+    }
+
     /**
      * Update the dimension row in the index.
      *
@@ -413,13 +642,7 @@ public class LuceneSearchProvider implements SearchProvider {
             DimensionRow newRow
     ) throws IOException {
         // Update the document fields with each field from the new dimension row
-        for (DimensionField field : dimension.getDimensionFields()) {
-            // Get the field to update from the lookup map
-            Field fieldToUpdate = fieldMap.get(field);
-
-            // Set field value to updated value
-            fieldToUpdate.setStringValue(newRow.getOrDefault(field, ""));
-        }
+        setDocumentFields(fieldMap, newRow);
 
         // Build the term to delete the old document by the key value (which should be unique)
         Term keyTerm = new Term(fieldMap.get(dimension.getKey()).name(), newRow.getOrDefault(dimension.getKey(), ""));
@@ -428,6 +651,183 @@ public class LuceneSearchProvider implements SearchProvider {
         writer.updateDocument(keyTerm, luceneDimensionRowDoc);
     }
 
+    @Override
+    public boolean supportsIndexRebuild() {
+        return true;
+    }
+
+    /**
+     * Replaces the index with a new one built in bulk from the given rows.
+     * <p>
+     * The new index is built next to the live one by several threads sharing one index writer with a large RAM
+     * buffer, committed once and merged down to a single segment. Meanwhile searches and incremental updates carry on
+     * against the live index. The new index is then copied into the live index in place of its documents and
+     * committed, so searches switch from the old contents to the new ones in a single refresh with no downtime. Rows
+     * updated incrementally while the new index was being built, or written but not yet committed when it started,
+     * are written again on top of it.
+     *
+     * @param dimensionRows  All the rows of the dimension
+     */
+    @Override
+    public void rebuildIndex(Collection<DimensionRow> dimensionRows) {
+        rebuildIndex(() -> dimensionRows);
+    }
+
+    /**
+     * Replaces the index with a new one built in bulk from the rows currently in it.
+     * <p>
+     * The rows are read from the committed index once changes are being tracked, so rows updated while they're being
+     * read are written again on top of the new index.
+     */
+    @Override
+    public void rebuildIndex() {
+        rebuildIndex(this::findAllDimensionRows);
+    }
+
+    /**
+     * Replaces the index with a new one built in bulk from the rows supplied once changes to the rows are being
+     * tracked.
+     *
+     * @param rowSupplier  Supplies all the rows of the dimension
+     */
+    private void rebuildIndex(Supplier<Collection<DimensionRow>> rowSupplier) {
+        rebuildLock.lock();
+        Path oldLuceneIndexPath = Paths.get(luceneIndexPath);
+        String rebuildDir = oldLuceneIndexPath.resolveSibling(oldLuceneIndexPath.getFileName() + "_rebuild")
+                .toString();
+        try {
+            long start = System.currentTimeMillis();
+            // Uncommitted rows aren't in the committed index the rows may be read from, and the swap drops them
+            writeLock();
+            try {
+                rowsChangedDuringRebuild = Collections.synchronizedList(new ArrayList<>(uncommittedRows));
+            } finally {
+                writeUnlock();
+            }
+            Collection<DimensionRow> dimensionRows = rowSupplier.get();
+
+            // Clear out anything left behind by a rebuild that didn't finish
+            deleteDir(rebuildDir);
+            try (Directory rebuildDirectory = new MMapDirectory(Paths.get(rebuildDir))) {
+                int rows = buildIndex(rebuildDirectory, dimensionRows);
+                LOG.debug(
+                        "Built Lucene index with {} rows for dimension {} in {} ms",
+                        rows,
+                        dimension.getApiName(),
+                        System.currentTimeMillis() - start
+                );
+                swapInIndex(rebuildDirectory);
+            } catch (IOException e) {
+                String message = String.format("Failed to rebuild Lucene index for dimension %s", dimension);
+                LOG.error(message, e);
+                throw new RuntimeException(message, e);
+            }
+            LOG.info(
+                    "Rebuilt Lucene index for dimension {} in {} ms",
+                    dimension.getApiName(),
+                    System.currentTimeMillis() - start
+            );
+        } finally {
+            rowsChangedDuringRebuild = null;
+            rebuildLock.unlock();
+            deleteDir(rebuildDir);
+        }
+    }
+
+    /**
+     * Write a fresh index of the given rows to a directory.
+     * <p>
+     * Rows are deduplicated by key, the last one winning, as they would be by updating the live index.
+     *
+     * @param directory  The empty directory to write the index to
+     * @param dimensionRows  The rows to index
+     *
+     * @return the number of documents in the index
+     *
+     * @throws IOException if the index can't be written
+     */
+    private int buildIndex(Directory directory, Collection<DimensionRow> dimensionRows) throws IOException {
+        Map<String, DimensionRow> rowsByKey = new LinkedHashMap<>(dimensionRows.size());
+        for (DimensionRow row : dimensionRows) {
+            rowsByKey.put(row.getOrDefault(dimension.getKey(), ""), row);
+        }
+        List<DimensionRow> rows = new ArrayList<>(rowsByKey.values());
+
+        int threads = Math.max(1, Math.min(LUCENE_REBUILD_THREADS, rows.size()));
+        int rowsPerThread = (rows.size() + threads - 1) / threads;
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE)
+                .setRAMBufferSizeMB(LUCENE_REBUILD_BUFFER_SIZE);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (IndexWriter writer = new IndexWriter(directory, indexWriterConfig)) {
+            List<Future<?>> writes = new ArrayList<>(threads);
+            for (int from = 0; from < rows.size(); from += rowsPerThread) {
+                List<DimensionRow> slice = rows.subList(from, Math.min(from + rowsPerThread, rows.size()));
+                writes.add(executor.submit(() -> {
+                    Map<DimensionField, Field> fieldMap = new HashMap<>(dimension.getDimensionFields().size());
+                    Document doc = newDimensionRowDocument(fieldMap);
+                    for (DimensionRow row : slice) {
+                        setDocumentFields(fieldMap, row);
+                        writer.addDocument(doc);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> write : writes) {
+                write.get();
+            }
+
+            writer.forceMerge(1);
+            writer.commit();
+            return writer.numDocs();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Replace the documents of the live index with those of another index, in one commit.
+     * <p>
+     * Searches see either the old documents or the new ones, since searchers are only refreshed once the swap has
+     * been committed. If the swap fails, the live index is rolled back to its last commit.
+     *
+     * @param newIndex  The directory holding the index to swap in
+     *
+     * @throws IOException if the index can't be swapped in
+     */
+    private void swapInIndex(Directory newIndex) throws IOException {
+        writeLock();
+        try {
+            IndexWriter writer = getIndexWriter();
+            try {
+                writer.deleteAll();
+                writer.addIndexes(newIndex);
+
+                Map<DimensionField, Field> fieldMap = new HashMap<>(dimension.getDimensionFields().size());
+                Document doc = newDimensionRowDocument(fieldMap);
+                for (DimensionRow row : rowsChangedDuringRebuild) {
+                    updateDimensionRow(doc, fieldMap, writer, row);
+                }
+
+                commitAndRefresh();
+            } catch (IOException | RuntimeException e) {
+                // Throw away the half done swap, the next write opens a new writer on the last commit
+                luceneIndexWriter = null;
+                uncommittedRows.clear();
+                writer.rollback();
+                throw e;
+            }
+            refreshCardinality();
+        } finally {
+            writeUnlock();
+        }
+    }
+
     @Override
     public void replaceIndex(String newLuceneIndexPathString) {
         LOG.debug(
@@ -439,6 +839,9 @@ public class LuceneSearchProvider implements SearchProvider {
 
         writeLock();
         try {
+            // Let go of the old index files, searches already running on them finish on the searcher they hold
+            closeIndex();
+
             Path oldLuceneIndexPath = Paths.get(luceneIndexPath);
             String tempDir = oldLuceneIndexPath.resolveSibling(oldLuceneIndexPath.getFileName() + "_old").toString();
 
@@ -457,7 +860,7 @@ public class LuceneSearchProvider implements SearchProvider {
             LOG.trace("Deleting old Lucene indexes in {} ...", tempDir);
             deleteDir(tempDir);
 
-            reopenIndexSearcher(false);
+            openSearcherManager();
         } finally {
             writeUnlock();
         }
@@ -535,10 +938,10 @@ public class LuceneSearchProvider implements SearchProvider {
     @Override
     public void clearDimension() {
         Set<DimensionRow> dimensionRows = findAllDimensionRows();
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(analyzer).setRAMBufferSizeMB(BUFFER_SIZE);
         writeLock();
         try {
-            try (IndexWriter writer = new IndexWriter(luceneDirectory, indexWriterConfig)) {
+            try {
+                IndexWriter writer = getIndexWriter();
                 //Remove all dimension data from the store.
                 String rowId = dimension.getKey().getName();
                 dimensionRows.stream()
@@ -557,15 +960,11 @@ public class LuceneSearchProvider implements SearchProvider {
 
                 //In addition to clearing the keyValueStore, we also need to delete all of Lucene's segment files.
                 writer.deleteAll();
-                writer.commit();
+                commitAndRefresh();
             } catch (IOException e) {
                 LOG.error(ErrorMessageFormat.FAIL_TO_WIPTE_LUCENE_INDEX_DIR.format(luceneDirectory));
                 throw new RuntimeException(e);
             }
-
-            //This must be outside the try-resources block because it may _also_ need to open an IndexWriter, and
-            //opening an IndexWriter involves taking a write lock on lucene, of which there can only be one at a time.
-            reopenIndexSearcher(true);
             refreshCardinality();
         } finally {
             writeUnlock();
@@ -575,16 +974,15 @@ public class LuceneSearchProvider implements SearchProvider {
     /**
      * Update the cardinality count.
      * <p>
-     * Note that this method acquires a read lock to query the lucene index for the number of documents.
+     * Note that this method acquires a searcher to query the lucene index for the number of documents.
      */
     private void refreshCardinality() {
         int numDocs;
-        initializeIndexSearcher();
-        readLock();
+        IndexSearcher searcher = acquireSearcher();
         try {
-            numDocs = luceneIndexSearcher.getIndexReader().numDocs();
+            numDocs = searcher.getIndexReader().numDocs();
         } finally {
-            readUnlock();
+            releaseSearcher(searcher);
         }
         keyValueStore.put(
                 DimensionStoreKeyUtils.getCardinalityKey(),
@@ -766,13 +1164,17 @@ public class LuceneSearchProvider implements SearchProvider {
 
     /**
      * Returns the desired page of dimension rows found by the specified query with the relevant metadata.
+     * <p>
+     * The page is located from the cursor in the pagination parameters if it is still valid, otherwise from the
+     * closest earlier page of the same query that has been served recently, otherwise from the start of the results.
+     * The cursor for the following page is returned with the results and remembered for later requests.
      *
      * @param query  The Lucene query used to locate the desired DimensionRows
      * @param paginationParameters  The parameters defining the pagination (i.e. the number of rows per page, and the
      * desired page)
      * <p>
      * Note that this method _may_ need to acquire and release a write lock if the index searcher needs to be
-     * initialized, and it later acquires and released a read lock when querying for dimension data from Lucene.
+     * initialized, and it later acquires and releases a searcher when querying for dimension data from Lucene.
      *
      * @return The desired page of dimension rows that satisfy the given query
      *
@@ -780,81 +1182,344 @@ public class LuceneSearchProvider implements SearchProvider {
      */
      protected Pagination<DimensionRow> getResultsPage(Query query, PaginationParameters paginationParameters)
             throws PageNotFoundException {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            return getResultsPage(searcher, query, paginationParameters);
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Returns the desired page of dimension rows found by the specified query, searching with a searcher the caller
+     * has already acquired.
+     *
+     * @param searcher  The searcher to search with, which the caller releases
+     * @param query  The Lucene query used to locate the desired DimensionRows
+     * @param paginationParameters  The parameters defining the pagination (i.e. the number of rows per page, and the
+     * desired page)
+     *
+     * @return The desired page of dimension rows that satisfy the given query
+     *
+     * @throws PageNotFoundException if the page requested is past the last page of results
+     */
+    protected Pagination<DimensionRow> getResultsPage(
+            IndexSearcher searcher,
+            Query query,
+            PaginationParameters paginationParameters
+    ) throws PageNotFoundException {
         int perPage = paginationParameters.getPerPage();
         validatePerPage(perPage);
 
-        TreeSet<DimensionRow> filteredDimRows;
+        List<DimensionRow> filteredDimRows;
         int documentCount;
-        initializeIndexSearcher();
+        String nextCursor;
         LOG.trace("Lucene Query {}", query);
 
-        readLock();
-        try {
-            ScoreDoc[] hits;
-            try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
-                TopDocs hitDocs = getPageOfData(
-                        luceneIndexSearcher,
-                        null,
+        ScoreDoc[] hits;
+        try (TimedPhase timer = RequestLog.startTiming("QueryingLucene")) {
+            long generation = getIndexGeneration(searcher);
+            String queryKey = query.toString();
+
+            TopDocs hitDocs;
+            int requestedPageNumber;
+            if (paginationParameters.isLastPage()) {
+                // The number of the last page depends on the number of hits, so count them on the first page
+                TopDocs firstPage = getPageOfData(searcher, null, query, perPage);
+                requestedPageNumber = paginationParameters.getPage(getDocumentCount(firstPage));
+                hitDocs = requestedPageNumber == 1 ?
+                        firstPage :
+                        seekPage(
+                                searcher,
+                                query,
+                                queryKey,
+                                generation,
+                                perPage,
+                                requestedPageNumber,
+                                Optional.empty()
+                        );
+            } else {
+                requestedPageNumber = paginationParameters.getPage(0);
+                hitDocs = seekPage(
+                        searcher,
                         query,
-                        perPage
+                        queryKey,
+                        generation,
+                        perPage,
+                        requestedPageNumber,
+                        paginationParameters.getCursor()
                 );
-                hits = hitDocs.scoreDocs;
-                // The change to supprt long document sizes is incompletely supported in Lucene
-                // Since we can't request up to long documents we'll only expect to receive up to Integer.MAX_VALUE
-                // responses, and throw an error if we exceed that.
-                if (hitDocs.totalHits > Integer.MAX_VALUE) {
-                    String message = String.format(TOO_MANY_DOCUMENTS, hitDocs.totalHits);
-                    RowLimitReachedException exception = new RowLimitReachedException(message);
-                    LOG.error(exception.getMessage(), exception);
-                    throw exception;
-                }
-                documentCount = (int) hitDocs.totalHits;
+            }
+            hits = hitDocs.scoreDocs;
+            documentCount = getDocumentCount(hitDocs);
 
-                int requestedPageNumber = paginationParameters.getPage(documentCount);
-                if (hits.length == 0) {
-                    if (requestedPageNumber == 1) {
-                        return new SinglePagePagination<>(Collections.emptyList(), paginationParameters, 0);
-                    }
-                    throw new PageNotFoundException(requestedPageNumber, perPage, 0);
-                }
-                for (int currentPage = 1; currentPage < requestedPageNumber; currentPage++) {
-                    ScoreDoc lastEntry = hits[hits.length - 1];
-                    hits = getPageOfData(luceneIndexSearcher, lastEntry, query, perPage).scoreDocs;
-                    if (hits.length == 0) {
-                        throw new PageNotFoundException(requestedPageNumber, perPage, 0);
-                    }
+            if (hits.length == 0) {
+                if (requestedPageNumber == 1) {
+                    return new SinglePagePagination<>(Collections.emptyList(), paginationParameters, 0);
                 }
+                throw new PageNotFoundException(requestedPageNumber, perPage, 0);
             }
 
-            // convert hits to dimension rows
-            try (TimedPhase timer = RequestLog.startTiming("LuceneHydratingDimensionRows")) {
-                String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
-                filteredDimRows = Arrays.stream(hits)
-                        .map(
-                                hit -> {
-                                    try {
-                                        return luceneIndexSearcher.doc(hit.doc);
-                                    } catch (IOException e) {
-                                        LOG.error("Unable to convert hit " + hit);
-                                        throw new RuntimeException(e);
-                                    }
-                                }
-                        )
-                        .map(document -> document.get(idKey))
-                        .map(dimension::findDimensionRowByKeyValue)
-                        .filter(it -> it != null)
-                        .collect(Collectors.toCollection(TreeSet::new));
-            }
-        } finally {
-            readUnlock();
+            LuceneSearchCursor cursor = new LuceneSearchCursor(
+                    generation,
+                    queryKey.hashCode(),
+                    perPage,
+                    requestedPageNumber + 1,
+                    hits[hits.length - 1]
+            );
+            cursorCache.put(queryKey, perPage, cursor);
+            nextCursor = cursor.encode();
+        }
+
+        // convert hits to dimension rows
+        try (TimedPhase timer = RequestLog.startTiming("LuceneHydratingDimensionRows")) {
+            filteredDimRows = hydrateDimensionRows(searcher, hits);
         }
         return new SinglePagePagination<>(
-                Collections.unmodifiableList(filteredDimRows.stream().collect(Collectors.toList())),
+                Collections.unmodifiableList(filteredDimRows),
                 paginationParameters,
-                documentCount
+                documentCount,
+                nextCursor
         );
     }
 
+    /**
+     * Build the dimension rows for a page of hits.
+     * <p>
+     * If all fields are stored in the index, each row is built from its stored fields and the rows are returned in the
+     * order of the hits, which is the order the pages of the query are cut from. Documents indexed before all fields
+     * were stored, and all documents when only the key is stored, are instead looked up in the dimension by key, and
+     * the page is sorted.
+     *
+     * @param searcher  The searcher the hits were found with
+     * @param hits  The hits
+     *
+     * @return the dimension rows for the hits
+     */
+    private List<DimensionRow> hydrateDimensionRows(IndexSearcher searcher, ScoreDoc[] hits) {
+        String idKey = DimensionStoreKeyUtils.getColumnKey(dimension.getKey().getName());
+        if (!storeAllFields) {
+            List<String> keys = Arrays.stream(hits)
+                    .map(hit -> getDocument(searcher, hit, Collections.singleton(idKey)))
+                    .map(document -> document.get(idKey))
+                    .collect(Collectors.toList());
+            return new ArrayList<>(new TreeSet<>(findDimensionRows(keys).values()));
+        }
+
+        Map<String, DimensionField> fieldsByColumn = new LinkedHashMap<>();
+        for (DimensionField field : dimension.getDimensionFields()) {
+            fieldsByColumn.put(DimensionStoreKeyUtils.getColumnKey(field.getName()), field);
+        }
+        // Rows of documents missing stored fields are read from the key value store, in one batch
+        List<Object> rowsOrKeys = new ArrayList<>(hits.length);
+        List<String> missingKeys = new ArrayList<>();
+        for (ScoreDoc hit : hits) {
+            Document document = getDocument(searcher, hit, fieldsByColumn.keySet());
+            Map<DimensionField, String> fieldValues = new LinkedHashMap<>(fieldsByColumn.size());
+            for (Map.Entry<String, DimensionField> column : fieldsByColumn.entrySet()) {
+                String value = document.get(column.getKey());
+                if (value == null) {
+                    break;
+                }
+                fieldValues.put(column.getValue(), value);
+            }
+            if (fieldValues.size() == fieldsByColumn.size()) {
+                rowsOrKeys.add(new DimensionRow(dimension.getKey(), fieldValues));
+            } else {
+                rowsOrKeys.add(document.get(idKey));
+                missingKeys.add(document.get(idKey));
+            }
+        }
+        Map<String, DimensionRow> missingRows = findDimensionRows(missingKeys);
+
+        List<DimensionRow> rows = new ArrayList<>(hits.length);
+        for (Object rowOrKey : rowsOrKeys) {
+            DimensionRow row = rowOrKey instanceof DimensionRow ?
+                    (DimensionRow) rowOrKey :
+                    missingRows.get(rowOrKey);
+            if (row != null) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Read the rows of some dimension keys from the dimension in one batch.
+     * <p>
+     * Dimensions which find no rows in a batch are read a key at a time instead, since not every dimension reads its
+     * rows in batches.
+     *
+     * @param keys  The key values of the rows
+     *
+     * @return the rows found, by key value
+     */
+    private Map<String, DimensionRow> findDimensionRows(Collection<String> keys) {
+        if (keys.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<String, DimensionRow> rows = dimension.findDimensionRowsByKeyValues(keys);
+        if (rows != null && !rows.isEmpty()) {
+            return rows;
+        }
+        Map<String, DimensionRow> rowsByKey = new HashMap<>();
+        for (String key : keys) {
+            DimensionRow row = dimension.findDimensionRowByKeyValue(key);
+            if (row != null) {
+                rowsByKey.put(key, row);
+            }
+        }
+        return rowsByKey;
+    }
+
+    /**
+     * Load the stored fields of a hit.
+     *
+     * @param searcher  The searcher the hit was found with
+     * @param hit  The hit
+     * @param fields  The names of the stored fields to load
+     *
+     * @return the document holding the stored fields
+     */
+    private Document getDocument(IndexSearcher searcher, ScoreDoc hit, Set<String> fields) {
+        try {
+            return searcher.doc(hit.doc, fields);
+        } catch (IOException e) {
+            LOG.error("Unable to convert hit " + hit);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Find the hits on the requested page of a query.
+     * <p>
+     * Rather than fetching every page before the requested one, the search starts from the best known position and
+     * collects all the hits up to the end of the requested page in as few searches as the skip limit allows.
+     * Positions passed on the way are remembered for later requests.
+     *
+     * @param searcher  The searcher to run the query with
+     * @param query  The Lucene query used to locate the desired dimension metadata
+     * @param queryKey  String form of the query, used to key remembered positions
+     * @param generation  The version of the index being searched
+     * @param perPage  The number of entries per page
+     * @param page  The requested page
+     * @param clientCursor  The cursor the client supplied for the requested page, if any
+     *
+     * @return The hits on the requested page, along with the total number of hits for the query
+     */
+    private TopDocs seekPage(
+            IndexSearcher searcher,
+            Query query,
+            String queryKey,
+            long generation,
+            int perPage,
+            int page,
+            Optional<String> clientCursor
+    ) {
+        int queryHash = queryKey.hashCode();
+        Optional<LuceneSearchCursor> start = clientCursor
+                .flatMap(LuceneSearchCursor::decode)
+                .filter(cursor -> cursor.matches(generation, queryHash, perPage, page));
+        if (!start.isPresent()) {
+            start = cursorCache.floor(queryKey, perPage, page, generation);
+        }
+
+        ScoreDoc lastEntry = start.map(LuceneSearchCursor::getLastEntry).orElse(null);
+        int fromPage = start.map(LuceneSearchCursor::getPage).orElse(1);
+        int maxPagesPerSearch = Math.max(1, LUCENE_MAX_SKIP_HITS / perPage);
+
+        while (true) {
+            int pagesToRead = Math.min(page - fromPage + 1, maxPagesPerSearch);
+            int hitsToRead = pagesToRead * perPage;
+            TopDocs hitDocs = getPageOfData(searcher, lastEntry, query, hitsToRead);
+            ScoreDoc[] found = hitDocs.scoreDocs;
+            int lastPageRead = fromPage + pagesToRead - 1;
+
+            if (lastPageRead == page) {
+                int offset = hitsToRead - perPage;
+                ScoreDoc[] pageHits = offset >= found.length ?
+                        new ScoreDoc[0] :
+                        Arrays.copyOfRange(found, offset, found.length);
+                return new TopDocs(hitDocs.totalHits, pageHits, hitDocs.getMaxScore());
+            }
+            if (found.length < hitsToRead) {
+                // Ran out of hits before reaching the requested page
+                return new TopDocs(hitDocs.totalHits, new ScoreDoc[0], Float.NaN);
+            }
+
+            lastEntry = found[found.length - 1];
+            fromPage = lastPageRead + 1;
+            cursorCache.put(
+                    queryKey,
+                    perPage,
+                    new LuceneSearchCursor(generation, queryHash, perPage, fromPage, lastEntry)
+            );
+        }
+    }
+
+    /**
+     * Get the version of the latest view of the index.
+     *
+     * @return the index version
+     */
+    protected long getIndexGeneration() {
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            return getIndexGeneration(searcher);
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Get the version of the latest view of the index, which changes as soon as changes to the rows can be searched
+     * for.
+     *
+     * @return the index version
+     */
+    @Override
+    public long getIndexVersion() {
+        return getIndexGeneration();
+    }
+
+    /**
+     * Get the version of the index being searched by a searcher.
+     * <p>
+     * The version of the index files is combined with the number of times the index has been swapped out, since a
+     * replacement index may reuse the versions of the one it replaced.
+     *
+     * @param searcher  The searcher
+     *
+     * @return the index version
+     */
+    protected long getIndexGeneration(IndexSearcher searcher) {
+        IndexReader reader = searcher.getIndexReader();
+        long version = reader instanceof DirectoryReader ? ((DirectoryReader) reader).getVersion() : 0;
+        return (indexEpoch.get() << 48) | (version & 0xFFFFFFFFFFFFL);
+    }
+
+    /**
+     * Get the total number of hits from a search, checking that it can be paginated.
+     *
+     * @param hitDocs  The results of the search
+     *
+     * @return the number of hits
+     *
+     * @throws RowLimitReachedException if there are more hits than can be counted
+     */
+    private int getDocumentCount(TopDocs hitDocs) throws RowLimitReachedException {
+        // The change to supprt long document sizes is incompletely supported in Lucene
+        // Since we can't request up to long documents we'll only expect to receive up to Integer.MAX_VALUE
+        // responses, and throw an error if we exceed that.
+        if (hitDocs.totalHits > Integer.MAX_VALUE) {
+            String message = String.format(TOO_MANY_DOCUMENTS, hitDocs.totalHits);
+            RowLimitReachedException exception = new RowLimitReachedException(message);
+            LOG.error(exception.getMessage(), exception);
+            throw exception;
+        }
+        return (int) hitDocs.totalHits;
+    }
+
     /**
      * Check if perPage exceeds limit of max number of rows to be returned.
      *
@@ -873,13 +1538,13 @@ public class LuceneSearchProvider implements SearchProvider {
     /**
      * Returns the requested page of dimension metadata from Lucene.
      * <p>
-     * Note that this method acquires and releases a read lock when querying Lucene for data.
+     * The searcher must have been acquired by the caller, which releases it once it is done with the results.
      *
      * @param indexSearcher  The service to find the desired dimension metadata in the Lucene index
      * @param lastEntry  The last entry from the previous page of dimension metadata, the indexSearcher will begin its
      * search after this entry (if lastEntry is null, the indexSearcher will begin its search from the beginning)
      * @param query  The Lucene query used to locate the desired dimension metadata
-     * @param perPage  The number of entries per page
+     * @param perPage  The number of entries to collect
      *
      * @return The desired page of dimension metadata
      */
@@ -890,7 +1555,6 @@ public class LuceneSearchProvider implements SearchProvider {
             int perPage
     ) {
         TimeLimitingCollectorManager manager = new TimeLimitingCollectorManager(searchTimeout, lastEntry, perPage);
-        readLock();
         try {
             return indexSearcher.search(query, manager);
         } catch (IOException e) {
@@ -900,8 +1564,6 @@ public class LuceneSearchProvider implements SearchProvider {
         } catch (TimeLimitingCollector.TimeExceededException e) {
             LOG.warn("Lucene query timeout: {}. {}", query, e.getMessage());
             throw new TimeoutException(e.getMessage(), e);
-        } finally {
-            readUnlock();
         }
     }
 }
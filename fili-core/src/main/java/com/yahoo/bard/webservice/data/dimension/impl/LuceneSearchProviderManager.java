@@ -53,7 +53,10 @@ public class LuceneSearchProviderManager {
      */
     public static void removeInstance(String providerName) {
         synchronized (LuceneSearchProviderManager.class) {
-            LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            LuceneSearchProvider luceneProvider = LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            if (luceneProvider != null) {
+                luceneProvider.close();
+            }
             Utils.deleteFiles(getProviderPath(providerName));
         }
     }
@@ -47,8 +47,8 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
 
     private SimpleQueryParser queryParser;
 
-    private boolean searchColumnExists;
-    private IndexSearcher lastIndexSearcher;
+    // Whether the search column exists, and the index generation it was checked against, published together
+    private volatile SearchColumnCheck searchColumnCheck = new SearchColumnCheck(-1, false);
 
     /**
      * Constructor.
@@ -85,26 +85,29 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
             String searchQueryString,
             PaginationParameters paginationParameters
     ) {
-       initializeIndexSearcher();
-       readLock();
-       try {
-           validateSearchColumn();
-
-           return getResultsPage(getSearchQuery(searchQueryString), paginationParameters);
-       } finally {
-           readUnlock();
-       }
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            validateSearchColumn(searcher);
+
+            return getResultsPage(searcher, getSearchQuery(searchQueryString), paginationParameters);
+        } finally {
+            releaseSearcher(searcher);
+        }
     }
 
     /**
-     * If the search provider has changed, recheck that the search column is available and error if not.
+     * If the index a searcher searches has changed, recheck that the search column is available and error if not.
+     *
+     * @param searcher  The searcher the search will run with
      */
-    private void validateSearchColumn() {
-         if (lastIndexSearcher != luceneIndexSearcher) {
-             lastIndexSearcher = luceneIndexSearcher;
-             searchColumnExists = validateSearchColumn(SEARCH_COLUMN_NAME);
-         }
-        if (!searchColumnExists) {
+    private void validateSearchColumn(IndexSearcher searcher) {
+        long indexGeneration = getIndexGeneration(searcher);
+        SearchColumnCheck check = searchColumnCheck;
+        if (check.indexGeneration != indexGeneration) {
+            check = new SearchColumnCheck(indexGeneration, validateSearchColumn(searcher, SEARCH_COLUMN_NAME));
+            searchColumnCheck = check;
+        }
+        if (!check.searchColumnExists) {
             throw new UnsupportedOperationException(
                     String.format(
                             "Underlying LuceneIndex for Dimension %s does not support search queries.",
@@ -169,10 +172,24 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
      * @return whether or not that field exists in the lucene index.
      */
     protected boolean validateSearchColumn(String searchColumnName) {
-        initializeIndexSearcher();
-        readLock();
+        IndexSearcher searcher = acquireSearcher();
+        try {
+            return validateSearchColumn(searcher, searchColumnName);
+        } finally {
+            releaseSearcher(searcher);
+        }
+    }
+
+    /**
+     * Validates that the search column with the provided name exists in the index a searcher searches.
+     *
+     * @param searcher  The searcher to check the index of
+     * @param searchColumnName The name of the search column to check.
+     * @return whether or not that field exists in the lucene index.
+     */
+    protected boolean validateSearchColumn(IndexSearcher searcher, String searchColumnName) {
         try {
-            return luceneIndexSearcher.getIndexReader().getDocCount(searchColumnName) > 0;
+            return searcher.getIndexReader().getDocCount(searchColumnName) > 0;
         } catch (IOException e) {
             LOG.debug(
                     String.format(
@@ -183,8 +200,25 @@ public class NormalizedLuceneSearchProvider extends LuceneSearchProvider impleme
             );
             // No need to directly fail the query on this. Just return that search is not supported on the index
             return false;
-        } finally {
-            readUnlock();
+        }
+    }
+
+    /**
+     * The result of checking an index generation for the search column.
+     */
+    private static final class SearchColumnCheck {
+        private final long indexGeneration;
+        private final boolean searchColumnExists;
+
+        /**
+         * Constructor.
+         *
+         * @param indexGeneration  The generation of the index checked
+         * @param searchColumnExists  Whether that index has the search column
+         */
+        private SearchColumnCheck(long indexGeneration, boolean searchColumnExists) {
+            this.indexGeneration = indexGeneration;
+            this.searchColumnExists = searchColumnExists;
         }
     }
 }
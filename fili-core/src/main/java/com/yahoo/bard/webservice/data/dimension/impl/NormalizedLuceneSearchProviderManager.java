@@ -66,7 +66,10 @@ public final class NormalizedLuceneSearchProviderManager {
      */
     public static void removeInstance(String providerName) {
         synchronized (NormalizedLuceneSearchProviderManager.class) {
-            LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            LuceneSearchProvider luceneProvider = LUCENE_SEARCH_PROVIDERS.remove(providerName);
+            if (luceneProvider != null) {
+                luceneProvider.close();
+            }
             Utils.deleteFiles(getProviderPath(providerName));
         }
     }
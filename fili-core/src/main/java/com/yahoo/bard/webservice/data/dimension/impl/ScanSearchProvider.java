@@ -33,6 +33,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -42,6 +43,8 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
     private static final Logger LOG = LoggerFactory.getLogger(ScanSearchProvider.class);
 
     private final ObjectMapper objectMapper;
+    // Bumped every time the rows in the key value store change
+    private final AtomicLong indexVersion = new AtomicLong();
 
     private KeyValueStore keyValueStore;
     private Dimension dimension;
@@ -73,7 +76,7 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
         if (keyValueStore.get(allValuesKey) == null) {
             keyValueStore.put(allValuesKey, "[]");
         }
-
+        indexVersion.incrementAndGet();
     }
 
     @Override
@@ -105,6 +108,11 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
         return new TreeSet<>(findAllDimensionRows());
     }
 
+    @Override
+    public long getIndexVersion() {
+        return indexVersion.get();
+    }
+
     @Override
     public boolean isHealthy() {
         return true;
@@ -125,6 +133,7 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
         keyValueStore.remove(DimensionStoreKeyUtils.getLastUpdatedKey());
 
         refreshCardinality();
+        indexVersion.incrementAndGet();
     }
 
     @Override
@@ -132,6 +141,7 @@ public class ScanSearchProvider implements SearchProvider, FilterDimensionRows {
         refreshIndexForDimensionKey(rowId);
         refreshIndexForDimensionFields(rowId, dimensionRow, dimensionRowOld);
         refreshCardinality();
+        indexVersion.incrementAndGet();
     }
 
     @Override
@@ -2,26 +2,82 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.data.metric;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.config.BardFeatureFlag;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.inject.Singleton;
 
 /**
  * Merges TemplateDruidQueries together.
+ * <p>
+ * A merge only depends on the queries being merged, so the merged queries of recently requested metric combinations
+ * are cached, keyed by the queries merged, and reused by requests for the same metrics. The time spent merging on cache
+ * misses is timed, which against the hit rate gives the time the cache saves on the {@code DruidQueryMerge} phase.
  */
 @Singleton
 public class TemplateDruidQueryMerger {
 
     private static final Logger LOG = LoggerFactory.getLogger(TemplateDruidQuery.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String TEMPLATE_QUERY_CACHE_SIZE = SYSTEM_CONFIG.getPackageVariableName(
+            "template_query_cache_size"
+    );
+
+    public static final Meter MERGE_CACHE_HITS = MetricRegistryFactory.getRegistry().meter(
+            "queries.meter.template_query_merge.cache.hits"
+    );
+    public static final Meter MERGE_CACHE_MISSES = MetricRegistryFactory.getRegistry().meter(
+            "queries.meter.template_query_merge.cache.misses"
+    );
+    public static final Timer MERGE_TIMER = MetricRegistryFactory.getRegistry().timer(
+            "queries.timer.template_query_merge.uncached"
+    );
+
+    private final Map<List<TemplateDruidQuery>, TemplateDruidQuery> mergedQueries;
+
+    /**
+     * Constructor, taking the number of merged queries to cache from the system config.
+     */
+    public TemplateDruidQueryMerger() {
+        this(SYSTEM_CONFIG.getIntProperty(TEMPLATE_QUERY_CACHE_SIZE, 1000));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param cacheSize  The number of merged queries to cache, none if 0
+     */
+    public TemplateDruidQueryMerger(int cacheSize) {
+        this.mergedQueries = Collections.synchronizedMap(
+                new LinkedHashMap<List<TemplateDruidQuery>, TemplateDruidQuery>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<List<TemplateDruidQuery>, TemplateDruidQuery> eldest
+                    ) {
+                        return size() > cacheSize;
+                    }
+                }
+        );
+    }
 
     /**
      * Merge all of the TemplateDruidQueries from all of the Metrics in an DataApiRequest together.
@@ -47,11 +103,34 @@ public class TemplateDruidQueryMerger {
             throw new IllegalStateException("No template queries selected by API request.");
         }
 
-        Iterator<TemplateDruidQuery> queries = allQueries.iterator();
-        if (!queries.hasNext()) {
+        if (allQueries.isEmpty()) {
             return new TemplateDruidQuery(new ArrayList<>(0), new ArrayList<>(0));
         }
 
+        List<TemplateDruidQuery> key = new ArrayList<>(allQueries);
+        TemplateDruidQuery merged = mergedQueries.get(key);
+        if (merged != null) {
+            MERGE_CACHE_HITS.mark();
+            return merged;
+        }
+        MERGE_CACHE_MISSES.mark();
+
+        try (Timer.Context ignored = MERGE_TIMER.time()) {
+            merged = merge(allQueries);
+        }
+        mergedQueries.put(key, merged);
+        return merged;
+    }
+
+    /**
+     * Merge TemplateDruidQueries together, in order.
+     *
+     * @param allQueries  The queries to merge, at least one
+     *
+     * @return The merged TemplateDruidQuery
+     */
+    protected TemplateDruidQuery merge(Set<TemplateDruidQuery> allQueries) {
+        Iterator<TemplateDruidQuery> queries = allQueries.iterator();
         TemplateDruidQuery merged = queries.next();
         while (queries.hasNext()) {
             TemplateDruidQuery query = queries.next();
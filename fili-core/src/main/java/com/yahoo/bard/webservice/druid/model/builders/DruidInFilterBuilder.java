@@ -2,23 +2,39 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.druid.model.builders;
 
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionRowNotFoundException;
+import com.yahoo.bard.webservice.data.dimension.SearchProvider;
 import com.yahoo.bard.webservice.druid.model.filter.AndFilter;
 import com.yahoo.bard.webservice.druid.model.filter.Filter;
 import com.yahoo.bard.webservice.druid.model.filter.InFilter;
 import com.yahoo.bard.webservice.druid.model.filter.NotFilter;
+import com.yahoo.bard.webservice.druid.model.filter.OrFilter;
+import com.yahoo.bard.webservice.druid.model.filter.RegularExpressionFilter;
 import com.yahoo.bard.webservice.web.ApiFilter;
 import com.yahoo.bard.webservice.web.DefaultFilterOperation;
 
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.collect.Ordering;
+
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -47,13 +63,97 @@ import java.util.stream.Collectors;
  * Compared with {@link DruidOrFilterBuilder}, the advantage of {@code DruidInFilterBuilder} is reducing the number of
  * Druid filters in a single Druid query. {@code DruidInFilterBuilder} is an enhancement of the
  * {@link DruidOrFilterBuilder} and is the default Druid filter builder in Fili.
+ * <p>
+ * The filter built for a dimension is cached, keyed by the dimension, its API filters, with their values sorted and
+ * deduplicated, and the version of the index of its search provider. Requests filtering a dimension the same way reuse
+ * the filter, and its values, until the rows of the dimension change, rather than searching the dimension again.
+ * Filters on dimensions whose search providers don't version their index aren't cached. When the values
+ * matching the positive or the negative API filters are more than a configured threshold, and those API filters are
+ * all prefix or substring matches on the key field of the dimension, the rows they match are sent to Druid as
+ * regular expression filters or search filters matching the same key values, rather than as the values themselves.
  */
 public class DruidInFilterBuilder extends ConjunctionDruidFilterBuilder {
     private static final Logger LOG = LoggerFactory.getLogger(DruidInFilterBuilder.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String DRUID_FILTER_CACHE_SIZE = SYSTEM_CONFIG.getPackageVariableName(
+            "druid_filter_cache_size"
+    );
+    public static final String DRUID_IN_FILTER_MAX_VALUES = SYSTEM_CONFIG.getPackageVariableName(
+            "druid_in_filter_max_values"
+    );
+
+    private final int maxValues;
+    private final Map<List<Object>, Filter> filterCache;
+
+    /**
+     * Constructor, taking the size of the filter cache and the in-filter value threshold from the system config.
+     */
+    public DruidInFilterBuilder() {
+        this(
+                SYSTEM_CONFIG.getIntProperty(DRUID_FILTER_CACHE_SIZE, 1000),
+                SYSTEM_CONFIG.getIntProperty(DRUID_IN_FILTER_MAX_VALUES, 100000)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param filterCacheSize  The number of dimension filters to cache, none if 0
+     * @param maxValues  The number of values above which prefix and substring filters on key fields are sent to Druid
+     */
+    public DruidInFilterBuilder(int filterCacheSize, int maxValues) {
+        this.maxValues = maxValues;
+        this.filterCache = filterCacheSize <= 0 ? null : Collections.synchronizedMap(
+                new LinkedHashMap<List<Object>, Filter>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<List<Object>, Filter> eldest) {
+                        return size() > filterCacheSize;
+                    }
+                }
+        );
+    }
 
     @Override
     protected Filter buildDimensionFilter(Dimension dimension, Set<ApiFilter> filters)
             throws DimensionRowNotFoundException {
+        SearchProvider searchProvider = dimension.getSearchProvider();
+        // Read before searching, so that rows changing during the search leave the filter under an outdated version
+        long indexVersion = searchProvider.getIndexVersion();
+        if (filterCache == null || indexVersion == SearchProvider.UNVERSIONED_INDEX) {
+            return resolveDimensionFilter(dimension, filters);
+        }
+
+        // The search provider tells apart dimensions that are equal but hold different rows
+        List<Object> key = Arrays.asList(
+                dimension.getApiName(),
+                searchProvider,
+                filters.stream()
+                        .map(filter -> filter.withValues(new TreeSet<>(filter.getValues())))
+                        .collect(Collectors.toSet()),
+                indexVersion
+        );
+        Filter filter = filterCache.get(key);
+        if (filter == null) {
+            // Concurrent misses may both resolve the filter, which is harmless since the results are the same
+            filter = resolveDimensionFilter(dimension, filters);
+            filterCache.put(key, filter);
+        }
+        return filter;
+    }
+
+    /**
+     * Build the conjunction of all the filters on a single dimension, by searching the dimension for their values.
+     *
+     * @param dimension  Dimension for the filters
+     * @param filters  All filters belonging to that dimension
+     *
+     * @return A druid query filter object representing the filtering on a given dimension
+     *
+     * @throws DimensionRowNotFoundException if we attempt to filter a dimension without dimension rows
+     */
+    protected Filter resolveDimensionFilter(Dimension dimension, Set<ApiFilter> filters)
+            throws DimensionRowNotFoundException {
         LOG.trace("Building dimension filter using dimension: {} \n\n and set of filter: {}", dimension, filters);
 
         // split ApiFilters into two groups: positive filters & negative filters
@@ -63,12 +163,12 @@ public class DruidInFilterBuilder extends ConjunctionDruidFilterBuilder {
                 negateNegativeFilters(positiveAndNegativeSplitFilters.getRight());
 
         // search for matched values of the positive filter by sending all of the filters down to search provider once
-        List<String> inValues = positiveFilters.isEmpty()
-                ? Collections.emptyList()
-                : getFilteredDimensionRowValues(dimension, positiveFilters);
+        Set<String> inValues = positiveFilters.isEmpty()
+                ? Collections.emptySet()
+                : ImmutableSortedSet.copyOf(getFilteredDimensionRowValues(dimension, positiveFilters));
 
         // search for matched values of the negative filter by sending each filter down to search provider one-by-one
-        List<String> notInValues = negatedNegativeFilters.stream()
+        Set<String> notInValues = negatedNegativeFilters.stream()
                 .map(apiFilter -> {
                     try {
                         return getFilteredDimensionRowValues(dimension, Collections.singleton(apiFilter));
@@ -77,19 +177,24 @@ public class DruidInFilterBuilder extends ConjunctionDruidFilterBuilder {
                     }
                 })
                 .flatMap(List::stream)
-                .distinct()
-                .collect(Collectors.toList());
+                .collect(ImmutableSortedSet.toImmutableSortedSet(Ordering.natural()));
 
         List<Filter> inFilters = new ArrayList<>(); // A set with at most two in-filters(positive & negative)
 
         // add a Druid in-filter out of the matched values of the positive filter
         if (!inValues.isEmpty()) {
-            inFilters.add(new InFilter(dimension, inValues));
+            inFilters.add(
+                    buildUnresolvedFilter(dimension, positiveFilters, inValues.size(), AndFilter::new)
+                            .orElseGet(() -> new InFilter(dimension, inValues))
+            );
         }
 
         // build a Druid not-filter containing a in-filter out of the matched values of the negative filter
         if (!notInValues.isEmpty()) {
-            inFilters.add(new NotFilter(new InFilter(dimension, notInValues)));
+            inFilters.add(new NotFilter(
+                    buildUnresolvedFilter(dimension, negatedNegativeFilters, notInValues.size(), OrFilter::new)
+                            .orElseGet(() -> new InFilter(dimension, notInValues))
+            ));
         }
 
         // combine the two in-filters
@@ -98,4 +203,69 @@ public class DruidInFilterBuilder extends ConjunctionDruidFilterBuilder {
         LOG.trace("Filter: {}", newFilter);
         return newFilter;
     }
+
+    /**
+     * Build a filter sending API filters to Druid as they are, if they match too many values to send as an in-filter.
+     * <p>
+     * This is only possible if every API filter is on the key field of the dimension, since that's all Druid knows,
+     * and is a prefix or substring match, since the values matched by any other filter are no shorter to send as they
+     * are.
+     *
+     * @param dimension  Dimension for the filters
+     * @param filters  The positive API filters, or the negated negative ones
+     * @param valueCount  The number of values the filters match
+     * @param combiner  How the filters are combined, and for positive filters and or for negated negative ones
+     *
+     * @return the filter, or empty if the values should be sent instead
+     */
+    protected Optional<Filter> buildUnresolvedFilter(
+            Dimension dimension,
+            Set<ApiFilter> filters,
+            int valueCount,
+            Function<List<Filter>, Filter> combiner
+    ) {
+        if (valueCount <= maxValues) {
+            return Optional.empty();
+        }
+        List<Filter> druidFilters = new ArrayList<>(filters.size());
+        for (ApiFilter filter : filters) {
+            if (!dimension.getKey().equals(filter.getDimensionField())) {
+                return Optional.empty();
+            }
+            Optional<Filter> druidFilter = buildUnresolvedFilter(dimension, filter);
+            if (!druidFilter.isPresent()) {
+                return Optional.empty();
+            }
+            druidFilters.add(druidFilter.get());
+        }
+        LOG.debug(
+                "Sending {} filters of {} to druid rather than the {} values they match",
+                filters.size(),
+                dimension.getApiName(),
+                valueCount
+        );
+        return Optional.of(druidFilters.size() == 1 ? druidFilters.get(0) : combiner.apply(druidFilters));
+    }
+
+    /**
+     * Build the Druid filter matching the same key values as a positive API filter on the key field of a dimension.
+     *
+     * @param dimension  Dimension for the filter
+     * @param filter  The API filter
+     *
+     * @return the filter, or empty if the filter is better sent as the values it matches
+     */
+    private Optional<Filter> buildUnresolvedFilter(Dimension dimension, ApiFilter filter) {
+        Collection<String> values = filter.getValues();
+        if (DefaultFilterOperation.startswith.equals(filter.getOperation())) {
+            return Optional.of(new RegularExpressionFilter(dimension, Pattern.compile(
+                    values.stream().map(Pattern::quote).collect(Collectors.joining("|", "^(?:", ")"))
+            )));
+        }
+        if (DefaultFilterOperation.contains.equals(filter.getOperation())) {
+            List<Filter> searchFilters = buildContainsSearchFilters(dimension, new ArrayList<>(values));
+            return Optional.of(searchFilters.size() == 1 ? searchFilters.get(0) : new OrFilter(searchFilters));
+        }
+        return Optional.empty();
+    }
 }
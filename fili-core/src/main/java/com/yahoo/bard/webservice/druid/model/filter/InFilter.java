@@ -4,9 +4,14 @@ package com.yahoo.bard.webservice.druid.model.filter;
 
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableSortedSet;
+
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.SortedSet;
 import java.util.TreeSet;
 
 import javax.validation.constraints.NotNull;
@@ -20,26 +25,29 @@ import javax.validation.constraints.NotNull;
  * {@link SelectorFilter}.
  * <p>
  * Note that Druid's in filter is only supported by Druid versions 0.9.0 and greater.
+ * <p>
+ * The values are held in an immutable sorted set. Building an In Filter from such a set, or copying an In Filter with
+ * a new dimension, shares the set rather than copying it, so filters with many values are cheap to reuse.
  */
 public class InFilter extends DimensionalFilter<InFilter> {
 
-    private final TreeSet<String> values;
+    private final ImmutableSortedSet<String> values;
 
     /**
      * Constructor.
      *
      * @param dimension  The dimension to perform an in filter on
-     * @param values  The values to filter on
+     * @param values  The values to filter on, shared rather than copied if they're an {@link ImmutableSortedSet}
      */
     public InFilter(Dimension dimension, @NotNull Collection<String> values) {
         super(dimension, DefaultFilterType.IN);
-        this.values = new TreeSet<>(values);
+        this.values = ImmutableSortedSet.copyOf(values);
     }
 
     //CHECKSTYLE:OFF
     @Override
     public InFilter withDimension(Dimension dimension) {
-        return new InFilter(dimension, getValues());
+        return new InFilter(dimension, values);
     }
 
     public InFilter withValues(List<String> values) {
@@ -52,10 +60,21 @@ public class InFilter extends DimensionalFilter<InFilter> {
      *
      * @return The set of values to filter on
      */
+    @JsonIgnore
     public TreeSet<String> getValues() {
         return new TreeSet<>(values);
     }
 
+    /**
+     * Return the set of values to filter on, without copying it.
+     *
+     * @return An unmodifiable view of the set of values to filter on
+     */
+    @JsonProperty("values")
+    public SortedSet<String> getSortedValues() {
+        return values;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(super.hashCode(), values);
@@ -73,6 +92,6 @@ public class InFilter extends DimensionalFilter<InFilter> {
 
     @Override
     public String toString() {
-        return "Filter{ type=" + getType() + ", dimension=" + getDimension() + ", value=" + getValues() + "}";
+        return "Filter{ type=" + getType() + ", dimension=" + getDimension() + ", value=" + values + "}";
     }
 }
@@ -6,12 +6,15 @@ import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceIm
 import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_MAX_TIMER;
 import static com.yahoo.bard.webservice.druid.client.impl.AsyncDruidWebServiceImpl.DRUID_QUERY_TIMER;
 import static com.yahoo.bard.webservice.util.StreamUtils.not;
+import static com.yahoo.bard.webservice.web.filters.BardLoggingFilter.TOTAL_TIMER;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.REQUEST_WORKFLOW_TIMER;
 import static com.yahoo.bard.webservice.web.handlers.workflow.DruidWorkflow.RESPONSE_WORKFLOW_TIMER;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
 import com.yahoo.bard.webservice.config.SystemConfig;
 import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo;
+import com.yahoo.bard.webservice.logging.blocks.DataRequest;
 import com.yahoo.bard.webservice.logging.blocks.Durations;
 import com.yahoo.bard.webservice.logging.blocks.Preface;
 import com.yahoo.bard.webservice.logging.blocks.Threads;
@@ -23,8 +26,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.LinkedHashMap;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +36,7 @@ import java.util.Objects;
 import java.util.OptionalLong;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -51,13 +56,36 @@ public class RequestLog {
     private static final String LOGINFO_ORDER_STRING = SYSTEM_CONFIG.getStringProperty(
             SYSTEM_CONFIG.getPackageVariableName("requestlog_loginfo_order"), ""
     );
-    private static final List<String> LOGINFO_ORDER = generateLogInfoOrder(LOGINFO_ORDER_STRING);
+    private static final List<Class<? extends LogInfo>> LOGINFO_ORDER = generateLogInfoOrder(LOGINFO_ORDER_STRING);
+
+    public static final String PHASE_TIMER = "requests.timer.phase";
+    private static final String NO_TAG = "none";
+    private static final List<String> DEFAULT_PHASE_TIMERS = Arrays.asList(
+            "DataApiRequest",
+            "DataApiRequestMappers",
+            "DruidQueryBuilder",
+            REQUEST_WORKFLOW_TIMER,
+            DRUID_QUERY_MAX_TIMER,
+            "DruidQueryMerge",
+            "LuceneHydratingDimensionRows",
+            RESPONSE_WORKFLOW_TIMER,
+            "BardLoggingFilter",
+            TOTAL_TIMER
+    );
+    private static final List<String> PHASE_TIMERS = SYSTEM_CONFIG.getListProperty(
+            SYSTEM_CONFIG.getPackageVariableName("request_phase_timers"),
+            DEFAULT_PHASE_TIMERS
+    );
+    private static final int PHASE_TIMER_SAMPLE_INTERVAL = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("request_phase_timer_sample_interval"),
+            10
+    );
 
     private String logId;
     private LogBlock info;
     @Deprecated
     private TimedPhase mostRecentTimer;
-    private final Map<String, TimedPhase> times;
+    private final TimedPhases times;
     private final Set<String> threadIds;
 
     /**
@@ -67,7 +95,7 @@ public class RequestLog {
         logId = null;
         info = null;
         mostRecentTimer = null;
-        times = new LinkedHashMap<>();
+        times = new TimedPhases();
         threadIds = new LinkedHashSet<>();
         MDC.remove(ID_KEY);
     }
@@ -81,7 +109,7 @@ public class RequestLog {
         logId = rl.logId;
         info = rl.info;
         mostRecentTimer = rl.mostRecentTimer;
-        times = new LinkedHashMap<>(rl.times);
+        times = new TimedPhases(rl.times);
         threadIds = new LinkedHashSet<>(rl.threadIds);
         MDC.put(ID_KEY, logId);
     }
@@ -102,24 +130,14 @@ public class RequestLog {
      * Creates a new and empty request log at the calling thread.
      */
     private void init() {
-        logId = UUID.randomUUID().toString();
+        logId = generateLogId();
         info = new LogBlock(logId);
         // Trick to place Durations and Threads in front of the Json while keep using a LinkedHashMap.
         // The actual entries will be replaced later when export is called but the initial order will be respected
         info.add(Durations.class);
         info.add(Threads.class);
         info.add(Preface.class);
-        getLoginfoOrder().stream().filter(entry -> !Objects.equals(entry, "Epilogue")).forEachOrdered(
-                entry -> {
-                    try {
-                        Class<? extends LogInfo> cls = Class.forName(entry).asSubclass(LogInfo.class);
-                        info.add(cls);
-                    } catch (ClassNotFoundException | ClassCastException e) {
-                        String msg = ErrorMessageFormat.LOGINFO_CLASS_INVALID.logFormat(entry);
-                        LOG.warn(msg, e);
-                    }
-                }
-        );
+        getLoginfoOrder().forEach(info::add);
         times.clear();
         threadIds.clear();
         threadIds.add(Thread.currentThread().getName());
@@ -142,7 +160,7 @@ public class RequestLog {
      * @return the map containing all the recorded times per phase in milliseconds
      */
     private Map<String, Long> durations() {
-        return times.values().stream().collect(Collectors.toMap(TimedPhase::getName, TimedPhase::getDuration));
+        return times.stream().collect(Collectors.toMap(TimedPhase::getName, TimedPhase::getDuration));
     }
 
     /**
@@ -233,7 +251,7 @@ public class RequestLog {
             }
 
             timePhase = new TimedPhase(timePhaseName);
-            current.times.put(timePhaseName, timePhase);
+            current.times.put(timePhase);
         }
         current.mostRecentTimer = timePhase;
         return timePhase.start();
@@ -387,20 +405,56 @@ public class RequestLog {
             return;
         }
         LOG.info(export());
+        if (PHASE_TIMER_SAMPLE_INTERVAL > 0 && ThreadLocalRandom.current().nextInt(PHASE_TIMER_SAMPLE_INTERVAL) == 0) {
+            current.updatePhaseTimers(PHASE_TIMERS);
+        }
         current.clear();
     }
 
+    /**
+     * Update the timers of the given phases of this request, tagged by the logical table and the query type of the
+     * request.
+     * <p>
+     * The timers are named {@value #PHASE_TIMER}.phase.table.type, and are only updated for the phases which have
+     * finished. The druid round trip of a request is timed by its slowest druid query.
+     *
+     * @param phases  The names of the phases to time
+     */
+    private void updatePhaseTimers(List<String> phases) {
+        LogInfo dataRequest = info.get(DataRequest.class.getSimpleName());
+        LogInfo queryInfo = info.get(BardQueryInfo.class.getSimpleName());
+        String table = dataRequest instanceof DataRequest ? ((DataRequest) dataRequest).getTable() : NO_TAG;
+        String type = queryInfo instanceof BardQueryInfo ? ((BardQueryInfo) queryInfo).getType() : NO_TAG;
+
+        for (String phaseName : phases) {
+            if (phaseName.equals(DRUID_QUERY_MAX_TIMER)) {
+                times.stream()
+                        .filter(phase -> phase.getName().contains(DRUID_QUERY_TIMER) && !phase.isRunning())
+                        .mapToLong(TimedPhase::getDuration)
+                        .max()
+                        .ifPresent(duration -> REGISTRY.timer(MetricRegistry.name(PHASE_TIMER, phaseName, table, type))
+                                .update(duration, TimeUnit.NANOSECONDS));
+                continue;
+            }
+            TimedPhase phase = times.get(phaseName);
+            if (phase != null && !phase.isRunning()) {
+                REGISTRY.timer(MetricRegistry.name(PHASE_TIMER, phaseName, table, type))
+                        .update(phase.getDuration(), phase.getUnit());
+            }
+        }
+    }
+
     /**
      * Exports a snapshot of the request log of the current thread and also resets the request log for that thread.
      *
      * @return the log context of the current thread
      */
     public static RequestLog dump() {
+        // The thread's log is handed over as it is, rather than copied, since the thread starts afresh anyway
         RequestLog current = RLOG.get();
-        RequestLog copy = new RequestLog(current);
-        current.clear();
         RLOG.remove();
-        return copy;
+        MDC.remove(ID_KEY);
+        return current;
     }
 
     /**
@@ -413,6 +467,20 @@ public class RequestLog {
         return new RequestLog(current);
     }
 
+    /**
+     * Exports a snapshot of the request log of the current thread with a log block of its own, so that the information
+     * recorded under the snapshot, on another thread, doesn't reach the request log of the current thread.
+     *
+     * @return the log context of the current thread, with its own log block
+     */
+    public static RequestLog fork() {
+        RequestLog forked = copy();
+        if (forked.info != null) {
+            forked.info = forked.info.withUuid(forked.logId);
+        }
+        return forked;
+    }
+
     /**
      * Returns the id of this request log as a string.
      * If called on an empty request log context, it initializes it.
@@ -476,16 +544,13 @@ public class RequestLog {
             return;
         }
         // Accumulate all the timers that are not currently running
-        current.times.putAll(
-                ctx.times.entrySet()
-                        .stream()
-                        .filter(
-                                e -> e.getKey().contains(DRUID_QUERY_TIMER) ||
-                                        (e.getKey().equals(REQUEST_WORKFLOW_TIMER) && !e.getValue().isRunning()) ||
-                                        (e.getKey().equals(RESPONSE_WORKFLOW_TIMER) && e.getValue().isRunning())
-                        )
-                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
-        );
+        ctx.times.stream()
+                .filter(
+                        phase -> phase.getName().contains(DRUID_QUERY_TIMER) ||
+                                (phase.getName().equals(REQUEST_WORKFLOW_TIMER) && !phase.isRunning()) ||
+                                (phase.getName().equals(RESPONSE_WORKFLOW_TIMER) && phase.isRunning())
+                )
+                .forEachOrdered(current.times::put);
         current.threadIds.addAll(ctx.threadIds);
         current.threadIds.add(Thread.currentThread().getName());
     }
@@ -502,21 +567,49 @@ public class RequestLog {
         return LogFormatterProvider.getInstance().format(current.info);
     }
 
-    private List<String> getLoginfoOrder() {
+    private List<Class<? extends LogInfo>> getLoginfoOrder() {
         return LOGINFO_ORDER;
     }
 
     /**
      * Get the logging blocks that need to be at the "head" of the log output.
+     * <p>
+     * The blocks are resolved once, rather than on every request, and those which can't be are left out with a
+     * warning.
      *
      * @param order  Indication of order of the initial blocks.
      *
      * @return the blocks in order
      */
-    private static List<String> generateLogInfoOrder(String order) {
-        return Arrays.stream(order.replaceAll("\\s+", "").split(","))
+    private static List<Class<? extends LogInfo>> generateLogInfoOrder(String order) {
+        List<Class<? extends LogInfo>> blocks = new ArrayList<>();
+        Arrays.stream(order.replaceAll("\\s+", "").split(","))
                 .filter(not(String::isEmpty))
+                .filter(name -> !Objects.equals(name, "Epilogue"))
                 .map(name -> "com.yahoo.bard.webservice.logging.blocks." + name)
-                .collect(Collectors.toList());
+                .forEachOrdered(entry -> {
+                    try {
+                        blocks.add(Class.forName(entry).asSubclass(LogInfo.class));
+                    } catch (ClassNotFoundException | ClassCastException e) {
+                        String msg = ErrorMessageFormat.LOGINFO_CLASS_INVALID.logFormat(entry);
+                        LOG.warn(msg, e);
+                    }
+                });
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * Generate a random id for a request, in the form of a version 4 UUID.
+     * <p>
+     * Request ids need to be unique rather than unguessable, so they are drawn from the thread's random generator
+     * rather than {@link UUID#randomUUID()}'s secure one, which requests would contend on.
+     *
+     * @return the id
+     */
+    private static String generateLogId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long leastSignificantBits = (random.nextLong() & ~(0x3L << 62)) | (0x2L << 62);
+        return new UUID(mostSignificantBits, leastSignificantBits).toString();
     }
 }
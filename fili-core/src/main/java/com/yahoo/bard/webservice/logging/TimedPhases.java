@@ -0,0 +1,97 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging;
+
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * The timed phases of a request, by name, in the order they were first started.
+ * <p>
+ * A request times a handful of phases, so they are kept in an array and looked up by scanning it, which makes copying
+ * them to another thread a single array copy.
+ */
+class TimedPhases {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private TimedPhase[] phases;
+    private int size;
+
+    /**
+     * Constructor.
+     */
+    TimedPhases() {
+        phases = new TimedPhase[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * Copy constructor, sharing the phases themselves.
+     *
+     * @param other  The phases to copy
+     */
+    TimedPhases(TimedPhases other) {
+        phases = Arrays.copyOf(other.phases, other.phases.length);
+        size = other.size;
+    }
+
+    /**
+     * Get a phase by name.
+     *
+     * @param name  The name of the phase
+     *
+     * @return the phase, or null if there is none by that name
+     */
+    TimedPhase get(String name) {
+        for (int i = 0; i < size; i++) {
+            if (phases[i].getName().equals(name)) {
+                return phases[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Add a phase, in place of the phase by the same name if there is one.
+     *
+     * @param phase  The phase to add
+     */
+    void put(TimedPhase phase) {
+        for (int i = 0; i < size; i++) {
+            if (phases[i].getName().equals(phase.getName())) {
+                phases[i] = phase;
+                return;
+            }
+        }
+        if (size == phases.length) {
+            phases = Arrays.copyOf(phases, size * 2);
+        }
+        phases[size++] = phase;
+    }
+
+    /**
+     * Add all the phases of another request.
+     *
+     * @param other  The phases to add
+     */
+    void putAll(TimedPhases other) {
+        other.stream().forEachOrdered(this::put);
+    }
+
+    /**
+     * Remove all the phases.
+     */
+    void clear() {
+        Arrays.fill(phases, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * Get the phases, in order.
+     *
+     * @return the phases
+     */
+    Stream<TimedPhase> stream() {
+        return Arrays.stream(phases, 0, size);
+    }
+}
@@ -103,4 +103,13 @@ public class DataRequest implements LogInfo {
         this.skipCache = !readCache;
         this.format = format;
     }
+
+    /**
+     * Get the name of the logical table the request was for.
+     *
+     * @return the name of the table
+     */
+    public String getTable() {
+        return table;
+    }
 }
@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.util;
 
 import java.io.Serializable;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 
 /**
@@ -71,4 +72,14 @@ public interface Pagination<T> extends Serializable {
      * @return The data size
      */
     int getNumResults();
+
+    /**
+     * Gets an opaque cursor that lets the next page be fetched without re-reading the pages before it, if the source
+     * of the data supports one.
+     *
+     * @return The cursor for the next page
+     */
+    default Optional<String> getNextCursor() {
+        return Optional.empty();
+    }
 }
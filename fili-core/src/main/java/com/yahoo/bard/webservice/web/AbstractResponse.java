@@ -8,6 +8,7 @@ import com.yahoo.bard.webservice.web.responseprocessors.MappingResponseProcessor
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseContextKeys;
 import com.yahoo.bard.webservice.web.util.PaginationLink;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import com.fasterxml.jackson.core.JsonGenerator;
 
@@ -112,7 +113,14 @@ public abstract class AbstractResponse<T> implements ResponseStream {
             UriBuilder uriBuilder,
             Map<String, URI> bodyLinks
     ) {
-        link.getPage(pages).ifPresent(page -> addLink(link, page, pages.getPerPage(), uriBuilder, bodyLinks));
+        link.getPage(pages).ifPresent(page -> addLink(
+                link,
+                page,
+                pages.getPerPage(),
+                link.getCursor(pages).orElse(null),
+                uriBuilder,
+                bodyLinks
+        ));
     }
 
     /**
@@ -121,6 +129,7 @@ public abstract class AbstractResponse<T> implements ResponseStream {
      * @param paginationLink  The type of the link being added
      * @param pageNumber  The page being linked to
      * @param perPage  The number of result rows in the page being linked to
+     * @param cursor  Opaque cursor for fetching the linked page directly, null to link by page number alone
      * @param uriBuilder  The builder for creating the pagination links
      * @param bodyLinks  The map of links that will be added to the body of the response
      */
@@ -128,16 +137,17 @@ public abstract class AbstractResponse<T> implements ResponseStream {
             PaginationLink paginationLink,
             int pageNumber,
             int perPage,
+            String cursor,
             UriBuilder uriBuilder,
             Map<String, URI> bodyLinks
     ) {
-        bodyLinks.put(
-                paginationLink.getBodyName(),
-                uriBuilder
-                        .replaceQueryParam(PAGE, pageNumber)
-                        .replaceQueryParam(PER_PAGE, perPage)
-                        .build()
-        );
+        uriBuilder.replaceQueryParam(PAGE, pageNumber).replaceQueryParam(PER_PAGE, perPage);
+        if (cursor == null) {
+            uriBuilder.replaceQueryParam(PaginationParameters.CURSOR);
+        } else {
+            uriBuilder.replaceQueryParam(PaginationParameters.CURSOR, cursor);
+        }
+        bodyLinks.put(paginationLink.getBodyName(), uriBuilder.build());
     }
 
     /**
@@ -155,6 +155,7 @@ public enum ErrorMessageFormat implements MessageFormatter {
     UNKNOWN_TIMEZONE_ID("Unable to recognize the timeZoneId: %s"),
     UNABLE_TO_SERIALIZE("Unable to serialize the %s object"),
     METRIC_VALUE_CLASS_NOT_FOUND("Metric value type class %s is not found"),
+    UNKNOWN_SERIALIZATION_FORMAT("Unable to deserialize the %s object, it isn't in a known format"),
 
     UNAUTHORIZED_WITH_RETRY("Not authorized to access the resource for given id %s. Retrying again %s more times"),
     UNAUTHORIZED("Not authorized to access the resource for given id %s."),
@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.apirequest;
 
 import com.yahoo.bard.webservice.util.Pagination;
 import com.yahoo.bard.webservice.web.util.PaginationLink;
+import com.yahoo.bard.webservice.web.util.PaginationParameters;
 
 import java.util.Arrays;
 import java.util.stream.Stream;
@@ -34,7 +35,9 @@ public class ResponsePaginator {
             UriInfo uriInfo,
             Pagination<?> pages
     ) {
-        link.getPage(pages).ifPresent(page -> addPageLink(responseBuilder, link, uriInfo, page));
+        link.getPage(pages).ifPresent(
+                page -> addPageLink(responseBuilder, link, uriInfo, page, link.getCursor(pages).orElse(null))
+        );
     }
 
     /**
@@ -50,8 +53,30 @@ public class ResponsePaginator {
             PaginationLink link,
             UriInfo uriInfo,
             int pageNumber
+    ) {
+        addPageLink(responseBuilder, link, uriInfo, pageNumber, null);
+    }
+
+    /**
+     * Add page links to the header of the response builder.
+     *
+     * @param responseBuilder The builder for the http response
+     * @param link  The type of the link to add.
+     * @param uriInfo The uri info for building page links
+     * @param pageNumber  Number of the page to add the link for.
+     * @param cursor  Opaque cursor for fetching the linked page directly, null to link by page number alone
+     */
+    protected static void addPageLink(
+            Response.ResponseBuilder responseBuilder,
+            PaginationLink link,
+            UriInfo uriInfo,
+            int pageNumber,
+            String cursor
     ) {
         UriBuilder uriBuilder = uriInfo.getRequestUriBuilder().replaceQueryParam("page", pageNumber);
+        uriBuilder = cursor == null ?
+                uriBuilder.replaceQueryParam(PaginationParameters.CURSOR) :
+                uriBuilder.replaceQueryParam(PaginationParameters.CURSOR, cursor);
         responseBuilder.header(HttpHeaders.LINK, Link.fromUriBuilder(uriBuilder).rel(link.getHeaderName()).build());
     }
 
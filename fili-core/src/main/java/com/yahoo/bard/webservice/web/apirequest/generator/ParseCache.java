@@ -0,0 +1,77 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.apirequest.generator;
+
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of parsed request parameters, keyed by the raw parameter and anything else the parse depends on.
+ * <p>
+ * Clients tend to send the same parameters over and over, so parsers keep what they made of the parameters they saw
+ * recently and reuse it, rather than running their grammar again. Only successful parses should be cached, and the
+ * cached values must not be modified by the callers they're handed to. The least recently used entries are evicted
+ * once the cache is full.
+ *
+ * @param <K>  Type of the keys, usually the raw parameter
+ * @param <V>  Type of the parsed values
+ */
+public class ParseCache<K, V> {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String API_PARSE_CACHE_SIZE = SYSTEM_CONFIG.getPackageVariableName("api_parse_cache_size");
+
+    private final Map<K, V> entries;
+
+    /**
+     * Constructor, taking the number of entries from the system config.
+     */
+    public ParseCache() {
+        this(SYSTEM_CONFIG.getIntProperty(API_PARSE_CACHE_SIZE, 1000));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxEntries  The number of parses to keep, none if 0
+     */
+    public ParseCache(int maxEntries) {
+        this.entries = new LinkedHashMap<K, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the parsed value of a key.
+     *
+     * @param key  The key of the parse
+     *
+     * @return the parsed value, or null if it isn't cached
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Keep the parsed value of a key.
+     *
+     * @param key  The key of the parse
+     * @param value  The parsed value, which mustn't be modified afterwards
+     */
+    public synchronized void put(K key, V value) {
+        entries.put(key, value);
+    }
+
+    /**
+     * Forget all parses.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+}
@@ -7,6 +7,7 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.FILTER_INVALID;
 
 import com.yahoo.bard.webservice.util.FilterTokenizer;
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadFilterException;
+import com.yahoo.bard.webservice.web.apirequest.generator.ParseCache;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -24,6 +25,8 @@ import javax.validation.constraints.NotNull;
  * {@link ApiFilterParser} that uses the regex stored in {@link RegexApiFilterParser#API_FILTER_PATTERN} to parse
  * individual filters in {@link FilterDefinition}s, and {@link RegexApiFilterParser#COMMA_AFTER_BRACKET_PATTERN} to
  * split filters.
+ * <p>
+ * Filter queries parsed recently are cached, and their filter definitions reused.
  */
 public class RegexApiFilterParser implements ApiFilterParser {
 
@@ -39,6 +42,8 @@ public class RegexApiFilterParser implements ApiFilterParser {
      */
     public static final Pattern API_FILTER_PATTERN = Pattern.compile("([^\\|]+)\\|([^-]+)-([^\\[]+)\\[([^\\]]+)\\]?");
 
+    private final ParseCache<String, List<FilterDefinition>> filterQueryCache = new ParseCache<>();
+
     @Override
     public FilterDefinition parseSingleApiFilterQuery(@NotNull String singleFilter) throws BadFilterException {
         if (singleFilter == null || singleFilter.isEmpty()) {
@@ -77,10 +82,16 @@ public class RegexApiFilterParser implements ApiFilterParser {
             return Collections.emptyList();
         }
 
+        List<FilterDefinition> cached = filterQueryCache.get(apiFilterQuery);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
         List<FilterDefinition> result = new ArrayList<>();
         for (String singleFilter : Arrays.asList(apiFilterQuery.split(COMMA_AFTER_BRACKET_PATTERN))) {
             result.add(parseSingleApiFilterQuery(singleFilter));
         }
+        filterQueryCache.put(apiFilterQuery, new ArrayList<>(result));
         return result;
     }
 }
@@ -5,7 +5,13 @@ package com.yahoo.bard.webservice.web.apirequest.generator.having;
 import com.yahoo.bard.webservice.data.metric.LogicalMetric;
 import com.yahoo.bard.webservice.data.metric.MetricDictionary;
 import com.yahoo.bard.webservice.web.ApiHaving;
+import com.yahoo.bard.webservice.web.apirequest.generator.ParseCache;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Function;
@@ -13,10 +19,15 @@ import java.util.stream.Collectors;
 
 /**
  * A having generator decorator that uses the metrics from the query as the dictionary of metrics for building havings.
+ * <p>
+ * Since the havings only depend on the having clause and the metrics of the query, recently generated havings are
+ * cached by both, and reused. This is the only layer caching havings, the decorated generator is handed a new
+ * dictionary on every miss, so it couldn't reuse what it cached.
  */
 public class PerRequestDictionaryHavingGenerator implements HavingGenerator {
 
     private final HavingGenerator havingGenerator;
+    private final ParseCache<List<Object>, Map<LogicalMetric, Set<ApiHaving>>> havingCache;
 
     /**
      * Constructor.
@@ -24,7 +35,21 @@ public class PerRequestDictionaryHavingGenerator implements HavingGenerator {
      * @param havingGenerator  A default having generator to decorate.
      */
     public PerRequestDictionaryHavingGenerator(HavingGenerator havingGenerator) {
+        this(havingGenerator, new ParseCache<>());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param havingGenerator  A default having generator to decorate.
+     * @param havingCache  The cache of generated havings, shared with the generators this one is copied to
+     */
+    private PerRequestDictionaryHavingGenerator(
+            HavingGenerator havingGenerator,
+            ParseCache<List<Object>, Map<LogicalMetric, Set<ApiHaving>>> havingCache
+    ) {
         this.havingGenerator = havingGenerator;
+        this.havingCache = havingCache;
     }
 
     /**
@@ -37,17 +62,45 @@ public class PerRequestDictionaryHavingGenerator implements HavingGenerator {
      */
     @Override
     public Map<LogicalMetric, Set<ApiHaving>> apply(String havingString, Set<LogicalMetric> logicalMetrics) {
+        List<Object> key = Arrays.asList(havingString, new HashSet<>(logicalMetrics));
+        Map<LogicalMetric, Set<ApiHaving>> cached = havingCache.get(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+
         Map<String, LogicalMetric> metricMap = logicalMetrics.stream()
                 .collect(Collectors.toMap(LogicalMetric::getName, Function.identity()));
         MetricDictionary metricDictionary = new MetricDictionary();
         metricDictionary.putAll(metricMap);
-        return havingGenerator
+        Map<LogicalMetric, Set<ApiHaving>> generated = havingGenerator
                 .withMetricDictionary(metricDictionary)
                 .apply(havingString, logicalMetrics);
+        havingCache.put(key, copy(generated));
+        return generated;
+    }
+
+    /**
+     * Copy havings, so that the cached ones can't be changed by the request they're handed to.
+     *
+     * @param havings  The havings to copy, null if the decorated generator produced none
+     *
+     * @return the copy, empty if there were no havings
+     */
+    private static Map<LogicalMetric, Set<ApiHaving>> copy(Map<LogicalMetric, Set<ApiHaving>> havings) {
+        Map<LogicalMetric, Set<ApiHaving>> copy = new LinkedHashMap<>();
+        if (havings == null) {
+            return copy;
+        }
+        havings.forEach((metric, metricHavings) -> copy.put(metric, new LinkedHashSet<>(metricHavings)));
+        return copy;
     }
 
     @Override
     public HavingGenerator withMetricDictionary(MetricDictionary metricDictionary) {
-        return new PerRequestDictionaryHavingGenerator(havingGenerator.withMetricDictionary(metricDictionary));
+        // The havings don't depend on the dictionary, since each request uses its own metrics as the dictionary
+        return new PerRequestDictionaryHavingGenerator(
+                havingGenerator.withMetricDictionary(metricDictionary),
+                havingCache
+        );
     }
 }
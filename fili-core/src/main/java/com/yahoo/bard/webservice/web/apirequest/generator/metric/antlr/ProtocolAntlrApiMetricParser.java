@@ -7,6 +7,7 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.METRIC_INVALID_WI
 
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadApiRequestException;
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadMetricException;
+import com.yahoo.bard.webservice.web.apirequest.generator.ParseCache;
 import com.yahoo.bard.webservice.web.apirequest.generator.metric.ApiMetricParser;
 import com.yahoo.bard.webservice.web.apirequest.metrics.ApiMetric;
 import com.yahoo.bard.webservice.web.metrics.MetricsLex;
@@ -17,12 +18,20 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+/**
+ * Parser that uses ANTLR to read metrics requests into api metrics.
+ * <p>
+ * Metric queries parsed recently are cached, and their api metrics reused.
+ */
 public class ProtocolAntlrApiMetricParser implements ApiMetricParser {
     private static final Logger LOG = LoggerFactory.getLogger(ProtocolAntlrApiMetricParser.class);
 
+    private final ParseCache<String, List<ApiMetric>> metricQueryCache = new ParseCache<>();
+
     @Override
     public List<ApiMetric> apply(
             String metricQuery
@@ -33,6 +42,11 @@ public class ProtocolAntlrApiMetricParser implements ApiMetricParser {
             return Collections.emptyList();
         }
 
+        List<ApiMetric> cached = metricQueryCache.get(metricQuery);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
         ApiMetricsListListener listener = new ApiMetricsListListener();
         MetricsLex lexer = MetricGrammarUtils.getLexer(metricQuery);
         MetricsParser parser = MetricGrammarUtils.getParser(lexer);
@@ -47,6 +61,7 @@ public class ProtocolAntlrApiMetricParser implements ApiMetricParser {
             }
             List<ApiMetric> generated = listener.getResults();
             LOG.trace("Generated list of metric detail: {}", generated);
+            metricQueryCache.put(metricQuery, new ArrayList<>(generated));
             return generated;
     }
 }
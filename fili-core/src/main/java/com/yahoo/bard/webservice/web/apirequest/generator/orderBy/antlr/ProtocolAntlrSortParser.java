@@ -8,6 +8,7 @@ import static com.yahoo.bard.webservice.web.ErrorMessageFormat.SORT_INVALID_WITH
 import com.yahoo.bard.webservice.druid.model.orderby.OrderByColumn;
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadApiRequestException;
 import com.yahoo.bard.webservice.web.apirequest.exceptions.BadOrderByException;
+import com.yahoo.bard.webservice.web.apirequest.generator.ParseCache;
 import com.yahoo.bard.webservice.web.sorts.SortsLex;
 import com.yahoo.bard.webservice.web.sorts.SortsParser;
 
@@ -16,16 +17,21 @@ import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 /**
  * Parser that reads a string and uses ANTLR to extract logical representatons of sort columns.
+ * <p>
+ * Sort queries parsed recently are cached, and their columns reused.
  */
 public class ProtocolAntlrSortParser {
 
     private static final Logger LOG = LoggerFactory.getLogger(ProtocolAntlrSortParser.class);
 
+    private final ParseCache<String, List<OrderByColumn>> sortQueryCache = new ParseCache<>();
+
     /**
      * Transform a text string into a protocol metric compliant order by column.
      *
@@ -44,6 +50,11 @@ public class ProtocolAntlrSortParser {
             return Collections.emptyList();
         }
 
+        List<OrderByColumn> cached = sortQueryCache.get(orderByQuery);
+        if (cached != null) {
+            return new ArrayList<>(cached);
+        }
+
         SortsListListener listener = new SortsListListener();
         SortsLex lexer = SortsGrammarUtils.getLexer(orderByQuery);
         SortsParser parser = SortsGrammarUtils.getParser(lexer);
@@ -57,6 +68,8 @@ public class ProtocolAntlrSortParser {
                     parseException.getCause()
             );
         }
-        return listener.getResults();
+        List<OrderByColumn> generated = listener.getResults();
+        sortQueryCache.put(orderByQuery, new ArrayList<>(generated));
+        return generated;
     }
 }
@@ -46,10 +46,12 @@ import com.yahoo.bard.webservice.web.apirequest.DataApiRequestFactory;
 import com.yahoo.bard.webservice.web.apirequest.generator.LegacyGenerator;
 import com.yahoo.bard.webservice.web.apirequest.generator.having.HavingGenerator;
 import com.yahoo.bard.webservice.web.apirequest.generator.metric.ApiRequestLogicalMetricBinder;
+import com.yahoo.bard.webservice.web.filters.RateLimitFilter;
 import com.yahoo.bard.webservice.web.handlers.DataRequestHandler;
 import com.yahoo.bard.webservice.web.handlers.RequestContext;
 import com.yahoo.bard.webservice.web.handlers.RequestHandlerUtils;
 import com.yahoo.bard.webservice.web.handlers.workflow.RequestWorkflowProvider;
+import com.yahoo.bard.webservice.web.ratelimit.RateLimitRequestToken;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessorFactory;
 import com.yahoo.bard.webservice.web.util.BardConfigResources;
@@ -447,6 +449,12 @@ public class DataServlet extends CORSPreflightServlet implements BardConfigResou
                 druidQuery = druidQueryBuilder.buildQuery(apiRequest, templateQuery);
             }
 
+            // Let a cost weighted rate limiter refine its charge now that the query is known
+            Object token = containerRequestContext.getProperty(RateLimitFilter.PROPERTY_TOKEN);
+            if (token instanceof RateLimitRequestToken) {
+                ((RateLimitRequestToken) token).adjustCost(druidQuery);
+            }
+
             // Accumulate data needed for request processing workflow
             RequestContext context;
             try (TimedPhase timer = RequestLog.startTiming("BuildRequestContext")) {
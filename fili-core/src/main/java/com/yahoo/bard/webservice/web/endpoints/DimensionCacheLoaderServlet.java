@@ -7,7 +7,10 @@ import static javax.ws.rs.core.Response.Status.INTERNAL_SERVER_ERROR;
 import static javax.ws.rs.core.Response.Status.NOT_FOUND;
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.cache.DataCache;
+import com.yahoo.bard.webservice.data.dimension.AvroDimensionRowParser;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary;
 import com.yahoo.bard.webservice.data.dimension.DimensionField;
@@ -18,17 +21,25 @@ import com.yahoo.bard.webservice.web.PATCH;
 import com.codahale.metrics.annotation.Timed;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.apache.avro.file.DataFileStream;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.inject.Inject;
@@ -41,8 +52,11 @@ import javax.ws.rs.POST;
 import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 /**
  * Web service endpoint to update the Dimension rows and dimension lastUpdated field.
@@ -50,7 +64,25 @@ import javax.ws.rs.core.Response.Status;
 @Path("cache")
 @Singleton
 public class DimensionCacheLoaderServlet {
+    public static final String NDJSON = "application/x-ndjson";
+    public static final String AVRO = "application/avro";
+
     private static final Logger LOG = LoggerFactory.getLogger(DimensionCacheLoaderServlet.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    private static final int UPLOAD_BATCH_SIZE = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_upload_batch_size"),
+            10000
+    );
+    private static final int UPLOAD_COMMIT_BATCHES = SYSTEM_CONFIG.getIntProperty(
+            SYSTEM_CONFIG.getPackageVariableName("dimension_upload_commit_batches"),
+            0
+    );
+
+    // Maps dimension fields to record fields of the same name
+    private static final AvroDimensionRowParser AVRO_ROW_PARSER = new AvroDimensionRowParser(
+            (dimension, dimensionField) -> dimensionField.getName()
+    );
 
     private final DimensionDictionary dimensionDictionary;
     private final ObjectMapper mapper;
@@ -219,6 +251,324 @@ public class DimensionCacheLoaderServlet {
         }
     }
 
+    /**
+     * Endpoint to add/replace dimension rows streamed as newline delimited JSON, one row object per line.
+     * <p>
+     * Rows are applied as by POST of a JSON document, but in batches as they arrive rather than once the whole body
+     * has been read, so the upload can be of any size. The search index is committed once the upload is done, or
+     * every {@code commitBatches} batches if that's positive.
+     * <pre><code>
+     * { "id":"usa", "description":"United_States_of_America" }
+     * { "id":"can", "description":"Canada" }
+     * </code></pre>
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param batchSize  number of rows applied at a time, or null for the configured default
+     * @param commitBatches  number of batches between index commits, or null for the configured default
+     * @param rows  the stream of rows
+     *
+     * @return OK(200) with a newline delimited JSON stream of progress reports, one per batch, or Not Found(404) or
+     * Bad Request(400)
+     */
+    @POST
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows")
+    @Consumes(NDJSON)
+    @Produces(NDJSON)
+    public Response streamDimensionRows(
+            @PathParam("dimensionName") String dimensionName,
+            @QueryParam("batchSize") Integer batchSize,
+            @QueryParam("commitBatches") Integer commitBatches,
+            InputStream rows
+    ) {
+        return streamRows(
+                dimensionName,
+                batchSize,
+                commitBatches,
+                (dimension, progress) -> {
+                    try (MappingIterator<LinkedHashMap<String, String>> rawRows = mapper
+                            .readerFor(new TypeReference<LinkedHashMap<String, String>>() { /* Empty class */ })
+                            .readValues(rows)) {
+                        return applyRowStream(
+                                dimension,
+                                rawRows,
+                                dimension::parseDimensionRow,
+                                batchSize == null ? UPLOAD_BATCH_SIZE : batchSize,
+                                commitBatches == null ? UPLOAD_COMMIT_BATCHES : commitBatches,
+                                progress
+                        );
+                    }
+                }
+        );
+    }
+
+    /**
+     * Endpoint to add/replace dimension rows streamed as an AVRO data file.
+     * <p>
+     * Rows are applied in batches as they arrive, as by the newline delimited JSON stream. The record schema must have
+     * a field named after each dimension field.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified. (path parameter)
+     * @param batchSize  number of rows applied at a time, or null for the configured default
+     * @param commitBatches  number of batches between index commits, or null for the configured default
+     * @param rows  the AVRO data file
+     *
+     * @return OK(200) with a newline delimited JSON stream of progress reports, one per batch, or Not Found(404) or
+     * Bad Request(400)
+     */
+    @POST
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows")
+    @Consumes(AVRO)
+    @Produces(NDJSON)
+    public Response streamAvroDimensionRows(
+            @PathParam("dimensionName") String dimensionName,
+            @QueryParam("batchSize") Integer batchSize,
+            @QueryParam("commitBatches") Integer commitBatches,
+            InputStream rows
+    ) {
+        return streamRows(
+                dimensionName,
+                batchSize,
+                commitBatches,
+                (dimension, progress) -> {
+                    try (DataFileStream<GenericRecord> records = new DataFileStream<>(
+                            rows,
+                            new GenericDatumReader<>()
+                    )) {
+                        return applyRowStream(
+                                dimension,
+                                records,
+                                AVRO_ROW_PARSER.buildRowConverter(dimension, records.getSchema()),
+                                batchSize == null ? UPLOAD_BATCH_SIZE : batchSize,
+                                commitBatches == null ? UPLOAD_COMMIT_BATCHES : commitBatches,
+                                progress
+                        );
+                    }
+                }
+        );
+    }
+
+    /**
+     * Validate a streaming upload and build the response that applies it.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be modified
+     * @param batchSize  number of rows applied at a time, or null for the configured default
+     * @param commitBatches  number of batches between index commits, or null for the configured default
+     * @param upload  reads the upload and applies its rows to the dimension, reporting progress
+     *
+     * @return the response streaming the progress of the upload, or an error response
+     */
+    private Response streamRows(
+            String dimensionName,
+            Integer batchSize,
+            Integer commitBatches,
+            RowUpload upload
+    ) {
+        Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+        if (dimension == null) {
+            String message = String.format("Dimension %s cannot be found.", dimensionName);
+            LOG.debug(message);
+            return Response.status(NOT_FOUND).entity(message).build();
+        }
+        if ((batchSize != null && batchSize < 1) || (commitBatches != null && commitBatches < 0)) {
+            String message = "batchSize must be positive and commitBatches must not be negative";
+            LOG.debug(message);
+            return Response.status(BAD_REQUEST).entity(message).build();
+        }
+
+        StreamingOutput output = progress -> {
+            long rowCount;
+            try {
+                rowCount = upload.apply(dimension, progress);
+            } catch (IOException | RuntimeException e) {
+                String message = String.format("Failed to stream dimension rows of %s", dimensionName);
+                LOG.error(message, e);
+                Map<String, Object> error = new LinkedHashMap<>();
+                error.put("error", message + ": " + e.getMessage());
+                writeProgress(progress, error);
+                return;
+            }
+            LOG.debug("Successfully streamed {} row(s) for dimension: {}", rowCount, dimensionName);
+        };
+        return Response.status(Status.OK).entity(output).type(NDJSON).build();
+    }
+
+    /**
+     * Apply a stream of rows to a dimension in batches, reporting progress after each batch.
+     * <p>
+     * A progress report is a line of JSON with the number of rows and batches applied so far, and whether the search
+     * index is committed up to them. The last report also has {@code "done":true}. The index changes applied before
+     * a failure are committed before the failure is passed on.
+     *
+     * @param dimension  the dimension to apply the rows to
+     * @param records  the records to apply
+     * @param rowParser  parses a record into a dimension row
+     * @param batchSize  number of rows applied at a time
+     * @param commitBatches  number of batches between index commits, or 0 to commit only at the end
+     * @param progress  the stream progress reports are written to
+     * @param <T>  the type of the records
+     *
+     * @return the number of rows applied
+     *
+     * @throws IOException if a progress report can't be written
+     */
+    private <T> long applyRowStream(
+            Dimension dimension,
+            Iterator<T> records,
+            Function<T, DimensionRow> rowParser,
+            int batchSize,
+            int commitBatches,
+            OutputStream progress
+    ) throws IOException {
+        long rowCount = 0;
+        long batchCount = 0;
+        boolean committed = true;
+        try {
+            Set<DimensionRow> batch = new LinkedHashSet<>();
+            while (records.hasNext()) {
+                batch.add(rowParser.apply(records.next()));
+                if (batch.size() < batchSize) {
+                    continue;
+                }
+                batchCount++;
+                boolean commit = commitBatches > 0 && batchCount % commitBatches == 0;
+                dimension.addAllDimensionRows(batch, commit);
+                committed = commit;
+                rowCount += batch.size();
+                batch = new LinkedHashSet<>();
+                writeProgress(progress, progressReport(rowCount, batchCount, committed, false));
+            }
+
+            // Flush the last, partial, batch
+            if (!batch.isEmpty()) {
+                batchCount++;
+                boolean commit = commitBatches > 0 && batchCount % commitBatches == 0;
+                dimension.addAllDimensionRows(batch, commit);
+                committed = commit;
+                rowCount += batch.size();
+                writeProgress(progress, progressReport(rowCount, batchCount, committed, false));
+            }
+        } finally {
+            if (!committed) {
+                dimension.commitIndex();
+            }
+        }
+        writeProgress(progress, progressReport(rowCount, batchCount, true, true));
+        return rowCount;
+    }
+
+    /**
+     * Build a progress report of a streaming upload.
+     *
+     * @param rowCount  number of rows applied
+     * @param batchCount  number of batches applied
+     * @param committed  whether the index is committed up to the applied rows
+     * @param done  whether the upload is done
+     *
+     * @return the report
+     */
+    private Map<String, Object> progressReport(long rowCount, long batchCount, boolean committed, boolean done) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("rows", rowCount);
+        report.put("batches", batchCount);
+        report.put("committed", committed);
+        if (done) {
+            report.put("done", true);
+        }
+        return report;
+    }
+
+    /**
+     * Write a line of JSON to a streamed response and flush it to the client.
+     *
+     * @param output  the response stream
+     * @param line  the object to write
+     *
+     * @throws IOException if the line can't be written
+     */
+    private void writeProgress(OutputStream output, Map<String, Object> line) throws IOException {
+        output.write(mapper.writeValueAsBytes(line));
+        output.write('\n');
+        output.flush();
+    }
+
+    /**
+     * Reads a streamed upload and applies its rows to a dimension.
+     */
+    @FunctionalInterface
+    private interface RowUpload {
+
+        /**
+         * Read the upload and apply its rows.
+         *
+         * @param dimension  the dimension to apply the rows to
+         * @param progress  the stream progress reports are written to
+         *
+         * @return the number of rows applied
+         *
+         * @throws IOException if the upload can't be read or progress can't be reported
+         */
+        long apply(Dimension dimension, OutputStream progress) throws IOException;
+    }
+
+    /**
+     * Endpoint to reload all the rows of a dimension in bulk.
+     * <p>
+     * Every row is stored as by POST, and the dimension's search index is rebuilt from the rows offline and swapped in
+     * without interrupting searches, if its search provider supports that. Rows that are not in the payload no longer
+     * show up in searches of a rebuilt index. Search providers that can't rebuild their index have the rows added as
+     * by POST.
+     *
+     * @param dimensionName  name of the dimension whose dimension rows are to be reloaded. (path parameter)
+     * @param json  post data json containing a list of json objects which describe all the dimension rows
+     * <pre><code>
+     * {
+     *     "dimensionRows": [
+     *         { "id":"usa", "description":"United_States_of_America" },
+     *         { "id":"can", "description":"Canada" }
+     *     ]
+     * }
+     * </code></pre>
+     *
+     * @return OK(200) if successfully reloaded else Bad Request(400)
+     */
+    @PUT
+    @Timed
+    @Path("/dimensions/{dimensionName}/dimensionRows")
+    @Consumes("application/json; charset=utf-8")
+    public Response reloadDimensionRows(@PathParam("dimensionName") String dimensionName, String json) {
+        LOG.debug("Reloading {} dimension rows with a json payload {} characters long", dimensionName, json.length());
+        try {
+            // if dimension is not located return bad request response
+            Dimension dimension = dimensionDictionary.findByApiName(dimensionName);
+            if (dimension == null) {
+                String message = String.format("Dimension %s cannot be found.", dimensionName);
+                LOG.debug(message);
+                return Response.status(NOT_FOUND).entity(message).build();
+            }
+
+            // extract dimension rows from the post data
+            Map<String, LinkedHashSet<LinkedHashMap<String, String>>> rawDimensionRows = mapper.readValue(
+                    json,
+                    new TypeReference<Map<String, LinkedHashSet<LinkedHashMap<String, String>>>>() { /* Empty class */ }
+            );
+
+            Set<DimensionRow> dimensionRows = rawDimensionRows.get("dimensionRows").stream()
+                    .map(dimension::parseDimensionRow)
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+
+            dimension.reloadAllDimensionRows(dimensionRows);
+
+            LOG.debug("Successfully reloaded {} row(s) for dimension: {}", dimensionRows.size(), dimensionName);
+            return Response.status(Status.OK).build();
+        } catch (IOException e) {
+            String message = "Failed to reload dimension rows";
+            LOG.error(message, e);
+            return Response.status(INTERNAL_SERVER_ERROR).entity(message).build();
+        }
+    }
+
     /**
      * Endpoint to add/update dimension rows, with update semantics.
      * <p>
@@ -266,6 +266,7 @@ public class DimensionsServlet extends EndpointServlet {
      * @param filterQuery  The filters
      * @param page  The page number
      * @param perPage  The number of rows per page
+     * @param cursor  Opaque cursor, from the next link of the previous page, for fetching the page directly
      * @param format  The format of the response
      * @param downloadFilename If present, indicates the response should be downloaded by the client with the provided
      * filename. Otherwise indicates the response should be rendered in the browser.
@@ -299,6 +300,7 @@ public class DimensionsServlet extends EndpointServlet {
             @QueryParam("filters") String filterQuery,
             @DefaultValue("") @NotNull @QueryParam("perPage") String perPage,
             @DefaultValue("") @NotNull @QueryParam("page") String page,
+            @QueryParam("cursor") String cursor,
             @QueryParam("format") String format,
             @QueryParam("filename") String downloadFilename,
             @Context final UriInfo uriInfo,
@@ -328,6 +330,9 @@ public class DimensionsServlet extends EndpointServlet {
             PaginationParameters paginationParameters = apiRequest
                     .getPaginationParameters()
                     .orElse(ApiRequestImpl.DEFAULT_PAGINATION);
+            if (cursor != null) {
+                paginationParameters = paginationParameters.withCursor(cursor);
+            }
 
             Pagination<DimensionRow> pagedRows = getPagedRows(apiRequest, searchProvider, paginationParameters);
             Response.ResponseBuilder builder = Response.status(Response.Status.OK);
@@ -8,7 +8,7 @@ import static javax.ws.rs.core.Response.Status.OK;
 
 import com.yahoo.bard.webservice.application.ObjectMappersSuite;
 import com.yahoo.bard.webservice.async.ResponseException;
-import com.yahoo.bard.webservice.async.broadcastchannels.BroadcastChannel;
+import com.yahoo.bard.webservice.async.broadcastchannels.TicketNotificationRegistry;
 import com.yahoo.bard.webservice.async.jobs.payloads.JobPayloadBuilder;
 import com.yahoo.bard.webservice.async.jobs.stores.ApiJobStore;
 import com.yahoo.bard.webservice.async.preresponses.stores.PreResponseStore;
@@ -48,7 +48,6 @@ import org.slf4j.LoggerFactory;
 
 import rx.Observable;
 import rx.exceptions.Exceptions;
-import rx.observables.ConnectableObservable;
 
 import java.net.URI;
 import java.util.Arrays;
@@ -56,7 +55,6 @@ import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
-import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
 import javax.inject.Inject;
@@ -90,7 +88,7 @@ public class JobsServlet extends EndpointServlet {
     private final RequestMapper requestMapper;
     private final JobPayloadBuilder jobPayloadBuilder;
     private final PreResponseStore preResponseStore;
-    private final BroadcastChannel<String> broadcastChannel;
+    private final TicketNotificationRegistry ticketNotifications;
     private final ObjectWriter writer;
     private final HttpResponseMaker httpResponseMaker;
 
@@ -103,7 +101,7 @@ public class JobsServlet extends EndpointServlet {
      * @param apiJobStore  The ApiJobStore containing job metadata
      * @param jobPayloadBuilder  The JobRowMapper to be used to map JobRow to the Job returned via the api
      * @param preResponseStore  The Data store that stores all the PreResponses
-     * @param broadcastChannel  Channel to notify other Bard processes (i.e. long pollers)
+     * @param ticketNotifications  Wakes the long pollers as the tickets of their jobs are broadcast
      * @param requestMapper  Mapper for changing the API request
      * @param httpResponseMaker  The factory for building HTTP responses
      * @param formatResolver  The formatResolver for determining correct response format
@@ -115,7 +113,7 @@ public class JobsServlet extends EndpointServlet {
             ApiJobStore apiJobStore,
             JobPayloadBuilder jobPayloadBuilder,
             PreResponseStore preResponseStore,
-            BroadcastChannel<String> broadcastChannel,
+            TicketNotificationRegistry ticketNotifications,
             @Named(JobsApiRequest.REQUEST_MAPPER_NAMESPACE) RequestMapper requestMapper,
             HttpResponseMaker httpResponseMaker,
             ResponseFormatResolver formatResolver,
@@ -126,7 +124,7 @@ public class JobsServlet extends EndpointServlet {
         this.apiJobStore = apiJobStore;
         this.jobPayloadBuilder = jobPayloadBuilder;
         this.preResponseStore = preResponseStore;
-        this.broadcastChannel = broadcastChannel;
+        this.ticketNotifications = ticketNotifications;
         this.writer = objectMappers.getMapper().writer();
         this.httpResponseMaker = httpResponseMaker;
         this.formatResolver = formatResolver;
@@ -382,11 +380,10 @@ public class JobsServlet extends EndpointServlet {
     }
 
     /**
-     * Get an Observable wrapping a PreResponse. We first connect to the BroadcastChannel to ensure that we do not
+     * Get an Observable wrapping a PreResponse. We first start waiting on the ticket to ensure that we do not
      * miss any notifications. We then check the PreResponseStore for the PreResponse. If no PreResponse is available,
-     * we check to see if we got a notification from the BroadcastChannel before the async timeout. If we get a
-     * notification before timeout, we retrieve the PreResponse from the PreResponseStore else we return an empty
-     * Observable.
+     * we check to see if the ticket was published on the BroadcastChannel before the async timeout. If it was, we
+     * retrieve the PreResponse from the PreResponseStore else we return an empty Observable.
      *
      * @param ticket  The ticket for which the PreResponse needs to be retrieved.
      * @param asyncAfter  The minimum duration the request is allowed to last before becoming asynchronous
@@ -401,49 +398,31 @@ public class JobsServlet extends EndpointServlet {
             return Observable.empty();
         }
         /*
-         * BroadCastChannel is a hot observable i.e. it emits notification irrespective of whether it has any
-         * subscribers. We use the replay operator so that the preResponseObservable upon connection, will begin
-         * collecting values.
-         * Once a new observer subscribes to the observable, it will have all the collected values replayed to it.
+         * The registry only wakes the requests waiting on a published ticket, and remembers how the wait ended, so
+         * that the notification may be subscribed to after the ticket has been published. The wait times out after
+         * 'asyncAfter', unless the request is forced to be synchronous, and is cancelled once the results are found
+         * in the store or the request goes away.
          */
-        ConnectableObservable<String> broadcastChannelNotifications = broadcastChannel.getNotifications()
-                .filter(ticket::equals)
-                .take(1)
-                .replay(1);
-        broadcastChannelNotifications.connect();
+        TicketNotificationRegistry.Waiter waiter = ticketNotifications.await(
+                ticket,
+                asyncAfter == JobsApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE
+                        ? TicketNotificationRegistry.NO_TIMEOUT
+                        : asyncAfter
+        );
         /*
          * In the cases where we may get a synchronous response (asyncAfter is a number, or
          * ApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE ), then we start the timer, and
          * go to the store and check to see if it has the results. If it doesn't, and 'asyncAfter' is a number
-         * then it starts listening to the broadcast channel, and waiting for the timer to expire.
+         * then it waits for the ticket to be published, or for the timer to expire.
          *
          * What this means is that in the case of `asyncAfter=0`, we have the following semantics:
          * If the results are already in the response store, then return them to me. Otherwise, very quickly
          * send back the asynchronous payload.
          */
-        return preResponseStore.get(ticket).switchIfEmpty(
-                applyTimeoutIfNeeded(broadcastChannelNotifications, asyncAfter).flatMap(preResponseStore::get)
-        );
-    }
-
-    /**
-     * Given an observable, returns a new observable with an asyncAfter timeout applied only if {@code asyncAfter} is
-     * not {@code never}.
-     * <p>
-     * If the timeout expires, the current observable is replaced with an empty observable.
-     *
-     * @param primary  The observable that should have a timeout attached to it, if the request's asyncAfter is
-     * a number
-     * @param asyncAfter  The minimum duration the request is allowed to last before becoming asynchronous
-     * @param <T>  The type of the observable's payload
-     *
-     * @return An Observable that may or may not have a timeout attached to it, depending on whether the request is
-     * forced to be synchronous or not
-     */
-    private <T> Observable<T> applyTimeoutIfNeeded(Observable<T> primary, long asyncAfter) {
-        return asyncAfter == JobsApiRequest.SYNCHRONOUS_ASYNC_AFTER_VALUE ?
-                primary :
-                primary.timeout(asyncAfter, TimeUnit.MILLISECONDS, Observable.empty());
+        return preResponseStore.get(ticket)
+                .switchIfEmpty(waiter.getNotification().flatMap(preResponseStore::get))
+                .doOnTerminate(waiter::cancel)
+                .doOnUnsubscribe(waiter::cancel);
     }
 
     /**
@@ -35,7 +35,7 @@ import javax.ws.rs.core.Response;
 public class RateLimitFilter implements ContainerRequestFilter, ContainerResponseFilter {
 
     private static final Logger LOG = LoggerFactory.getLogger(RateLimitFilter.class);
-    private static final String PROPERTY_TOKEN = RateLimiter.class.getName() + ".token";
+    public static final String PROPERTY_TOKEN = RateLimiter.class.getName() + ".token";
     private static final String DATA_PATH = "/v1/data";
 
     protected final RateLimiter rateLimiter;
@@ -5,26 +5,39 @@ package com.yahoo.bard.webservice.web.handlers;
 import static com.yahoo.bard.webservice.web.ErrorMessageFormat.EMPTY_INTERVAL_FORMAT;
 
 import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.time.AllGranularity;
 import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.HttpErrorCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.util.IntervalUtils;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
 import com.yahoo.bard.webservice.web.responseprocessors.SplitQueryResponseProcessor;
 
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import org.joda.time.Interval;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.validation.constraints.NotNull;
@@ -35,23 +48,85 @@ import javax.ws.rs.core.Response;
  * <p>
  * It creates a common response processor which serves as an accumulator to receive all replies before delegating to the
  * result set processing.
+ * <p>
+ * When a query spans more time buckets than the maximum number of sub-queries, adjacent buckets are grouped into
+ * sub-queries of several buckets, so that a long query at a fine grain doesn't turn into thousands of requests. The
+ * sub-queries aren't all sent at once either: only so many of a request's sub-queries are in flight at a time, and
+ * beyond its first one, each needs a permit shared by all requests going through the handler. The next sub-query is
+ * sent as an earlier one completes, and no more are sent once one has failed.
  */
 public class SplitQueryRequestHandler implements DataRequestHandler {
 
     private static final Logger LOG = LoggerFactory.getLogger(SplitQueryRequestHandler.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
     private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
     public static final Meter SPLIT_QUERIES = REGISTRY.meter("queries.meter.split_queries.sub_queries");
     public static final Meter SPLITS = REGISTRY.meter("queries.meter.split_queries.splits");
+    public static final Meter COALESCED_SPLITS = REGISTRY.meter("queries.meter.split_queries.coalesced");
+
+    public static final String MAX_SUB_QUERIES_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "split_query_max_sub_queries"
+    );
+    public static final String MAX_IN_FLIGHT_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "split_query_max_in_flight"
+    );
+    public static final String GLOBAL_MAX_IN_FLIGHT_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "split_query_global_max_in_flight"
+    );
 
     protected final @NotNull DataRequestHandler next;
+    private final int maxSubQueries;
+    private final int maxInFlight;
+    private final Semaphore sharedInFlight;
 
     /**
-     * Build a Split Query Request Handler.
+     * Build a Split Query Request Handler, taking its limits from the system config.
      *
      * @param next  The next handler in the chain
      */
     public SplitQueryRequestHandler(DataRequestHandler next) {
+        this(
+                next,
+                SYSTEM_CONFIG.getIntProperty(MAX_SUB_QUERIES_KEY, 500),
+                SYSTEM_CONFIG.getIntProperty(MAX_IN_FLIGHT_KEY, 32)
+        );
+    }
+
+    /**
+     * Build a Split Query Request Handler.
+     *
+     * @param next  The next handler in the chain
+     * @param maxSubQueries  Number of sub-queries above which adjacent buckets are grouped together, no limit if 0
+     * @param maxInFlight  Number of a request's sub-queries in flight at a time, no limit if 0
+     */
+    public SplitQueryRequestHandler(DataRequestHandler next, int maxSubQueries, int maxInFlight) {
+        this(
+                next,
+                maxSubQueries,
+                maxInFlight,
+                new Semaphore(SYSTEM_CONFIG.getIntProperty(GLOBAL_MAX_IN_FLIGHT_KEY, 512))
+        );
+    }
+
+    /**
+     * Build a Split Query Request Handler.
+     *
+     * @param next  The next handler in the chain
+     * @param maxSubQueries  Number of sub-queries above which adjacent buckets are grouped together, no limit if 0
+     * @param maxInFlight  Number of a request's sub-queries in flight at a time, no limit if 0
+     * @param sharedInFlight  Permits for the sub-queries in flight across all requests, beyond the first one of each
+     * request, which may be shared with other handlers
+     */
+    public SplitQueryRequestHandler(
+            DataRequestHandler next,
+            int maxSubQueries,
+            int maxInFlight,
+            Semaphore sharedInFlight
+    ) {
         this.next = next;
+        this.maxSubQueries = maxSubQueries;
+        this.maxInFlight = maxInFlight <= 0 ? Integer.MAX_VALUE : maxInFlight;
+        this.sharedInFlight = sharedInFlight;
     }
 
     @Override
@@ -69,19 +144,23 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
            return next.handleRequest(context, request, druidQuery, response);
         }
 
-        Map<Interval, AtomicInteger> expectedIntervals = Collections.unmodifiableMap(
-                IntervalUtils.getSlicedIntervals(queryIntervals, granularity)
-        );
+        Map<Interval, AtomicInteger> slicedIntervals = IntervalUtils.getSlicedIntervals(queryIntervals, granularity);
 
-        int numberOfIntervals = expectedIntervals.size();
-
-        if (numberOfIntervals == 0) {
+        if (slicedIntervals.isEmpty()) {
             String message = EMPTY_INTERVAL_FORMAT.format(request.getIntervals());
             int badRequestCode = Response.Status.BAD_REQUEST.getStatusCode();
             response.getErrorCallback(druidQuery).dispatch(badRequestCode, message, message);
             return true;
         }
 
+        if (maxSubQueries > 0 && slicedIntervals.size() > maxSubQueries && canCoalesce(druidQuery)) {
+            slicedIntervals = coalesce(slicedIntervals.keySet());
+            COALESCED_SPLITS.mark();
+        }
+        Map<Interval, AtomicInteger> expectedIntervals = Collections.unmodifiableMap(slicedIntervals);
+
+        int numberOfIntervals = expectedIntervals.size();
+
         // Currently this is the only place where we fork multiple queries from a single query.
         // Here we check that this is correct and we also save the number of sub-queries.
         if (
@@ -107,21 +186,203 @@ public class SplitQueryRequestHandler implements DataRequestHandler {
         // Save RequestLog up to here
         final RequestLog logCtx = RequestLog.dump();
 
-        final SplitQueryResponseProcessor mergingResponse =
-                new SplitQueryResponseProcessor(response, request, druidQuery, expectedIntervals, logCtx);
-
         if (numberOfIntervals > 1) {
             SPLITS.mark(1);
             SPLIT_QUERIES.mark(numberOfIntervals);
         }
 
-        queries.stream().forEach(
-                q -> {
+        new SubQueryScheduler(context, request, druidQuery, response, expectedIntervals, queries, logCtx)
+                .sendAvailable();
+
+        return true;
+    }
+
+    /**
+     * Whether the buckets of a query can be grouped into sub-queries of several buckets.
+     * <p>
+     * The limit of a group by query applies to all of its buckets together, so grouping its buckets differently would
+     * change its results.
+     *
+     * @param druidQuery  The query being split
+     *
+     * @return true if buckets can be grouped
+     */
+    protected boolean canCoalesce(DruidAggregationQuery<?> druidQuery) {
+        if (!(druidQuery instanceof GroupByQuery)) {
+            return true;
+        }
+        GroupByQuery groupByQuery = (GroupByQuery) druidQuery;
+        return groupByQuery.getLimitSpec() == null || !groupByQuery.getLimitSpec().getLimit().isPresent();
+    }
+
+    /**
+     * Group adjacent buckets together, into as few intervals as needed to stay within the maximum sub-queries.
+     * <p>
+     * Buckets that don't abut are never grouped, so gaps in the query intervals can leave more intervals than the
+     * maximum.
+     *
+     * @param buckets  The buckets of the query, in order
+     *
+     * @return the grouped intervals, mapped to their index
+     */
+    protected Map<Interval, AtomicInteger> coalesce(Collection<Interval> buckets) {
+        int bucketsPerQuery = (buckets.size() + maxSubQueries - 1) / maxSubQueries;
+        Map<Interval, AtomicInteger> coalesced = new LinkedHashMap<>();
+        Interval current = null;
+        int bucketCount = 0;
+        for (Interval bucket : buckets) {
+            if (current != null && bucketCount < bucketsPerQuery && current.abuts(bucket)) {
+                current = current.withEnd(bucket.getEnd());
+                bucketCount++;
+                continue;
+            }
+            if (current != null) {
+                coalesced.put(current, new AtomicInteger(coalesced.size()));
+            }
+            current = bucket;
+            bucketCount = 1;
+        }
+        coalesced.put(current, new AtomicInteger(coalesced.size()));
+        return coalesced;
+    }
+
+    /**
+     * Merges the responses of the sub-queries of a request, and sends the sub-queries, keeping no more than the allowed
+     * number in flight.
+     * <p>
+     * It hears of each sub-query completing as it merges its response, and sends the next ones then. Responses can
+     * arrive while sub-queries are being sent, even on the sending thread when they're served from a cache, so only one
+     * thread sends at a time and the others leave it to send what their completion allows.
+     */
+    private class SubQueryScheduler extends SplitQueryResponseProcessor {
+
+        private final RequestContext context;
+        private final DataApiRequest request;
+        private final Queue<DruidAggregationQuery<?>> pending;
+        private final RequestLog logCtx;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicInteger heldPermits = new AtomicInteger();
+        private final AtomicInteger sendRequests = new AtomicInteger();
+        private final AtomicBoolean failed = new AtomicBoolean(false);
+
+        /**
+         * Constructor.
+         *
+         * @param context  The context of the request
+         * @param request  The request being split
+         * @param druidQuery  The query being split
+         * @param response  The response processor to hand the merged response to
+         * @param expectedIntervals  The intervals of the sub-queries, mapped to their index
+         * @param queries  The sub-queries, in order
+         * @param logCtx  The request log to send sub-queries with
+         */
+        SubQueryScheduler(
+                RequestContext context,
+                DataApiRequest request,
+                DruidAggregationQuery<?> druidQuery,
+                ResponseProcessor response,
+                Map<Interval, AtomicInteger> expectedIntervals,
+                List<DruidAggregationQuery<?>> queries,
+                RequestLog logCtx
+        ) {
+            super(response, request, druidQuery, expectedIntervals, logCtx);
+            this.context = context;
+            this.request = request;
+            this.pending = new ConcurrentLinkedQueue<>(queries);
+            this.logCtx = logCtx;
+        }
+
+        /**
+         * Send as many pending sub-queries as the limits allow, unless another thread is already sending.
+         *
+         * @throws RuntimeException if the next handler fails to send a sub-query, after which no more are sent
+         */
+        void sendAvailable() {
+            if (sendRequests.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                while (!failed.get() && !pending.isEmpty() && inFlight.get() < maxInFlight) {
+                    // A request with nothing in flight always gets to send, so it can't be starved by the others
+                    boolean needsPermit = inFlight.get() > 0;
+                    if (needsPermit && !sharedInFlight.tryAcquire()) {
+                        break;
+                    } else if (needsPermit) {
+                        heldPermits.incrementAndGet();
+                    }
+                    inFlight.incrementAndGet();
                     RequestLog.restore(logCtx);
-                    next.handleRequest(context, request, q, mergingResponse);
+                    try {
+                        next.handleRequest(context, request, pending.poll(), this);
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                        release();
+                        throw e;
+                    }
                 }
-        );
+            } while (sendRequests.decrementAndGet() != 0);
+        }
 
-        return true;
+        /**
+         * Account for a sub-query that completed, and send the next ones it makes room for.
+         *
+         * @param druidQuery  The sub-query that completed
+         */
+        private void subQueryDone(DruidAggregationQuery<?> druidQuery) {
+            release();
+            if (failed.get() || pending.isEmpty()) {
+                return;
+            }
+            // Sending replaces this thread's request log, which belongs to whoever delivered the response
+            RequestLog callerLog = RequestLog.dump();
+            try {
+                sendAvailable();
+            } catch (RuntimeException e) {
+                LOG.error("Unable to send the next sub-query of a split query", e);
+                super.getFailureCallback(druidQuery).invoke(e);
+            } finally {
+                RequestLog.restore(callerLog);
+            }
+        }
+
+        /**
+         * Take a sub-query out of flight, releasing a shared permit if one is held for it.
+         */
+        private void release() {
+            inFlight.decrementAndGet();
+            if (heldPermits.getAndUpdate(permits -> permits > 0 ? permits - 1 : 0) > 0) {
+                sharedInFlight.release();
+            }
+        }
+
+        @Override
+        public FailureCallback getFailureCallback(DruidAggregationQuery<?> druidQuery) {
+            FailureCallback nextFail = super.getFailureCallback(druidQuery);
+            return error -> {
+                failed.set(true);
+                nextFail.invoke(error);
+                subQueryDone(druidQuery);
+            };
+        }
+
+        @Override
+        public HttpErrorCallback getErrorCallback(DruidAggregationQuery<?> druidQuery) {
+            HttpErrorCallback nextError = super.getErrorCallback(druidQuery);
+            return (statusCode, reasonPhrase, responseBody) -> {
+                failed.set(true);
+                nextError.invoke(statusCode, reasonPhrase, responseBody);
+                subQueryDone(druidQuery);
+            };
+        }
+
+        @Override
+        public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+            try {
+                super.processResponse(json, druidQuery, metadata);
+            } finally {
+                subQueryDone(druidQuery);
+            }
+        }
     }
 }
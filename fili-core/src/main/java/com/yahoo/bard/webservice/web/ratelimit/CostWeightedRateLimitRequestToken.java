@@ -0,0 +1,89 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.ratelimit;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Request token for a request admitted by a {@link CostWeightedRateLimiter}, which returns the request's cost to the
+ * limiter's budgets when the request completes.
+ */
+public class CostWeightedRateLimitRequestToken implements RateLimitRequestToken {
+    private static final Logger LOG = LoggerFactory.getLogger(CostWeightedRateLimitRequestToken.class);
+
+    private final CostWeightedRateLimiter rateLimiter;
+    private final String userName;
+    private final long userLimit;
+    private long cost;
+    private boolean isBound;
+
+    /**
+     * Constructor.
+     *
+     * @param rateLimiter  The limiter whose budgets the request has been charged to
+     * @param userName  The user who made the request
+     * @param userLimit  The budget of that user
+     * @param cost  The cost the request has been charged
+     */
+    protected CostWeightedRateLimitRequestToken(
+            CostWeightedRateLimiter rateLimiter,
+            String userName,
+            long userLimit,
+            long cost
+    ) {
+        this.rateLimiter = rateLimiter;
+        this.userName = userName;
+        this.userLimit = userLimit;
+        this.cost = cost;
+        this.isBound = true;
+    }
+
+    /**
+     * Get the cost currently charged for this request.
+     *
+     * @return the cost
+     */
+    public synchronized long getCost() {
+        return cost;
+    }
+
+    @Override
+    public synchronized boolean isBound() {
+        return isBound;
+    }
+
+    @Override
+    public synchronized boolean bind() {
+        return isBound;
+    }
+
+    @Override
+    public synchronized void unBind() {
+        if (isBound) {
+            rateLimiter.release(userName, cost);
+            isBound = false;
+        }
+    }
+
+    @Override
+    public synchronized void adjustCost(DruidAggregationQuery<?> query) {
+        if (isBound) {
+            cost = rateLimiter.adjust(userName, userLimit, cost, query);
+        }
+    }
+
+    @Override
+    protected void finalize() throws Throwable {
+        try {
+            if (isBound) {
+                LOG.debug("orphaned CostWeightedRateLimitRequestToken");
+                unBind();
+            }
+        } finally {
+            super.finalize();
+        }
+    }
+}
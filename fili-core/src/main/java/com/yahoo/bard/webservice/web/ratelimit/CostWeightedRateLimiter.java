@@ -0,0 +1,461 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.ratelimit;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigException;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.util.Utils;
+import com.yahoo.bard.webservice.web.DataApiRequestTypeIdentifier;
+import com.yahoo.bard.webservice.web.RateLimiter;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.Principal;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
+
+/**
+ * A rate limiter that charges each request an estimated cost instead of counting requests.
+ * <p>
+ * Each user, and the service as a whole, has a budget of cost units. A request is admitted while its cost fits inside
+ * both its user's remaining budget and the remaining global budget, and the cost is returned to both budgets when the
+ * request completes. Requests that don't fit are rejected immediately, like {@link DefaultRateLimiter} does, unless a
+ * queue timeout is configured, in which case they wait in a bounded first-in, first-out queue for up to that timeout.
+ * The wait blocks the request thread, so the timeout should be kept short. A waiting request that is only blocked by
+ * its own user's budget does not hold up requests from other users behind it, but a request blocked by the global
+ * budget holds its place at the head of the line so that expensive requests are not starved by a stream of cheap ones.
+ * <p>
+ * No single request is charged more than the smaller of its user's budget and the global budget, so an oversized
+ * request can always run once it reaches the front of the line. A budget set to -1 is disabled and never limits a
+ * request, and requests with no enabled budget at all are not charged.
+ * <p>
+ * The budgets bound the cost of the requests in flight at once, rather than being token buckets refilling at a rate
+ * over time. Cost is paid back when a request completes, not on a clock, so the budgets track the load actually on
+ * the backend: a slow query holds its cost for as long as it runs, where a bucket would have refilled and let more
+ * expensive queries pile up behind it.
+ */
+public class CostWeightedRateLimiter implements RateLimiter {
+    private static final Logger LOG = LoggerFactory.getLogger(CostWeightedRateLimiter.class);
+    protected static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    protected static final RateLimitRequestToken REJECT_REQUEST_TOKEN =
+            new CallbackRateLimitRequestToken(false, () -> { });
+    protected static final RateLimitRequestToken BYPASS_TOKEN =
+            new BypassRateLimitRequestToken();
+
+    // Property names
+    protected static final @NotNull String COST_LIMIT_GLOBAL_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("request_cost_limit_global");
+    protected static final @NotNull String COST_LIMIT_PER_USER_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("request_cost_limit_per_user");
+    protected static final @NotNull String COST_LIMIT_UI_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("request_cost_limit_ui");
+    protected static final @NotNull String COST_QUEUE_SIZE_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("request_cost_queue_size");
+    protected static final @NotNull String COST_QUEUE_TIMEOUT_KEY =
+            SYSTEM_CONFIG.getPackageVariableName("request_cost_queue_timeout_ms");
+
+    // Default values
+    protected static final long DEFAULT_COST_LIMIT_GLOBAL = 100000;
+    protected static final long DEFAULT_COST_LIMIT_PER_USER = 5000;
+    protected static final long DEFAULT_COST_LIMIT_UI = 50000;
+    protected static final int DEFAULT_COST_QUEUE_SIZE = 200;
+    protected static final long DEFAULT_COST_QUEUE_TIMEOUT = 0;
+
+    protected static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    protected static final int DISABLED_RATE = -1;
+
+    // Budgets
+    protected final long costLimitGlobal;
+    protected final long costLimitPerUser;
+    protected final long costLimitUi;
+    protected final int queueSize;
+    protected final long queueTimeoutMillis;
+
+    protected final RequestCostEstimator costEstimator;
+
+    // Live cost holders, guarded by the lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+    private final Map<String, Long> userCosts = new HashMap<>();
+    private long globalCost = 0;
+
+    protected final Counter costGlobalCounter;
+    protected final Counter queueDepthCounter;
+    protected final Timer queueWaitTimer;
+
+    protected final Meter requestBypassMeter;
+    protected final Meter requestUiMeter;
+    protected final Meter requestUserMeter;
+    protected final Meter rejectQueueFullMeter;
+    protected final Meter rejectTimeoutMeter;
+
+    /**
+     * Loads defaults and creates a CostWeightedRateLimiter which estimates cost with a
+     * {@link DefaultRequestCostEstimator}.
+     *
+     * @throws SystemConfigException If any parameters fail to load
+     */
+    public CostWeightedRateLimiter() throws SystemConfigException {
+        this(new DefaultRequestCostEstimator());
+    }
+
+    /**
+     * Loads defaults and creates a CostWeightedRateLimiter.
+     *
+     * @param costEstimator  The estimator used to charge each request
+     *
+     * @throws SystemConfigException If any parameters fail to load
+     */
+    public CostWeightedRateLimiter(RequestCostEstimator costEstimator) throws SystemConfigException {
+        this.costEstimator = costEstimator;
+
+        // Load limits
+        costLimitGlobal = SYSTEM_CONFIG.getLongProperty(COST_LIMIT_GLOBAL_KEY, DEFAULT_COST_LIMIT_GLOBAL);
+        costLimitPerUser = SYSTEM_CONFIG.getLongProperty(COST_LIMIT_PER_USER_KEY, DEFAULT_COST_LIMIT_PER_USER);
+        costLimitUi = SYSTEM_CONFIG.getLongProperty(COST_LIMIT_UI_KEY, DEFAULT_COST_LIMIT_UI);
+        queueSize = SYSTEM_CONFIG.getIntProperty(COST_QUEUE_SIZE_KEY, DEFAULT_COST_QUEUE_SIZE);
+        queueTimeoutMillis = SYSTEM_CONFIG.getLongProperty(COST_QUEUE_TIMEOUT_KEY, DEFAULT_COST_QUEUE_TIMEOUT);
+
+        // Register counters for currently active cost and queued requests
+        costGlobalCounter = REGISTRY.counter("ratelimit.cost.global");
+        queueDepthCounter = REGISTRY.counter("ratelimit.cost.queue.depth");
+        queueWaitTimer = REGISTRY.timer("ratelimit.cost.queue.wait");
+
+        // Register meters for number of requests
+        requestUserMeter = REGISTRY.meter("ratelimit.cost.meter.request.user");
+        requestUiMeter = REGISTRY.meter("ratelimit.cost.meter.request.ui");
+        requestBypassMeter = REGISTRY.meter("ratelimit.cost.meter.request.bypass");
+        rejectQueueFullMeter = REGISTRY.meter("ratelimit.cost.meter.reject.queue_full");
+        rejectTimeoutMeter = REGISTRY.meter("ratelimit.cost.meter.reject.timeout");
+    }
+
+    @Override
+    public RateLimitRequestToken getToken(ContainerRequestContext request) {
+        MultivaluedMap<String, String> headers = Utils.headersToLowerCase(request.getHeaders());
+
+        if (
+            DataApiRequestTypeIdentifier.isBypass(headers) ||
+            DataApiRequestTypeIdentifier.isCorsPreflight(request.getMethod(), request.getSecurityContext())
+        ) {
+            // Bypass and CORS Preflight requests are unlimited
+            requestBypassMeter.mark();
+            return BYPASS_TOKEN;
+        }
+        SecurityContext securityContext = request.getSecurityContext();
+        Principal user = securityContext == null ? null : securityContext.getUserPrincipal();
+        String userName = String.valueOf(user == null ? null : user.getName());
+
+        boolean isUIQuery = DataApiRequestTypeIdentifier.isUi(headers);
+        long userLimit = isUIQuery ? costLimitUi : costLimitPerUser;
+        Meter requestMeter = isUIQuery ? requestUiMeter : requestUserMeter;
+
+        if (userLimit == DISABLED_RATE && costLimitGlobal == DISABLED_RATE) {
+            // With no budget enabled there is nothing to charge
+            requestMeter.mark();
+            return BYPASS_TOKEN;
+        }
+
+        long cost = clampCost(costEstimator.estimateCost(request), userLimit);
+        if (!admit(userName, userLimit, cost)) {
+            return REJECT_REQUEST_TOKEN;
+        }
+
+        requestMeter.mark();
+        return new CostWeightedRateLimitRequestToken(this, userName, userLimit, cost);
+    }
+
+    /**
+     * Bound a cost estimate so that a single request can always fit inside an otherwise empty budget.
+     * <p>
+     * Disabled budgets don't bound the cost.
+     *
+     * @param cost  The estimated cost
+     * @param userLimit  The budget of the user making the request
+     *
+     * @return the cost to charge
+     */
+    protected long clampCost(long cost, long userLimit) {
+        long bound = cost;
+        if (userLimit != DISABLED_RATE) {
+            bound = Math.min(bound, userLimit);
+        }
+        if (costLimitGlobal != DISABLED_RATE) {
+            bound = Math.min(bound, costLimitGlobal);
+        }
+        return Math.max(1, bound);
+    }
+
+    /**
+     * Charge a request to its user's and the global budget, waiting in the queue if it doesn't fit yet.
+     *
+     * @param userName  The user making the request
+     * @param userLimit  The budget of that user
+     * @param cost  The cost to charge
+     *
+     * @return true if the request was admitted, false if it didn't fit and there was no queue to wait in, the queue was
+     * full or the wait timed out
+     */
+    protected boolean admit(String userName, long userLimit, long cost) {
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (queue.isEmpty() && fitsGlobal(cost) && fitsUser(userName, userLimit, cost)) {
+                charge(userName, cost);
+                return true;
+            }
+            if (queueTimeoutMillis <= 0) {
+                // Without a timeout nothing waits, so the queue is always full
+                rejectQueueFullMeter.mark();
+                LOG.info("Rate limit budget exhausted, reject {} with cost {}", userName, cost);
+                return false;
+            }
+            if (queue.size() >= queueSize) {
+                rejectQueueFullMeter.mark();
+                LOG.info("Rate limit queue full, reject {} with cost {}", userName, cost);
+                return false;
+            }
+
+            waiter = new Waiter(userName, userLimit, cost, lock.newCondition());
+            queue.addLast(waiter);
+            queueDepthCounter.inc();
+            admitWaiters();
+
+            long start = System.nanoTime();
+            long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+            try {
+                while (!waiter.admitted && remaining > 0) {
+                    remaining = waiter.condition.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                queueWaitTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+
+            if (waiter.admitted) {
+                return true;
+            }
+
+            // Give up our place in line, which may unblock the requests behind us
+            queue.remove(waiter);
+            queueDepthCounter.dec();
+            admitWaiters();
+            rejectTimeoutMeter.mark();
+            LOG.info("Rate limit wait timed out, reject {} with cost {}", userName, cost);
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a request's cost to the budgets and admit any waiting requests that now fit.
+     *
+     * @param userName  The user who made the request
+     * @param cost  The cost the request was charged
+     */
+    protected void release(String userName, long cost) {
+        lock.lock();
+        try {
+            charge(userName, -cost);
+            admitWaiters();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Re-estimate the cost of an admitted request from its druid query and charge or refund the difference.
+     * <p>
+     * An increase is charged immediately even if it takes a budget past its limit, since the request is already
+     * running. The overdraft delays later requests until it is paid back.
+     *
+     * @param userName  The user who made the request
+     * @param userLimit  The budget of that user
+     * @param currentCost  The cost the request is currently charged
+     * @param query  The query built for the request
+     *
+     * @return the new cost charged to the request
+     */
+    protected long adjust(String userName, long userLimit, long currentCost, DruidAggregationQuery<?> query) {
+        long newCost = clampCost(costEstimator.estimateCost(query), userLimit);
+        if (newCost == currentCost) {
+            return currentCost;
+        }
+        lock.lock();
+        try {
+            charge(userName, newCost - currentCost);
+            if (newCost < currentCost) {
+                admitWaiters();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return newCost;
+    }
+
+    /**
+     * Admit waiting requests, in order, that fit inside the remaining budgets.
+     * <p>
+     * Must be called while holding the lock.
+     */
+    private void admitWaiters() {
+        Iterator<Waiter> waiters = queue.iterator();
+        while (waiters.hasNext()) {
+            Waiter waiter = waiters.next();
+            if (!fitsGlobal(waiter.cost)) {
+                // Hold the line for the request at the front of the global queue
+                return;
+            }
+            if (!fitsUser(waiter.userName, waiter.userLimit, waiter.cost)) {
+                // Only this user is out of budget, let other users' requests through
+                continue;
+            }
+            charge(waiter.userName, waiter.cost);
+            waiter.admitted = true;
+            waiters.remove();
+            queueDepthCounter.dec();
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * Check if a cost fits in the remaining global budget.
+     *
+     * @param cost  The cost to check
+     *
+     * @return true if the cost can be charged
+     */
+    private boolean fitsGlobal(long cost) {
+        return costLimitGlobal == DISABLED_RATE || globalCost <= costLimitGlobal - cost;
+    }
+
+    /**
+     * Check if a cost fits in the remaining budget of a user.
+     *
+     * @param userName  The user to check
+     * @param userLimit  The budget of that user
+     * @param cost  The cost to check
+     *
+     * @return true if the cost can be charged
+     */
+    private boolean fitsUser(String userName, long userLimit, long cost) {
+        return userLimit == DISABLED_RATE || userCosts.getOrDefault(userName, 0L) <= userLimit - cost;
+    }
+
+    /**
+     * Add a cost to the global budget and a user's budget. A negative cost returns it to the budgets.
+     *
+     * @param userName  The user to charge
+     * @param cost  The cost to charge
+     */
+    private void charge(String userName, long cost) {
+        globalCost += cost;
+        costGlobalCounter.inc(cost);
+        long userCost = userCosts.getOrDefault(userName, 0L) + cost;
+        if (userCost <= 0) {
+            if (userCost < 0) {
+                LOG.error("Lost user cost {} on user {}", userCost, userName);
+            }
+            userCosts.remove(userName);
+        } else {
+            userCosts.put(userName, userCost);
+        }
+        if (globalCost < 0) {
+            LOG.error("Lost global cost {} on user {}", globalCost, userName);
+            costGlobalCounter.inc(-globalCost);
+            globalCost = 0;
+        }
+    }
+
+    /**
+     * Get the number of requests currently waiting for budget.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the total cost of the requests currently in flight.
+     *
+     * @return the charged global cost
+     */
+    public long getGlobalCost() {
+        lock.lock();
+        try {
+            return globalCost;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the total cost of a user's requests currently in flight.
+     *
+     * @param userName  The user to check
+     *
+     * @return the charged cost for the user
+     */
+    public long getUserCost(String userName) {
+        lock.lock();
+        try {
+            return userCosts.getOrDefault(userName, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A request waiting in the queue for budget.
+     */
+    private static class Waiter {
+        private final String userName;
+        private final long userLimit;
+        private final long cost;
+        private final Condition condition;
+        private boolean admitted = false;
+
+        /**
+         * Constructor.
+         *
+         * @param userName  The user making the request
+         * @param userLimit  The budget of that user
+         * @param cost  The cost to charge
+         * @param condition  The condition signalled when the request is admitted
+         */
+        Waiter(String userName, long userLimit, long cost, Condition condition) {
+            this.userName = userName;
+            this.userLimit = userLimit;
+            this.cost = cost;
+            this.condition = condition;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.ratelimit;
+
+import com.yahoo.bard.webservice.data.time.DefaultTimeGrain;
+
+import org.joda.time.DateTime;
+import org.joda.time.Duration;
+import org.joda.time.Interval;
+import org.joda.time.Period;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.PathSegment;
+import javax.ws.rs.core.UriInfo;
+
+/**
+ * Estimates the cost of a data request from its path and query parameters, without binding them to any dictionaries.
+ * <p>
+ * The cost is the number of time grain buckets covered by the requested intervals, multiplied by the number of grouping
+ * dimensions. Anything that can't be resolved cheaply (interval macros, unknown grains) is counted as a single bucket.
+ */
+public class DefaultRequestCostEstimator implements RequestCostEstimator {
+
+    private static final String DATA_SEGMENT = "data";
+    private static final String INTERVALS_PARAMETER = "dateTime";
+    private static final String ALL_GRAIN = "all";
+
+    @Override
+    public long estimateCost(ContainerRequestContext request) {
+        UriInfo uriInfo = request.getUriInfo();
+        if (uriInfo == null) {
+            return 1;
+        }
+
+        List<PathSegment> segments = uriInfo.getPathSegments();
+        int dataIndex = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            if (DATA_SEGMENT.equals(segments.get(i).getPath())) {
+                dataIndex = i;
+                break;
+            }
+        }
+
+        // Not a data request, or a request without a grain
+        if (dataIndex < 0 || segments.size() <= dataIndex + 2) {
+            return 1;
+        }
+
+        Optional<Duration> bucket = bucketDuration(segments.get(dataIndex + 2).getPath());
+        long dimensions = Math.max(
+                1,
+                segments.subList(dataIndex + 3, segments.size()).stream()
+                        .map(PathSegment::getPath)
+                        .filter(path -> path != null && !path.isEmpty())
+                        .count()
+        );
+
+        String intervals = uriInfo.getQueryParameters().getFirst(INTERVALS_PARAMETER);
+        long buckets = intervals == null ? 1 : Arrays.stream(intervals.split(","))
+                .mapToLong(interval -> countBuckets(interval.trim(), bucket))
+                .sum();
+
+        try {
+            return Math.max(1, Math.multiplyExact(buckets, dimensions));
+        } catch (ArithmeticException ignored) {
+            return Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Find the estimated duration of a single bucket of the named time grain.
+     *
+     * @param grainName  The name of the grain from the request path
+     *
+     * @return the estimated bucket duration, or empty if the grain is 'all' or unknown
+     */
+    protected Optional<Duration> bucketDuration(String grainName) {
+        if (grainName == null || ALL_GRAIN.equalsIgnoreCase(grainName)) {
+            return Optional.empty();
+        }
+        return Arrays.stream(DefaultTimeGrain.values())
+                .filter(grain -> grain.getName().equalsIgnoreCase(grainName))
+                .map(DefaultTimeGrain::getEstimatedDuration)
+                .findFirst();
+    }
+
+    /**
+     * Count the buckets in a single ISO 8601 interval string.
+     *
+     * @param interval  The interval string, which may use a period in place of either instant
+     * @param bucket  The duration of a single bucket, empty for the 'all' grain
+     *
+     * @return the number of buckets in the interval, at least 1
+     */
+    protected long countBuckets(String interval, Optional<Duration> bucket) {
+        if (!bucket.isPresent()) {
+            return 1;
+        }
+        long bucketMillis = Math.max(1, bucket.get().getMillis());
+        return Math.max(1, (intervalDuration(interval) + bucketMillis - 1) / bucketMillis);
+    }
+
+    /**
+     * Approximate the length of an interval string in milliseconds.
+     *
+     * @param interval  The interval string
+     *
+     * @return the length of the interval, or 0 if it can't be determined without binding macros
+     */
+    private long intervalDuration(String interval) {
+        try {
+            return new Interval(interval).toDurationMillis();
+        } catch (IllegalArgumentException ignored) {
+            // Fall through to look for a period on either side of a macro
+        }
+        for (String side : interval.split("/")) {
+            try {
+                return Period.parse(side).toDurationFrom(DateTime.now()).getMillis();
+            } catch (IllegalArgumentException ignored) {
+                // Not a period, try the other side
+            }
+        }
+        return 0;
+    }
+}
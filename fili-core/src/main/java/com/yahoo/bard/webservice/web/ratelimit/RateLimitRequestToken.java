@@ -2,6 +2,8 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.web.ratelimit;
 
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+
 import java.io.Closeable;
 import java.io.IOException;
 
@@ -29,6 +31,17 @@ public interface RateLimitRequestToken extends Closeable {
      */
     void unBind();
 
+    /**
+     * Refine the cost charged for the request once the druid query answering it has been built.
+     * <p>
+     * By default, tokens don't weigh their requests and ignore this.
+     *
+     * @param query  The query built for the request
+     */
+    default void adjustCost(DruidAggregationQuery<?> query) {
+        // Unweighted tokens have nothing to adjust
+    }
+
     /**
      * By default, close will trigger unbind.
      *
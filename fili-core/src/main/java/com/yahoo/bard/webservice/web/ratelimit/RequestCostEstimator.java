@@ -0,0 +1,60 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.ratelimit;
+
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.WeightEvaluationQuery;
+import com.yahoo.bard.webservice.util.IntervalUtils;
+
+import javax.ws.rs.container.ContainerRequestContext;
+
+/**
+ * Estimates how expensive a request is, in abstract cost units, so that a rate limiter can charge it accordingly.
+ * <p>
+ * Rate limiting happens before the request has been parsed, so the first estimate is made from the raw http request.
+ * Once the druid query has been built, the estimate can be refined from the query itself.
+ */
+@FunctionalInterface
+public interface RequestCostEstimator {
+
+    /**
+     * Estimate the cost of a request that has not yet been parsed.
+     *
+     * @param request  The raw http request
+     *
+     * @return the estimated cost of the request, at least 1
+     */
+    long estimateCost(ContainerRequestContext request);
+
+    /**
+     * Estimate the cost of a request from the druid query built to answer it.
+     * <p>
+     * The cost is the number of time buckets across all of the query's intervals scaled by the number of grouping
+     * dimensions, plus the worst case weight estimate of any sketch aggregations.
+     *
+     * @param query  The query built to answer the request
+     *
+     * @return the estimated cost of the query, at least 1
+     */
+    default long estimateCost(DruidAggregationQuery<?> query) {
+        DruidAggregationQuery<?> innerQuery = query.getInnermostQuery();
+        long periods = Math.max(
+                1,
+                IntervalUtils.countSlicedIntervals(innerQuery.getIntervals(), innerQuery.getGranularity())
+        );
+        long dimensions = Math.max(1, innerQuery.getDimensions().size());
+
+        long sketchWeight;
+        try {
+            sketchWeight = WeightEvaluationQuery.getWorstCaseWeightEstimate(query);
+        } catch (ArithmeticException ignored) {
+            sketchWeight = Long.MAX_VALUE;
+        }
+
+        try {
+            return Math.addExact(Math.multiplyExact(periods, dimensions), sketchWeight);
+        } catch (ArithmeticException ignored) {
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -37,6 +37,7 @@ import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 import javax.ws.rs.core.Response.Status;
@@ -88,9 +89,35 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
 
     @Override
     public void processResponse(JsonNode json, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        emitResultSet(() -> buildResultSet(json, druidQuery, apiRequest.getTimeZone()), druidQuery, metadata);
+    }
+
+    /**
+     * Process a result set built by the backend itself, such as a sql backend, rather than parsed from a response.
+     *
+     * @param resultSet  The result set of the query, in the schema built by {@link #buildResultSetSchema}
+     * @param druidQuery  The druid query being processed
+     * @param metadata  The logging context of the response
+     */
+    public void processResultSet(ResultSet resultSet, DruidAggregationQuery<?> druidQuery, LoggingContext metadata) {
+        emitResultSet(() -> resultSet, druidQuery, metadata);
+    }
+
+    /**
+     * Map a result set and send it on to the response channel, or send the error building or mapping it raised.
+     *
+     * @param resultSetSupplier  Builds the initial result set
+     * @param druidQuery  The druid query being processed
+     * @param metadata  The logging context of the response
+     */
+    private void emitResultSet(
+            Supplier<ResultSet> resultSetSupplier,
+            DruidAggregationQuery<?> druidQuery,
+            LoggingContext metadata
+    ) {
         try {
             RequestLog.restore(metadata.getRequestLog());
-            ResultSet resultSet = buildResultSet(json, druidQuery, apiRequest.getTimeZone());
+            ResultSet resultSet = resultSetSupplier.get();
             resultSet = mapResultSet(resultSet);
 
             LinkedHashSet<String> apiMetricColumnNames = apiRequest.getLogicalMetrics().stream()
@@ -149,12 +176,22 @@ public class ResultSetResponseProcessor extends MappingResponseProcessor impleme
      * @return The initial result set from the json node.
      */
     public ResultSet buildResultSet(JsonNode json, DruidAggregationQuery<?> druidQuery, DateTimeZone dateTimeZone) {
+        ResultSetSchema resultSetSchema = buildResultSetSchema(druidQuery);
+
+        return druidResponseParser.parse(json, resultSetSchema, druidQuery.getQueryType(), dateTimeZone);
+    }
 
+    /**
+     * Build the schema of the initial result set of a query, using the api request time grain.
+     *
+     * @param druidQuery  The druid query being processed
+     *
+     * @return The schema of the initial result set
+     */
+    public ResultSetSchema buildResultSetSchema(DruidAggregationQuery<?> druidQuery) {
         LinkedHashSet<Column> columns = druidResponseParser.buildSchemaColumns(druidQuery)
                 .collect(Collectors.toCollection(LinkedHashSet::new));
 
-        ResultSetSchema resultSetSchema = new ResultSetSchema(granularity, columns);
-
-        return druidResponseParser.parse(json, resultSetSchema, druidQuery.getQueryType(), dateTimeZone);
+        return new ResultSetSchema(granularity, columns);
     }
 }
@@ -27,6 +27,9 @@ import java.util.concurrent.atomic.AtomicInteger;
  * This response processor receives a list of expected intervals.  As responses arrives, it stores the responses until
  * all expected intervals have arrived, at which point it passes the concatenated Json content from each of the calls
  * to its next processor.
+ * <p>
+ * Responses are concatenated as they arrive, as far as the responses of all earlier intervals have arrived, so only the
+ * responses arriving ahead of an earlier interval are held until the end.
  */
 public class SplitQueryResponseProcessor implements ResponseProcessor {
 
@@ -41,6 +44,8 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     private final List<Pair<JsonNode, LoggingContext>> completedIntervals;
     private final AtomicInteger completed;
     private final AtomicBoolean failed = new AtomicBoolean(false);
+    private final ArrayNode mergedRows = new JsonNodeFactory(true).arrayNode();
+    private int nextToMerge = 0;
     private final RequestLog logCtx;
 
     /**
@@ -115,13 +120,11 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         }
 
         int index;
-        if ((index = sharedIndex.getAndSet(-1)) < 0 || completedIntervals.get(index) != null) {
+        if ((index = sharedIndex.getAndSet(-1)) < 0 || !complete(index, json, metadata)) {
             fail(EXTRA_RETURN_FORMAT, druidQuery, interval);
             return;
         }
 
-        completedIntervals.set(index, new Pair<>(json, metadata));
-
         if (completed.decrementAndGet() == 0) {
             Pair<JsonNode, LoggingContext> mergedResponse = mergeResponses(completedIntervals);
             RequestLog.restore(mergedResponse.getValue().getRequestLog());
@@ -129,6 +132,33 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
         }
     }
 
+    /**
+     * Store the response of an interval, and append the rows of the responses now complete up to it to the merged rows.
+     *
+     * @param index  Index of the interval
+     * @param json  The response of the interval
+     * @param metadata  The logging context of the response
+     *
+     * @return false if the interval already had a response
+     */
+    private synchronized boolean complete(int index, JsonNode json, LoggingContext metadata) {
+        if (completedIntervals.get(index) != null) {
+            return false;
+        }
+        completedIntervals.set(index, new Pair<>(json, metadata));
+
+        while (nextToMerge < completedIntervals.size() && completedIntervals.get(nextToMerge) != null) {
+            Pair<JsonNode, LoggingContext> entry = completedIntervals.get(nextToMerge);
+            for (JsonNode jsonNode : entry.getKey()) {
+                mergedRows.add(jsonNode);
+            }
+            // Keep the logging context to merge at the end, but let go of the rows
+            completedIntervals.set(nextToMerge, new Pair<>(null, entry.getValue()));
+            nextToMerge++;
+        }
+        return true;
+    }
+
     /**
      * Fail the request.
      *
@@ -144,19 +174,22 @@ public class SplitQueryResponseProcessor implements ResponseProcessor {
     }
 
     /**
-     * Take a list of Jackson ArrayNodes and merge their contents, preserving order.
+     * Take a list of Jackson ArrayNodes and merge their contents after the rows merged so far, preserving order.
      *
-     * @param responses  A list of pairs that encompass JSON nodes and response metadata
+     * @param responses  A list of pairs that encompass JSON nodes, or null once merged, and response metadata
      *
      * @return A new pair holding the merged json and the aggregate request log context
      */
-    private Pair<JsonNode, LoggingContext> mergeResponses(List<Pair<JsonNode, LoggingContext>> responses) {
-        JsonNodeFactory factory = new JsonNodeFactory(true);
-        ArrayNode result = factory.arrayNode();
+    private synchronized Pair<JsonNode, LoggingContext> mergeResponses(
+            List<Pair<JsonNode, LoggingContext>> responses
+    ) {
+        ArrayNode result = mergedRows;
         RequestLog.restore(logCtx);
         for (Pair<JsonNode, LoggingContext> entry : responses) {
-            for (JsonNode jsonNode : entry.getKey()) {
-                result.add(jsonNode);
+            if (entry.getKey() != null) {
+                for (JsonNode jsonNode : entry.getKey()) {
+                    result.add(jsonNode);
+                }
             }
             RequestLog.accumulate(entry.getValue().getRequestLog());
         }
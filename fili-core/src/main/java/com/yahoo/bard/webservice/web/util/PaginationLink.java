@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.web.util;
 
 import com.yahoo.bard.webservice.util.Pagination;
 
+import java.util.Optional;
 import java.util.OptionalInt;
 
 /**
@@ -28,6 +29,11 @@ public enum PaginationLink {
         public OptionalInt getPage(Pagination<?> page) {
            return page.getNextPage();
        }
+
+       @Override
+        public Optional<String> getCursor(Pagination<?> page) {
+           return page.getNextCursor();
+       }
     },
     PREVIOUS("prev", "previous") {
        @Override
@@ -66,4 +72,15 @@ public enum PaginationLink {
      * @return a populated Optional if the page exists based on the current page, empty if not
      */
     public abstract OptionalInt getPage(Pagination<?> page);
+
+    /**
+     * Get the opaque cursor, if any, that lets the linked page be fetched directly.
+     *
+     * @param page  Current page to evaluate
+     *
+     * @return a populated Optional if the linked page has a cursor, empty if not
+     */
+    public Optional<String> getCursor(Pagination<?> page) {
+        return Optional.empty();
+    }
 }
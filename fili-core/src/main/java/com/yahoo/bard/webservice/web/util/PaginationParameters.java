@@ -11,6 +11,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * A wrapper around the pagination parameters ('perPage' and 'page') to simplify working with pagination requests.
@@ -25,6 +26,11 @@ public class PaginationParameters {
     private static final String FIRST = "first";
     private static final String LAST = "last";
 
+    /**
+     * Name of the query parameter carrying an opaque cursor for the requested page.
+     */
+    public static final String CURSOR = "cursor";
+
     private static final int DEFAULT_MAX_RESULTS_WITHOUT_FILTERS = 10000;
     private static final int MAX_RESULTS_WITHOUT_FILTER = SYSTEM_CONFIG.getIntProperty(
             SYSTEM_CONFIG.getPackageVariableName("max_results_without_filters"),
@@ -46,6 +52,7 @@ public class PaginationParameters {
 
     private final int perPage;
     private final int page;
+    private final String cursor;
 
     /**
      * Given a pair of strings, attempts to parse them into ints representing the pagination parameters.
@@ -66,8 +73,20 @@ public class PaginationParameters {
      * @param page  The page to be displayed
      */
     public PaginationParameters(int perPage, int page) {
+        this(perPage, page, null);
+    }
+
+    /**
+     * Constructor for already-parsed pagination parameters with a cursor.
+     *
+     * @param perPage  The number of rows to be displayed on each page.
+     * @param page  The page to be displayed
+     * @param cursor  An opaque cursor, issued with a previous page, pointing at the requested page. May be null.
+     */
+    public PaginationParameters(int perPage, int page, String cursor) {
         this.perPage = perPage;
         this.page = page;
+        this.cursor = cursor;
     }
 
     /**
@@ -137,6 +156,38 @@ public class PaginationParameters {
         return page;
     }
 
+    /**
+     * Whether the last page was requested, in which case the page number depends on the size of the result set.
+     *
+     * @return true if the last page was requested
+     */
+    public boolean isLastPage() {
+        return page == LAST_PAGE;
+    }
+
+    /**
+     * Returns the opaque cursor pointing at the requested page, if the client supplied one.
+     * <p>
+     * A cursor is only a hint. Search providers that don't recognize it, or find it stale, fall back to locating the
+     * page by its number.
+     *
+     * @return The cursor, or empty if there isn't one
+     */
+    public Optional<String> getCursor() {
+        return Optional.ofNullable(cursor);
+    }
+
+    /**
+     * Returns a new PaginationParameters object with the specified cursor.
+     *
+     * @param cursor  The opaque cursor pointing at the requested page, null for none
+     *
+     * @return A new PaginationParameters object with the same state as this object, except with the specified cursor.
+     */
+    public PaginationParameters withCursor(String cursor) {
+        return new PaginationParameters(perPage, page, cursor);
+    }
+
     /**
      * Returns a new PaginationParameters object with the specified page value.
      *
@@ -147,7 +198,7 @@ public class PaginationParameters {
      * @throws BadPaginationException If page is not a positive Java int.
      */
     public PaginationParameters withPage(String page) throws BadPaginationException {
-        return new PaginationParameters(perPage, parseParameter(page, "page"));
+        return new PaginationParameters(perPage, parseParameter(page, "page"), cursor);
     }
 
     /**
@@ -160,12 +211,12 @@ public class PaginationParameters {
      * @throws BadPaginationException If page is not a positive Java int.
      */
     public PaginationParameters withPerPage(String perPage) throws BadPaginationException {
-        return new PaginationParameters(parseParameter(perPage, "perPage"), page);
+        return new PaginationParameters(parseParameter(perPage, "perPage"), page, cursor);
     }
 
     @Override
     public String toString() {
-        return "perPage=" + perPage + "&page=" + page;
+        return "perPage=" + perPage + "&page=" + page + (cursor == null ? "" : "&" + CURSOR + "=" + cursor);
     }
 
     @Override
@@ -175,11 +226,12 @@ public class PaginationParameters {
         PaginationParameters that = (PaginationParameters) o;
         return
                 perPage == that.perPage &&
-                        page == that.page;
+                        page == that.page &&
+                        Objects.equals(cursor, that.cursor);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(perPage, page);
+        return Objects.hash(perPage, page, cursor);
     }
 }
@@ -21,6 +21,7 @@ import com.yahoo.bard.webservice.application.healthchecks.AllDimensionsLoadedHea
 import com.yahoo.bard.webservice.application.healthchecks.DataSourceMetadataLoaderHealthCheck
 import com.yahoo.bard.webservice.application.healthchecks.DruidDimensionsLoaderHealthCheck
 import com.yahoo.bard.webservice.application.healthchecks.VersionHealthCheck
+import com.yahoo.bard.webservice.async.broadcastchannels.TicketNotificationRegistry
 import com.yahoo.bard.webservice.config.SystemConfig
 import com.yahoo.bard.webservice.config.SystemConfigException
 import com.yahoo.bard.webservice.config.SystemConfigProvider
@@ -51,7 +52,9 @@ import com.codahale.metrics.health.HealthCheckRegistry
 import com.fasterxml.jackson.databind.ObjectMapper
 
 import org.glassfish.hk2.api.DynamicConfiguration
+import org.glassfish.hk2.api.ServiceLocator
 import org.glassfish.hk2.utilities.Binder
+import org.glassfish.hk2.utilities.ServiceLocatorUtilities
 
 import spock.lang.IgnoreIf
 import spock.lang.Shared
@@ -190,6 +193,28 @@ public class AbstractBinderFactorySpec extends Specification {
         binderFactory.afterBindingHookWasCalled
     }
 
+    def "The ticket notification registry is built once, and closed when the application shuts down"() {
+        given:
+        ServiceLocator locator = ServiceLocatorUtilities.bind(binderFactory.buildBinder())
+        TicketNotificationRegistry ticketNotifications = locator.getService(TicketNotificationRegistry)
+        TicketNotificationRegistry.Waiter waiter = ticketNotifications.await(
+                "ticket",
+                TicketNotificationRegistry.NO_TIMEOUT
+        )
+
+        expect:
+        locator.getService(TicketNotificationRegistry).is(ticketNotifications)
+
+        when:
+        binderFactory.shutdown()
+
+        then: "The waiting request stops waiting"
+        waiter.getNotification().toList().toBlocking().single().isEmpty()
+
+        cleanup:
+        locator.shutdown()
+    }
+
     def "test health checks config with partial data on"() {
         setup:
         PARTIAL_DATA.setOn(true)
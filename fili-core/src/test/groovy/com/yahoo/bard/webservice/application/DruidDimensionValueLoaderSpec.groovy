@@ -2,16 +2,27 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.application
 
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
 import com.yahoo.bard.webservice.data.dimension.Dimension
 import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
 import com.yahoo.bard.webservice.druid.client.DruidWebService
+import com.yahoo.bard.webservice.druid.client.FailureCallback
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
 import com.yahoo.bard.webservice.druid.model.datasource.DataSource
+import com.yahoo.bard.webservice.druid.model.filter.BoundFilter
 import com.yahoo.bard.webservice.druid.model.query.DruidSearchQuery
 import com.yahoo.bard.webservice.table.PhysicalTableDictionary
 
+import com.fasterxml.jackson.databind.JsonNode
+import com.fasterxml.jackson.databind.ObjectMapper
+
 import spock.lang.Specification
 
 import java.util.concurrent.Future
+import java.util.concurrent.TimeoutException
 
 class DruidDimensionValueLoaderSpec extends Specification {
 
@@ -57,4 +68,132 @@ class DruidDimensionValueLoaderSpec extends Specification {
         searchQuery2.getIntervals().get(0).getStart() > searchQuery1.getIntervals().get(0).getStart()
 
     }
+
+    /**
+     * Build an incremental loader of a single dimension from a single data source.
+     *
+     * @param dimension  The dimension to load
+     * @param dataSource  The data source to load it from
+     * @param loadTimeoutMillis  How long a load waits for the dimension
+     *
+     * @return the loader
+     */
+    DruidDimensionValueLoader incrementalLoader(
+            Dimension dimension,
+            DataSource dataSource,
+            long loadTimeoutMillis = 60000
+    ) {
+        dimensionDictionary.add(dimension)
+        DruidDimensionValueLoader incrementalLoader = Spy(
+                DruidDimensionValueLoader,
+                constructorArgs: [
+                        physicalTableDictionary,
+                        dimensionDictionary,
+                        [dimension.apiName],
+                        druidWebService,
+                        true,
+                        2,
+                        loadTimeoutMillis
+                ]
+        )
+        incrementalLoader.getDataSources() >> ([dataSource] as Set)
+        incrementalLoader.dimensionExistsInDataSource(*_) >> true
+        return incrementalLoader
+    }
+
+    /**
+     * Build a search query response.
+     *
+     * @param values  The values found
+     *
+     * @return the response
+     */
+    JsonNode searchResponse(List<String> values) {
+        new ObjectMapper().valueToTree([[
+                timestamp: "2020-01-01T00:00:00.000Z",
+                result: values.collect { [dimension: "incremental", value: it] }
+        ]])
+    }
+
+    def "Incremental loads page through the values and only search the time since the last load"() {
+        setup:
+        KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                "incremental",
+                "incremental",
+                [BardDimensionField.ID, BardDimensionField.DESC] as LinkedHashSet,
+                MapStoreManager.getInstance("incremental"),
+                ScanSearchProviderManager.getInstance("incremental")
+        )
+        DruidDimensionValueLoader incrementalLoader = incrementalLoader(dimension, Mock(DataSource))
+        List<String> firstPage = (0..<1000).collect { String.format("value%04d", it) }
+        List<DruidSearchQuery> queries = []
+
+        expect: "Dimensions aren't fresh before they're loaded"
+        incrementalLoader.getDimensionFreshness() == [(dimension): null]
+
+        when:
+        incrementalLoader.load()
+
+        then: "A full page is followed by a query for the values after its last one"
+        2 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            queries.add(arguments[4])
+            ((SuccessCallback) arguments[1]).invoke(searchResponse(queries.size() == 1 ? firstPage : ["value1000"]))
+            return null
+        }
+        queries[0].filter == null
+        queries[1].filter instanceof BoundFilter
+        ((BoundFilter) queries[1].filter).lower == "value0999"
+        ((BoundFilter) queries[1].filter).isLowerStrict()
+        dimension.getSearchProvider().getDimensionCardinality() == 1001
+        incrementalLoader.getDimensionFreshness()[dimension] != null
+
+        when:
+        incrementalLoader.load()
+
+        then: "The next load starts from where the first ended, less the overlap"
+        1 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            queries.add(arguments[4])
+            ((SuccessCallback) arguments[1]).invoke(searchResponse(["value0001", "value2000"]))
+            return null
+        }
+        queries[2].intervals[0].start == queries[0].intervals[0].end.minusHours(1)
+        dimension.getSearchProvider().getDimensionCardinality() == 1002
+
+        cleanup:
+        MapStoreManager.removeInstance("incremental")
+        ScanSearchProviderManager.removeInstance("incremental")
+    }
+
+    def "A failed incremental load doesn't update the freshness of the dimension"() {
+        setup:
+        Dimension dimension = Mock(Dimension) { getApiName() >> "failing" }
+        DruidDimensionValueLoader incrementalLoader = incrementalLoader(dimension, Mock(DataSource))
+
+        when:
+        incrementalLoader.load()
+
+        then:
+        1 * druidWebService.postDruidQuery(*_) >> { arguments ->
+            arguments[3].invoke(new IllegalStateException("druid is down"))
+            return null
+        }
+        0 * dimension.setLastUpdated(_)
+        incrementalLoader.getDimensionFreshness() == [(dimension): null]
+    }
+
+    def "An incremental load stops waiting for dimensions that don't finish, and reports the timeout"() {
+        setup:
+        Dimension dimension = Mock(Dimension) { getApiName() >> "stuck" }
+        DruidDimensionValueLoader incrementalLoader = incrementalLoader(dimension, Mock(DataSource), 100)
+        FailureCallback failureCallback = Mock(FailureCallback)
+        incrementalLoader.setFailureCallback(failureCallback)
+
+        when: "Druid never answers"
+        incrementalLoader.load()
+
+        then:
+        1 * druidWebService.postDruidQuery(*_) >> null
+        1 * failureCallback.invoke({ it instanceof TimeoutException })
+        incrementalLoader.getDimensionFreshness() == [(dimension): null]
+    }
 }
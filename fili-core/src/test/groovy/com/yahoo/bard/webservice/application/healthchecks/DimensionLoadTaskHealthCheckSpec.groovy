@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.application.healthchecks
 import static com.yahoo.bard.webservice.config.BardFeatureFlag.DRUID_DIMENSIONS_LOADER
 
 import com.yahoo.bard.webservice.application.DimensionValueLoadTask
+import com.yahoo.bard.webservice.data.dimension.Dimension
 
 import org.joda.time.DateTime
 
@@ -57,4 +58,26 @@ class DimensionLoadTaskHealthCheckSpec extends Specification {
         window = TWO_MINUTES
         healthy = isHealthy ? "healthy" : "not healthy"
     }
+
+    @Unroll
+    def "Loader with a dimension last loaded #loadedAgo ms ago is #healthy"() {
+        given:
+        DimensionValueLoadTask loader = Mock(DimensionValueLoadTask)
+        loader.getLastRunTimestamp() >> DateTime.now()
+        loader.getDimensionFreshness() >> [
+                (Mock(Dimension)): DateTime.now(),
+                (Mock(Dimension)): loadedAgo == null ? null : DateTime.now().minus(loadedAgo)
+        ]
+
+        expect:
+        new DruidDimensionsLoaderHealthCheck(loader, TWO_MINUTES).check().isHealthy() == isHealthy
+
+        where:
+        loadedAgo     || isHealthy
+        30 * 1000L    || true
+        3 * 60 * 1000 || false
+        null          || false
+
+        healthy = isHealthy ? "healthy" : "not healthy"
+    }
 }
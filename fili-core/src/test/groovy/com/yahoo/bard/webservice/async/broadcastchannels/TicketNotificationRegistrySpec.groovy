@@ -0,0 +1,169 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.broadcastchannels
+
+import rx.observers.TestSubscriber
+import rx.schedulers.TestScheduler
+import rx.subjects.PublishSubject
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class TicketNotificationRegistrySpec extends Specification {
+
+    BroadcastChannel<String> broadcastChannel
+    TestScheduler scheduler
+    TicketNotificationRegistry registry
+
+    def setup() {
+        broadcastChannel = new SimpleBroadcastChannel<>(PublishSubject.create())
+        scheduler = new TestScheduler()
+        registry = new TicketNotificationRegistry(broadcastChannel, scheduler)
+    }
+
+    def cleanup() {
+        registry.close()
+        broadcastChannel.close()
+    }
+
+    def "Publishing a ticket wakes only the requests waiting on it"() {
+        given: "Requests waiting on two tickets"
+        List<TestSubscriber<String>> ticket1Subscribers = (1..3).collect { subscribe(registry.await("ticket1", 100)) }
+        TestSubscriber<String> ticket2Subscriber = subscribe(registry.await("ticket2", 100))
+
+        when:
+        broadcastChannel.publish("ticket1")
+
+        then: "The requests waiting on the ticket get it, and are dropped from the registry"
+        ticket1Subscribers.every { it.getOnNextEvents() == ["ticket1"] && it.getOnCompletedEvents().size() == 1 }
+        registry.getWaiting("ticket1") == 0
+
+        and: "The request waiting on the other ticket is still waiting"
+        ticket2Subscriber.assertNoValues()
+        ticket2Subscriber.assertNotCompleted()
+        registry.getWaiting("ticket2") == 1
+    }
+
+    def "A ticket published before the notification is subscribed to isn't missed"() {
+        given:
+        TicketNotificationRegistry.Waiter waiter = registry.await("ticket1", 100)
+        broadcastChannel.publish("ticket1")
+
+        when:
+        TestSubscriber<String> subscriber = subscribe(waiter)
+
+        then:
+        subscriber.assertValue("ticket1")
+        subscriber.assertCompleted()
+    }
+
+    def "A request stops waiting empty once its timeout expires"() {
+        given:
+        TestSubscriber<String> subscriber = subscribe(registry.await("ticket1", 100))
+
+        when:
+        scheduler.advanceTimeBy(99, TimeUnit.MILLISECONDS)
+
+        then:
+        subscriber.assertNotCompleted()
+
+        when:
+        scheduler.advanceTimeBy(1, TimeUnit.MILLISECONDS)
+
+        then:
+        subscriber.assertNoValues()
+        subscriber.assertCompleted()
+        registry.getWaiting("ticket1") == 0
+
+        when: "The ticket is published after the timeout"
+        broadcastChannel.publish("ticket1")
+
+        then: "The request doesn't get it"
+        subscriber.assertNoValues()
+    }
+
+    def "A request waiting without a timeout waits until its ticket is published"() {
+        given:
+        TestSubscriber<String> subscriber = subscribe(registry.await("ticket1", TicketNotificationRegistry.NO_TIMEOUT))
+
+        when:
+        scheduler.advanceTimeBy(1, TimeUnit.DAYS)
+
+        then:
+        subscriber.assertNotCompleted()
+
+        when:
+        broadcastChannel.publish("ticket1")
+
+        then:
+        subscriber.assertValue("ticket1")
+    }
+
+    def "Cancelling a request drops it from the registry, leaving the other requests on the ticket waiting"() {
+        given:
+        TicketNotificationRegistry.Waiter cancelled = registry.await("ticket1", 100)
+        TestSubscriber<String> cancelledSubscriber = subscribe(cancelled)
+        TestSubscriber<String> waitingSubscriber = subscribe(registry.await("ticket1", 100))
+
+        when:
+        cancelled.cancel()
+
+        then:
+        cancelledSubscriber.assertNoValues()
+        cancelledSubscriber.assertCompleted()
+        registry.getWaiting("ticket1") == 1
+
+        when:
+        broadcastChannel.publish("ticket1")
+
+        then:
+        cancelledSubscriber.assertNoValues()
+        waitingSubscriber.assertValue("ticket1")
+    }
+
+    def "Closing the channel stops the waiting requests, and any which start waiting afterwards"() {
+        given:
+        TestSubscriber<String> subscriber = subscribe(registry.await("ticket1", TicketNotificationRegistry.NO_TIMEOUT))
+
+        when:
+        broadcastChannel.close()
+
+        then:
+        subscriber.assertNoValues()
+        subscriber.assertCompleted()
+
+        and:
+        subscribe(registry.await("ticket2", TicketNotificationRegistry.NO_TIMEOUT)).getOnCompletedEvents().size() == 1
+        registry.getWaiting("ticket2") == 0
+    }
+
+    def "Publishing a ticket wakes its requests without touching the requests waiting on other tickets"() {
+        given: "Many requests, each waiting on its own ticket"
+        int waiting = 10000
+        List<TestSubscriber<String>> subscribers = (0..<waiting).collect {
+            subscribe(registry.await("ticket$it", TicketNotificationRegistry.NO_TIMEOUT))
+        }
+        long fanOut = TicketNotificationRegistry.FAN_OUT.getCount()
+
+        when:
+        broadcastChannel.publish("ticket0")
+
+        then: "One request is woken, by a single publish"
+        subscribers.count { it.getOnCompletedEvents().size() == 1 } == 1
+        TicketNotificationRegistry.FAN_OUT.getCount() == fanOut + 1
+        (1..<waiting).every { registry.getWaiting("ticket$it") == 1 }
+    }
+
+    /**
+     * Subscribe to the notification of a waiter.
+     *
+     * @param waiter  The waiter
+     *
+     * @return the subscriber
+     */
+    TestSubscriber<String> subscribe(TicketNotificationRegistry.Waiter waiter) {
+        TestSubscriber<String> subscriber = new TestSubscriber<>()
+        waiter.getNotification().subscribe(subscriber)
+        return subscriber
+    }
+}
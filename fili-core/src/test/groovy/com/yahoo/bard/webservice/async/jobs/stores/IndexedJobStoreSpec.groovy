@@ -0,0 +1,211 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.jobs.stores
+
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.DATE_CREATED
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.JOB_TICKET
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.STATUS
+import static com.yahoo.bard.webservice.async.jobs.jobrows.DefaultJobField.USER_ID
+
+import com.yahoo.bard.webservice.async.jobs.JobTestUtils
+import com.yahoo.bard.webservice.async.jobs.jobrows.JobRow
+import com.yahoo.bard.webservice.web.DefaultFilterOperation
+
+import org.joda.time.DateTime
+import org.joda.time.DateTimeZone
+
+import rx.observers.TestSubscriber
+import spock.lang.Shared
+import spock.lang.Unroll
+
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneOffset
+
+/**
+ * Verifies that the IndexedJobStore satisfies the ApiJobStore interface, and answers filters from its indexes.
+ */
+class IndexedJobStoreSpec extends ApiJobStoreSpec {
+
+    static final Instant NOW = Instant.parse("2020-06-01T00:00:00Z")
+
+    @Shared
+    IndexedJobStore indexedJobStore
+    @Shared
+    JobRow userFooJobRow1
+    @Shared
+    JobRow userFooJobRow2
+    @Shared
+    JobRow userBarJobRow1
+
+    @Override
+    ApiJobStore getStore() {
+        new IndexedJobStore([USER_ID, STATUS], Long.MAX_VALUE, Integer.MAX_VALUE, Clock.fixed(NOW, ZoneOffset.UTC))
+    }
+
+    def childSetupSpec() {
+        indexedJobStore = getStore() as IndexedJobStore
+        // Saved out of the order they were created in
+        userFooJobRow2 = buildJobRow("2", "Foo", "success", 2)
+        userBarJobRow1 = buildJobRow("3", "Bar", "pending", 3)
+        userFooJobRow1 = buildJobRow("1", "Foo", "pending", 1)
+
+        indexedJobStore.save(userFooJobRow2).subscribe()
+        indexedJobStore.save(userBarJobRow1).subscribe()
+        indexedJobStore.save(userFooJobRow1).subscribe()
+    }
+
+    @Unroll
+    def "getFilteredRows returns #expected in the order they were created, when filtering #field #operation #values"() {
+        setup:
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+        Set<JobRowFilter> filters = [new JobRowFilter(field, operation, values as Set)] as Set
+        if (ticket != null) {
+            filters.add(new JobRowFilter(JOB_TICKET, DefaultFilterOperation.eq, [ticket] as Set))
+        }
+
+        when:
+        indexedJobStore.getFilteredRows(filters).subscribe(testSubscriber)
+
+        then:
+        testSubscriber.assertNoErrors()
+        testSubscriber.getOnNextEvents()*.getId() == expected
+
+        where:
+        field   | operation                           | values         | ticket | expected
+        USER_ID | DefaultFilterOperation.eq           | ["Foo"]        | null   | ["1", "2"]
+        USER_ID | DefaultFilterOperation.in           | ["Foo", "Bar"] | null   | ["1", "2", "3"]
+        USER_ID | DefaultFilterOperation.notin        | ["Foo"]        | null   | ["3"]
+        USER_ID | DefaultFilterOperation.startswith   | ["Fo"]         | null   | ["1", "2"]
+        USER_ID | DefaultFilterOperation.contains     | ["a"]          | null   | ["3"]
+        USER_ID | DefaultFilterOperation.eq           | ["Baz"]        | null   | []
+        STATUS  | DefaultFilterOperation.eq           | ["pending"]    | null   | ["1", "3"]
+        USER_ID | DefaultFilterOperation.startswith   | ["Fo"]         | "2"    | ["2"]
+    }
+
+    def "Filters on several indexed fields are intersected"() {
+        setup:
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+        Set<JobRowFilter> filters = [
+                new JobRowFilter(USER_ID, DefaultFilterOperation.eq, ["Foo"] as Set),
+                new JobRowFilter(STATUS, DefaultFilterOperation.eq, ["pending"] as Set)
+        ] as Set
+
+        when:
+        indexedJobStore.getFilteredRows(filters).subscribe(testSubscriber)
+
+        then:
+        testSubscriber.assertReceivedOnNext([userFooJobRow1])
+    }
+
+    def "Saving a row again moves it in the indexes"() {
+        setup:
+        IndexedJobStore store = getStore() as IndexedJobStore
+        store.save(buildJobRow("1", "Foo", "pending", 1)).subscribe()
+        store.save(buildJobRow("1", "Foo", "success", 1)).subscribe()
+        TestSubscriber<JobRow> pending = new TestSubscriber<>()
+        TestSubscriber<JobRow> success = new TestSubscriber<>()
+
+        when:
+        store.getFilteredRows([new JobRowFilter(STATUS, DefaultFilterOperation.eq, ["pending"] as Set)] as Set)
+                .subscribe(pending)
+        store.getFilteredRows([new JobRowFilter(STATUS, DefaultFilterOperation.eq, ["success"] as Set)] as Set)
+                .subscribe(success)
+
+        then:
+        pending.getOnNextEvents().isEmpty()
+        success.getOnNextEvents()*.getId() == ["1"]
+    }
+
+    def "Rows created longer ago than the time to live are neither returned nor kept"() {
+        setup:
+        Clock clock = Clock.fixed(NOW, ZoneOffset.UTC)
+        IndexedJobStore store = new IndexedJobStore([USER_ID], Duration.ofDays(1).toMillis(), 10, clock)
+        store.save(buildJobRow("old", "Foo", "pending", NOW.minus(Duration.ofDays(2)))).subscribe()
+        store.save(buildJobRow("new", "Foo", "pending", NOW.minus(Duration.ofHours(1)))).subscribe()
+
+        expect:
+        store.get("old").toList().toBlocking().single().isEmpty()
+        store.getAllRows().toList().toBlocking().single()*.getId() == ["new"]
+        store.getFilteredRows([new JobRowFilter(USER_ID, DefaultFilterOperation.eq, ["Foo"] as Set)] as Set)
+                .toList().toBlocking().single()*.getId() == ["new"]
+    }
+
+    def "The oldest rows are dropped once the store holds too many"() {
+        setup:
+        IndexedJobStore store = new IndexedJobStore([USER_ID], Long.MAX_VALUE, 2, Clock.fixed(NOW, ZoneOffset.UTC))
+
+        when:
+        store.save(buildJobRow("2", "Foo", "pending", 2)).subscribe()
+        store.save(buildJobRow("1", "Foo", "pending", 1)).subscribe()
+        store.save(buildJobRow("3", "Foo", "pending", 3)).subscribe()
+
+        then:
+        store.getAllRows().toList().toBlocking().single()*.getId() == ["2", "3"]
+        store.getFilteredRows([new JobRowFilter(USER_ID, DefaultFilterOperation.eq, ["Foo"] as Set)] as Set)
+                .toList().toBlocking().single()*.getId() == ["2", "3"]
+    }
+
+    def "Rows without a date created are taken to be created when they are saved"() {
+        setup:
+        IndexedJobStore store = getStore() as IndexedJobStore
+        store.save(new JobRow(JOB_TICKET, [(JOB_TICKET): "undated", (USER_ID): "Foo"])).subscribe()
+        store.save(buildJobRow("1", "Foo", "pending", 1)).subscribe()
+
+        expect:
+        store.getAllRows().toList().toBlocking().single()*.getId() == ["1", "undated"]
+    }
+
+    def "getFilteredRows fails with an IllegalArgumentException if an unindexed field isn't in a row"() {
+        setup:
+        IndexedJobStore store = getStore() as IndexedJobStore
+        store.save(new JobRow(JOB_TICKET, [(JOB_TICKET): "1"])).subscribe()
+        TestSubscriber<JobRow> testSubscriber = new TestSubscriber<>()
+
+        when:
+        store.getFilteredRows([new JobRowFilter(DATE_CREATED, DefaultFilterOperation.eq, ["x"] as Set)] as Set)
+                .subscribe(testSubscriber)
+
+        then:
+        testSubscriber.assertError(IllegalArgumentException.class)
+    }
+
+    /**
+     * Builds a job row created in the given year.
+     *
+     * @param ticket  The ticket of the job
+     * @param userId  The user of the job
+     * @param status  The status of the job
+     * @param year  The year the job was created in
+     *
+     * @return the job row
+     */
+    JobRow buildJobRow(String ticket, String userId, String status, int year) {
+        JobTestUtils.buildJobRow([
+                (JOB_TICKET): ticket,
+                (USER_ID): userId,
+                (STATUS): status,
+                (DATE_CREATED): new DateTime(2000 + year, 1, 1, 0, 0, DateTimeZone.UTC).toString()
+        ])
+    }
+
+    /**
+     * Builds a job row created at the given instant.
+     *
+     * @param ticket  The ticket of the job
+     * @param userId  The user of the job
+     * @param status  The status of the job
+     * @param created  When the job was created
+     *
+     * @return the job row
+     */
+    JobRow buildJobRow(String ticket, String userId, String status, Instant created) {
+        JobTestUtils.buildJobRow([
+                (JOB_TICKET): ticket,
+                (USER_ID): userId,
+                (STATUS): status,
+                (DATE_CREATED): new DateTime(created.toEpochMilli(), DateTimeZone.UTC).toString()
+        ])
+    }
+}
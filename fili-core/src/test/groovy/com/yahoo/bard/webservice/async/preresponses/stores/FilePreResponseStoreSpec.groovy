@@ -0,0 +1,96 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.async.preresponses.stores
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.ColumnarPreResponseCodec
+import com.yahoo.bard.webservice.data.dimension.DimensionDictionary
+import com.yahoo.bard.webservice.data.time.StandardGranularityParser
+import com.yahoo.bard.webservice.web.PreResponse
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.attribute.FileTime
+
+/**
+ * Verifies that the FilePreResponseStore satisfies the PreResponseStore interface, the tests of which may be found in
+ * {@link PreResponseStoreSpec}, and that it expires and evicts PreResponses.
+ */
+class FilePreResponseStoreSpec extends PreResponseStoreSpec {
+
+    Path directory = Files.createTempDirectory("preresponses")
+    ColumnarPreResponseCodec codec
+
+    @Override
+    PreResponseStore getStore() {
+        ObjectMapper typePreservingMapper = new ObjectMappersSuite().getMapper()
+        typePreservingMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL)
+        codec = new ColumnarPreResponseCodec(
+                new DimensionDictionary(),
+                new ObjectMappersSuite().getMapper(),
+                typePreservingMapper,
+                new StandardGranularityParser()
+        )
+        return new FilePreResponseStore(directory, codec, 60000, Long.MAX_VALUE)
+    }
+
+    @Override
+    def childCleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    def "PreResponses are read back by a store on the same directory"() {
+        expect:
+        new FilePreResponseStore(directory, codec, 60000, Long.MAX_VALUE).get("1").toBlocking().single() ==
+                PreResponseTestingUtils.buildPreResponse("2016-04-21T00:00:00.000-05:00")
+    }
+
+    def "PreResponses aren't returned once they expire"() {
+        given:
+        PreResponseStore expiringStore = new FilePreResponseStore(directory, codec, 10, Long.MAX_VALUE)
+        PreResponse preResponse = PreResponseTestingUtils.buildPreResponse("2016-04-23T00:00:00.000-05:00")
+        expiringStore.save("expiring", preResponse).toBlocking().single()
+
+        when:
+        sleep(50)
+
+        then:
+        expiringStore.get("expiring").toList().toBlocking().single().isEmpty()
+        !Files.list(directory).anyMatch { it.fileName.toString().startsWith("expiring") }
+    }
+
+    def "The least recently saved PreResponses are evicted once the store is full"() {
+        given: "Room for about two and a half PreResponses, the first of which was saved a while ago"
+        long size = Files.size(directory.resolve("1.preresponse"))
+        Files.setLastModifiedTime(
+                directory.resolve("0.preresponse"),
+                FileTime.fromMillis(System.currentTimeMillis() - 10000)
+        )
+        PreResponseStore boundedStore = new FilePreResponseStore(directory, codec, 60000, (long) (2.5 * size))
+
+        when:
+        boundedStore.save("2", PreResponseTestingUtils.buildPreResponse("2016-04-22T00:00:00.000-05:00"))
+                .toBlocking().single()
+
+        then:
+        boundedStore.get("0").toList().toBlocking().single().isEmpty()
+        boundedStore.get("1").toList().toBlocking().single().size() == 1
+        boundedStore.get("2").toList().toBlocking().single().size() == 1
+    }
+
+    def "Tickets which aren't safe as file names are kept apart"() {
+        given:
+        PreResponse preResponse = PreResponseTestingUtils.buildPreResponse("2016-04-23T00:00:00.000-05:00")
+
+        when:
+        preResponseStore.save("../user/ticket", preResponse).toBlocking().single()
+
+        then:
+        preResponseStore.get("../user/ticket").toBlocking().single() == preResponse
+        Files.list(directory).count() == 3
+    }
+}
@@ -0,0 +1,91 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data
+
+import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.data.time.StandardGranularityParser
+import com.yahoo.bard.webservice.util.GroovyTestUtils
+import com.yahoo.bard.webservice.web.PreResponse
+
+import com.fasterxml.jackson.databind.DeserializationFeature
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPOutputStream
+
+class ColumnarPreResponseCodecSpec extends Specification {
+
+    @Shared SerializationResources resources
+    ColumnarPreResponseCodec codec
+
+    def setupSpec() {
+        resources = new SerializationResources().init()
+    }
+
+    def setup() {
+        ObjectMappersSuite objectMappers = new ObjectMappersSuite()
+        ObjectMapper typePreservingMapper = new ObjectMappersSuite().getMapper()
+        typePreservingMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                .enableDefaultTyping(ObjectMapper.DefaultTyping.NON_FINAL)
+        codec = new ColumnarPreResponseCodec(
+                resources.dimensionDictionary,
+                objectMappers.mapper,
+                typePreservingMapper,
+                new StandardGranularityParser()
+        )
+    }
+
+    PreResponse roundTrip(PreResponse preResponse) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        codec.serialize(preResponse, out)
+        return codec.deserialize(new ByteArrayInputStream(out.toByteArray()))
+    }
+
+    @Unroll
+    def "A PreResponse with #description survives serialization"() {
+        given:
+        PreResponse preResponse = new PreResponse(resultSet, resources.responseContext)
+
+        when:
+        PreResponse deserialized = roundTrip(preResponse)
+
+        then:
+        GroovyTestUtils.compareObjects(deserialized.resultSet, preResponse.resultSet)
+        GroovyTestUtils.compareObjects(deserialized.resultSet.schema, preResponse.resultSet.schema)
+        GroovyTestUtils.compareObjects(deserialized.responseContext, preResponse.responseContext)
+
+        where:
+        description                  | resultSet
+        "decimal metrics"            | resources.resultSet
+        "string and list metrics"    | new ResultSet(resources.schema3, [resources.result3])
+        "null metrics"               | new ResultSet(resources.schema, [resources.result4, resources.result2])
+        "no rows"                    | new ResultSet(resources.schema, [])
+    }
+
+    def "Metrics of other types keep their type"() {
+        given:
+        ResultSet resultSet = new ResultSet(resources.schema, [
+                resources.result1.withMetricValue(resources.result1.metricValues.keySet().first(), 1.5d),
+                resources.result1.withMetricValue(resources.result1.metricValues.keySet().first(), -3L),
+                resources.result1.withMetricValue(resources.result1.metricValues.keySet().first(), true)
+        ])
+
+        expect:
+        roundTrip(new PreResponse(resultSet, resources.responseContext)).resultSet == resultSet
+    }
+
+    def "Something other than a serialized PreResponse isn't deserialized"() {
+        given:
+        ByteArrayOutputStream out = new ByteArrayOutputStream()
+        new GZIPOutputStream(out).withStream { it.write("not a PreResponse".bytes) }
+
+        when:
+        codec.deserialize(new ByteArrayInputStream(out.toByteArray()))
+
+        then:
+        thrown(DeserializationException)
+    }
+}
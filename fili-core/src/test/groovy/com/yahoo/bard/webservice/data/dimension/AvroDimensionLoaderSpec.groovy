@@ -0,0 +1,125 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import com.yahoo.bard.webservice.data.dimension.impl.KeyValueStoreDimension
+import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
+
+import org.apache.avro.Schema
+import org.apache.avro.file.DataFileWriter
+import org.apache.avro.generic.GenericData
+import org.apache.avro.generic.GenericDatumWriter
+import org.apache.avro.generic.GenericRecord
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class AvroDimensionLoaderSpec extends Specification {
+    LinkedHashSet<DimensionField> dimensionFields
+    KeyValueStoreDimension dimension
+    AvroDimensionRowParser avroDimensionRowParser
+    Path directory
+
+    def setup() {
+        dimensionFields = [BardDimensionField.ID, BardDimensionField.DESC]
+        // Named foo so that its fields map to the FOO_ID and FOO_DESC columns of the sample schema
+        dimension = new KeyValueStoreDimension(
+                "foo",
+                "desc-foo",
+                dimensionFields,
+                MapStoreManager.getInstance("avroLoader"),
+                ScanSearchProviderManager.getInstance("avroLoader")
+        )
+        avroDimensionRowParser = new AvroDimensionRowParser(DimensionFieldNameMapper.underscoreSeparatedConverter())
+        directory = Files.createTempDirectory("avroLoader")
+    }
+
+    def cleanup() {
+        MapStoreManager.removeInstance("avroLoader")
+        ScanSearchProviderManager.removeInstance("avroLoader")
+        directory.toFile().deleteDir()
+    }
+
+    /**
+     * Write an avro file of many small blocks, in the schema of the sample data.
+     *
+     * @param rowCount  Number of records to write
+     *
+     * @return the path of the file
+     */
+    String writeAvroFile(int rowCount) {
+        Schema schema = new Schema.Parser().parse(new File("src/test/resources/avroFilesTesting/sampleData.avsc"))
+        File file = directory.resolve("data.avro").toFile()
+        DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))
+        writer.setSyncInterval(64)
+        writer.create(schema, file)
+        (1..rowCount).each {
+            GenericRecord record = new GenericData.Record(schema)
+            record.put("FOO_ID", it)
+            record.put("FOO_DESC", it % 10 == 0 ? null : "desc $it".toString())
+            record.put("MISCELLANEOUS", "misc")
+            writer.append(record)
+        }
+        writer.close()
+        return file.path
+    }
+
+    @Unroll
+    def "Every row is loaded with #parallelism readers writing chunks of #chunkSize rows"() {
+        given:
+        String path = writeAvroFile(1000)
+        AvroDimensionLoader loader = new AvroDimensionLoader(avroDimensionRowParser, parallelism, chunkSize)
+
+        when:
+        long rowCount = loader.loadAvroFileDimensionRows(dimension, path)
+
+        then:
+        rowCount == 1000
+        dimension.getSearchProvider().getDimensionCardinality() == 1000
+        dimension.findDimensionRowByKeyValue("7") == BardDimensionField.makeDimensionRow(dimension, "7", "desc 7")
+        dimension.findDimensionRowByKeyValue("10") == BardDimensionField.makeDimensionRow(dimension, "10", "")
+        dimension.findDimensionRowByKeyValue("1000") != null
+
+        where:
+        parallelism | chunkSize
+        1           | 1000
+        4           | 7
+        16          | 100
+    }
+
+    def "The loaded rows match the parsed rows of the sample data"() {
+        given:
+        String path = "target/avro/avroFilesTesting/sampleData.avro"
+
+        when:
+        new AvroDimensionLoader(avroDimensionRowParser, 3, 1).loadAvroFileDimensionRows(dimension, path)
+
+        then:
+        dimension.getSearchProvider().findAllDimensionRows() ==
+                avroDimensionRowParser.parseAvroFileDimensionRows(dimension, path)
+    }
+
+    def "A schema missing dimension fields is rejected before anything is loaded"() {
+        given:
+        dimensionFields.add(BardDimensionField.FIELD1)
+
+        when:
+        new AvroDimensionLoader(avroDimensionRowParser).loadAvroFileDimensionRows(dimension, writeAvroFile(10))
+
+        then:
+        IllegalArgumentException exception = thrown(IllegalArgumentException)
+        exception.message == "The AVRO schema file does not contain all the configured dimension fields"
+        dimension.getSearchProvider().getDimensionCardinality() == 0
+    }
+
+    def "A missing file is reported as an illegal argument"() {
+        when:
+        new AvroDimensionLoader(avroDimensionRowParser).loadAvroFileDimensionRows(dimension, "target/no/such.avro")
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
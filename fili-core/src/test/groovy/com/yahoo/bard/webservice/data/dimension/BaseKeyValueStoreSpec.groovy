@@ -174,4 +174,14 @@ abstract class BaseKeyValueStoreSpec extends Specification {
         null == previousValues.get("key2")
         "oldValue3" == previousValues.get("key3")
     }
+
+    def "getAll returns the values of the keys that exist"() {
+        given:
+        store1.putAll(["key1": "value1", "key3": "value3"])
+        store1.remove("key2")
+
+        expect: 'missing keys are left out'
+        store1.getAll(["key1", "key2", "key3"]) == ["key1": "value1", "key3": "value3"]
+        store1.getAll([]).isEmpty()
+    }
 }
@@ -0,0 +1,192 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension
+
+import java.nio.file.Files
+import java.nio.file.Path
+
+class MemoryMappedStoreSpec extends BaseKeyValueStoreSpec {
+
+    static final int SEGMENT_SIZE = 4096
+
+    KeyValueStore getInstance(String storeName) {
+        return MemoryMappedStoreManager.getInstance(storeName)
+    }
+
+    void removeInstance(String storeName) {
+        MemoryMappedStoreManager.removeInstance(storeName)
+    }
+
+    Path directory
+    Path logPath
+
+    def setup() {
+        directory = Files.createTempDirectory("memoryMappedStore")
+        logPath = directory.resolve("store.log")
+    }
+
+    def cleanup() {
+        directory.toFile().deleteDir()
+    }
+
+    MemoryMappedStore openStore(long compactionThreshold = Long.MAX_VALUE) {
+        new MemoryMappedStore(logPath, SEGMENT_SIZE, compactionThreshold)
+    }
+
+    def "Values survive closing and reopening the store"() {
+        given:
+        MemoryMappedStore store = openStore()
+        store.putAll((1..500).collectEntries { ["key$it".toString(), "value $it ünïcödé".toString()] })
+        store.put("key2", "changed")
+        store.remove("key3")
+        store.close()
+
+        when:
+        store = openStore()
+
+        then:
+        store.get("key1") == "value 1 ünïcödé"
+        store.get("key2") == "changed"
+        store.get("key3") == null
+        store.get("key500") == "value 500 ünïcödé"
+
+        cleanup:
+        store.close()
+    }
+
+    def "Records spread over several segments are all found"() {
+        given: "Values that fill a segment with a few records each"
+        MemoryMappedStore store = openStore()
+        String value = "x" * 1000
+        (1..20).each { store.put("key$it", value + it) }
+
+        expect:
+        (1..20).every { store.get("key$it") == value + it }
+
+        cleanup:
+        store.close()
+    }
+
+    def "A damaged record at the end of the log is dropped when the store is opened"() {
+        given: "A log whose last record was only partly written"
+        MemoryMappedStore store = openStore()
+        store.put("kept", "value")
+        store.put("torn", "value")
+        store.close()
+        RandomAccessFile file = new RandomAccessFile(logPath.toFile(), "rw")
+        file.seek(8)
+        long end = file.readLong()
+        file.seek(end - 2)
+        file.write([0, 0] as byte[])
+        file.close()
+
+        when:
+        store = openStore()
+
+        then:
+        store.get("kept") == "value"
+        store.get("torn") == null
+
+        when: "The store is written to and reopened"
+        store.put("after", "value")
+        store.close()
+        store = openStore()
+
+        then:
+        store.get("kept") == "value"
+        store.get("after") == "value"
+
+        cleanup:
+        store.close()
+    }
+
+    def "Compaction keeps only the latest values"() {
+        given:
+        MemoryMappedStore store = openStore()
+        (1..10).each { round -> store.putAll((1..50).collectEntries { ["key$it".toString(), "$round".toString()] }) }
+        store.remove("key1")
+        long uncompactedSize = getLogEnd()
+
+        when:
+        store.compact()
+
+        then:
+        getLogEnd() < uncompactedSize / 5
+        store.get("key1") == null
+        (2..50).every { store.get("key$it") == "10" }
+
+        when: "The compacted store is reopened"
+        store.close()
+        store = openStore()
+
+        then:
+        store.get("key1") == null
+        (2..50).every { store.get("key$it") == "10" }
+
+        cleanup:
+        store.close()
+    }
+
+    def "The log is compacted once it's mostly overwritten values"() {
+        given:
+        MemoryMappedStore store = openStore(SEGMENT_SIZE)
+
+        when:
+        200.times { store.put("key", "value $it") }
+
+        then:
+        getLogEnd() < SEGMENT_SIZE * 2
+        store.get("key") == "value 199"
+
+        cleanup:
+        store.close()
+    }
+
+    def "A compaction interrupted by a crash is discarded"() {
+        given:
+        openStore().with {
+            put("key", "value")
+            close()
+        }
+        Files.write(directory.resolve("store.log.compacting"), "partial".bytes)
+
+        when:
+        MemoryMappedStore store = openStore()
+
+        then:
+        store.get("key") == "value"
+        !Files.exists(directory.resolve("store.log.compacting"))
+
+        cleanup:
+        store.close()
+    }
+
+    def "Records larger than a segment are rejected"() {
+        given:
+        MemoryMappedStore store = openStore()
+
+        when:
+        store.put("key", "x" * SEGMENT_SIZE)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        store.close()
+    }
+
+    /**
+     * Read the end of the log from its header.
+     *
+     * @return the length of the log in use
+     */
+    long getLogEnd() {
+        RandomAccessFile file = new RandomAccessFile(logPath.toFile(), "r")
+        try {
+            file.seek(8)
+            return file.readLong()
+        } finally {
+            file.close()
+        }
+    }
+}
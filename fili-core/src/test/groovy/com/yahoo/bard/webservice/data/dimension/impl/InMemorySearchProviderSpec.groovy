@@ -0,0 +1,154 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl
+
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.DESC
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.ID
+import static com.yahoo.bard.webservice.data.dimension.BardDimensionField.makeDimensionRow
+
+import com.yahoo.bard.webservice.data.dimension.DimensionField
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.MapStoreManager
+import com.yahoo.bard.webservice.data.dimension.SearchProvider
+import com.yahoo.bard.webservice.util.DimensionStoreKeyUtils
+import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.DefaultFilterOperation
+
+/**
+ * Specification for behavior specific to the InMemorySearchProvider.
+ */
+class InMemorySearchProviderSpec extends SearchProviderSpec<InMemorySearchProvider> {
+    @Override
+    InMemorySearchProvider getSearchProvider(String dimensionName) {
+        InMemorySearchProviderManager.getInstance(dimensionName)
+    }
+
+    @Override
+    void cleanSearchProvider(String dimensionName) {
+        InMemorySearchProviderManager.removeInstance(dimensionName)
+    }
+
+    @Override
+    boolean indicesHaveBeenCleared() {
+        return searchProvider.findAllDimensionRows().isEmpty() &&
+                searchProvider.keyValueStore.store.size() == 2 &&
+                searchProvider.keyValueStore[DimensionStoreKeyUtils.getCardinalityKey()] == "0" &&
+                searchProvider.keyValueStore[DimensionStoreKeyUtils.getAllValuesKey()] == "[]"
+    }
+
+    Set<String> findKeys(DefaultFilterOperation operation, DimensionField field, List<String> values) {
+        ApiFilter filter = new ApiFilter(keyValueStoreDimension, field, operation, values as Set)
+        // DimensionRow is a map, so the key value has to be read with its getter rather than as a property
+        searchProvider.findFilteredDimensionRows([filter] as Set).collect { it.getKeyValue() } as Set
+    }
+
+    def "Filters match values literally"() {
+        expect:
+        findKeys(operation, field, values) == expected as Set
+
+        where:
+        operation                        | field | values                    | expected
+        DefaultFilterOperation.startswith | ID    | ["b"]                     | ["bonobo", "brownrecluse"]
+        DefaultFilterOperation.startswith | DESC  | ["Spiders", "A secret"]   | ["brownrecluse", "tarantula", "wolfspider", "crocodile", "alligator", "aneurysm"]
+        DefaultFilterOperation.startswith | ID    | ["owl."]                  | []
+        DefaultFilterOperation.contains   | ID    | ["spider"]                | ["spidermonkey", "wolfspider"]
+        DefaultFilterOperation.contains   | ID    | ["ol"]                    | ["wolfspider"]
+        DefaultFilterOperation.contains   | DESC  | ["an owl", "xyz"]         | ["owl"]
+        DefaultFilterOperation.contains   | DESC  | ["关卡"]                   | []
+        DefaultFilterOperation.contains   | ID    | ["关卡"]                   | ["完成关卡"]
+        DefaultFilterOperation.contains   | DESC  | ["raptor", "not an ani"]  | ["hawk", "eagle", "kumquat"]
+        DefaultFilterOperation.contains   | DESC  | [".*"]                    | []
+        DefaultFilterOperation.in         | DESC  | ["Monkeys have teeth"]    | ["chimpanzee", "bonobo", "spidermonkey"]
+        DefaultFilterOperation.notin      | DESC  | ["Monkeys have teeth", "A secret agent's worst fear", "Spiders have eight legs"] | ["owl", "hawk", "eagle", "kumquat", "完成关卡"]
+    }
+
+    def "Removed values can no longer be found"() {
+        when: "The only row described as an owl stops being one"
+        keyValueStoreDimension.addDimensionRow(makeDimensionRow(keyValueStoreDimension, "owl", "this is a bird"))
+
+        then:
+        findKeys(DefaultFilterOperation.contains, DESC, ["an owl"]).isEmpty()
+        findKeys(DefaultFilterOperation.startswith, DESC, ["this is an"]).isEmpty()
+        findKeys(DefaultFilterOperation.contains, DESC, ["bird"]) == ["owl"] as Set
+    }
+
+    def "The index is loaded from rows already in the key value store"() {
+        given: "A new provider attached to the populated store"
+        InMemorySearchProvider reloaded = new InMemorySearchProvider()
+        reloaded.setDimension(keyValueStoreDimension)
+        reloaded.setKeyValueStore(searchProvider.keyValueStore)
+
+        expect:
+        reloaded.findAllOrderedDimensionRows() == searchProvider.findAllOrderedDimensionRows()
+        reloaded.getDimensionCardinality() == dimensionRows.size()
+    }
+
+    def "A rebuild replaces the indexed rows"() {
+        given:
+        DimensionRow parrot = makeDimensionRow(keyValueStoreDimension, "parrot", "this is a bird")
+
+        when:
+        keyValueStoreDimension.reloadAllDimensionRows([dimensionRow1, parrot] as Set)
+
+        then:
+        searchProvider.findAllOrderedDimensionRows() == [dimensionRow1, parrot] as TreeSet
+        findKeys(DefaultFilterOperation.startswith, DESC, ["this is a"]) == ["owl", "parrot"] as Set
+        searchProvider.keyValueStore[DimensionStoreKeyUtils.getCardinalityKey()] == "2"
+    }
+
+    def "Filters agree with the scan and Lucene providers"() {
+        given: "The same rows in dimensions searched by each kind of provider"
+        int rowCount = 1000
+        LinkedHashSet<DimensionField> fields = [ID, DESC]
+        Map<String, SearchProvider> providers = [
+                scan: ScanSearchProviderManager.getInstance("agreement_scan"),
+                memory: getSearchProvider("agreement_memory"),
+                lucene: LuceneSearchProviderManager.getInstance("agreement_lucene")
+        ]
+        Map<String, KeyValueStoreDimension> dimensions = providers.collectEntries { name, provider ->
+            KeyValueStoreDimension dimension = new KeyValueStoreDimension(
+                    "agreement_$name",
+                    "agreement_$name-description",
+                    fields,
+                    MapStoreManager.getInstance("agreement_$name"),
+                    provider
+            )
+            dimension.addAllDimensionRows(
+                    (0..<rowCount).collect {
+                        makeDimensionRow(dimension, "id$it", "group${it % 37}_${Integer.toString(it * 7919, 36)}")
+                    } as Set
+            )
+            [(name): dimension]
+        }
+
+        and: "A filter of each kind"
+        Map<String, List> filters = [
+                in: [ID, DefaultFilterOperation.in, ["id1", "id500", "id999", "id5000"]],
+                notin: [ID, DefaultFilterOperation.notin, ["id1", "id500"]],
+                startswith: [DESC, DefaultFilterOperation.startswith, ["group1_", "group22_"]],
+                contains: [DESC, DefaultFilterOperation.contains, ["1_", "up30"]]
+        ]
+
+        when:
+        Map<String, Map<String, Set<String>>> results = [:]
+        filters.each { filterName, filter ->
+            providers.each { providerName, provider ->
+                Set<ApiFilter> apiFilters = [
+                        new ApiFilter(dimensions[providerName], filter[0], filter[1], filter[2] as Set)
+                ] as Set
+                Set<DimensionRow> found = provider.findFilteredDimensionRows(apiFilters)
+                results.computeIfAbsent(filterName, { [:] })[providerName] = found.collect { it.getKeyValue() } as Set
+            }
+        }
+
+        then: "Every provider finds the same rows"
+        results.every { filterName, found -> !found.memory.isEmpty() && found.memory == found.scan }
+        results.every { filterName, found -> found.memory == found.lucene }
+
+        cleanup:
+        providers.keySet().each { MapStoreManager.removeInstance("agreement_$it") }
+        ScanSearchProviderManager.removeInstance("agreement_scan")
+        cleanSearchProvider("agreement_memory")
+        LuceneSearchProviderManager.removeInstance("agreement_lucene")
+    }
+}
@@ -92,6 +92,14 @@ class KeyValueStoreDimensionSpec extends Specification {
         searchProvider.findAllDimensionRows() == [dimensionRow1, dimensionRow2, dimensionRow3] as Set
     }
 
+    def "findDimensionRowsByKeyValues finds the rows that exist"() {
+        expect:
+        kvsDimension.findDimensionRowsByKeyValues(["row1", "missing", "row3"]) == [
+                "row1": dimensionRow1,
+                "row3": dimensionRow3
+        ]
+    }
+
     def "getDimensionCardinality returns cardinality count"() {
         expect:
         searchProvider.getDimensionCardinality() == 3
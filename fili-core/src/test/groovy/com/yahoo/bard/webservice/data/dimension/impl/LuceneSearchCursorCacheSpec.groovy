@@ -0,0 +1,83 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.data.dimension.impl
+
+import org.apache.lucene.search.ScoreDoc
+
+import spock.lang.Specification
+
+class LuceneSearchCursorCacheSpec extends Specification {
+
+    static final String QUERY = "*:*"
+    static final int PER_PAGE = 10
+
+    LuceneSearchCursorCache cache = new LuceneSearchCursorCache(2, 3)
+
+    LuceneSearchCursor cursor(long generation, int page) {
+        new LuceneSearchCursor(generation, QUERY.hashCode(), PER_PAGE, page, new ScoreDoc(page * PER_PAGE, 1.5f, 0))
+    }
+
+    def "A cursor survives encoding and decoding"() {
+        given:
+        LuceneSearchCursor original = cursor(7, 4)
+
+        expect:
+        LuceneSearchCursor.decode(original.encode()).get() == original
+        LuceneSearchCursor.decode(original.encode()).get().matches(7, QUERY.hashCode(), PER_PAGE, 4)
+    }
+
+    def "Strings that aren't cursors don't decode"() {
+        expect:
+        !LuceneSearchCursor.decode(encoded).isPresent()
+
+        where:
+        encoded << ["", "not a cursor!", "YWJj"]
+    }
+
+    def "The closest earlier page is found"() {
+        given:
+        [2, 5, 9].each { cache.put(QUERY, PER_PAGE, cursor(1, it)) }
+
+        expect:
+        cache.floor(QUERY, PER_PAGE, page, 1).map { it.page }.orElse(null) == expected
+
+        where:
+        page | expected
+        1    | null
+        2    | 2
+        4    | 2
+        8    | 5
+        100  | 9
+    }
+
+    def "Cursors from another index generation or page size are not used"() {
+        given:
+        cache.put(QUERY, PER_PAGE, cursor(1, 3))
+
+        expect:
+        !cache.floor(QUERY, PER_PAGE, 3, 2).isPresent()
+        !cache.floor(QUERY, PER_PAGE + 1, 3, 1).isPresent()
+    }
+
+    def "The lowest pages are dropped when a query has too many cursors"() {
+        given:
+        (2..5).each { cache.put(QUERY, PER_PAGE, cursor(1, it)) }
+
+        expect:
+        !cache.floor(QUERY, PER_PAGE, 2, 1).isPresent()
+        cache.floor(QUERY, PER_PAGE, 3, 1).get().page == 3
+    }
+
+    def "The least recently used query is evicted"() {
+        given:
+        cache.put("a", PER_PAGE, cursor(1, 2))
+        cache.put("b", PER_PAGE, cursor(1, 2))
+        cache.floor("a", PER_PAGE, 2, 1)
+        cache.put("c", PER_PAGE, cursor(1, 2))
+
+        expect:
+        cache.floor("a", PER_PAGE, 2, 1).isPresent()
+        !cache.floor("b", PER_PAGE, 2, 1).isPresent()
+        cache.floor("c", PER_PAGE, 2, 1).isPresent()
+    }
+}
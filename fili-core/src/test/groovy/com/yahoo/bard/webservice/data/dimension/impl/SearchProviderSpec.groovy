@@ -15,6 +15,8 @@ import com.yahoo.bard.webservice.data.dimension.DimensionRow
 import com.yahoo.bard.webservice.data.dimension.KeyValueStore
 import com.yahoo.bard.webservice.data.dimension.MapStoreManager
 import com.yahoo.bard.webservice.data.dimension.SearchProvider
+import com.yahoo.bard.webservice.druid.model.builders.DruidInFilterBuilder
+import com.yahoo.bard.webservice.druid.model.filter.InFilter
 import com.yahoo.bard.webservice.table.LogicalTable
 import com.yahoo.bard.webservice.util.Pagination
 import com.yahoo.bard.webservice.web.ApiFilter
@@ -504,6 +506,30 @@ abstract class SearchProviderSpec<T extends SearchProvider> extends Specificatio
         searchProvider.findFilteredDimensionRowsPaged([newDescription] as Set, paginationParameters).getPageOfData() == [dimensionRow2new] as List
     }
 
+    def "Changing the rows changes the index version, so cached dimension filters are built again"() {
+        given: "A dimension filter cached at the current index version"
+        DruidInFilterBuilder filterBuilder = new DruidInFilterBuilder(10, 100)
+        ApiFilter raptors = new ApiFilter(
+                keyValueStoreDimension,
+                DESC,
+                DefaultFilterOperation.eq,
+                ["this is a raptor"] as Set
+        )
+        long indexVersion = searchProvider.getIndexVersion()
+
+        expect:
+        filterBuilder.buildFilters([(keyValueStoreDimension): [raptors] as Set]) ==
+                new InFilter(keyValueStoreDimension, ["eagle", "hawk"])
+
+        when: "A row starts matching the filter"
+        keyValueStoreDimension.addDimensionRow(makeDimensionRow(keyValueStoreDimension, "owl", "this is a raptor"))
+
+        then: "The filter is built from the changed rows"
+        searchProvider.getIndexVersion() != indexVersion
+        filterBuilder.buildFilters([(keyValueStoreDimension): [raptors] as Set]) ==
+                new InFilter(keyValueStoreDimension, ["eagle", "hawk", "owl"])
+    }
+
     def "The pagination information contains the correct number of results, but only sends the desired page"() {
         setup: "Given a filter that will filter down to three rows"
         /* Expected rows, not necessarily in this order:
@@ -110,4 +110,37 @@ class TemplateDruidQueryMergerSpec extends Specification {
             !isNested()
         }
     }
+
+    def "Repeated merges of the same metrics reuse the merged query, unless caching is disabled"() {
+        setup:
+        TemplateDruidQuery q1 = new TemplateDruidQuery(
+                [new LongSumAggregation("field1", "field1")] as Set,
+                [] as Set,
+                (ZonelessTimeGrain) null
+        )
+        TemplateDruidQuery q2 = new TemplateDruidQuery(
+                [new LongSumAggregation("field2", "field2")] as Set,
+                [] as Set,
+                (ZonelessTimeGrain) null
+        )
+        Set<LogicalMetric> metrics = [
+                new LogicalMetricImpl(q1, null, "Metric1", null),
+                new LogicalMetricImpl(q2, null, "Metric2", null)
+        ] as LinkedHashSet
+        DataApiRequest request = Mock(DataApiRequest) { getLogicalMetrics() >> metrics }
+        TemplateDruidQueryMerger merger = new TemplateDruidQueryMerger(cacheSize)
+
+        when:
+        TemplateDruidQuery first = merger.merge(request)
+        TemplateDruidQuery second = merger.merge(request)
+
+        then:
+        first == second
+        first.is(second) == reused
+
+        where:
+        cacheSize | reused
+        10        | true
+        0         | false
+    }
 }
@@ -7,12 +7,20 @@ import static com.yahoo.bard.webservice.druid.model.filter.Filter.DefaultFilterT
 import static com.yahoo.bard.webservice.druid.model.filter.Filter.DefaultFilterType.NOT
 
 import com.yahoo.bard.webservice.data.QueryBuildingTestingResources
+import com.yahoo.bard.webservice.data.dimension.BardDimensionField
+import com.yahoo.bard.webservice.data.dimension.Dimension
+import com.yahoo.bard.webservice.data.dimension.DimensionRow
+import com.yahoo.bard.webservice.data.dimension.SearchProvider
 import com.yahoo.bard.webservice.druid.model.builders.DruidFilterBuilder
 import com.yahoo.bard.webservice.druid.model.builders.DruidInFilterBuilder
 import com.yahoo.bard.webservice.druid.model.filter.Filter
 import com.yahoo.bard.webservice.druid.model.filter.InFilter
 import com.yahoo.bard.webservice.druid.model.filter.NotFilter
+import com.yahoo.bard.webservice.druid.model.filter.OrFilter
+import com.yahoo.bard.webservice.druid.model.filter.RegularExpressionFilter
+import com.yahoo.bard.webservice.druid.model.filter.SearchFilter
 import com.yahoo.bard.webservice.web.ApiFilter
+import com.yahoo.bard.webservice.web.DefaultFilterOperation
 import com.yahoo.bard.webservice.web.apirequest.generator.filter.FilterBinders
 
 import spock.lang.Shared
@@ -164,4 +172,146 @@ class DruidInFilterBuilderSpec extends Specification {
         [resources.d2, resources.d3]|  [ "ageIdNotin56"]                 | AND        | NOT
         [resources.d2, resources.d3]|  [ "ageIdEq1234", "ageDescEq1129"] | AND        | IN
     }
+
+    /**
+     * Build a dimension whose search provider finds rows with the given key values.
+     *
+     * @param searchProvider  The search provider of the dimension
+     *
+     * @return the dimension
+     */
+    Dimension dimensionSearchedBy(SearchProvider searchProvider) {
+        Mock(Dimension) {
+            getApiName() >> "searched"
+            getKey() >> BardDimensionField.ID
+            getSearchProvider() >> searchProvider
+        }
+    }
+
+    /**
+     * Build dimension rows with the given key values.
+     *
+     * @param keyValues  The key values
+     *
+     * @return the rows
+     */
+    Set<DimensionRow> rows(List<String> keyValues) {
+        keyValues.collect { new DimensionRow(BardDimensionField.ID, [(BardDimensionField.ID): it]) } as Set
+    }
+
+    def "Dimension filters are cached until the index version of the dimension changes"() {
+        given:
+        long indexVersion = 1
+        SearchProvider searchProvider = Mock(SearchProvider) {
+            getIndexVersion() >> { indexVersion }
+        }
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.ID, DefaultFilterOperation.in, ["2", "1"])
+        ApiFilter reordered = filter.withValues(["1", "2", "1"])
+        DruidInFilterBuilder cachingBuilder = new DruidInFilterBuilder(10, 100)
+
+        when: "The same filter is built twice, with its values in a different order"
+        Filter first = cachingBuilder.buildFilters([(dimension): [filter] as Set])
+        Filter second = cachingBuilder.buildFilters([(dimension): [reordered] as Set])
+
+        then: "The dimension is searched once and the filter is reused"
+        1 * searchProvider.findFilteredDimensionRows(_) >> rows(["1", "2"])
+        second.is(first)
+
+        when: "The rows of the dimension change"
+        indexVersion++
+        Filter third = cachingBuilder.buildFilters([(dimension): [filter] as Set])
+
+        then:
+        1 * searchProvider.findFilteredDimensionRows(_) >> rows(["1", "2"])
+        third == first
+        !third.is(first)
+    }
+
+    def "Filters on dimensions whose search providers don't version their index aren't cached"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider) {
+            getIndexVersion() >> SearchProvider.UNVERSIONED_INDEX
+        }
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.ID, DefaultFilterOperation.in, ["1", "2"])
+        DruidInFilterBuilder cachingBuilder = new DruidInFilterBuilder(10, 100)
+
+        when:
+        cachingBuilder.buildFilters([(dimension): [filter] as Set])
+        cachingBuilder.buildFilters([(dimension): [filter] as Set])
+
+        then: "The dimension is searched every time"
+        2 * searchProvider.findFilteredDimensionRows(_) >> rows(["1", "2"])
+    }
+
+    @Unroll
+    def "Filters on the key field matching too many values are sent to druid as #expectedType"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        searchProvider.findFilteredDimensionRows(_) >> rows(["1", "10", "11"])
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.ID, operation, ["1", "2"])
+
+        when:
+        Filter druidFilter = new DruidInFilterBuilder(0, 2).buildFilters([(dimension): [filter] as Set])
+        Filter unresolved = negated ? ((NotFilter) druidFilter).field : druidFilter
+
+        then:
+        expectedType.isInstance(unresolved)
+        check(unresolved)
+
+        where:
+        operation                         | negated | expectedType            | check
+        DefaultFilterOperation.startswith | false   | RegularExpressionFilter | { it.pattern.matcher("10").find() }
+        DefaultFilterOperation.contains   | false   | OrFilter                | { it.fields.every { it instanceof SearchFilter } }
+    }
+
+    @Unroll
+    def "Filters listing too many values of the key field are sent as the values they match, with #operation"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        searchProvider.findFilteredDimensionRows(_) >> rows(["1", "10", "11"])
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.ID, operation, ["1", "10", "11", "12"])
+
+        when:
+        Filter druidFilter = new DruidInFilterBuilder(0, 2).buildFilters([(dimension): [filter] as Set])
+
+        then:
+        (negated ? ((NotFilter) druidFilter).field : druidFilter) == new InFilter(dimension, ["1", "10", "11"])
+
+        where:
+        operation                    | negated
+        DefaultFilterOperation.in    | false
+        DefaultFilterOperation.notin | true
+    }
+
+    def "Prefixes are quoted in the regular expression they're sent as"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        searchProvider.findFilteredDimensionRows(_) >> rows(["a.b", "a.c", "a.d"])
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.ID, DefaultFilterOperation.startswith, ["a."])
+
+        when:
+        RegularExpressionFilter druidFilter = new DruidInFilterBuilder(0, 2).buildFilters([(dimension): [filter] as Set])
+
+        then:
+        druidFilter.pattern.matcher("a.b").find()
+        !druidFilter.pattern.matcher("ab").find()
+        !druidFilter.pattern.matcher("ba.").find()
+    }
+
+    def "Filters matching too many values of a non key field are sent as the values they match"() {
+        given:
+        SearchProvider searchProvider = Mock(SearchProvider)
+        searchProvider.findFilteredDimensionRows(_) >> rows(["1", "10", "11"])
+        Dimension dimension = dimensionSearchedBy(searchProvider)
+        ApiFilter filter = new ApiFilter(dimension, BardDimensionField.DESC, DefaultFilterOperation.startswith, ["1"])
+
+        expect:
+        new DruidInFilterBuilder(0, 2).buildFilters([(dimension): [filter] as Set]) ==
+                new InFilter(dimension, ["1", "10", "11"])
+    }
 }
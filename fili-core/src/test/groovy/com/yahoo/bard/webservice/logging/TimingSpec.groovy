@@ -5,8 +5,13 @@ package com.yahoo.bard.webservice.logging
 import static spock.util.matcher.HamcrestMatchers.closeTo
 import static spock.util.matcher.HamcrestSupport.expect
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
+import com.yahoo.bard.webservice.logging.blocks.BardQueryInfo
+import com.yahoo.bard.webservice.logging.blocks.DataRequest
+import com.yahoo.bard.webservice.logging.blocks.Threads
 
+import com.codahale.metrics.MetricRegistry
 import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
 
@@ -26,9 +31,6 @@ import spock.lang.Unroll
 class TimingSpec extends Specification {
     private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper()
 
-    @Shared
-    String pkgString = "com.yahoo.bard.webservice.logging.blocks."
-
     @Shared
     TestLogAppender logAppender
 
@@ -225,8 +227,41 @@ class TimingSpec extends Specification {
         RequestLog.generateLogInfoOrder(inputOrderString) == expectedList
 
         where:
-        expectedList << [[], [], [], [pkgString + "Part1", pkgString + "Part2"], [pkgString + "Part2", pkgString +
-                "Part1"], [pkgString + "Part1"]]
-        inputOrderString << ["", ",", " ", "Part1,Part2", "Part2,Part1,", ", Part1"]
+        expectedList << [[], [], [], [DataRequest, Threads], [Threads, DataRequest], [DataRequest], [DataRequest], [DataRequest]]
+        inputOrderString << ["", ",", " ", "DataRequest,Threads", "Threads,DataRequest,", ", DataRequest", "Missing,DataRequest", "Epilogue,DataRequest"]
+    }
+
+    def "Request log ids are version 4 UUIDs"() {
+        when:
+        String logId = RequestLog.getId()
+        RequestLog.dump()
+
+        then:
+        UUID.fromString(logId).version() == 4
+        UUID.fromString(logId).variant() == 2
+        UUID.fromString(logId).toString() == logId
+    }
+
+    def "Finished phases update the timers tagged by logical table and query type"() {
+        given:
+        MetricRegistry registry = MetricRegistryFactory.getRegistry()
+        String finished = MetricRegistry.name(RequestLog.PHASE_TIMER, "FinishedPhase", "none", "groupBy")
+        String running = MetricRegistry.name(RequestLog.PHASE_TIMER, "RunningPhase", "none", "groupBy")
+        long count = registry.timer(finished).count
+
+        when:
+        RequestLog.getId()
+        RequestLog.record(new BardQueryInfo("groupBy"))
+        RequestLog.startTiming("FinishedPhase")
+        RequestLog.stopTiming("FinishedPhase")
+        RequestLog.startTiming("RunningPhase")
+        RequestLog.RLOG.get().updatePhaseTimers(["FinishedPhase", "RunningPhase", "MissingPhase"])
+        RequestLog.stopTiming("RunningPhase")
+        RequestLog.dump()
+
+        then:
+        registry.timer(finished).count == count + 1
+        !registry.timers.containsKey(running)
+        registry.timers.keySet().findAll { it.contains("MissingPhase") }.isEmpty()
     }
 }
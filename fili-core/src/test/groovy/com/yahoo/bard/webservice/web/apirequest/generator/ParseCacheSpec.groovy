@@ -0,0 +1,35 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.apirequest.generator
+
+import spock.lang.Specification
+
+class ParseCacheSpec extends Specification {
+
+    def "The least recently used parses are evicted once the cache is full"() {
+        given:
+        ParseCache<String, Integer> cache = new ParseCache<>(2)
+        cache.put("one", 1)
+        cache.put("two", 2)
+
+        when: "one is used, then a third parse is kept"
+        cache.get("one")
+        cache.put("three", 3)
+
+        then:
+        cache.get("one") == 1
+        cache.get("two") == null
+        cache.get("three") == 3
+    }
+
+    def "A cache without room keeps nothing"() {
+        given:
+        ParseCache<String, Integer> cache = new ParseCache<>(0)
+
+        when:
+        cache.put("one", 1)
+
+        then:
+        cache.get("one") == null
+    }
+}
@@ -0,0 +1,98 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.apirequest.generator.having
+
+import com.yahoo.bard.webservice.data.metric.LogicalMetric
+import com.yahoo.bard.webservice.data.metric.LogicalMetricImpl
+import com.yahoo.bard.webservice.data.metric.MetricDictionary
+import com.yahoo.bard.webservice.web.ApiHaving
+
+import spock.lang.Specification
+
+class PerRequestDictionaryHavingGeneratorSpec extends Specification {
+
+    LogicalMetric metric = new LogicalMetricImpl(null, null, "metric")
+    Set<ApiHaving> havings = [Mock(ApiHaving)] as Set
+
+    List<MetricDictionary> dictionaries = []
+    int parses = 0
+
+    /**
+     * Build a generator that records the dictionaries it is copied to, and counts the having clauses it parses.
+     *
+     * @param generated  The havings every parse produces
+     *
+     * @return the recording generator
+     */
+    HavingGenerator recordingGenerator(Map<LogicalMetric, Set<ApiHaving>> generated) {
+        HavingGenerator recording
+        recording = [
+                withMetricDictionary: { MetricDictionary dictionary ->
+                    dictionaries.add(dictionary)
+                    recording
+                },
+                apply: { String havingString, Set<LogicalMetric> logicalMetrics ->
+                    parses++
+                    generated
+                }
+        ] as HavingGenerator
+        return recording
+    }
+
+    def "Havings are generated once, and reused by the generators copied to other dictionaries"() {
+        given:
+        PerRequestDictionaryHavingGenerator generator = new PerRequestDictionaryHavingGenerator(
+                recordingGenerator([(metric): havings])
+        )
+        HavingGenerator copy = generator.withMetricDictionary(new MetricDictionary())
+        dictionaries.clear()
+
+        when:
+        Map<LogicalMetric, Set<ApiHaving>> first = generator.apply("metric-gt[1]", [metric] as Set)
+        Map<LogicalMetric, Set<ApiHaving>> second = copy.apply("metric-gt[1]", [metric] as Set)
+
+        then: "The having clause is only parsed once"
+        parses == 1
+        first == [(metric): havings]
+        second == first
+
+        and: "It is parsed against a dictionary of only the request's metrics"
+        dictionaries.size() == 1
+        dictionaries[0] == [metric: metric]
+
+        and: "The requests can't change each other's havings"
+        !second.is(first)
+        !second[metric].is(first[metric])
+    }
+
+    def "Havings for other metrics are parsed against their own dictionary"() {
+        given:
+        LogicalMetric other = new LogicalMetricImpl(null, null, "other")
+        PerRequestDictionaryHavingGenerator generator = new PerRequestDictionaryHavingGenerator(
+                recordingGenerator([(metric): havings])
+        )
+
+        when:
+        generator.apply("metric-gt[1]", [metric] as Set)
+        generator.apply("metric-gt[1]", [metric, other] as Set)
+
+        then:
+        parses == 2
+        dictionaries*.keySet() == [["metric"] as Set, ["metric", "other"] as Set]
+    }
+
+    def "A generator producing no havings doesn't fail the request"() {
+        given:
+        PerRequestDictionaryHavingGenerator generator = new PerRequestDictionaryHavingGenerator(
+                recordingGenerator(null)
+        )
+
+        when:
+        generator.apply("metric-gt[1]", [metric] as Set)
+        Map<LogicalMetric, Set<ApiHaving>> cached = generator.apply("metric-gt[1]", [metric] as Set)
+
+        then:
+        parses == 1
+        cached == [:]
+    }
+}
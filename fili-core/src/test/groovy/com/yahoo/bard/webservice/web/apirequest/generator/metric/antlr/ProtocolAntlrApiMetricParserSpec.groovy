@@ -33,6 +33,18 @@ class ProtocolAntlrApiMetricParserSpec extends Specification {
         generator.apply(query) == expected
     }
 
+    def "Repeated queries are parsed the same, into lists the caller can change"() {
+        given:
+        String query = "one(bar=baz),two"
+        List<ApiMetric> first = generator.apply(query)
+
+        when:
+        first.clear()
+
+        then:
+        generator.apply(query) == [new ApiMetric("one(bar=baz)", "one", ["bar": "baz"]), new ApiMetric("two", "two", [:])]
+    }
+
     // Ignorable whitespace used in many expamples.
     @Unroll
     def "Parser produces #metric and #params from text: #text"() {
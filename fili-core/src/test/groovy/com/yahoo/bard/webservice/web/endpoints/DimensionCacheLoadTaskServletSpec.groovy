@@ -16,6 +16,12 @@ import com.yahoo.bard.webservice.data.dimension.impl.LuceneSearchProviderManager
 import com.yahoo.bard.webservice.data.dimension.impl.ScanSearchProviderManager
 import com.yahoo.bard.webservice.util.GroovyTestUtils
 
+import org.apache.avro.Schema
+import org.apache.avro.SchemaBuilder
+import org.apache.avro.file.DataFileWriter
+import org.apache.avro.generic.GenericData
+import org.apache.avro.generic.GenericDatumWriter
+import org.apache.avro.generic.GenericRecord
 import org.joda.time.DateTime
 import org.joda.time.DateTimeZone
 
@@ -24,6 +30,7 @@ import spock.lang.Specification
 import javax.ws.rs.client.Entity
 import javax.ws.rs.core.Response
 import javax.ws.rs.core.Response.Status
+import javax.ws.rs.core.StreamingOutput
 
 class DimensionCacheLoadTaskServletSpec extends Specification {
     private static final ObjectMappersSuite MAPPERS = new ObjectMappersSuite()
@@ -100,8 +107,11 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
 
     def cleanup() {
         DateTimeZone.setDefault(originalTimeZone)
-        dimensionGender.searchProvider.clearDimension()
-        dimensionUserCountry.searchProvider.clearDimension()
+        // Drop the stores along with the indexes, a row left in a store isn't indexed again when it's added unchanged
+        MapStoreManager.removeInstance("gender")
+        MapStoreManager.removeInstance("user_country")
+        ScanSearchProviderManager.removeInstance("gender")
+        LuceneSearchProviderManager.removeInstance("user_country")
     }
 
     def "UpdateDimensionLastUpdated works as expected"() {
@@ -185,6 +195,35 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
                 .containsAll(dimensionUserCountry.searchProvider.findAllDimensionRows())
     }
 
+    def "reloadDimensionRows replaces the rows found by searching a rebuilt index"() {
+        setup:
+        String put = """{
+                           "dimensionRows": [
+                             {
+                               "field1": "foo",
+                               "description": "United_States_of_America",
+                               "id": "usa"
+                             },
+                             {
+                               "field2": "can2",
+                               "description": "Canada",
+                               "id": "can"
+                             }
+                           ]
+                         }"""
+
+        when:
+        Response r = dimensionCacheLoaderServlet.reloadDimensionRows("user_country", put)
+
+        then: "Only the reloaded rows are found"
+        r.getStatusInfo() == Status.OK
+        dimensionUserCountry.searchProvider.findAllDimensionRows() == [
+                BardDimensionField.makeDimensionRow(dimensionUserCountry, "usa", "United_States_of_America", "foo", ""),
+                BardDimensionField.makeDimensionRow(dimensionUserCountry, "can", "Canada", "", "can2")
+        ] as Set
+        dimensionUserCountry.searchProvider.dimensionCardinality == 2
+    }
+
     def "Check addUpdateDimensionRows for dimension cache loader endpoint"() {
 
         setup:
@@ -330,4 +369,154 @@ class DimensionCacheLoadTaskServletSpec extends Specification {
         cleanup:
         jtb.tearDown()
     }
+
+    /**
+     * Run a streaming upload to the servlet and collect its progress reports.
+     *
+     * @param response  The response of the streaming endpoint
+     *
+     * @return the progress reports
+     */
+    List<Map> streamUpload(Response response) {
+        ByteArrayOutputStream progress = new ByteArrayOutputStream()
+        ((StreamingOutput) response.entity).write(progress)
+        progress.toString("UTF-8").readLines().collect { MAPPERS.mapper.readValue(it, Map) }
+    }
+
+    def "Newline delimited JSON rows are applied in batches, with progress reported per batch"() {
+        setup:
+        String rows = """{"id": "usa", "description": "United_States_of_America", "field1": "foo"}
+                         {"id": "can", "description": "Canada", "field2": "can2"}
+                         {"id": "mex", "description": "Mexico"}"""
+
+        when:
+        Response r = dimensionCacheLoaderServlet.streamDimensionRows(
+                "user_country",
+                2,
+                commitBatches,
+                new ByteArrayInputStream(rows.getBytes("UTF-8"))
+        )
+        List<Map> reports = streamUpload(r)
+
+        then:
+        r.getStatusInfo() == Status.OK
+        reports == [
+                [rows: 2, batches: 1, committed: committedFirstBatch],
+                [rows: 3, batches: 2, committed: commitBatches == 1],
+                [rows: 3, batches: 2, committed: true, done: true]
+        ]
+
+        and: "The rows are stored and indexed"
+        dimensionUserCountry.searchProvider.findAllDimensionRows() == [
+                dimensionRowIndia,
+                BardDimensionField.makeDimensionRow(dimensionUserCountry, "usa", "United_States_of_America", "foo", ""),
+                BardDimensionField.makeDimensionRow(dimensionUserCountry, "can", "Canada", "", "can2"),
+                BardDimensionField.makeDimensionRow(dimensionUserCountry, "mex", "Mexico", "", "")
+        ] as Set
+        dimensionUserCountry.searchProvider.dimensionCardinality == 4
+
+        where:
+        commitBatches | committedFirstBatch
+        null          | false
+        1             | true
+    }
+
+    def "A malformed row ends a streamed upload with an error, keeping the rows before it"() {
+        setup:
+        String rows = """{"id": "m", "description": "Male"}
+                         {"description": "no id"}"""
+
+        when:
+        List<Map> reports = streamUpload(
+                dimensionCacheLoaderServlet.streamDimensionRows(
+                        "gender",
+                        1,
+                        null,
+                        new ByteArrayInputStream(rows.getBytes("UTF-8"))
+                )
+        )
+
+        then:
+        reports.size() == 2
+        reports[0] == [rows: 1, batches: 1, committed: false]
+        reports[1].error.startsWith("Failed to stream dimension rows of gender")
+        dimensionGender.findDimensionRowByKeyValue("m") == BardDimensionField.makeDimensionRow(
+                dimensionGender,
+                "m",
+                "Male"
+        )
+    }
+
+    def "Streamed uploads are rejected for unknown dimensions and bad batch sizes"() {
+        expect:
+        dimensionCacheLoaderServlet.streamDimensionRows(
+                dimensionName,
+                batchSize,
+                null,
+                new ByteArrayInputStream(new byte[0])
+        ).getStatusInfo() == status
+
+        where:
+        dimensionName | batchSize | status
+        "unknown"     | null      | Status.NOT_FOUND
+        "gender"      | 0         | Status.BAD_REQUEST
+    }
+
+    def "AVRO rows are applied as they're streamed"() {
+        setup:
+        Schema schema = SchemaBuilder.record("gender").fields()
+                .requiredString("id")
+                .optionalString("desc")
+                .endRecord()
+        ByteArrayOutputStream avro = new ByteArrayOutputStream()
+        DataFileWriter<GenericRecord> writer = new DataFileWriter<>(new GenericDatumWriter<GenericRecord>(schema))
+        writer.create(schema, avro)
+        [u: "unknown", x: null].each { id, desc ->
+            GenericRecord record = new GenericData.Record(schema)
+            record.put("id", id)
+            record.put("desc", desc)
+            writer.append(record)
+        }
+        writer.close()
+
+        when:
+        List<Map> reports = streamUpload(
+                dimensionCacheLoaderServlet.streamAvroDimensionRows(
+                        "gender",
+                        null,
+                        null,
+                        new ByteArrayInputStream(avro.toByteArray())
+                )
+        )
+
+        then:
+        reports.last() == [rows: 2, batches: 1, committed: true, done: true]
+        dimensionGender.findDimensionRowByKeyValue("u") == BardDimensionField.makeDimensionRow(
+                dimensionGender,
+                "u",
+                "unknown"
+        )
+        dimensionGender.findDimensionRowByKeyValue("x") == BardDimensionField.makeDimensionRow(dimensionGender, "x", "")
+    }
+
+    def "POST of newline delimited JSON streams progress back"() {
+        setup:
+        JerseyTestBinder jtb = new JerseyTestBinder(DimensionCacheLoaderServlet.class)
+        Entity postBody = Entity.entity(
+                """{"id": "1", "description": "red"}\n{"id": "2", "description": "blue"}\n""",
+                DimensionCacheLoaderServlet.NDJSON
+        )
+
+        when:
+        Response r = jtb.getHarness().target("cache/dimensions/color/dimensionRows")
+                .request()
+                .post(postBody)
+
+        then:
+        r.getStatusInfo() == Status.OK
+        MAPPERS.mapper.readValue(r.readEntity(String).readLines().last(), Map).done == true
+
+        cleanup:
+        jtb.tearDown()
+    }
 }
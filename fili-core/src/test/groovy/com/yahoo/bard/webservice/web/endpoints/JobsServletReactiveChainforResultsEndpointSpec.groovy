@@ -5,6 +5,7 @@ package com.yahoo.bard.webservice.web.endpoints
 import com.yahoo.bard.webservice.application.ObjectMappersSuite
 import com.yahoo.bard.webservice.async.broadcastchannels.BroadcastChannel
 import com.yahoo.bard.webservice.async.broadcastchannels.SimpleBroadcastChannel
+import com.yahoo.bard.webservice.async.broadcastchannels.TicketNotificationRegistry
 import com.yahoo.bard.webservice.async.jobs.payloads.JobPayloadBuilder
 import com.yahoo.bard.webservice.async.jobs.stores.ApiJobStore
 import com.yahoo.bard.webservice.async.preresponses.stores.HashPreResponseStore
@@ -40,6 +41,7 @@ import javax.ws.rs.core.UriInfo
 class JobsServletReactiveChainforResultsEndpointSpec extends Specification {
     JobsServlet jobsServlet
     BroadcastChannel<String> broadcastChannel
+    TicketNotificationRegistry ticketNotifications
     HashPreResponseStore preResponseStore
     JobPayloadBuilder jobPayloadBuilder
     ApiJobStore apiJobStore
@@ -70,6 +72,7 @@ class JobsServletReactiveChainforResultsEndpointSpec extends Specification {
 
         preResponseStore = new HashPreResponseStore()
         broadcastChannel = new SimpleBroadcastChannel<>(PublishSubject.create())
+        ticketNotifications = new TicketNotificationRegistry(broadcastChannel)
         httpResponseMaker = new HttpResponseMaker(objectMappersSuite, dimensionDictionary, responseWriter)
 
         jobsServlet = new JobsServlet(
@@ -77,7 +80,7 @@ class JobsServletReactiveChainforResultsEndpointSpec extends Specification {
                 apiJobStore,
                 jobPayloadBuilder,
                 preResponseStore,
-                broadcastChannel,
+                ticketNotifications,
                 requestMapper,
                 httpResponseMaker,
                 formatResolver,
@@ -92,7 +95,7 @@ class JobsServletReactiveChainforResultsEndpointSpec extends Specification {
                 apiJobStore,
                 jobPayloadBuilder,
                 mockPreResponseStore,
-                broadcastChannel,
+                ticketNotifications,
                 requestMapper,
                 httpResponseMaker,
                 formatResolver,
@@ -100,6 +103,10 @@ class JobsServletReactiveChainforResultsEndpointSpec extends Specification {
         )
     }
 
+    def cleanup() {
+        ticketNotifications.close()
+    }
+
     def "getResults emits a PreResponse if it is available in the PreResponseStore even if the notification for the ticket is missed"() {
         setup:
         TestSubscriber<PreResponse> testSubscriber = new TestSubscriber<>()
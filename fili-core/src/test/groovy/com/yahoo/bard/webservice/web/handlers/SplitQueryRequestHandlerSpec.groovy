@@ -9,11 +9,15 @@ import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.MONTH
 import com.yahoo.bard.webservice.data.time.Granularity
 import com.yahoo.bard.webservice.druid.client.HttpErrorCallback
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.logging.RequestLog
 import com.yahoo.bard.webservice.util.SimplifiedIntervalList
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest
+import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor
 import com.yahoo.bard.webservice.web.responseprocessors.SplitQueryResponseProcessor
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory
+
 import org.joda.time.DateTime
 import org.joda.time.Duration
 import org.joda.time.Interval
@@ -21,6 +25,7 @@ import org.joda.time.Interval
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.Semaphore
 import java.util.concurrent.atomic.AtomicLong
 
 class SplitQueryRequestHandlerSpec extends Specification {
@@ -111,6 +116,90 @@ class SplitQueryRequestHandlerSpec extends Specification {
         0 * _._
     }
 
+    def "Adjacent buckets are grouped once there are more than the maximum sub-queries"() {
+        setup:
+        handler = new SplitQueryRequestHandler(next, 10, 0)
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [year]
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+        List<Interval> subQueryIntervals = []
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        10 * groupByQuery.withAllIntervals(_) >> { args ->
+            subQueryIntervals.addAll(args[0] as List<Interval>)
+            groupByQuerySplit
+        }
+        10 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _ as SplitQueryResponseProcessor)
+        subQueryIntervals.size() == 10
+
+        and: "Each sub-query but the last holds 37 of the 365 days, and the last holds the 32 days left"
+        subQueryIntervals[0] == new Interval("2015-01-01/2015-02-07")
+        subQueryIntervals[9] == new Interval("2015-11-30/2016-01-01")
+        (0..8).every { subQueryIntervals[it].toDuration().standardDays == 37 }
+        (0..8).every { subQueryIntervals[it].end == subQueryIntervals[it + 1].start }
+    }
+
+    def "Only the maximum number of sub-queries are in flight, and the next is sent as one completes"() {
+        setup:
+        handler = new SplitQueryRequestHandler(next, 0, 2)
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+        Map<Interval, GroupByQuery> subQueries = DAY.intervalsIterable([week]).collectEntries { Interval day ->
+            [(day): Mock(GroupByQuery) { getIntervals() >> [day] }]
+        }
+        groupByQuery.withAllIntervals(_) >> { args -> subQueries[(args[0] as List<Interval>)[0]] }
+        List<GroupByQuery> sent = []
+        ResponseProcessor processor = null
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then:
+        2 * next.handleRequest(rc, apiRequest, _, _) >> { args ->
+            sent.add(args[2])
+            processor = args[3]
+            true
+        }
+
+        when:
+        processor.processResponse(
+                JsonNodeFactory.instance.arrayNode(),
+                sent[0],
+                new LoggingContext(RequestLog.dump())
+        )
+
+        then:
+        1 * next.handleRequest(rc, apiRequest, subQueries.values().toList()[2], _)
+        0 * response.processResponse(_, _, _)
+    }
+
+    def "Beyond its first sub-query, a request only sends the sub-queries it gets a shared permit for"() {
+        setup:
+        Semaphore sharedInFlight = new Semaphore(1)
+        handler = new SplitQueryRequestHandler(next, 0, 5, sharedInFlight)
+        groupByQuery.granularity >> DAY
+        groupByQuery.intervals >> [week]
+        groupByQuery.withAllIntervals(_) >> groupByQuerySplit
+        rc.numberOfIncoming >> new AtomicLong(1)
+        rc.numberOfOutgoing >> new AtomicLong(1)
+
+        when:
+        handler.handleRequest(rc, apiRequest, groupByQuery, response)
+
+        then: "The first sub-query and the one holding the only permit are sent"
+        2 * next.handleRequest(rc, apiRequest, groupByQuerySplit, _ as SplitQueryResponseProcessor) >> true
+        sharedInFlight.availablePermits() == 0
+
+        and: "Other handlers have permits of their own"
+        new SplitQueryRequestHandler(next, 0, 5).sharedInFlight.availablePermits() > 0
+    }
+
     SimplifiedIntervalList buildIntervals(List<String> intervals) {
         intervals.collect({ new Interval(it) }) as SimplifiedIntervalList
     }
@@ -0,0 +1,270 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.web.ratelimit
+
+import com.yahoo.bard.webservice.config.SystemConfig
+import com.yahoo.bard.webservice.config.SystemConfigProvider
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery
+
+import spock.lang.Specification
+
+import java.security.Principal
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+import javax.ws.rs.HttpMethod
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.core.SecurityContext
+
+class CostWeightedRateLimiterSpec extends Specification {
+
+    static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance()
+
+    static final long LIMIT_GLOBAL = 100
+    static final long LIMIT_PER_USER = 40
+    static final int QUEUE_SIZE = 2
+    static final long QUEUE_TIMEOUT = 200
+
+    static Map<String, String> originalValues = [:]
+
+    CostWeightedRateLimiter rateLimiter
+    long cost
+
+    def setupSpec() {
+        [
+                (CostWeightedRateLimiter.COST_LIMIT_GLOBAL_KEY): LIMIT_GLOBAL,
+                (CostWeightedRateLimiter.COST_LIMIT_PER_USER_KEY): LIMIT_PER_USER,
+                (CostWeightedRateLimiter.COST_QUEUE_SIZE_KEY): QUEUE_SIZE,
+                (CostWeightedRateLimiter.COST_QUEUE_TIMEOUT_KEY): QUEUE_TIMEOUT
+        ].each { key, value ->
+            originalValues[key] = SYSTEM_CONFIG.getStringProperty(key, null)
+            SYSTEM_CONFIG.setProperty(key, value as String)
+        }
+    }
+
+    def cleanupSpec() {
+        originalValues.each { key, value -> SYSTEM_CONFIG.resetProperty(key, value) }
+    }
+
+    def setup() {
+        cost = 10
+        rateLimiter = new CostWeightedRateLimiter({ ContainerRequestContext request -> cost } as RequestCostEstimator)
+    }
+
+    ContainerRequestContext makeRequest(String userName) {
+        Principal user = Mock(Principal)
+        user.getName() >> userName
+        SecurityContext securityContext = Mock(SecurityContext)
+        securityContext.getUserPrincipal() >> user
+
+        ContainerRequestContext request = Mock(ContainerRequestContext)
+        request.getHeaders() >> new MultivaluedHashMap<>()
+        request.getMethod() >> HttpMethod.GET
+        request.getSecurityContext() >> securityContext
+        return request
+    }
+
+    def "An admitted request is charged its cost until it is closed"() {
+        when:
+        RateLimitRequestToken token = rateLimiter.getToken(makeRequest("user"))
+
+        then:
+        token.isBound()
+        rateLimiter.getUserCost("user") == cost
+        rateLimiter.getGlobalCost() == cost
+
+        when:
+        token.close()
+
+        then:
+        !token.isBound()
+        rateLimiter.getUserCost("user") == 0
+        rateLimiter.getGlobalCost() == 0
+    }
+
+    def "A request more expensive than the user budget is charged the whole budget"() {
+        setup:
+        cost = LIMIT_PER_USER * 10
+
+        when:
+        CostWeightedRateLimitRequestToken token = rateLimiter.getToken(makeRequest("user"))
+
+        then:
+        token.isBound()
+        token.cost == LIMIT_PER_USER
+    }
+
+    def "A request that doesn't fit times out in the queue and is rejected"() {
+        setup:
+        cost = LIMIT_PER_USER
+        long timeouts = rateLimiter.rejectTimeoutMeter.count
+        RateLimitRequestToken first = rateLimiter.getToken(makeRequest("user"))
+
+        when:
+        RateLimitRequestToken second = rateLimiter.getToken(makeRequest("user"))
+
+        then:
+        first.isBound()
+        !second.isBound()
+        rateLimiter.rejectTimeoutMeter.count == timeouts + 1
+        rateLimiter.queueDepth == 0
+        rateLimiter.getUserCost("user") == LIMIT_PER_USER
+    }
+
+    def "Without a queue timeout, a request that doesn't fit is rejected without waiting"() {
+        setup:
+        String original = SYSTEM_CONFIG.getStringProperty(CostWeightedRateLimiter.COST_QUEUE_TIMEOUT_KEY, null)
+        SYSTEM_CONFIG.setProperty(CostWeightedRateLimiter.COST_QUEUE_TIMEOUT_KEY, "0")
+        CostWeightedRateLimiter noWaitLimiter = new CostWeightedRateLimiter(
+                { ContainerRequestContext request -> LIMIT_PER_USER } as RequestCostEstimator
+        )
+        long rejects = noWaitLimiter.rejectQueueFullMeter.count
+        RateLimitRequestToken first = noWaitLimiter.getToken(makeRequest("user"))
+
+        when:
+        RateLimitRequestToken second = noWaitLimiter.getToken(makeRequest("user"))
+
+        then:
+        first.isBound()
+        !second.isBound()
+        noWaitLimiter.rejectQueueFullMeter.count == rejects + 1
+        noWaitLimiter.queueDepth == 0
+
+        cleanup:
+        SYSTEM_CONFIG.resetProperty(CostWeightedRateLimiter.COST_QUEUE_TIMEOUT_KEY, original)
+    }
+
+    def "A disabled user budget doesn't limit or clamp the user's requests"() {
+        setup:
+        String original = SYSTEM_CONFIG.getStringProperty(CostWeightedRateLimiter.COST_LIMIT_PER_USER_KEY, null)
+        SYSTEM_CONFIG.setProperty(CostWeightedRateLimiter.COST_LIMIT_PER_USER_KEY, "-1")
+        CostWeightedRateLimiter unlimitedUserLimiter = new CostWeightedRateLimiter(
+                { ContainerRequestContext request -> LIMIT_PER_USER * 2 } as RequestCostEstimator
+        )
+
+        when:
+        CostWeightedRateLimitRequestToken first = unlimitedUserLimiter.getToken(makeRequest("user"))
+        RateLimitRequestToken second = unlimitedUserLimiter.getToken(makeRequest("user"))
+
+        then: "Requests are still charged to, and clamped by, the global budget"
+        first.isBound()
+        first.cost == LIMIT_PER_USER * 2
+        !second.isBound()
+        unlimitedUserLimiter.getUserCost("user") == LIMIT_PER_USER * 2
+        unlimitedUserLimiter.getGlobalCost() == LIMIT_PER_USER * 2
+
+        cleanup:
+        SYSTEM_CONFIG.resetProperty(CostWeightedRateLimiter.COST_LIMIT_PER_USER_KEY, original)
+    }
+
+    def "Requests aren't charged when every budget is disabled"() {
+        setup:
+        Map<String, String> originals = [
+                CostWeightedRateLimiter.COST_LIMIT_GLOBAL_KEY,
+                CostWeightedRateLimiter.COST_LIMIT_PER_USER_KEY
+        ].collectEntries { [(it): SYSTEM_CONFIG.getStringProperty(it, null)] }
+        originals.keySet().each { SYSTEM_CONFIG.setProperty(it, "-1") }
+        CostWeightedRateLimiter unlimitedLimiter = new CostWeightedRateLimiter(
+                { ContainerRequestContext request -> Long.MAX_VALUE } as RequestCostEstimator
+        )
+
+        when:
+        List<RateLimitRequestToken> tokens = (1..5).collect { unlimitedLimiter.getToken(makeRequest("user")) }
+
+        then:
+        tokens.every { it.isBound() }
+        unlimitedLimiter.getUserCost("user") == 0
+        unlimitedLimiter.getGlobalCost() == 0
+
+        cleanup:
+        originals.each { key, value -> SYSTEM_CONFIG.resetProperty(key, value) }
+    }
+
+    def "A queued request is admitted when budget is released"() {
+        setup:
+        cost = LIMIT_PER_USER
+        RateLimitRequestToken first = rateLimiter.getToken(makeRequest("user"))
+
+        when:
+        CompletableFuture<RateLimitRequestToken> second = CompletableFuture.supplyAsync {
+            rateLimiter.getToken(makeRequest("user"))
+        }
+        while (rateLimiter.queueDepth == 0 && !second.isDone()) {
+            Thread.sleep(5)
+        }
+        first.close()
+
+        then:
+        second.get(QUEUE_TIMEOUT * 5, TimeUnit.MILLISECONDS).isBound()
+        rateLimiter.getUserCost("user") == LIMIT_PER_USER
+    }
+
+    def "A user waiting on their own budget does not block other users"() {
+        setup:
+        cost = LIMIT_PER_USER
+        rateLimiter.getToken(makeRequest("user"))
+        CompletableFuture<RateLimitRequestToken> waiting = CompletableFuture.supplyAsync {
+            rateLimiter.getToken(makeRequest("user"))
+        }
+        while (rateLimiter.queueDepth == 0 && !waiting.isDone()) {
+            Thread.sleep(5)
+        }
+
+        when:
+        RateLimitRequestToken other = rateLimiter.getToken(makeRequest("other"))
+
+        then:
+        other.isBound()
+        rateLimiter.getGlobalCost() == 2 * LIMIT_PER_USER
+
+        cleanup:
+        waiting.join()
+    }
+
+    def "Requests are rejected immediately when the queue is full"() {
+        setup:
+        cost = LIMIT_PER_USER
+        long rejects = rateLimiter.rejectQueueFullMeter.count
+        rateLimiter.getToken(makeRequest("user"))
+        List<CompletableFuture<RateLimitRequestToken>> waiting = (1..QUEUE_SIZE).collect {
+            CompletableFuture.supplyAsync { rateLimiter.getToken(makeRequest("user")) }
+        }
+        while (rateLimiter.queueDepth < QUEUE_SIZE && !waiting.every { it.isDone() }) {
+            Thread.sleep(5)
+        }
+
+        when:
+        RateLimitRequestToken rejected = rateLimiter.getToken(makeRequest("user"))
+
+        then:
+        !rejected.isBound()
+        rateLimiter.rejectQueueFullMeter.count == rejects + 1
+
+        cleanup:
+        waiting.each { it.join() }
+    }
+
+    def "Adjusting the cost from the druid query charges the difference"() {
+        setup:
+        RequestCostEstimator estimator = Mock(RequestCostEstimator)
+        estimator.estimateCost(_ as ContainerRequestContext) >> 5
+        estimator.estimateCost(_ as DruidAggregationQuery) >> 25
+        rateLimiter = new CostWeightedRateLimiter(estimator)
+        CostWeightedRateLimitRequestToken token = rateLimiter.getToken(makeRequest("user"))
+
+        when:
+        token.adjustCost(Mock(DruidAggregationQuery))
+
+        then:
+        token.cost == 25
+        rateLimiter.getUserCost("user") == 25
+        rateLimiter.getGlobalCost() == 25
+
+        when:
+        token.close()
+
+        then:
+        rateLimiter.getGlobalCost() == 0
+    }
+}
@@ -67,7 +67,7 @@ public class ClassScanner {
         putInArgumentValueCache(int.class, 1);
         putInArgumentValueCache(long.class, 1L);
         putInArgumentValueCache(double.class, 1.0);
-        putInArgumentValueCache(float.class, 1.0);
+        putInArgumentValueCache(float.class, 1.0f);
         putInArgumentValueCache(char.class, (char) 1);
         putInArgumentValueCache(byte.class, (byte) 1);
         putInArgumentValueCache(boolean.class, true);
@@ -0,0 +1,73 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.logging.blocks;
+
+import com.yahoo.bard.webservice.logging.LogInfo;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collection;
+
+/**
+ * Logs how the results of a sql query were read: the rows read, the batches they were fetched in, and the memory
+ * allocated while reading them.
+ * <p>
+ * The memory allocated by the reading thread bounds the memory the results took at their peak, which can't be told
+ * apart from that of other requests on a shared heap.
+ */
+@JsonAutoDetect(fieldVisibility = JsonAutoDetect.Visibility.ANY)
+public class SqlResultRead implements LogInfo {
+    protected final int rows;
+    protected final int fetchSize;
+    protected final long allocatedBytes;
+
+    /**
+     * Constructor.
+     *
+     * @param rows  The number of rows read
+     * @param fetchSize  The number of rows fetched from the database at a time, 0 if left to the driver
+     * @param allocatedBytes  The bytes allocated while reading the rows, -1 if unknown
+     */
+    public SqlResultRead(int rows, int fetchSize, long allocatedBytes) {
+        this.rows = rows;
+        this.fetchSize = fetchSize;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Sum up the results read in parts, such as the shards of a query, into the results read by the whole.
+     *
+     * @param reads  The results read by the parts
+     *
+     * @return the results read by the whole
+     */
+    public static SqlResultRead sum(Collection<SqlResultRead> reads) {
+        int rows = 0;
+        int fetchSize = 0;
+        long allocatedBytes = 0;
+        for (SqlResultRead read : reads) {
+            rows += read.rows;
+            fetchSize = Math.max(fetchSize, read.fetchSize);
+            allocatedBytes = allocatedBytes < 0 || read.allocatedBytes < 0 ? -1 : allocatedBytes + read.allocatedBytes;
+        }
+        return new SqlResultRead(rows, fetchSize, allocatedBytes);
+    }
+
+    /**
+     * Get the bytes allocated by the current thread so far, if the JVM keeps track of them.
+     *
+     * @return the bytes allocated, or -1 if unknown
+     */
+    public static long getCurrentThreadAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+            if (allocations.isThreadAllocatedMemorySupported() && allocations.isThreadAllocatedMemoryEnabled()) {
+                return allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
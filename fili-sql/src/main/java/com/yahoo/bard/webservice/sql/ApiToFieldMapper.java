@@ -4,6 +4,7 @@ package com.yahoo.bard.webservice.sql;
 
 import com.yahoo.bard.webservice.table.PhysicalTableSchema;
 
+import java.util.Objects;
 import java.util.function.Function;
 
 /**
@@ -36,4 +37,20 @@ public class ApiToFieldMapper implements Function<String, String> {
     public String unApply(String input) {
         return physicalTableSchema.getLogicalColumnNames(input).stream().findFirst().orElse(input);
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ApiToFieldMapper)) {
+            return false;
+        }
+        return Objects.equals(physicalTableSchema, ((ApiToFieldMapper) o).physicalTableSchema);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(physicalTableSchema);
+    }
 }
@@ -3,17 +3,21 @@
 package com.yahoo.bard.webservice.sql;
 
 
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.sql.helper.BoundedDataSource;
 import com.yahoo.bard.webservice.sql.helper.CalciteHelper;
+import com.yahoo.bard.webservice.sql.helper.SqlQueryExecutor;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.apache.calcite.adapter.jdbc.JdbcSchema;
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +27,9 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 import javax.sql.DataSource;
 
@@ -31,6 +38,8 @@ import javax.sql.DataSource;
  */
 public class DefaultSqlBackedClient implements SqlBackedClient {
     private static final Logger LOG = LoggerFactory.getLogger(DefaultSqlBackedClient.class);
+
+    private final SqlQueryExecutor executor = new SqlQueryExecutor("sql");
     private final ObjectMapper jsonWriter;
     private final DruidQueryToSqlConverter druidQueryToSqlConverter;
     private final CalciteHelper calciteHelper;
@@ -44,7 +53,7 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
      * @throws SQLException if can't read from database.
      */
     public DefaultSqlBackedClient(DataSource dataSource, ObjectMapper objectMapper) throws SQLException {
-        calciteHelper = new CalciteHelper(dataSource);
+        calciteHelper = new CalciteHelper(new BoundedDataSource(dataSource, "sql"));
         druidQueryToSqlConverter = new DruidQueryToSqlConverter(calciteHelper);
         jsonWriter = objectMapper;
     }
@@ -69,7 +78,7 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
             ObjectMapper objectMapper
     ) throws SQLException {
         DataSource dataSource = JdbcSchema.dataSource(url, driver, username, password);
-        calciteHelper = new CalciteHelper(dataSource);
+        calciteHelper = new CalciteHelper(new BoundedDataSource(dataSource, "sql"));
         druidQueryToSqlConverter = new DruidQueryToSqlConverter(calciteHelper);
         jsonWriter = objectMapper;
     }
@@ -79,27 +88,81 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
             DruidQuery<?> druidQuery,
             SuccessCallback successCallback,
             FailureCallback failureCallback
+    ) {
+        return executeAsync(
+                () -> executeAndProcessQuery((DruidAggregationQuery<?>) druidQuery),
+                successCallback == null ? null : successCallback::invoke,
+                failureCallback
+        );
+    }
+
+    @Override
+    public Future<com.yahoo.bard.webservice.data.ResultSet> executeQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<com.yahoo.bard.webservice.data.ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        return executeAsync(
+                () -> executeAndProcessQuery(
+                        (DruidAggregationQuery<?>) druidQuery,
+                        (resultSetProcessor, resultSet) ->
+                                resultSetProcessor.buildResultSet(resultSet, schema, dateTimeZone)
+                ),
+                successCallback,
+                failureCallback
+        );
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Executes a query asynchronously, and hands its response to the callbacks.
+     *
+     * @param query  Executes the query and returns its response.
+     * @param successCallback  The callback for handling a successful result.
+     * @param failureCallback  The callback for handling exceptions
+     * @param <T>  The type of the response
+     *
+     * @return the response, or null if the query failed.
+     */
+    private <T> Future<T> executeAsync(
+            Supplier<T> query,
+            Consumer<T> successCallback,
+            FailureCallback failureCallback
     ) {
         RequestLog logCtx = RequestLog.dump();
         //todo eventually stop/start RequestLog phases
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        JsonNode jsonNode = executeAndProcessQuery((DruidAggregationQuery) druidQuery);
-                        if (successCallback != null) {
-                            successCallback.invoke(jsonNode);
-                        }
-                        return jsonNode;
-                    } catch (Throwable t) {
-                        LOG.warn("Failed while querying ", t);
-                        if (failureCallback != null) {
-                            failureCallback.dispatch(t);
-                        }
-                    } finally {
+        try {
+            return executor.supplyAsync(() -> {
                         RequestLog.restore(logCtx);
+                        try {
+                            T response = query.get();
+                            if (successCallback != null) {
+                                successCallback.accept(response);
+                            }
+                            return response;
+                        } catch (Throwable t) {
+                            LOG.warn("Failed while querying ", t);
+                            if (failureCallback != null) {
+                                failureCallback.dispatch(t);
+                            }
+                        }
+                        return null;
                     }
-                    return null;
-                }
-        );
+            );
+        } catch (RejectedExecutionException e) {
+            RequestLog.restore(logCtx);
+            LOG.warn("Too many queries waiting to run, rejecting query", e);
+            if (failureCallback != null) {
+                failureCallback.dispatch(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
@@ -111,6 +174,24 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
      * @return a druid-like response to the query.
      */
     private JsonNode executeAndProcessQuery(DruidAggregationQuery<?> druidQuery) {
+        return executeAndProcessQuery(druidQuery, (resultSetProcessor, resultSet) -> {
+            resultSetProcessor.process(resultSet);
+            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
+            LOG.trace("Created response: {}", jsonNode);
+            return jsonNode;
+        });
+    }
+
+    /**
+     * Builds sql for a druid query, execute it against the database and read the results.
+     *
+     * @param druidQuery  The druid query to build and process.
+     * @param resultReader  Reads the results into the response.
+     * @param <T>  The type of the response
+     *
+     * @return the response to the query.
+     */
+    private <T> T executeAndProcessQuery(DruidAggregationQuery<?> druidQuery, SqlResultReader<T> resultReader) {
         if (!druidQueryToSqlConverter.isValidQuery(druidQuery)) {
             throw new UnsupportedOperationException("Unable to process " + druidQuery);
         }
@@ -128,12 +209,9 @@ public class DefaultSqlBackedClient implements SqlBackedClient {
         );
 
         try (Connection connection = calciteHelper.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(sqlQuery);
+             PreparedStatement preparedStatement = calciteHelper.prepareQuery(connection, sqlQuery);
              ResultSet resultSet = preparedStatement.executeQuery()) {
-            resultSetProcessor.process(resultSet);
-            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
-            LOG.trace("Created response: {}", jsonNode);
-            return jsonNode;
+            return resultReader.readAndRecord(resultSetProcessor, resultSet);
         } catch (SQLException e) {
             LOG.warn("Failed while processing {}", druidQuery);
             throw new RuntimeException("Couldn't generate sql", e);
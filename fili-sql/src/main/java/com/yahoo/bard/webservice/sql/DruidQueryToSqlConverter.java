@@ -7,6 +7,10 @@ import static com.yahoo.bard.webservice.sql.aggregation.DefaultSqlAggregationTyp
 import static org.apache.calcite.rex.RexWindowBounds.CURRENT_ROW;
 import static org.apache.calcite.rex.RexWindowBounds.UNBOUNDED_PRECEDING;
 
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.application.ObjectMappersSuite;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
 import com.yahoo.bard.webservice.data.dimension.Dimension;
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.QueryType;
@@ -29,6 +33,10 @@ import com.yahoo.bard.webservice.sql.helper.CalciteHelper;
 import com.yahoo.bard.webservice.sql.helper.SqlTimeConverter;
 import com.yahoo.bard.webservice.table.SqlPhysicalTable;
 
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.google.common.collect.ImmutableList;
 
 import org.apache.calcite.rel.RelNode;
@@ -53,9 +61,37 @@ import java.util.stream.Collectors;
 
 /**
  * Default implementation of converting a {@link DruidQuery} into a sql query.
+ * <p>
+ * Planning and writing the sql of a query often costs more than running it against small sql tables, so the sql of
+ * recently converted queries is cached, keyed by the druid query less its context, the table it reads and the mapping
+ * of its column names.
  */
 public class DruidQueryToSqlConverter {
     private static final Logger LOG = LoggerFactory.getLogger(DruidQueryToSqlConverter.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final ObjectMapper MAPPER = new ObjectMappersSuite().getMapper();
+
+    public static final String SQL_QUERY_CACHE_SIZE = SYSTEM_CONFIG.getPackageVariableName("sql_query_cache_size");
+
+    public static final Meter SQL_CACHE_HITS = MetricRegistryFactory.getRegistry().meter(
+            "queries.meter.sql_query_build.cache.hits"
+    );
+    public static final Meter SQL_CACHE_MISSES = MetricRegistryFactory.getRegistry().meter(
+            "queries.meter.sql_query_build.cache.misses"
+    );
+    public static final Timer SQL_BUILD_TIMER = MetricRegistryFactory.getRegistry().timer(
+            "queries.timer.sql_query_build.uncached"
+    );
+
+    private final int cacheSize = SYSTEM_CONFIG.getIntProperty(SQL_QUERY_CACHE_SIZE, 1000);
+    private final Map<List<Object>, String> sqlQueries = Collections.synchronizedMap(
+            new LinkedHashMap<List<Object>, String>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+                    return size() > cacheSize;
+                }
+            }
+    );
     protected final CalciteHelper calciteHelper;
     private final SqlTimeConverter sqlTimeConverter;
     private final BiFunction<Aggregation, ApiToFieldMapper, Optional<SqlAggregation>> druidSqlAggregationConverter;
@@ -210,11 +246,63 @@ public class DruidQueryToSqlConverter {
                 sqlTable.getTimestampColumn()
         );
 
-        RelNode query = convertDruidQueryToRelNode(druidQuery, apiToFieldMapper, sqlTable);
-        RelToSqlConverter relToSql = calciteHelper.getNewRelToSqlConverter();
-        SqlPrettyWriter sqlWriter = calciteHelper.getNewSqlWriter();
+        List<Object> key = getCacheKey(druidQuery, apiToFieldMapper, sqlTable);
+        if (key != null) {
+            String sql = sqlQueries.get(key);
+            if (sql != null) {
+                SQL_CACHE_HITS.mark();
+                return sql;
+            }
+            SQL_CACHE_MISSES.mark();
+        }
+
+        String sql;
+        try (Timer.Context ignored = SQL_BUILD_TIMER.time()) {
+            RelNode query = convertDruidQueryToRelNode(druidQuery, apiToFieldMapper, sqlTable);
+            RelToSqlConverter relToSql = calciteHelper.getNewRelToSqlConverter();
+            SqlPrettyWriter sqlWriter = calciteHelper.getNewSqlWriter();
 
-        return writeSql(sqlWriter, relToSql, query);
+            sql = writeSql(sqlWriter, relToSql, query);
+        }
+        if (key != null) {
+            sqlQueries.put(key, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * Builds the key the sql of a query is cached under, from everything the sql depends on: the druid query less its
+     * context, which holds the query id, the table it reads and the mapping of its column names.
+     *
+     * @param druidQuery  The query to convert to sql.
+     * @param apiToFieldMapper  The mapping between api and physical names for the query.
+     * @param sqlTable  The sql table the query reads.
+     *
+     * @return the key, or null if the sql of the query isn't to be cached.
+     */
+    protected List<Object> getCacheKey(
+            DruidAggregationQuery<?> druidQuery,
+            ApiToFieldMapper apiToFieldMapper,
+            SqlPhysicalTable sqlTable
+    ) {
+        if (cacheSize <= 0) {
+            return null;
+        }
+        try {
+            ObjectNode query = MAPPER.valueToTree(druidQuery);
+            query.remove("context");
+            return Arrays.asList(
+                    sqlTable.getCatalog(),
+                    sqlTable.getSchemaName(),
+                    sqlTable.getName(),
+                    sqlTable.getTimestampColumn(),
+                    apiToFieldMapper,
+                    query.toString()
+            );
+        } catch (RuntimeException e) {
+            LOG.debug("Unable to serialize {}, not caching its sql", druidQuery, e);
+            return null;
+        }
     }
 
     /**
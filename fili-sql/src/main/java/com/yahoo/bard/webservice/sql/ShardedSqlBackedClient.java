@@ -0,0 +1,305 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.time.AllGranularity;
+import com.yahoo.bard.webservice.data.time.Granularity;
+import com.yahoo.bard.webservice.data.time.ZonedTimeGrain;
+import com.yahoo.bard.webservice.druid.client.FailureCallback;
+import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
+import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery;
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.logging.blocks.SqlResultRead;
+import com.yahoo.bard.webservice.util.IntervalUtils;
+import com.yahoo.bard.webservice.util.SimplifiedIntervalList;
+
+import com.codahale.metrics.Meter;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * A sql backed client which splits queries spanning many time buckets into shards of adjacent buckets, runs the shards
+ * concurrently on another client and joins their results.
+ * <p>
+ * Every row of a query's results falls in a single time bucket, and a shard holds whole buckets, so the results of the
+ * shards, joined in time order, are the results of the query. That doesn't hold for queries which aggregate across
+ * buckets, over the "all" granularity, or which limit the rows across buckets, so those are run whole.
+ */
+public class ShardedSqlBackedClient implements SqlBackedClient {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+
+    public static final String SQL_QUERY_SHARDS = SYSTEM_CONFIG.getPackageVariableName("sql_query_shards");
+
+    public static final Meter SHARDED_QUERIES = MetricRegistryFactory.getRegistry().meter(
+            "queries.meter.sql_queries.sharded"
+    );
+
+    private final SqlBackedClient client;
+    private final int shards;
+
+    /**
+     * Constructor, taking the number of shards from the system config.
+     *
+     * @param client  The client running the shards of queries
+     */
+    public ShardedSqlBackedClient(SqlBackedClient client) {
+        this(client, SYSTEM_CONFIG.getIntProperty(SQL_QUERY_SHARDS, 1));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param client  The client running the shards of queries
+     * @param shards  The most shards to split a query into, queries aren't split if 1 or less
+     */
+    public ShardedSqlBackedClient(SqlBackedClient client, int shards) {
+        this.client = client;
+        this.shards = shards;
+    }
+
+    @Override
+    public Future<JsonNode> executeQuery(
+            DruidQuery<?> druidQuery,
+            SuccessCallback successCallback,
+            FailureCallback failureCallback
+    ) {
+        List<DruidAggregationQuery<?>> shardQueries = shard(druidQuery);
+        if (shardQueries.size() <= 1) {
+            return client.executeQuery(druidQuery, successCallback, failureCallback);
+        }
+        return this.<JsonNode>executeShards(
+                shardQueries,
+                (shardQuery, shardCallbacks) -> client.executeQuery(
+                        shardQuery,
+                        shardCallbacks::accept,
+                        shardCallbacks::fail
+                ),
+                responses -> {
+                    ArrayNode rows = JsonNodeFactory.instance.arrayNode();
+                    responses.forEach(response -> rows.addAll((ArrayNode) response));
+                    return rows;
+                },
+                successCallback == null ? null : successCallback::invoke,
+                failureCallback
+        );
+    }
+
+    @Override
+    public Future<ResultSet> executeQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        List<DruidAggregationQuery<?>> shardQueries = shard(druidQuery);
+        if (shardQueries.size() <= 1) {
+            return client.executeQuery(druidQuery, schema, dateTimeZone, successCallback, failureCallback);
+        }
+        return executeShards(
+                shardQueries,
+                (shardQuery, shardCallbacks) -> client.executeQuery(
+                        shardQuery,
+                        schema,
+                        dateTimeZone,
+                        shardCallbacks,
+                        shardCallbacks::fail
+                ),
+                resultSets -> {
+                    List<Result> results = new ArrayList<>();
+                    resultSets.forEach(results::addAll);
+                    return new ResultSet(schema, results);
+                },
+                successCallback,
+                failureCallback
+        );
+    }
+
+    @Override
+    public void close() {
+        client.close();
+    }
+
+    /**
+     * Splits a query into shards of adjacent time buckets, in time order.
+     *
+     * @param druidQuery  The query to split
+     *
+     * @return the shards of the query, or no shards if it isn't to be split
+     */
+    protected List<DruidAggregationQuery<?>> shard(DruidQuery<?> druidQuery) {
+        List<DruidAggregationQuery<?>> shardQueries = new ArrayList<>();
+        if (shards <= 1 || !(druidQuery instanceof DruidAggregationQuery)) {
+            return shardQueries;
+        }
+        DruidAggregationQuery<?> aggregationQuery = (DruidAggregationQuery<?>) druidQuery;
+        if (!canShard(aggregationQuery)) {
+            return shardQueries;
+        }
+
+        // Rows are only told apart in time by the time grain of the table, so shards can't split its buckets
+        Granularity granularity = aggregationQuery.getGranularity();
+        ZonedTimeGrain tableGrain = aggregationQuery.getDataSource().getPhysicalTable().getSchema().getTimeGrain();
+        if (!granularity.satisfiedBy(tableGrain.getBaseTimeGrain())) {
+            granularity = tableGrain;
+        }
+        List<Interval> buckets = new ArrayList<>(
+                IntervalUtils.getSlicedIntervals(aggregationQuery.getIntervals(), granularity).keySet()
+        );
+        int bucketsPerShard = (buckets.size() + shards - 1) / shards;
+        for (int start = 0; start < buckets.size(); start += bucketsPerShard) {
+            List<Interval> shardBuckets = buckets.subList(start, Math.min(start + bucketsPerShard, buckets.size()));
+            shardQueries.add(aggregationQuery.withAllIntervals(new SimplifiedIntervalList(shardBuckets)));
+        }
+        return shardQueries;
+    }
+
+    /**
+     * Checks whether the results of a query can be joined from those of its shards.
+     *
+     * @param druidQuery  The query to check
+     *
+     * @return true if the query may be split into shards
+     */
+    protected boolean canShard(DruidAggregationQuery<?> druidQuery) {
+        if (druidQuery.getGranularity() instanceof AllGranularity) {
+            return false;
+        }
+        if (druidQuery instanceof GroupByQuery) {
+            GroupByQuery groupByQuery = (GroupByQuery) druidQuery;
+            return groupByQuery.getLimitSpec() == null || !groupByQuery.getLimitSpec().getLimit().isPresent();
+        }
+        return true;
+    }
+
+    /**
+     * Runs the shards of a query concurrently, and joins their responses once all of them succeed.
+     *
+     * @param shardQueries  The shards of the query, in time order
+     * @param execute  Runs a shard, handing its response or failure to the given callbacks
+     * @param join  Joins the responses of the shards, in time order
+     * @param successCallback  The callback for handling the joined response
+     * @param failureCallback  The callback for handling the first shard to fail
+     * @param <T>  The type of the responses
+     *
+     * @return the joined response, or null if a shard failed
+     */
+    private <T> Future<T> executeShards(
+            List<DruidAggregationQuery<?>> shardQueries,
+            BiConsumer<DruidAggregationQuery<?>, ShardCallbacks<T>> execute,
+            Function<List<T>, T> join,
+            Consumer<T> successCallback,
+            FailureCallback failureCallback
+    ) {
+        SHARDED_QUERIES.mark();
+        CompletableFuture<T> joined = new CompletableFuture<>();
+        AtomicReferenceArray<T> responses = new AtomicReferenceArray<>(shardQueries.size());
+        AtomicInteger remaining = new AtomicInteger(shardQueries.size());
+        AtomicBoolean failed = new AtomicBoolean(false);
+
+        // Each shard runs under a request log of its own, as the shards run at once, and their logs are merged into the
+        // log of the query once all of them are done
+        RequestLog logCtx = RequestLog.dump();
+        AtomicReferenceArray<RequestLog> shardLogs = new AtomicReferenceArray<>(shardQueries.size());
+        AtomicReferenceArray<SqlResultRead> shardReads = new AtomicReferenceArray<>(shardQueries.size());
+        for (int i = 0; i < shardQueries.size(); i++) {
+            int index = i;
+            RequestLog.restore(logCtx);
+            RequestLog.restore(RequestLog.fork());
+            execute.accept(shardQueries.get(i), new ShardCallbacks<T>() {
+                @Override
+                public void accept(T response) {
+                    responses.set(index, response);
+                    shardReads.set(index, getRecordedRead());
+                    shardLogs.set(index, RequestLog.dump());
+                    if (remaining.decrementAndGet() > 0 || failed.get()) {
+                        return;
+                    }
+                    RequestLog.restore(logCtx);
+                    List<T> shardResponses = new ArrayList<>(responses.length());
+                    List<SqlResultRead> reads = new ArrayList<>(shardReads.length());
+                    for (int shard = 0; shard < responses.length(); shard++) {
+                        shardResponses.add(responses.get(shard));
+                        RequestLog.accumulate(shardLogs.get(shard));
+                        if (shardReads.get(shard) != null) {
+                            reads.add(shardReads.get(shard));
+                        }
+                    }
+                    if (!reads.isEmpty()) {
+                        RequestLog.record(SqlResultRead.sum(reads));
+                    }
+                    T joinedResponse = join.apply(shardResponses);
+                    if (successCallback != null) {
+                        successCallback.accept(joinedResponse);
+                    }
+                    joined.complete(joinedResponse);
+                }
+
+                @Override
+                public void fail(Throwable error) {
+                    if (!failed.compareAndSet(false, true)) {
+                        return;
+                    }
+                    RequestLog.restore(logCtx);
+                    if (failureCallback != null) {
+                        failureCallback.dispatch(error);
+                    }
+                    joined.complete(null);
+                }
+            });
+        }
+        return joined;
+    }
+
+    /**
+     * Get the results read by a shard from the request log of the shard, if the shard recorded them.
+     *
+     * @return the results read by the shard, or null if they weren't recorded
+     */
+    private static SqlResultRead getRecordedRead() {
+        try {
+            return (SqlResultRead) RequestLog.retrieveAll().get(SqlResultRead.class.getSimpleName());
+        } catch (NullPointerException | IllegalStateException ignored) {
+            // The request log of the query wasn't initialized, so there was nothing to record into
+            return null;
+        }
+    }
+
+    /**
+     * The callbacks a shard hands its response or failure to.
+     *
+     * @param <T>  The type of the response
+     */
+    private interface ShardCallbacks<T> extends Consumer<T> {
+
+        /**
+         * Handle the failure of the shard.
+         *
+         * @param error  The error the shard failed with
+         */
+        void fail(Throwable error);
+    }
+}
@@ -2,18 +2,26 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.sql;
 
+import com.yahoo.bard.webservice.data.DruidResponseParser;
+import com.yahoo.bard.webservice.data.ResultSet;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
+import com.yahoo.bard.webservice.druid.model.DefaultQueryType;
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 
 import com.fasterxml.jackson.databind.JsonNode;
 
+import org.joda.time.DateTimeZone;
+
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 /**
  * Allows queries to be executed on a sql backend from a {@link DruidQuery}.
  */
-public interface SqlBackedClient {
+public interface SqlBackedClient extends AutoCloseable {
     /**
      * Uses a {@link DruidQuery} to fetch results from a Sql client,
      * parses the results from Sql and returns an equivalent {@link JsonNode}
@@ -30,4 +38,59 @@ public interface SqlBackedClient {
             SuccessCallback successCallback,
             FailureCallback failureCallback
     );
+
+    /**
+     * Uses a {@link DruidQuery} to fetch results from a Sql client and returns them as a {@link ResultSet}.
+     * <p>
+     * By default the results are parsed from the druid like response of
+     * {@link #executeQuery(DruidQuery, SuccessCallback, FailureCallback)}. Clients which can read the results of
+     * their sql query straight into a result set should do so instead.
+     *
+     * @param druidQuery  The query to be executed.
+     * @param schema  The schema of the result set.
+     * @param dateTimeZone  The time zone of the result timestamps.
+     * @param successCallback  The callback for handling a successful result.
+     * @param failureCallback  The callback for handling exceptions
+     *
+     * @return the results of the query.
+     */
+    default Future<ResultSet> executeQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        CompletableFuture<ResultSet> results = new CompletableFuture<>();
+        executeQuery(
+                druidQuery,
+                jsonNode -> {
+                    ResultSet resultSet = new DruidResponseParser().parse(
+                            jsonNode,
+                            schema,
+                            DefaultQueryType.GROUP_BY,
+                            dateTimeZone
+                    );
+                    if (successCallback != null) {
+                        successCallback.accept(resultSet);
+                    }
+                    results.complete(resultSet);
+                },
+                error -> {
+                    results.completeExceptionally(error);
+                    if (failureCallback != null) {
+                        failureCallback.invoke(error);
+                    }
+                }
+        );
+        return results;
+    }
+
+    /**
+     * Stop accepting queries and release what the client holds, letting the queries already accepted finish.
+     */
+    @Override
+    default void close() {
+        // Nothing is held by default
+    }
 }
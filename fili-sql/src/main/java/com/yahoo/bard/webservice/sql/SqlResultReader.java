@@ -0,0 +1,52 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql;
+
+import com.yahoo.bard.webservice.logging.RequestLog;
+import com.yahoo.bard.webservice.logging.blocks.SqlResultRead;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the results of a sql query into the form a {@link SqlBackedClient} responds with.
+ *
+ * @param <T>  The type of the response
+ */
+@FunctionalInterface
+public interface SqlResultReader<T> {
+
+    /**
+     * Read the results of a query.
+     *
+     * @param resultSetProcessor  The processor for the results of the query.
+     * @param resultSet  The results of the query.
+     *
+     * @return the response to the query.
+     *
+     * @throws SQLException if results can't be read.
+     */
+    T read(SqlResultSetProcessor resultSetProcessor, ResultSet resultSet) throws SQLException;
+
+    /**
+     * Read the results of a query, and record how they were read in the request log.
+     *
+     * @param resultSetProcessor  The processor for the results of the query.
+     * @param resultSet  The results of the query.
+     *
+     * @return the response to the query.
+     *
+     * @throws SQLException if results can't be read.
+     */
+    default T readAndRecord(SqlResultSetProcessor resultSetProcessor, ResultSet resultSet) throws SQLException {
+        long allocatedBefore = SqlResultRead.getCurrentThreadAllocatedBytes();
+        T response = read(resultSetProcessor, resultSet);
+        long allocatedAfter = SqlResultRead.getCurrentThreadAllocatedBytes();
+        RequestLog.record(new SqlResultRead(
+                resultSetProcessor.getRowsRead(),
+                resultSet.getFetchSize(),
+                allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore
+        ));
+        return response;
+    }
+}
@@ -2,6 +2,11 @@
 // Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
 package com.yahoo.bard.webservice.sql;
 
+import com.yahoo.bard.webservice.data.Result;
+import com.yahoo.bard.webservice.data.ResultSetSchema;
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn;
+import com.yahoo.bard.webservice.data.dimension.DimensionRow;
+import com.yahoo.bard.webservice.data.metric.MetricColumn;
 import com.yahoo.bard.webservice.data.time.AllGranularity;
 import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation;
 import com.yahoo.bard.webservice.druid.model.aggregation.FilteredAggregation;
@@ -21,13 +26,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -45,6 +56,7 @@ public class SqlResultSetProcessor {
     private final ObjectMapper objectMapper;
     private final int groupByDimensionsCount;
     private final SqlTimeConverter sqlTimeConverter;
+    private int rowsRead;
 
     /**
      * Builds something to process a set of sql results and return them as the
@@ -197,9 +209,144 @@ public class SqlResultSetProcessor {
                 row[i - 1] = sqlResultSet.getString(i);
             }
             getSqlResults().add(row);
+            rowsRead++;
         }
     }
 
+    /**
+     * Reads the result set straight into the result set of the query, without going through a druid like response.
+     * <p>
+     * Metrics of aggregations with a known numeric type are read with the getter of their type, and every other column
+     * as a string, so the results are the same as those parsed from the druid like response, down to the metric values
+     * being {@link BigDecimal}s.
+     *
+     * @param sqlResultSet  The result set of the druid query.
+     * @param schema  The schema of the result set to build.
+     * @param dateTimeZone  The time zone of the result timestamps.
+     *
+     * @return the results of the query.
+     *
+     * @throws SQLException if results can't be read.
+     */
+    public com.yahoo.bard.webservice.data.ResultSet buildResultSet(
+            ResultSet sqlResultSet,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone
+    ) throws SQLException {
+        ResultSetMetaData resultSetMetaData = sqlResultSet.getMetaData();
+        Map<String, Integer> columnIndexes = new HashMap<>();
+        for (int i = 1; i <= resultSetMetaData.getColumnCount(); i++) {
+            columnIndexes.put(apiToFieldMapper.unApply(resultSetMetaData.getColumnName(i)), i);
+        }
+
+        List<DimensionColumn> dimensionColumns = new ArrayList<>(schema.getColumns(DimensionColumn.class));
+        int[] dimensionIndexes = dimensionColumns.stream()
+                .mapToInt(column -> columnIndexes.getOrDefault(column.getName(), 0))
+                .toArray();
+
+        // Metrics the query doesn't return are left out of the results, as they are from druid like responses
+        Map<String, Class<? extends Number>> metricTypes = getAggregationNumberTypes(druidQuery);
+        List<MetricColumn> metricColumns = schema.getColumns(MetricColumn.class).stream()
+                .filter(column -> columnIndexes.containsKey(column.getName()))
+                .collect(Collectors.toList());
+        int[] metricIndexes = metricColumns.stream().mapToInt(column -> columnIndexes.get(column.getName())).toArray();
+        List<Class<? extends Number>> metricNumberTypes = metricColumns.stream()
+                .map(column -> metricTypes.get(column.getName()))
+                .collect(Collectors.toList());
+
+        boolean isAllGranularity = AllGranularity.INSTANCE.equals(druidQuery.getGranularity());
+        int timeColumnCount = getSqlTimeConverter().timeGrainToDatePartFunctions(druidQuery.getGranularity()).size();
+        String[] timeValues = new String[timeColumnCount];
+
+        List<DateTime> timestamps = new ArrayList<>();
+        List<String[]> dimensionValues = new ArrayList<>();
+        List<Object[]> metricValues = new ArrayList<>();
+        while (sqlResultSet.next()) {
+            DateTime timestamp;
+            if (isAllGranularity) {
+                timestamp = druidQuery.getIntervals().get(0).getStart();
+            } else {
+                for (int i = 0; i < timeColumnCount; i++) {
+                    timeValues[i] = sqlResultSet.getString(getGroupByDimensionsCount() + i + 1);
+                }
+                timestamp = getSqlTimeConverter().getIntervalStart(0, timeValues, druidQuery);
+            }
+            timestamps.add(new DateTime(timestamp.getMillis(), dateTimeZone));
+
+            String[] dimensions = new String[dimensionIndexes.length];
+            for (int i = 0; i < dimensionIndexes.length; i++) {
+                String value = dimensionIndexes[i] == 0 ? null : sqlResultSet.getString(dimensionIndexes[i]);
+                dimensions[i] = value == null ? "" : value;
+            }
+            dimensionValues.add(dimensions);
+
+            Object[] metrics = new Object[metricIndexes.length];
+            for (int i = 0; i < metricIndexes.length; i++) {
+                metrics[i] = readMetric(sqlResultSet, metricIndexes[i], metricNumberTypes.get(i));
+            }
+            metricValues.add(metrics);
+            rowsRead++;
+        }
+
+        List<Map<String, DimensionRow>> dimensionRows = new ArrayList<>(dimensionColumns.size());
+        for (int i = 0; i < dimensionColumns.size(); i++) {
+            int dimensionIndex = i;
+            Set<String> values = dimensionValues.stream()
+                    .map(dimensions -> dimensions[dimensionIndex])
+                    .collect(Collectors.toCollection(LinkedHashSet::new));
+            Map<String, DimensionRow> rows = dimensionColumns.get(i)
+                    .getDimension()
+                    .findDimensionRowsByKeyValues(values);
+            dimensionRows.add(rows == null ? Collections.emptyMap() : rows);
+        }
+
+        List<Result> results = new ArrayList<>(timestamps.size());
+        for (int row = 0; row < timestamps.size(); row++) {
+            LinkedHashMap<DimensionColumn, DimensionRow> resultDimensions = new LinkedHashMap<>();
+            for (int i = 0; i < dimensionColumns.size(); i++) {
+                DimensionColumn dimensionColumn = dimensionColumns.get(i);
+                String value = dimensionValues.get(row)[i];
+                DimensionRow dimensionRow = dimensionRows.get(i).get(value);
+                if (dimensionRow == null) {
+                    dimensionRow = dimensionColumn.getDimension().createEmptyDimensionRow(value);
+                }
+                resultDimensions.put(dimensionColumn, dimensionRow);
+            }
+            LinkedHashMap<MetricColumn, Object> resultMetrics = new LinkedHashMap<>();
+            for (int i = 0; i < metricColumns.size(); i++) {
+                resultMetrics.put(metricColumns.get(i), metricValues.get(row)[i]);
+            }
+            results.add(new Result(resultDimensions, resultMetrics, timestamps.get(row)));
+        }
+        return new com.yahoo.bard.webservice.data.ResultSet(schema, results);
+    }
+
+    /**
+     * Reads the value of a metric column in the current row.
+     *
+     * @param sqlResultSet  The result set, positioned on the row.
+     * @param columnIndex  The index of the metric column.
+     * @param numberType  The type of the aggregation of the metric, or null if it doesn't have a numeric type.
+     *
+     * @return the value as a BigDecimal if the aggregation has a numeric type, or as a String otherwise.
+     *
+     * @throws SQLException if the value can't be read.
+     */
+    private static Object readMetric(
+            ResultSet sqlResultSet,
+            int columnIndex,
+            Class<? extends Number> numberType
+    ) throws SQLException {
+        if (Long.class.equals(numberType)) {
+            long value = sqlResultSet.getLong(columnIndex);
+            return sqlResultSet.wasNull() ? null : BigDecimal.valueOf(value);
+        } else if (Double.class.equals(numberType)) {
+            double value = sqlResultSet.getDouble(columnIndex);
+            return sqlResultSet.wasNull() ? null : BigDecimal.valueOf(value);
+        }
+        return sqlResultSet.getString(columnIndex);
+    }
+
     /**
      * Writes a {@link Number} as either a {@link Double} or {@link Long} in json.
      *
@@ -218,19 +365,57 @@ public class SqlResultSetProcessor {
     }
 
     private static Function<String, Number> getNumParseFunctionByAggType(Aggregation agg) {
+        Class<? extends Number> numberType = getNumTypeByAggType(agg);
+        if (Long.class.equals(numberType)) {
+            return Long::parseLong;
+        } else if (Double.class.equals(numberType)) {
+            return Double::parseDouble;
+        }
+        return null;
+    }
+
+    /**
+     * Finds the type of number an aggregation produces, from its type name.
+     *
+     * @param agg  The aggregation.
+     *
+     * @return {@link Long} or {@link Double}, or null if the aggregation doesn't have a known numeric type.
+     */
+    private static Class<? extends Number> getNumTypeByAggType(Aggregation agg) {
         String aggType = agg.getType().toLowerCase(Locale.ENGLISH);
         if (aggType.contains("long")) {
-            return Long::parseLong;
+            return Long.class;
         } else if (aggType.contains("double")) {
-            return Double::parseDouble;
+            return Double.class;
         } else if (aggType.contains("count")) {
-            return Long::parseLong;
+            return Long.class;
         } else if (aggType.contains("filtered") && agg instanceof FilteredAggregation) {
-            return getNumParseFunctionByAggType(((FilteredAggregation) agg).getAggregation());
+            return getNumTypeByAggType(((FilteredAggregation) agg).getAggregation());
         }
         return null;
     }
 
+    /**
+     * Creates a map from each aggregation name to the type of number it produces, for the aggregations which have a
+     * known numeric type.
+     *
+     * @param druidQuery  The query to make a map for.
+     *
+     * @return the map from aggregation name to {@link Long} or {@link Double}.
+     */
+    protected static Map<String, Class<? extends Number>> getAggregationNumberTypes(
+            DruidAggregationQuery<?> druidQuery
+    ) {
+        Map<String, Class<? extends Number>> numberTypes = new HashMap<>();
+        for (Aggregation aggregation : druidQuery.getAggregations()) {
+            Class<? extends Number> numberType = getNumTypeByAggType(aggregation);
+            if (numberType != null) {
+                numberTypes.put(aggregation.getName(), numberType);
+            }
+        }
+        return numberTypes;
+    }
+
     /**
      * Creates a map from each aggregation name, i.e. ("longSum", "doubleSum"),
      * to a function which will parse to the correct type, i.e. (long, double).
@@ -255,6 +440,15 @@ public class SqlResultSetProcessor {
                 );
     }
 
+    /**
+     * Get the number of rows read from the result sets of the query so far.
+     *
+     * @return the number of rows read
+     */
+    public int getRowsRead() {
+        return rowsRead;
+    }
+
     protected BiMap<Integer, String> getColumnToColumnName() {
         return columnToColumnName;
     }
@@ -0,0 +1,350 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.helper;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+/**
+ * A data source bounding the connections open to a database at a time, and keeping the connections closed by their
+ * users to hand out again.
+ * <p>
+ * Callers asking for a connection while all of them are in use wait for one to be closed, up to a timeout. Closed
+ * connections are kept open for a while and handed out again, unless their underlying connection was closed. The
+ * connections in use, the time spent waiting for a connection and the time spent opening new ones are reported to
+ * the metric registry, under the name of the data source.
+ * <p>
+ * Connections have their auto-commit and read-only state put back the way it was when they were handed out, before
+ * being kept. When the underlying data source is a DBCP pool, as the ones opened by Calcite are, the pool is sized to
+ * at least the bound and waits no longer than the timeout, so that it never holds up callers which got through.
+ */
+public class BoundedDataSource implements DataSource {
+    private static final Logger LOG = LoggerFactory.getLogger(BoundedDataSource.class);
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String MAX_CONNECTIONS_KEY = SYSTEM_CONFIG.getPackageVariableName("sql_max_connections");
+    public static final String CONNECTION_TIMEOUT_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "sql_connection_timeout_ms"
+    );
+    public static final String IDLE_TIMEOUT_KEY = SYSTEM_CONFIG.getPackageVariableName(
+            "sql_connection_idle_timeout_ms"
+    );
+
+    private final DataSource dataSource;
+    private final int maxConnections;
+    private final long connectionTimeoutMillis;
+    private final long idleTimeoutMillis;
+
+    private final Semaphore permits;
+    private final Deque<IdleConnection> idleConnections = new ArrayDeque<>();
+
+    private final Counter inUse;
+    private final Timer acquisitionWait;
+    private final Timer connectionOpening;
+
+    /**
+     * Constructor, taking the bounds from the system config.
+     *
+     * @param dataSource  The data source opening the connections
+     * @param name  The name the metrics of the data source are reported under
+     */
+    public BoundedDataSource(DataSource dataSource, String name) {
+        this(
+                dataSource,
+                name,
+                SYSTEM_CONFIG.getIntProperty(MAX_CONNECTIONS_KEY, 16),
+                SYSTEM_CONFIG.getLongProperty(CONNECTION_TIMEOUT_KEY, 30000),
+                SYSTEM_CONFIG.getLongProperty(IDLE_TIMEOUT_KEY, 60000)
+        );
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param dataSource  The data source opening the connections
+     * @param name  The name the metrics of the data source are reported under
+     * @param maxConnections  The number of connections open at a time
+     * @param connectionTimeoutMillis  How long to wait for a connection before giving up
+     * @param idleTimeoutMillis  How long to keep a closed connection to hand out again, none kept if 0
+     */
+    public BoundedDataSource(
+            DataSource dataSource,
+            String name,
+            int maxConnections,
+            long connectionTimeoutMillis,
+            long idleTimeoutMillis
+    ) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("A data source needs at least one connection");
+        }
+        this.dataSource = dataSource;
+        this.maxConnections = maxConnections;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.permits = new Semaphore(maxConnections, true);
+        if (dataSource instanceof BasicDataSource) {
+            sizePool((BasicDataSource) dataSource, maxConnections, connectionTimeoutMillis);
+        }
+
+        this.inUse = REGISTRY.counter(MetricRegistry.name("sql.connections", name, "in_use"));
+        this.acquisitionWait = REGISTRY.timer(MetricRegistry.name("sql.connections", name, "acquisition_wait"));
+        this.connectionOpening = REGISTRY.timer(MetricRegistry.name("sql.connections", name, "opening"));
+    }
+
+    /**
+     * Make room in a DBCP pool for the connections this data source lets through, and bound its wait.
+     * <p>
+     * The pool may be shared with other data sources, so it's only ever grown.
+     *
+     * @param pool  The pool opening the connections
+     * @param maxConnections  The number of connections open at a time
+     * @param connectionTimeoutMillis  How long to wait for a connection before giving up
+     */
+    private static void sizePool(BasicDataSource pool, int maxConnections, long connectionTimeoutMillis) {
+        if (pool.getMaxTotal() >= 0 && pool.getMaxTotal() < maxConnections) {
+            pool.setMaxTotal(maxConnections);
+        }
+        if (pool.getMaxIdle() >= 0 && pool.getMaxIdle() < maxConnections) {
+            pool.setMaxIdle(maxConnections);
+        }
+        pool.setMaxWaitMillis(connectionTimeoutMillis);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        try (Timer.Context ignored = acquisitionWait.time()) {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException(String.format(
+                        "No connection available within %d ms, all %d are in use",
+                        connectionTimeoutMillis,
+                        maxConnections
+                ));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+
+        Connection connection = null;
+        try {
+            connection = takeIdleConnection();
+            if (connection == null) {
+                try (Timer.Context ignored = connectionOpening.time()) {
+                    connection = dataSource.getConnection();
+                }
+            }
+            Connection wrapped = wrap(connection);
+            inUse.inc();
+            return wrapped;
+        } catch (SQLException | RuntimeException e) {
+            if (connection != null) {
+                closeQuietly(connection);
+            }
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Take the most recently closed connection that is still fit to hand out again, closing the ones that aren't.
+     *
+     * @return the connection, or null if there is none
+     */
+    private Connection takeIdleConnection() {
+        long now = System.currentTimeMillis();
+        while (true) {
+            IdleConnection idle;
+            synchronized (idleConnections) {
+                idle = idleConnections.pollFirst();
+            }
+            if (idle == null) {
+                return null;
+            }
+            try {
+                if (now - idle.since <= idleTimeoutMillis && !idle.connection.isClosed()) {
+                    return idle.connection;
+                }
+            } catch (SQLException e) {
+                LOG.debug("Unable to check an idle connection, discarding it", e);
+            }
+            closeQuietly(idle.connection);
+        }
+    }
+
+    /**
+     * Take back a connection its user closed, keeping it to hand out again if it's still open.
+     *
+     * @param connection  The underlying connection
+     * @param autoCommit  Whether the connection was in auto-commit mode when it was handed out
+     * @param readOnly  Whether the connection was read-only when it was handed out
+     */
+    private void release(Connection connection, boolean autoCommit, boolean readOnly) {
+        inUse.dec();
+        try {
+            if (idleTimeoutMillis > 0 && !connection.isClosed()) {
+                // Changes its user left uncommitted are dropped, rather than committed by turning auto-commit on
+                if (connection.getAutoCommit() != autoCommit) {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                    connection.setAutoCommit(autoCommit);
+                }
+                if (connection.isReadOnly() != readOnly) {
+                    connection.setReadOnly(readOnly);
+                }
+                synchronized (idleConnections) {
+                    idleConnections.addFirst(new IdleConnection(connection, System.currentTimeMillis()));
+                }
+            } else {
+                closeQuietly(connection);
+            }
+        } catch (SQLException e) {
+            LOG.debug("Unable to check a released connection, discarding it", e);
+            closeQuietly(connection);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Close a connection, logging rather than throwing if it fails.
+     *
+     * @param connection  The connection to close
+     */
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOG.debug("Unable to close a connection", e);
+        }
+    }
+
+    /**
+     * Wrap a connection so that closing it gives it back to this data source, rather than closing it.
+     *
+     * @param connection  The underlying connection
+     *
+     * @return the connection to hand out
+     *
+     * @throws SQLException if the state of the connection can't be read
+     */
+    private Connection wrap(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        boolean readOnly = connection.isReadOnly();
+        AtomicBoolean closed = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (closed.compareAndSet(false, true)) {
+                                release(connection, autoCommit, readOnly);
+                            }
+                            return null;
+                        case "isClosed":
+                            return closed.get() || connection.isClosed();
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "Pooled " + connection;
+                        default:
+                            if (closed.get()) {
+                                throw new SQLException("Connection is closed");
+                            }
+                            try {
+                                return method.invoke(connection, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                }
+        );
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Connections are opened with the credentials of the data source");
+    }
+
+    @Override
+    public PrintWriter getLogWriter() throws SQLException {
+        return dataSource.getLogWriter();
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) throws SQLException {
+        dataSource.setLogWriter(out);
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) throws SQLException {
+        dataSource.setLoginTimeout(seconds);
+    }
+
+    @Override
+    public int getLoginTimeout() throws SQLException {
+        return dataSource.getLoginTimeout();
+    }
+
+    @Override
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return dataSource.getParentLogger();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return iface.isInstance(this) ? iface.cast(this) : dataSource.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || dataSource.isWrapperFor(iface);
+    }
+
+    /**
+     * A connection kept to be handed out again, and since when.
+     */
+    private static class IdleConnection {
+        private final Connection connection;
+        private final long since;
+
+        /**
+         * Constructor.
+         *
+         * @param connection  The underlying connection
+         * @param since  When it was closed by its user, in milliseconds since the epoch
+         */
+        IdleConnection(Connection connection, long since) {
+            this.connection = connection;
+            this.since = since;
+        }
+    }
+}
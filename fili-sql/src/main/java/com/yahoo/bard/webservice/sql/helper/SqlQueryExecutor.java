@@ -0,0 +1,117 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.helper;
+
+import com.yahoo.bard.webservice.application.MetricRegistryFactory;
+import com.yahoo.bard.webservice.config.SystemConfig;
+import com.yahoo.bard.webservice.config.SystemConfigProvider;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking work of sql backed queries on threads of its own, so that it neither waits behind nor holds up
+ * unrelated work on shared pools.
+ * <p>
+ * A bounded number of queries run at a time and a bounded number wait for their turn, beyond which queries are
+ * rejected. The queries running and the time queries spent waiting are reported to the metric registry, under the
+ * name of the executor, as are rejected queries.
+ */
+public class SqlQueryExecutor {
+    private static final SystemConfig SYSTEM_CONFIG = SystemConfigProvider.getInstance();
+    private static final MetricRegistry REGISTRY = MetricRegistryFactory.getRegistry();
+
+    public static final String THREADS_KEY = SYSTEM_CONFIG.getPackageVariableName("sql_executor_threads");
+    public static final String QUEUE_SIZE_KEY = SYSTEM_CONFIG.getPackageVariableName("sql_executor_queue_size");
+
+    private final ThreadPoolExecutor executor;
+
+    private final Counter running;
+    private final Timer queueWait;
+    private final Meter rejected;
+
+    /**
+     * Constructor, taking the bounds from the system config.
+     *
+     * @param name  The name the threads and metrics of the executor go by
+     */
+    public SqlQueryExecutor(String name) {
+        this(name, SYSTEM_CONFIG.getIntProperty(THREADS_KEY, 16), SYSTEM_CONFIG.getIntProperty(QUEUE_SIZE_KEY, 1000));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name  The name the threads and metrics of the executor go by
+     * @param threads  The number of queries run at a time
+     * @param queueSize  The number of queries waiting for their turn before more are rejected
+     */
+    public SqlQueryExecutor(String name, int threads, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, name + "-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                threadFactory
+        );
+        this.executor.allowCoreThreadTimeOut(true);
+
+        this.running = REGISTRY.counter(MetricRegistry.name("sql.executor", name, "running"));
+        this.queueWait = REGISTRY.timer(MetricRegistry.name("sql.executor", name, "queue_wait"));
+        this.rejected = REGISTRY.meter(MetricRegistry.name("sql.executor", name, "rejected"));
+    }
+
+    /**
+     * Run a query on the executor.
+     *
+     * @param query  The query to run, returning its response
+     * @param <T>  The type of the response
+     *
+     * @return the future response of the query
+     *
+     * @throws RejectedExecutionException if too many queries are already waiting
+     */
+    public <T> CompletableFuture<T> supplyAsync(Supplier<T> query) throws RejectedExecutionException {
+        Timer.Context waiting = queueWait.time();
+        Supplier<T> timedQuery = () -> {
+            waiting.stop();
+            running.inc();
+            try {
+                return query.get();
+            } finally {
+                running.dec();
+            }
+        };
+        try {
+            return CompletableFuture.supplyAsync(timedQuery, executor);
+        } catch (RejectedExecutionException e) {
+            rejected.mark();
+            throw e;
+        }
+    }
+
+    /**
+     * Stop accepting queries, letting the ones accepted finish.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -3,6 +3,7 @@
 package com.yahoo.bard.webservice.sql.presto;
 
 
+import com.yahoo.bard.webservice.data.ResultSetSchema;
 import com.yahoo.bard.webservice.druid.client.FailureCallback;
 import com.yahoo.bard.webservice.druid.client.SuccessCallback;
 import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
@@ -10,13 +11,17 @@ import com.yahoo.bard.webservice.druid.model.query.DruidQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.sql.ApiToFieldMapper;
 import com.yahoo.bard.webservice.sql.SqlBackedClient;
+import com.yahoo.bard.webservice.sql.SqlResultReader;
 import com.yahoo.bard.webservice.sql.SqlResultSetProcessor;
+import com.yahoo.bard.webservice.sql.helper.BoundedDataSource;
 import com.yahoo.bard.webservice.sql.helper.CalciteHelper;
+import com.yahoo.bard.webservice.sql.helper.SqlQueryExecutor;
 import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.HOUR;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import org.joda.time.DateTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,6 +31,9 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -36,6 +44,8 @@ import javax.sql.DataSource;
  */
 public class PrestoSqlBackedClient implements SqlBackedClient {
     private static final Logger LOG = LoggerFactory.getLogger(PrestoSqlBackedClient.class);
+
+    private final SqlQueryExecutor executor = new SqlQueryExecutor("presto");
     private final ObjectMapper jsonWriter;
     private final DruidQueryToPrestoConverter druidQueryToPrestoConverter;
     private final CalciteHelper calciteHelper;
@@ -50,7 +60,7 @@ public class PrestoSqlBackedClient implements SqlBackedClient {
      */
     public PrestoSqlBackedClient(DataSource dataSource, ObjectMapper objectMapper) {
         try {
-            calciteHelper = new CalciteHelper(dataSource);
+            calciteHelper = new CalciteHelper(new BoundedDataSource(dataSource, "presto"));
         } catch (SQLException e) {
             throw new IllegalStateException("Failed to start PrestoSqlBackedClient.", e);
         }
@@ -64,27 +74,80 @@ public class PrestoSqlBackedClient implements SqlBackedClient {
             SuccessCallback successCallback,
             FailureCallback failureCallback
     ) {
+        return executeAsync(
+                () -> executeAndProcessQuery((DruidAggregationQuery<?>) druidQuery),
+                successCallback == null ? null : successCallback::invoke,
+                failureCallback
+        );
+    }
 
+    @Override
+    public Future<com.yahoo.bard.webservice.data.ResultSet> executeQuery(
+            DruidQuery<?> druidQuery,
+            ResultSetSchema schema,
+            DateTimeZone dateTimeZone,
+            Consumer<com.yahoo.bard.webservice.data.ResultSet> successCallback,
+            FailureCallback failureCallback
+    ) {
+        return executeAsync(
+                () -> executeAndProcessQuery(
+                        (DruidAggregationQuery<?>) druidQuery,
+                        (resultSetProcessor, resultSet) ->
+                                resultSetProcessor.buildResultSet(resultSet, schema, dateTimeZone)
+                ),
+                successCallback,
+                failureCallback
+        );
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    /**
+     * Executes a query asynchronously, and hands its response to the callbacks.
+     *
+     * @param query  Executes the query and returns its response.
+     * @param successCallback  The callback for handling a successful result.
+     * @param failureCallback  The callback for handling exceptions
+     * @param <T>  The type of the response
+     *
+     * @return the response, or null if the query failed.
+     */
+    private <T> Future<T> executeAsync(
+            Supplier<T> query,
+            Consumer<T> successCallback,
+            FailureCallback failureCallback
+    ) {
         RequestLog logCtx = RequestLog.dump();
         //todo eventually stop/start RequestLog phases
-        return CompletableFuture.supplyAsync(() -> {
-                    try {
-                        JsonNode jsonNode = executeAndProcessQuery((DruidAggregationQuery) druidQuery);
-                        if (successCallback != null) {
-                            successCallback.invoke(jsonNode);
-                        }
-                        return jsonNode;
-                    } catch (Throwable t) {
-                        LOG.warn("Failed while querying ", t);
-                        if (failureCallback != null) {
-                            failureCallback.dispatch(t);
-                        }
-                    } finally {
+        try {
+            return executor.supplyAsync(() -> {
                         RequestLog.restore(logCtx);
+                        try {
+                            T response = query.get();
+                            if (successCallback != null) {
+                                successCallback.accept(response);
+                            }
+                            return response;
+                        } catch (Throwable t) {
+                            LOG.warn("Failed while querying ", t);
+                            if (failureCallback != null) {
+                                failureCallback.dispatch(t);
+                            }
+                        }
+                        return null;
                     }
-                    return null;
-                }
-        );
+            );
+        } catch (RejectedExecutionException e) {
+            RequestLog.restore(logCtx);
+            LOG.warn("Too many queries waiting to run, rejecting query", e);
+            if (failureCallback != null) {
+                failureCallback.dispatch(e);
+            }
+            return CompletableFuture.completedFuture(null);
+        }
     }
 
     /**
@@ -96,6 +159,24 @@ public class PrestoSqlBackedClient implements SqlBackedClient {
      * @return a druid-like response to the query.
      */
     private JsonNode executeAndProcessQuery(DruidAggregationQuery<?> druidQuery) {
+        return executeAndProcessQuery(druidQuery, (resultSetProcessor, resultSet) -> {
+            resultSetProcessor.process(resultSet);
+            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
+            LOG.info("Created response: {}", jsonNode);
+            return jsonNode;
+        });
+    }
+
+    /**
+     * Builds sql for a druid query, convert it to presto dialect,
+     * execute it against the database and read the results.
+     *
+     * @param druidQuery The druid query to build and process.
+     * @param resultReader Reads the results into the response.
+     * @param <T> The type of the response
+     * @return the response to the query.
+     */
+    private <T> T executeAndProcessQuery(DruidAggregationQuery<?> druidQuery, SqlResultReader<T> resultReader) {
         if (!druidQueryToPrestoConverter.isValidQuery(druidQuery)) {
             throw new UnsupportedOperationException("Unable to process " + druidQuery);
         }
@@ -122,13 +203,10 @@ public class PrestoSqlBackedClient implements SqlBackedClient {
                 druidQueryToPrestoConverter.getTimeConverter()
         );
 
-        try (Connection connection = calciteHelper.getConnection()) {
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(sqlQuery);
-            resultSetProcessor.process(resultSet);
-            JsonNode jsonNode = resultSetProcessor.buildDruidResponse();
-            LOG.info("Created response: {}", jsonNode);
-            return jsonNode;
+        try (Connection connection = calciteHelper.getConnection();
+             Statement statement = calciteHelper.createQueryStatement(connection);
+             ResultSet resultSet = statement.executeQuery(sqlQuery)) {
+            return resultReader.readAndRecord(resultSetProcessor, resultSet);
         } catch (SQLException e) {
             LOG.warn("Failed while processing {}", druidQuery);
             throw new RuntimeException("Couldn't generate sql", e);
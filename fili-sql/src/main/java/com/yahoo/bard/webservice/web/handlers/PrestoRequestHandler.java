@@ -12,6 +12,7 @@ import com.yahoo.bard.webservice.table.SqlPhysicalTable;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResultSetResponseProcessor;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,6 +70,20 @@ public class PrestoRequestHandler implements DataRequestHandler {
             FailureCallback failure = response.getFailureCallback(druidQuery);
             LOG.warn("processing {}", druidQuery);
 
+            if (response instanceof ResultSetResponseProcessor) {
+                // Read the results straight into a result set, rather than into a druid like response to be parsed
+                ResultSetResponseProcessor resultSetProcessor = (ResultSetResponseProcessor) response;
+                SqlAggregationQuery sqlAggregationQuery = new SqlAggregationQuery(druidQuery);
+                prestoBackedClient.executeQuery(
+                        druidQuery,
+                        resultSetProcessor.buildResultSetSchema(sqlAggregationQuery),
+                        request.getTimeZone(),
+                        resultSet -> resultSetProcessor.processResultSet(resultSet, sqlAggregationQuery, copy),
+                        failure
+                );
+                return true;
+            }
+
             prestoBackedClient.executeQuery(druidQuery, success, failure);
 
             return true;
@@ -10,11 +10,13 @@ import com.yahoo.bard.webservice.druid.model.query.DruidAggregationQuery;
 import com.yahoo.bard.webservice.logging.RequestLog;
 import com.yahoo.bard.webservice.sql.DefaultSqlBackedClient;
 import com.yahoo.bard.webservice.sql.SqlAggregationQuery;
+import com.yahoo.bard.webservice.sql.ShardedSqlBackedClient;
 import com.yahoo.bard.webservice.sql.SqlBackedClient;
 import com.yahoo.bard.webservice.table.SqlPhysicalTable;
 import com.yahoo.bard.webservice.web.apirequest.DataApiRequest;
 import com.yahoo.bard.webservice.web.responseprocessors.LoggingContext;
 import com.yahoo.bard.webservice.web.responseprocessors.ResponseProcessor;
+import com.yahoo.bard.webservice.web.responseprocessors.ResultSetResponseProcessor;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -61,7 +63,7 @@ public class SqlRequestHandler implements DataRequestHandler {
         String user = SYSTEM_CONFIG.getStringProperty(DATABASE_USERNAME);
         String pass = SYSTEM_CONFIG.getStringProperty(DATABASE_PASSWORD);
         try {
-            sqlConverter = new DefaultSqlBackedClient(dbUrl, driver, user, pass, mapper);
+            sqlConverter = new ShardedSqlBackedClient(new DefaultSqlBackedClient(dbUrl, driver, user, pass, mapper));
         } catch (SQLException e) {
             LOG.warn("Failed to initialize Sql backend", e);
         }
@@ -100,6 +102,20 @@ public class SqlRequestHandler implements DataRequestHandler {
             };
             FailureCallback failure = response.getFailureCallback(druidQuery);
 
+            if (response instanceof ResultSetResponseProcessor) {
+                // Read the results straight into a result set, rather than into a druid like response to be parsed
+                ResultSetResponseProcessor resultSetProcessor = (ResultSetResponseProcessor) response;
+                SqlAggregationQuery sqlAggregationQuery = new SqlAggregationQuery(druidQuery);
+                sqlConverter.executeQuery(
+                        druidQuery,
+                        resultSetProcessor.buildResultSetSchema(sqlAggregationQuery),
+                        request.getTimeZone(),
+                        resultSet -> resultSetProcessor.processResultSet(resultSet, sqlAggregationQuery, copy),
+                        failure
+                );
+                return true;
+            }
+
             sqlConverter.executeQuery(druidQuery, success, failure);
 
             return true;
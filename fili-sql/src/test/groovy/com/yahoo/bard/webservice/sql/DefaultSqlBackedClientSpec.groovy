@@ -55,6 +55,8 @@ import com.yahoo.bard.webservice.data.metric.MetricColumn
 import com.yahoo.bard.webservice.data.time.DefaultTimeGrain
 import com.yahoo.bard.webservice.database.Database
 import com.yahoo.bard.webservice.druid.model.DefaultQueryType
+import com.yahoo.bard.webservice.druid.client.FailureCallback
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
 import com.yahoo.bard.webservice.druid.model.aggregation.Aggregation
 import com.yahoo.bard.webservice.druid.model.filter.Filter
 import com.yahoo.bard.webservice.druid.model.having.Having
@@ -67,6 +69,8 @@ import com.yahoo.bard.webservice.druid.model.query.DruidQuery
 import com.yahoo.bard.webservice.data.time.Granularity
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
 import com.yahoo.bard.webservice.druid.model.query.TimeSeriesQuery
+import com.yahoo.bard.webservice.logging.RequestLog
+import com.yahoo.bard.webservice.logging.blocks.SqlResultRead
 import com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder
 import com.yahoo.bard.webservice.table.Column
 
@@ -79,6 +83,7 @@ import org.joda.time.DateTimeZone
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.util.concurrent.RejectedExecutionException
 import java.util.function.Function
 
 class DefaultSqlBackedClientSpec extends Specification {
@@ -91,20 +96,23 @@ class DefaultSqlBackedClientSpec extends Specification {
     private static final DruidResponseParser RESPONSE_PARSER = new DruidResponseParser()
 
     ResultSet parse(JsonNode jsonNode, AbstractDruidAggregationQuery<?> druidQuery) {
-        List<Column> columns = new ArrayList<>()
-        def constraint = druidQuery.dataSource.physicalTable.constraint
-        constraint.metricNames.forEach { columns.add(new MetricColumn(it)) }
-        constraint.allDimensionNames.forEach { columns.add(new DimensionColumn(getDimension(it))) }
-
-        ResultSetSchema resultSetSchema = new ResultSetSchema(druidQuery.granularity, columns)
         return RESPONSE_PARSER.parse(
                 jsonNode,
-                resultSetSchema,
+                buildSchema(druidQuery),
                 DefaultQueryType.GROUP_BY,
                 druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone
         )
     }
 
+    ResultSetSchema buildSchema(AbstractDruidAggregationQuery<?> druidQuery) {
+        List<Column> columns = new ArrayList<>()
+        def constraint = druidQuery.dataSource.physicalTable.constraint
+        constraint.metricNames.forEach { columns.add(new MetricColumn(it)) }
+        constraint.allDimensionNames.forEach { columns.add(new DimensionColumn(getDimension(it))) }
+
+        return new ResultSetSchema(druidQuery.granularity, columns)
+    }
+
     private static TimeSeriesQuery getTimeSeriesQuery(DefaultTimeGrain timeGrain, Filter filter) {
         return getTimeSeriesQueryCustomAggregation(timeGrain, filter, { s -> sum(s) }, [])
     }
@@ -325,4 +333,92 @@ class DefaultSqlBackedClientSpec extends Specification {
         MONTH    | [USER]                                  | []                                           | []               | Optional.of(49)  | 49
         INSTANCE | [COUNTRY_ISO_CODE]                      | []                                           | []               | Optional.of(25)  | 25
     }
+
+    def "Reading the results records the rows read in the request log of the query"() {
+        setup:
+        DruidQuery druidQuery = getGroupByQuery(HOUR, null, null, [IS_ROBOT], null)
+        SqlResultRead recorded = null
+        RequestLog.getId()
+
+        when:
+        sqlBackedClient.executeQuery(
+                druidQuery,
+                { recorded = RequestLog.retrieve(SqlResultRead) as SqlResultRead } as SuccessCallback,
+                null
+        ).get()
+
+        then:
+        recorded.rows == 24 * 2
+
+        cleanup:
+        RequestLog.dump()
+    }
+
+    def "A closed client rejects queries, handing the rejection to the failure callback"() {
+        setup:
+        SqlBackedClient client = new DefaultSqlBackedClient(Database.getDataSource(), new ObjectMapper())
+        Throwable error = null
+        client.close()
+
+        when:
+        JsonNode response = client.executeQuery(
+                getGroupByQuery(HOUR, null, null, [IS_ROBOT], null),
+                null,
+                { error = it } as FailureCallback
+        ).get()
+
+        then:
+        response == null
+        error instanceof RejectedExecutionException
+    }
+
+    @Unroll
+    def "Results read straight into a result set match the parsed response on /#timeGrain/#dims/"() {
+        setup:
+        AbstractDruidAggregationQuery<?> druidQuery = getGroupByQuery(timeGrain, null, null, dims, null)
+        DateTimeZone timeZone = druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone
+        ResultSet parsed = parse(sqlBackedClient.executeQuery(druidQuery, null, null).get(), druidQuery)
+
+        when:
+        ResultSet direct = sqlBackedClient.executeQuery(druidQuery, buildSchema(druidQuery), timeZone, null, null).get()
+
+        then:
+        !direct.isEmpty()
+        direct == parsed
+
+        where:
+        timeGrain | dims
+        INSTANCE  | []
+        HOUR      | [IS_ROBOT]
+        DAY       | [IS_NEW, IS_ROBOT]
+        DAY       | [METRO_CODE, IS_ROBOT, COUNTRY_ISO_CODE]
+    }
+
+    def "Results of aggregations without a numeric type are read as text, as in the parsed response"() {
+        setup:
+        AbstractDruidAggregationQuery<?> druidQuery = getTimeSeriesQueryCustomAggregation(
+                DAY,
+                null,
+                { s -> longSum(s) },
+                [new ArithmeticPostAggregation("added_to_deleted_ratio", ArithmeticPostAggregation.ArithmeticPostAggregationFunction.DIVIDE, [new FieldAccessorPostAggregation(sum(ADDED)), new FieldAccessorPostAggregation(sum(DELETED))])]
+        )
+        ResultSetSchema schema = new ResultSetSchema(
+                DAY,
+                [API_PREPEND + ADDED, API_PREPEND + DELTA, "added_to_deleted_ratio"].collect { new MetricColumn(it) }
+        )
+        DateTimeZone timeZone = druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone
+
+        when:
+        ResultSet direct = sqlBackedClient.executeQuery(druidQuery, schema, timeZone, null, null).get()
+
+        then:
+        direct == RESPONSE_PARSER.parse(
+                sqlBackedClient.executeQuery(druidQuery, null, null).get(),
+                schema,
+                DefaultQueryType.GROUP_BY,
+                timeZone
+        )
+        direct[0].getMetricValue(new MetricColumn(API_PREPEND + ADDED)) == 9385573G
+        direct[0].getMetricValue(new MetricColumn("added_to_deleted_ratio")) instanceof String
+    }
 }
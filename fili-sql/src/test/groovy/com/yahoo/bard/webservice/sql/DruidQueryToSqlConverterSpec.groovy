@@ -42,6 +42,7 @@ import com.yahoo.bard.webservice.druid.model.orderby.LimitSpec
 import com.yahoo.bard.webservice.druid.model.query.DruidQuery
 import com.yahoo.bard.webservice.data.time.Granularity
 import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.druid.model.query.QueryContext
 import com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder
 import com.yahoo.bard.webservice.sql.helper.CalciteHelper
 
@@ -200,6 +201,20 @@ class DruidQueryToSqlConverterSpec extends Specification {
         INSTANCE | []                     | []               | []               | """ WHERE "${TIME}" >= '20150912' AND "${TIME}" < '20150913' """
     }
 
+    def "The sql of a query converted before is reused, whatever its context"() {
+        setup:
+        DruidQuery query = getGroupByQuery(DAY, [METRO_CODE], null)
+        String sql = druidQueryToSqlConverter.buildSqlQuery(query, apiToFieldMapper)
+        long hits = DruidQueryToSqlConverter.SQL_CACHE_HITS.count
+
+        expect:
+        druidQueryToSqlConverter.buildSqlQuery(
+                query.withContext(new QueryContext([(QueryContext.Param.QUERY_ID): "another"])),
+                SimpleDruidQueryBuilder.getApiToFieldMapper(API_PREPEND, "")
+        ) == sql
+        DruidQueryToSqlConverter.SQL_CACHE_HITS.count == hits + 1
+    }
+
     def "test COUNT(*) in SELECT"() {
         setup:
         DruidQuery query = getGroupByQueryWithCount(grain, dims, null)
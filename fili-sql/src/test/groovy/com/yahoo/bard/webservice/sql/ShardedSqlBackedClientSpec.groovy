@@ -0,0 +1,143 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql
+
+import static com.yahoo.bard.webservice.data.time.AllGranularity.INSTANCE
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.DAY
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.HOUR
+import static com.yahoo.bard.webservice.data.time.DefaultTimeGrain.MINUTE
+import static com.yahoo.bard.webservice.database.Database.ADDED
+import static com.yahoo.bard.webservice.database.Database.COMMENT
+import static com.yahoo.bard.webservice.database.Database.DELETED
+import static com.yahoo.bard.webservice.database.Database.IS_NEW
+import static com.yahoo.bard.webservice.database.Database.IS_ROBOT
+import static com.yahoo.bard.webservice.database.Database.METRO_CODE
+import static com.yahoo.bard.webservice.database.Database.WIKITICKER
+import static com.yahoo.bard.webservice.sql.builders.Aggregator.sum
+import static com.yahoo.bard.webservice.sql.builders.Intervals.interval
+import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.END
+import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.START
+import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.getDimension
+import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.getDimensions
+import static com.yahoo.bard.webservice.sql.builders.SimpleDruidQueryBuilder.groupByQuery
+
+import com.yahoo.bard.webservice.data.ResultSet
+import com.yahoo.bard.webservice.data.ResultSetSchema
+import com.yahoo.bard.webservice.data.dimension.DimensionColumn
+import com.yahoo.bard.webservice.data.metric.MetricColumn
+import com.yahoo.bard.webservice.data.time.Granularity
+import com.yahoo.bard.webservice.database.Database
+import com.yahoo.bard.webservice.druid.client.SuccessCallback
+import com.yahoo.bard.webservice.druid.model.query.GroupByQuery
+import com.yahoo.bard.webservice.logging.RequestLog
+import com.yahoo.bard.webservice.logging.blocks.SqlResultRead
+import com.yahoo.bard.webservice.table.Column
+
+import com.fasterxml.jackson.databind.ObjectMapper
+
+import org.joda.time.DateTimeZone
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ShardedSqlBackedClientSpec extends Specification {
+    private static SqlBackedClient sqlBackedClient = new DefaultSqlBackedClient(
+            Database.getDataSource(),
+            new ObjectMapper()
+    )
+    private static SqlBackedClient shardedClient = new ShardedSqlBackedClient(sqlBackedClient, 4)
+
+    // The table of the query is in days, so it takes a few days of buckets to split a query
+    private static final String FOUR_DAYS_END = "2015-09-16T00:00:00.000Z"
+
+    private static GroupByQuery getGroupByQuery(Granularity timeGrain, List<String> dimensions, String end = END) {
+        return groupByQuery(
+                WIKITICKER,
+                null,
+                null,
+                getDimensions(dimensions),
+                timeGrain,
+                [ADDED, DELETED],
+                [COMMENT],
+                [sum(ADDED), sum(DELETED)],
+                [],
+                [interval(START, end)],
+                null
+        )
+    }
+
+    ResultSetSchema buildSchema(GroupByQuery druidQuery) {
+        List<Column> columns = new ArrayList<>()
+        def constraint = druidQuery.dataSource.physicalTable.constraint
+        constraint.metricNames.forEach { columns.add(new MetricColumn(it)) }
+        constraint.allDimensionNames.forEach { columns.add(new DimensionColumn(getDimension(it))) }
+
+        return new ResultSetSchema(druidQuery.granularity, columns)
+    }
+
+    @Unroll
+    def "Queries on /#timeGrain/#dims/ until #end are split into #shards shards with the same results"() {
+        setup:
+        GroupByQuery druidQuery = getGroupByQuery(timeGrain, dims, end)
+        ResultSetSchema schema = buildSchema(druidQuery)
+        DateTimeZone timeZone = druidQuery.dataSource.physicalTable.schema.timeGrain.timeZone
+
+        expect:
+        new ShardedSqlBackedClient(sqlBackedClient, 4).shard(druidQuery).size() == shards
+        shardedClient.executeQuery(druidQuery, null, null).get() ==
+                sqlBackedClient.executeQuery(druidQuery, null, null).get()
+        shardedClient.executeQuery(druidQuery, schema, timeZone, null, null).get() ==
+                sqlBackedClient.executeQuery(druidQuery, schema, timeZone, null, null).get()
+
+        where:
+        timeGrain | dims                   | end           | shards
+        DAY       | []                     | FOUR_DAYS_END | 4
+        DAY       | [IS_NEW, IS_ROBOT]     | FOUR_DAYS_END | 4
+        DAY       | [METRO_CODE]           | FOUR_DAYS_END | 4
+        HOUR      | [IS_ROBOT]             | FOUR_DAYS_END | 4
+        MINUTE    | [METRO_CODE]           | FOUR_DAYS_END | 4
+        HOUR      | [IS_ROBOT]             | END           | 1
+        DAY       | [IS_ROBOT]             | END           | 1
+        INSTANCE  | [IS_ROBOT]             | FOUR_DAYS_END | 0
+    }
+
+    def "The results read by the shards are summed up in the request log of the query"() {
+        setup:
+        GroupByQuery druidQuery = getGroupByQuery(DAY, [IS_ROBOT], FOUR_DAYS_END)
+        SqlResultRead recorded = null
+        RequestLog.getId()
+
+        when:
+        shardedClient.executeQuery(
+                druidQuery,
+                { recorded = RequestLog.retrieve(SqlResultRead) as SqlResultRead } as SuccessCallback,
+                null
+        ).get()
+
+        then:
+        recorded.rows == 2
+
+        cleanup:
+        RequestLog.dump()
+    }
+
+    def "A shard failing fails the query once"() {
+        setup:
+        SqlBackedClient failingClient = Mock(SqlBackedClient)
+        List<Throwable> errors = []
+
+        when:
+        ResultSet results = new ShardedSqlBackedClient(failingClient, 4).executeQuery(
+                getGroupByQuery(DAY, [], FOUR_DAYS_END),
+                Mock(ResultSetSchema),
+                DateTimeZone.UTC,
+                null,
+                { errors.add(it) }
+        ).get()
+
+        then:
+        4 * failingClient.executeQuery(_, _, _, _, _) >> { args -> args[4].invoke(new RuntimeException("shard")) }
+        errors.size() == 1
+        results == null
+    }
+}
@@ -0,0 +1,138 @@
+// Copyright 2020 Oath Inc.
+// Licensed under the terms of the Apache license. Please see LICENSE.md file distributed with this work for terms.
+package com.yahoo.bard.webservice.sql.helper
+
+import org.apache.commons.dbcp2.BasicDataSource
+
+import spock.lang.Specification
+
+import java.sql.Connection
+import java.sql.SQLException
+import java.sql.SQLTransientConnectionException
+
+import javax.sql.DataSource
+
+class BoundedDataSourceSpec extends Specification {
+    DataSource dataSource = Mock(DataSource)
+
+    def "A closed connection is handed out again rather than opening a new one"() {
+        given:
+        Connection connection = Mock(Connection)
+        BoundedDataSource boundedDataSource = new BoundedDataSource(dataSource, "spec", 1, 1000, 60000)
+
+        when:
+        Connection first = boundedDataSource.getConnection()
+        first.close()
+        Connection second = boundedDataSource.getConnection()
+        second.createStatement()
+
+        then:
+        1 * dataSource.getConnection() >> connection
+        1 * connection.createStatement()
+        0 * connection.close()
+        first.isClosed()
+        !second.isClosed()
+    }
+
+    def "A closed connection can't be used any more"() {
+        given:
+        dataSource.getConnection() >> Mock(Connection)
+        Connection connection = new BoundedDataSource(dataSource, "spec", 1, 1000, 60000).getConnection()
+        connection.close()
+
+        when:
+        connection.createStatement()
+
+        then:
+        thrown(SQLException)
+    }
+
+    def "Connections aren't kept once closed if the idle timeout is 0"() {
+        given:
+        Connection connection = Mock(Connection)
+        BoundedDataSource boundedDataSource = new BoundedDataSource(dataSource, "spec", 1, 1000, 0)
+
+        when:
+        boundedDataSource.getConnection().close()
+        boundedDataSource.getConnection()
+
+        then:
+        2 * dataSource.getConnection() >> connection
+        1 * connection.close()
+    }
+
+    def "Asking for a connection while all are in use times out"() {
+        given:
+        dataSource.getConnection() >> Mock(Connection)
+        BoundedDataSource boundedDataSource = new BoundedDataSource(dataSource, "spec", 1, 10, 60000)
+        boundedDataSource.getConnection()
+
+        when:
+        boundedDataSource.getConnection()
+
+        then:
+        thrown(SQLTransientConnectionException)
+    }
+
+    def "A failure to open a connection doesn't use up the bound"() {
+        given:
+        BoundedDataSource boundedDataSource = new BoundedDataSource(dataSource, "spec", 1, 10, 60000)
+
+        when:
+        boundedDataSource.getConnection()
+
+        then:
+        1 * dataSource.getConnection() >> { throw new SQLException("down") }
+        thrown(SQLException)
+
+        when:
+        Connection connection = boundedDataSource.getConnection()
+
+        then:
+        1 * dataSource.getConnection() >> Mock(Connection)
+        connection != null
+    }
+
+    def "A connection is handed out again in the auto-commit and read-only state it was first handed out in"() {
+        given:
+        Connection connection = Mock(Connection)
+        boolean autoCommit = true
+        boolean readOnly = false
+        connection.getAutoCommit() >> { autoCommit }
+        connection.isReadOnly() >> { readOnly }
+        dataSource.getConnection() >> connection
+        BoundedDataSource boundedDataSource = new BoundedDataSource(dataSource, "spec", 1, 1000, 60000)
+        Connection first = boundedDataSource.getConnection()
+        autoCommit = false
+        readOnly = true
+
+        when:
+        first.close()
+
+        then: "Uncommitted changes are dropped, and the state is put back"
+        1 * connection.rollback()
+        1 * connection.setAutoCommit(true) >> { autoCommit = true }
+        1 * connection.setReadOnly(false) >> { readOnly = false }
+        0 * connection.close()
+    }
+
+    def "A DBCP pool is grown to the bound and waits no longer than the timeout"() {
+        given:
+        BasicDataSource pool = new BasicDataSource()
+        pool.setMaxTotal(8)
+
+        when:
+        new BoundedDataSource(pool, "spec", 16, 1000, 60000)
+
+        then:
+        pool.getMaxTotal() == 16
+        pool.getMaxIdle() == 16
+        pool.getMaxWaitMillis() == 1000
+
+        when: "A smaller bound on the same pool"
+        new BoundedDataSource(pool, "spec", 4, 1000, 60000)
+
+        then: "The pool isn't shrunk"
+        pool.getMaxTotal() == 16
+    }
+}